@@ -0,0 +1,65 @@
+package gratum.concurrency
+
+import gratum.etl.BenchmarkFixture
+import gratum.etl.LoadStatistic
+import groovy.transform.CompileStatic
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+
+import java.util.concurrent.TimeUnit
+
+import static gratum.source.CollectionSource.from
+
+/**
+ * Measures end to end throughput of spreading rows across {@link LocalConcurrentContext} workers and
+ * collecting them on the results processor.  Each invocation includes starting and stopping the workers.
+ */
+@CompileStatic
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+class LocalConcurrentContextBenchmark {
+
+    @Param(["100000"])
+    int rows
+
+    @Param(["1", "4"])
+    int workers
+
+    @Param(["200"])
+    int queueSize
+
+    List<Map<String,Object>> source
+
+    @Setup
+    void setUp() {
+        source = BenchmarkFixture.rows(rows)
+    }
+
+    @Benchmark
+    int spreadCollect() {
+        LoadStatistic stat = from(BenchmarkFixture.copy(source))
+            .apply( new LocalConcurrentContext(workers, queueSize)
+                .spread { pipeline ->
+                    pipeline.setField("worker", Thread.currentThread().name)
+                }
+                .collect { pipeline ->
+                    pipeline
+                }
+                .connect() )
+            .go()
+        return stat.loaded
+    }
+}
@@ -0,0 +1,79 @@
+package gratum.csv
+
+import gratum.etl.BenchmarkFixture
+import groovy.transform.CompileStatic
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures reading a delimited file through {@link CSVFile#parse(CSVReader)} and {@link PullCsvMapIterator}.
+ */
+@CompileStatic
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class CsvParseBenchmark {
+
+    @Param(["100000"])
+    int rows
+
+    @Param(["true", "false"])
+    boolean escaped
+
+    File file
+
+    @Setup
+    void setUp() {
+        file = BenchmarkFixture.csvFile(rows)
+    }
+
+    @Benchmark
+    int parse(Blackhole bh) {
+        CSVFile csv = new CSVFile(file, ",")
+        csv.setEscaped(escaped)
+        return csv.parse(new CSVReader() {
+            @Override
+            void processHeaders(List<String> header) {
+                bh.consume(header)
+            }
+
+            @Override
+            boolean processRow(List<String> header, List<String> row) {
+                bh.consume(row)
+                return false
+            }
+        })
+    }
+
+    @Benchmark
+    int mapIterator(Blackhole bh) {
+        CSVFile csv = new CSVFile(file, ",")
+        csv.setEscaped(escaped)
+        int count = 0
+        try {
+            Iterator<Map<String,Object>> it = csv.mapIterator()
+            while( it.hasNext() ) {
+                bh.consume(it.next())
+                count++
+            }
+        } finally {
+            csv.close()
+        }
+        return count
+    }
+}
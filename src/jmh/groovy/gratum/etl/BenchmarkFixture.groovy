@@ -0,0 +1,85 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Generates deterministic rows and files for the JMH benchmarks so every run measures the
+ * same data regardless of the machine it runs on.
+ */
+@CompileStatic
+class BenchmarkFixture {
+
+    static final List<String> COLUMNS = ["id", "name", "gender", "age", "city", "state", "salary", "hired", "comment"]
+
+    private static final List<String> NAMES = ["Bill Rhodes", "Cheryl Lipscome", "Diana Rogers", "Jack Lowland", "Ginger Rogers", "Sam \"Slim\" Jones"]
+    private static final List<String> CITIES = ["Atlanta", "Boston", "Chicago", "Denver", "El Paso", "Fresno", "Gary", "Houston"]
+    private static final List<String> STATES = ["GA", "MA", "IL", "CO", "TX", "CA", "IN", "TX"]
+
+    /**
+     * Creates a list of rows where each row has the columns listed in {@link #COLUMNS}.
+     *
+     * @param count the number of rows to create
+     * @param seed the seed used to generate values so runs are repeatable
+     * @return a list of rows as mutable Maps
+     */
+    static List<Map<String,Object>> rows(int count, long seed = 42L) {
+        Random random = new Random(seed)
+        List<Map<String,Object>> rows = new ArrayList<>(count)
+        for( int i = 0; i < count; i++ ) {
+            int city = random.nextInt(CITIES.size())
+            Map<String,Object> row = new LinkedHashMap<>()
+            row.id = i + 1
+            row.name = NAMES[ random.nextInt(NAMES.size()) ]
+            row.gender = random.nextBoolean() ? "male" : "female"
+            row.age = 18 + random.nextInt(60)
+            row.city = CITIES[city]
+            row.state = STATES[city]
+            row.salary = Math.round( random.nextDouble() * 20000000 ) / 100.0d
+            row.hired = String.format("%04d-%02d-%02d", 1990 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28))
+            row.comment = random.nextInt(10) == 0 ? "Said \"hello\", then left" : "none"
+            rows << row
+        }
+        return rows
+    }
+
+    /**
+     * Creates a copy of the given rows so benchmarks that modify rows start from the same state.
+     */
+    static List<Map<String,Object>> copy(List<Map<String,Object>> rows) {
+        List<Map<String,Object>> copy = new ArrayList<>(rows.size())
+        for( Map<String,Object> row : rows ) {
+            copy << new LinkedHashMap<String,Object>(row)
+        }
+        return copy
+    }
+
+    /**
+     * Writes the given number of rows into a temporary delimited file with a header row.  The
+     * file is deleted when the JVM exits.
+     *
+     * @param count the number of rows to write
+     * @param separator the separator to write between columns
+     * @return the temporary file
+     */
+    static File csvFile(int count, String separator = ",") {
+        File file = File.createTempFile("gratum-jmh", ".csv")
+        file.deleteOnExit()
+        file.withWriter("UTF-8") { Writer writer ->
+            writer.write( COLUMNS.join(separator) )
+            writer.write("\n")
+            for( Map<String,Object> row : rows(count) ) {
+                writer.write( COLUMNS.collect { String col -> quote(row[col], separator) }.join(separator) )
+                writer.write("\n")
+            }
+        }
+        return file
+    }
+
+    private static String quote(Object value, String separator) {
+        String v = value.toString()
+        if( v.contains("\"") || v.contains(separator) ) {
+            return "\"" + v.replace("\"", "\"\"") + "\""
+        }
+        return v
+    }
+}
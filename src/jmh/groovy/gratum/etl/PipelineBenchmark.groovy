@@ -0,0 +1,109 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+
+import java.util.concurrent.TimeUnit
+
+import static gratum.source.CollectionSource.from
+
+/**
+ * Measures the per row cost of {@link Pipeline#process(java.util.Map, int)} through a chain of steps,
+ * {@link Condition#matches(java.util.Map)}, and the sort and join operators.
+ */
+@CompileStatic
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class PipelineBenchmark {
+
+    @Param(["10000"])
+    int rows
+
+    List<Map<String,Object>> source
+    List<Map<String,Object>> hobbies
+    Condition condition
+
+    /**
+     * Holds a Pipeline made of N setField steps, fused or not.  Kept in its own state so the steps parameter
+     * only multiplies the benchmarks that use it.
+     */
+    @State(Scope.Benchmark)
+    static class Chain {
+        @Param(["1", "5", "15"])
+        int steps
+
+        @Param(["true", "false"])
+        boolean fuse
+
+        Pipeline pipeline
+
+        @Setup(Level.Trial)
+        void setUp() {
+            pipeline = new Pipeline("chain").fuseSteps(fuse)
+            for( int i = 0; i < steps; i++ ) {
+                pipeline.setField("field${i}".toString(), i)
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    void setUp() {
+        source = BenchmarkFixture.rows(rows)
+        hobbies = (1..rows).collect { int id -> [person_id: id, hobby: "hobby ${id % 10}".toString()] as Map<String,Object> }
+        condition = new Condition([gender: "female", state: ["TX", "CA"], age: { Object age -> (age as Integer) > 30 }] as Map<String,Object>)
+    }
+
+    @Benchmark
+    int processSteps(Chain chain) {
+        int line = 1
+        for( Map<String,Object> row : source ) {
+            chain.pipeline.process(row, line++)
+        }
+        return chain.pipeline.loaded
+    }
+
+    @Benchmark
+    int conditionMatches() {
+        int matched = 0
+        for( Map<String,Object> row : source ) {
+            if( condition.matches(row) ) matched++
+        }
+        return matched
+    }
+
+    @Benchmark
+    void sortInMemory(Blackhole bh) {
+        bh.consume( from(BenchmarkFixture.copy(source)).sort("name", "age").go() )
+    }
+
+    @Benchmark
+    void sortPaged(Blackhole bh) {
+        bh.consume( from(BenchmarkFixture.copy(source)).sort("sort(name, age)") {
+            pageSize = 1000
+            orderBy("name", "age")
+        }.go() )
+    }
+
+    @Benchmark
+    void join(Blackhole bh) {
+        bh.consume( from(BenchmarkFixture.copy(source))
+                .join( from(BenchmarkFixture.copy(hobbies)), [id: "person_id"] )
+                .go() )
+    }
+}
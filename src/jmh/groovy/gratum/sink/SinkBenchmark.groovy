@@ -0,0 +1,85 @@
+package gratum.sink
+
+import gratum.etl.BenchmarkFixture
+import gratum.etl.Pipeline
+import groovy.transform.CompileStatic
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures writing rows through {@link CsvSink} and {@link JsonSink}.
+ */
+@CompileStatic
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class SinkBenchmark {
+
+    @Param(["100000"])
+    int rows
+
+    List<Map<String,Object>> source
+    File output
+
+    @Setup
+    void setUp() {
+        source = BenchmarkFixture.rows(rows)
+        output = File.createTempFile("gratum-jmh", ".out")
+    }
+
+    @TearDown
+    void tearDown() {
+        output.delete()
+    }
+
+    @Benchmark
+    int csvSink() {
+        return write( new CsvSink(output, ",") )
+    }
+
+    @Benchmark
+    int csvSinkMinimalQuoting() {
+        return write( new CsvSink(output, ",").minimalQuoting() )
+    }
+
+    @Benchmark
+    int jsonSink() {
+        return write( new JsonSink(output) )
+    }
+
+    @Benchmark
+    int jsonlSink() {
+        return write( new JsonSink(output).jsonObjectPerLine(true) )
+    }
+
+    @Benchmark
+    int jsonSinkColumns() {
+        return write( new JsonSink(output, ["id", "name", "salary"]) )
+    }
+
+    private int write(Sink<Map<String,Object>> sink) {
+        Pipeline pipeline = new Pipeline(sink.name)
+        sink.attach(pipeline)
+        int line = 1
+        for( Map<String,Object> row : source ) {
+            pipeline.process(row, line++)
+        }
+        sink.close()
+        return pipeline.loaded
+    }
+}
@@ -1,36 +1,92 @@
 package gratum.concurrency
 
+import gratum.csv.HaltPipelineException
+import gratum.etl.CompositeKey
 import gratum.etl.LoadStatistic
 import gratum.etl.Pipeline
 import gratum.etl.Rejection
 import gratum.etl.RejectionCategory
+import gratum.metrics.Metrics
+import gratum.util.PipelineAbortException
 import gratum.source.ChainedSource
+import gratum.source.ClosureSource
 import groovy.transform.CompileStatic
 import groovy.transform.stc.ClosureParams
 import groovy.transform.stc.FromString
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
 
 import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+import java.util.function.Supplier
 
-//@CompileStatic
+/**
+ * Spreads the rows of a Pipeline across a pool of worker threads, and collects the rows they produce onto a single
+ * results thread.  For example:
+ *
+ * <pre>
+ *     csv("people.csv")
+ *        .apply( new LocalConcurrentContext( 4 )
+ *           .spread { pipeline -> pipeline.addStep("lookup") { row -> ... } }
+ *           .collect { pipeline -> pipeline.save("out.csv") }
+ *           .connect() )
+ *        .go()
+ * </pre>
+ *
+ * Rows move between the threads in batches of {@link #batchSize(int)} rows through two bounded queues, each holding
+ * up to queueSize batches.  Workers and the results thread block when there is nothing to do, and the source blocks
+ * when the workers can't keep up.  When the source finishes each worker is sent an end marker, and each worker
+ * sends one to the results thread when it finishes, so everything shuts down as soon as the last row is processed.
+ * If a worker fails the source stops, the workers still running are ended, and the Pipeline throws the failure.
+ *
+ * By default every worker takes from one shared queue, so a worker sees an arbitrary slice of the rows.  Use
+ * {@link #partitionBy(java.lang.String [ ])} when the workers run stateful steps like unique, groupBy or reduce so
+ * every row with the same key goes to the same worker.
+ */
+@CompileStatic
 public class LocalConcurrentContext implements ConcurrentContext {
 
+    private static final Logger logger = LoggerFactory.getLogger(LocalConcurrentContext)
+    private static final AtomicInteger contextCount = new AtomicInteger()
+    private static final List<Map<String,Object>> END = Collections.unmodifiableList( new ArrayList<Map<String,Object>>() )
+    private static final long OFFER_NANOS = TimeUnit.MILLISECONDS.toNanos( 100 )
+
     final int workerSize
+    /**
+     * The prefix of the gauges and counters this context publishes to {@link Metrics}.
+     */
+    final String metricsName = "LocalConcurrentContext-${contextCount.incrementAndGet()}"
+    final AtomicLong eventQueueBlockedNanos = new AtomicLong()
     Closure<Pipeline> workerClosure
     Closure<Pipeline> resultProcessorClosure
 
-    final ArrayBlockingQueue<Map<String,Object>> eventQueue
-    final ArrayBlockingQueue<Map<String,Object>> resultQueue
+    final ArrayBlockingQueue<List<Map<String,Object>>> eventQueue
+    final int queueSize
+    /**
+     * The queue each worker takes from, by worker.  They're all {@link #eventQueue} unless the rows are partitioned.
+     */
+    List<ArrayBlockingQueue<List<Map<String,Object>>>> eventQueues = []
+    private String[] partitionColumns
+    final ArrayBlockingQueue<List<Map<String,Object>>> resultQueue
     final CountDownLatch latch
+    int batchSize = 64
 
     List<PipelineWorker> workers = []
     PipelineWorker resultProcessor
 
     boolean finishWhenQueueIsEmpty = false
 
+    private final AtomicReference<Throwable> failure = new AtomicReference<>()
+    private boolean stopped = false
+
     public LocalConcurrentContext(int workers = 8, int queueSize = 200) {
         workerSize = workers
+        this.queueSize = queueSize
         eventQueue = new ArrayBlockingQueue<>(queueSize)
         resultQueue = new ArrayBlockingQueue<>(queueSize)
         latch = new CountDownLatch(workers+1)
@@ -54,119 +110,305 @@ public class LocalConcurrentContext implements ConcurrentContext {
         return this
     }
 
+    /**
+     * Sets how many rows are handed between threads at a time (default 64).  Larger batches mean less contention
+     * on the queues, smaller ones mean rows reach the workers sooner.
+     */
+    public LocalConcurrentContext batchSize(int size) {
+        if( size < 1 ) throw new IllegalArgumentException("Batch size must be at least 1, was ${size}")
+        this.batchSize = size
+        return this
+    }
+
+    /**
+     * Sends every row with the same values in the given columns to the same worker, so steps that keep state across
+     * rows (unique, groupBy, reduce, and the like) see all of a key's rows and can safely run in parallel.  Each
+     * worker gets its own queue of queueSize batches, and the rows are assigned by the hash of their key.  Keys
+     * compare the same way as joins do (see {@link CompositeKey}).  Rows from a worker still reach the results thread
+     * in no particular order.
+     */
+    public LocalConcurrentContext partitionBy(String... columns) {
+        if( columns.length == 0 ) throw new IllegalArgumentException("partitionBy needs at least one column")
+        this.partitionColumns = columns
+        return this
+    }
+
     public Closure<Pipeline> connect() {
         return { Pipeline pipeline ->
             createWorkers()
             createResultProcessor()
-            pipeline.addStep("Queue to Workers") { row ->
-                eventQueue.put( row )
-                return row
+            registerMetrics()
+            // partitioned batches are split between the workers so collect enough for a full batch each on average
+            int sourceBatch = partitionColumns ? batchSize * workerSize : batchSize
+            pipeline.addBatchStep("Queue to Workers", sourceBatch) { List<Map<String,Object>> rows ->
+                queueWorkers( new ArrayList<Map<String,Object>>( rows ) )
+                // the rows belong to the workers now so nothing after this step can look at them
+                return Collections.<Map<String,Object>>emptyList()
             }
             .after {
-                eventQueue.put([_done_:true] as Map<String,Object>)
-                latch.await()
-            }
-
-            Pipeline next = new Pipeline( pipeline.name, pipeline ) {
-                @Override
-                LoadStatistic toLoadStatistic(long start, long end) {
-                    LoadStatistic stat = super.toLoadStatistic(start, end)
-                    LoadStatistic workerStats = workers.inject(new LoadStatistic()) {acc, worker ->
-                        acc.merge( worker.stat.get() )
-                        return acc
-                    }
-                    workerStats.stepTimings = workerStats.stepTimings.collectEntries { step, time ->
-                        return [ step, (time / workerStats.stepTimings.size()).toLong() ]
-                    } as Map<String,Long>
-
-                    stat.merge( workerStats )
-                    stat.merge( resultProcessor.stat.get() )
-                    stat.loaded = resultProcessor.stat.get().loaded
-                    return stat
+                try {
+                    if( !finishWhenQueueIsEmpty ) endWorkers()
+                    latch.await()
+                } finally {
+                    Metrics.remove( metricsName + "." )
                 }
+                return
             }
-            .source(new ChainedSource(pipeline))
-            return next
+
+            return resultsOf( pipeline )
         } as Closure<Pipeline>
     }
 
+    /**
+     * The Pipeline that carries on after this context, reporting the statistics of the workers and result processor
+     * as its own.
+     */
+    private Pipeline resultsOf(Pipeline pipeline) {
+        return new Pipeline( pipeline.name, pipeline ) {
+            @Override
+            LoadStatistic toLoadStatistic(long start, long end) {
+                return mergeStatistics( super.toLoadStatistic(start, end) )
+            }
+        }
+        .source(new ChainedSource(pipeline))
+    }
+
+    LoadStatistic mergeStatistics(LoadStatistic stat) {
+        if( failure.get() != null ) {
+            latch.await()
+            throw new PipelineAbortException("${metricsName}: Halting pipeline because a worker failed: ${failure.get()}", failure.get())
+        }
+        LoadStatistic workerStats = new LoadStatistic()
+        for( PipelineWorker worker : workers ) {
+            workerStats.merge( worker.stat.get() )
+        }
+        int steps = workerStats.stepTimings.size()
+        Map<CharSequence,Long> timings = [:]
+        for( Map.Entry<CharSequence,Long> timing : workerStats.stepTimings.entrySet() ) {
+            timings[ timing.key ] = (long)( timing.value / steps )
+        }
+        workerStats.stepTimings = timings
+
+        stat.merge( workerStats )
+        LoadStatistic results = resultProcessor.stat.get()
+        stat.merge( results )
+        stat.loaded = results.loaded
+        return stat
+    }
+
     private void createWorkers() {
         for( int i = 0; i < workerSize; i++ ) {
-            workers << new PipelineWorker("Worker-${i+1}", {
-                try {
-                    Pipeline pipeline = Pipeline.create("Worker") { pipeline ->
-                        boolean done = false
-                        while (!done && !Thread.interrupted()) {
-                            Map<String, Object> row = eventQueue.poll()
-                            if (row?._done_) {
-                                eventQueue.put(row)
-                                done = true
-                            } else if (row) {
-                                pipeline.process(row)
-                            }
-                            if( finishWhenQueueIsEmpty && eventQueue.isEmpty() ) {
-                                logger.debug("Requested to stop when queue is empty.  Stopping worker.")
-                                break
-                            }
-                        }
+            ArrayBlockingQueue<List<Map<String,Object>>> queue = partitionColumns ? new ArrayBlockingQueue<List<Map<String,Object>>>( queueSize ) : eventQueue
+            eventQueues << queue
+            PipelineWorker worker = new PipelineWorker("Worker-${i+1}", null)
+            worker.logic = { runWorker( worker, queue ) }
+            workers << worker
+            worker.start()
+        }
+    }
+
+    private LoadStatistic runWorker(PipelineWorker worker, BlockingQueue<List<Map<String,Object>>> queue) {
+        try {
+            // closures passed straight to Pipeline.create/onRejection trip up the static compiler so they're built first
+            Pipeline pipeline = new ClosureSource( { Pipeline p -> work( worker, queue, p ) } ).name("Worker").into()
+            Closure<Pipeline> rejections = { Pipeline rej ->
+                rej.addBatchStep("replaceRejectKey", batchSize) { List<Map<String,Object>> rows ->
+                    for( Map<String,Object> row : rows ) {
+                        // so when we play this down the rejections pipeline it'll expect a REJECT_KEY to be there so we recreate it
+                        // because at this point the REJECTED_KEY property has been removed so we re-add it.  Not great.
+                        Rejection reject = new Rejection(row["rejectionReason"] as String, row["rejectionCategory"] as RejectionCategory, row["rejectionStep"] as String)
+                        row[Pipeline.REJECTED_KEY] = reject
                     }
-                    pipeline.onRejection { rej ->
-                        rej.addStep("replaceRejectKey") { row ->
-                            // so when we play this down the rejections pipeline it'll expect a REJECT_KEY to be there so we recreate it
-                            // because at this point the REJECTED_KEY property has been removed so we re-add it.  Not great.
-                            Rejection reject = new Rejection(row["rejectionReason"] as String, row["rejectionCategory"] as RejectionCategory, row["rejectionStep"] as String)
-                            row[Pipeline.REJECTED_KEY] = reject
-                            resultQueue.put((Map<String,Object>)row)
-                            return row
-                        }
-                        return
+                    resultQueue.put( new ArrayList<Map<String,Object>>( rows ) )
+                    return Collections.<Map<String,Object>>emptyList()
+                }
+                return rej
+            }
+            pipeline.onRejection( rejections )
+
+            LoadStatistic stat = workerClosure.call(pipeline)
+                    .addBatchStep("Queue to Results", batchSize) { List<Map<String,Object>> rows ->
+                        resultQueue.put( new ArrayList<Map<String,Object>>( rows ) )
+                        return Collections.<Map<String,Object>>emptyList()
                     }
+                    .go()
+            return stat
+        } catch( Throwable t ) {
+            failure.compareAndSet( null, t )
+            throw t
+        } finally {
+            logger.debug("${worker.name} finished.")
+            resultQueue.put( END )
+            latch.countDown()
+        }
+    }
 
-                    LoadStatistic stat = workerClosure.call(pipeline)
-                            .addStep("Queue to Results") { row ->
-                                resultQueue.put(row)
-                                return row
-                            }
-                            .go()
-                    return stat
-                } finally {
-                    latch.countDown()
-                }
-            })
-            workers.last().start()
+    /**
+     * Sends each batch on the worker's queue through its Pipeline until the worker is sent an end marker.
+     */
+    private void work(PipelineWorker worker, BlockingQueue<List<Map<String,Object>>> queue, Pipeline pipeline) {
+        while( true ) {
+            List<Map<String,Object>> batch = queue.take()
+            if( batch.is( END ) ) return
+            long start = System.nanoTime()
+            for( Map<String,Object> row : batch ) {
+                pipeline.process( row )
+            }
+            worker.busy( System.nanoTime() - start )
         }
     }
 
     void createResultProcessor() {
-        resultProcessor = new PipelineWorker( "Results Processor", {
-            try {
-                Pipeline pipeline = Pipeline.create("Result Processor") { pipeline ->
-                    boolean done = false
-                    while (!done && !Thread.interrupted()) {
-                        Map<String, Object> row = resultQueue.poll(10, TimeUnit.SECONDS)
-                        if (row) {
-                            if (row[Pipeline.REJECTED_KEY]) {
-                                pipeline.reject(row, -1)
-                            } else {
-                                pipeline.process(row)
-                            }
-                        } else if (resultQueue.isEmpty() && latch.count == 1) {
-                            done = true
-                        }
-                    }
+        resultProcessor = new PipelineWorker( "Results Processor", null )
+        resultProcessor.logic = { runResultProcessor() }
+        resultProcessor.start()
+    }
+
+    private LoadStatistic runResultProcessor() {
+        try {
+            Pipeline pipeline = new ClosureSource( { Pipeline p -> collectResults( p ) } ).name("Result Processor").into()
+            LoadStatistic stats = resultProcessorClosure.call(pipeline)
+                    .go()
+            return stats
+        } finally {
+            latch.countDown()
+        }
+    }
+
+    /**
+     * Sends each batch on the result queue through the result processor's Pipeline until every worker has sent its
+     * end marker.
+     */
+    private void collectResults(Pipeline pipeline) {
+        int running = workerSize
+        while( running > 0 ) {
+            List<Map<String,Object>> batch = resultQueue.take()
+            if( batch.is( END ) ) {
+                running--
+                continue
+            }
+            long start = System.nanoTime()
+            for( Map<String,Object> row : batch ) {
+                if (row[Pipeline.REJECTED_KEY]) {
+                    pipeline.reject(row, -1)
+                } else {
+                    pipeline.process(row)
                 }
-                LoadStatistic stats = resultProcessorClosure.call(pipeline)
-                        .go()
-                return stats
-            } finally {
-                latch.countDown()
             }
-        })
-        resultProcessor.start()
+            resultProcessor.busy( System.nanoTime() - start )
+        }
+    }
+
+    /**
+     * Hands a batch to the workers, or splits it between them by key when the rows are partitioned.
+     */
+    private void queueWorkers(List<Map<String,Object>> batch) {
+        if( !partitionColumns ) {
+            offer( eventQueue, batch )
+            return
+        }
+        List<List<Map<String,Object>>> partitions = new ArrayList<>( workerSize )
+        for( int i = 0; i < workerSize; i++ ) {
+            partitions << new ArrayList<Map<String,Object>>()
+        }
+        for( Map<String,Object> row : batch ) {
+            partitions[ partitionOf( row ) ] << row
+        }
+        for( int i = 0; i < workerSize; i++ ) {
+            if( !partitions[i].isEmpty() ) offer( eventQueues[i], partitions[i] )
+        }
+    }
+
+    /**
+     * @return the index of the worker that's sent rows with the same key as this one.
+     */
+    int partitionOf(Map<String,Object> row) {
+        int hash = CompositeKey.of( row, partitionColumns ).hashCode()
+        // spread the bits so keys that only differ in their high bits don't all land on one worker
+        hash ^= (hash >>> 16)
+        return Math.floorMod( hash, workerSize )
+    }
+
+    /**
+     * Puts the batch on the queue, waiting while it's full.  If a worker has failed the rows can't all be processed,
+     * and a partitioned worker's queue would never be taken from again, so this stops the workers and halts the
+     * Pipeline instead.
+     */
+    private void offer(BlockingQueue<List<Map<String,Object>>> queue, List<Map<String,Object>> batch) {
+        long start = System.nanoTime()
+        while( failure.get() != null || !queue.offer( batch, OFFER_NANOS, TimeUnit.NANOSECONDS ) ) {
+            if( failure.get() != null ) {
+                stopWorkers()
+                throw new HaltPipelineException("Workers failed: ${failure.get()}")
+            }
+        }
+        // time spent blocked on a full queue means the workers can't keep up
+        eventQueueBlockedNanos.addAndGet( System.nanoTime() - start )
+    }
+
+    /**
+     * Drops the batches still queued and sends an end marker to every worker that's still running.  Queues whose
+     * workers have all finished are skipped since nothing will take the marker off them.
+     */
+    private void stopWorkers() {
+        if( stopped ) return
+        stopped = true
+        for( BlockingQueue<List<Map<String,Object>>> queue : eventQueues ) {
+            queue.clear()
+        }
+        for( int i = 0; i < workerSize; i++ ) {
+            BlockingQueue<List<Map<String,Object>>> queue = eventQueues[i]
+            while( !queue.offer( END, OFFER_NANOS, TimeUnit.NANOSECONDS ) ) {
+                if( finished( queue ) ) break
+            }
+        }
+    }
+
+    /**
+     * @return true if every worker taking from the queue has finished.
+     */
+    private boolean finished(BlockingQueue<List<Map<String,Object>>> queue) {
+        for( int i = 0; i < workerSize; i++ ) {
+            if( eventQueues[i].is( queue ) && !workers[i].stat.isDone() ) return false
+        }
+        return true
+    }
+
+    private void endWorkers() {
+        for( int i = 0; i < workerSize; i++ ) {
+            offer( eventQueues[i], END )
+        }
+    }
+
+    /**
+     * Publishes the depth of the queues, how long the source was blocked on a full event queue, and how busy each
+     * worker is.  Depth and capacity are counted in batches.  A worker's busySeconds counter grows by the time it
+     * spends processing rows, so its rate per second is its utilization between 0 and 1.
+     */
+    void registerMetrics() {
+        List<ArrayBlockingQueue<List<Map<String,Object>>>> queues = partitionColumns ? eventQueues : [eventQueue]
+        Metrics.gauge( "${metricsName}.eventQueue.depth".toString(), { ->
+            int depth = 0
+            for( ArrayBlockingQueue<List<Map<String,Object>>> queue : queues ) depth += queue.size()
+            return depth
+        } as Supplier<Number> )
+        Metrics.gauge( "${metricsName}.eventQueue.capacity".toString(), { -> queues.size() * queueSize } as Supplier<Number> )
+        Metrics.gauge( "${metricsName}.resultQueue.depth".toString(), { -> resultQueue.size() } as Supplier<Number> )
+        Metrics.gauge( "${metricsName}.resultQueue.capacity".toString(), { -> resultQueue.size() + resultQueue.remainingCapacity() } as Supplier<Number> )
+        Metrics.counter( "${metricsName}.eventQueue.blockedSeconds".toString(), { -> eventQueueBlockedNanos.get() / 1_000_000_000.0d } as Supplier<Number> )
+        for( PipelineWorker worker : workers + [resultProcessor] ) {
+            PipelineWorker w = worker
+            Metrics.counter( "${metricsName}.${w.name}.busySeconds".toString(), { -> w.busyNanos.get() / 1_000_000_000.0d } as Supplier<Number> )
+        }
     }
 
+    /**
+     * Stops the workers once they've processed everything queued so far, rather than when the source finishes.
+     */
     void finishWhenQueueIsEmpty() {
-        finishWhenQueueIsEmpty = true;
+        if( finishWhenQueueIsEmpty ) return
+        finishWhenQueueIsEmpty = true
+        endWorkers()
     }
 
     boolean isFinishWhenQueueIsEmpty() {
@@ -174,10 +416,10 @@ public class LocalConcurrentContext implements ConcurrentContext {
     }
 
     void queueWorker(Map<String,Object> row) {
-        eventQueue.put(row)
+        queueWorkers( [row] )
     }
 
     void queueResult(Map<String,Object> row) {
-        resultQueue.put(row)
+        resultQueue.put( [row] )
     }
 }
@@ -3,6 +3,7 @@ package gratum.concurrency
 import gratum.etl.LoadStatistic
 
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicLong
 
 class PipelineWorker implements Runnable {
 
@@ -10,6 +11,7 @@ class PipelineWorker implements Runnable {
     Closure<LoadStatistic> logic
     Thread thread
     String name
+    final AtomicLong busyNanos = new AtomicLong()
 
     PipelineWorker(String name, Closure<LoadStatistic> logic) {
         this.name = name
@@ -25,6 +27,13 @@ class PipelineWorker implements Runnable {
         }
     }
 
+    /**
+     * Adds the given time to how long this worker has spent processing rows.
+     */
+    void busy(long nanos) {
+        busyNanos.addAndGet( nanos )
+    }
+
     public void start() {
         thread = new Thread(this, name)
         thread.start()
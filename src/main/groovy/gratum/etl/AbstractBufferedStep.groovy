@@ -0,0 +1,49 @@
+package gratum.etl
+
+import gratum.metrics.Metrics
+import groovy.transform.CompileStatic
+
+/**
+ * The parts of a {@link BufferedStep} that {@link BatchStep} and {@link AsyncStep} share: it remembers where it
+ * sits in the Pipeline's execution chain and passes rows on from the step after it, counting them the same way a
+ * {@link Step} does.
+ */
+@CompileStatic
+abstract class AbstractBufferedStep extends Step implements BufferedStep {
+
+    private int index = -1
+
+    protected AbstractBufferedStep(CharSequence name) {
+        super( name )
+    }
+
+    protected AbstractBufferedStep(CharSequence name, Closure<Map<String,Object>> step) {
+        super( name, step )
+    }
+
+    @Override
+    final void add(Pipeline pipeline, int index, Map<String,Object> row, int lineNumber) {
+        this.index = index
+        buffer( pipeline, row, lineNumber )
+    }
+
+    /**
+     * Holds the row back, passing on any rows that are ready with {@link #emit(gratum.etl.Pipeline, java.util.Map, int)}.
+     */
+    protected abstract void buffer(Pipeline pipeline, Map<String,Object> row, int lineNumber)
+
+    /**
+     * Counts a row that's done with this step and either rejects it or continues it through the steps after this one.
+     */
+    protected void emit(Pipeline pipeline, Map<String,Object> row, int lineNumber) {
+        if( row[Pipeline.REJECTED_KEY] ) {
+            Rejection rejection = (Rejection)row[Pipeline.REJECTED_KEY]
+            incrementRejections( rejection.category )
+            Metrics.rowRejected( pipeline, name, rejection.category )
+            pipeline.doRejections( row, name, lineNumber )
+        } else {
+            loaded++
+            pipeline.processFrom( index + 1, row, lineNumber )
+        }
+    }
+}
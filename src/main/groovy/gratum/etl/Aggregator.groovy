@@ -0,0 +1,398 @@
+package gratum.etl
+
+import gratum.spill.SpillCompression
+import gratum.spill.SpillReader
+import gratum.spill.SpillWriter
+import groovy.transform.CompileStatic
+import groovy.transform.stc.ClosureParams
+import groovy.transform.stc.FromString
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
+/**
+ * Computes count, sum, min, max, avg, first and last of columns grouped by key for
+ * {@link Pipeline#aggregate(java.util.Map)}.  Only one small accumulator is kept per group rather than its rows.
+ * Counts and sums of integers are kept as longs, sums of floating point numbers as doubles, and a sum only switches
+ * to BigDecimal once it sees a BigDecimal.
+ *
+ * If the number of groups goes over maxGroups the partial accumulators are hash partitioned to disk and the table
+ * starts over.  When all the rows have been added each partition is read back and its partial accumulators are
+ * merged, so memory holds at most one partition's groups at a time.  Groups come out in the order they were first
+ * seen unless the aggregate spilled, in which case they come out grouped by partition.
+ */
+@CompileStatic
+class Aggregator implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Aggregator)
+    private static final Pattern SPEC = ~/^\s*(count|sum|min|max|avg|first|last)\s*(?:\(\s*([^)]*?)\s*\))?\s*$/
+    private static final int SEED = (int)0x9E3779B9L
+
+    static enum Function { COUNT, SUM, MIN, MAX, AVG, FIRST, LAST }
+
+    /**
+     * One output column: the function and the column it's computed over.  A count without a column counts rows.
+     */
+    static class Metric {
+        final String name
+        final Function function
+        final String column
+
+        Metric(String name, Function function, String column) {
+            this.name = name
+            this.function = function
+            this.column = column
+        }
+
+        /**
+         * Parses a spec like "sum(amount)", "count" or "count(email)".
+         */
+        static Metric parse(String name, String spec) {
+            Matcher m = SPEC.matcher( spec )
+            if( !m.matches() ) throw new IllegalArgumentException("Can't aggregate ${name} using '${spec}', expected one of count, count(column), sum(column), min(column), max(column), avg(column), first(column), or last(column)")
+            Function function = Function.valueOf( m.group(1).toUpperCase() )
+            String column = m.group(2) && m.group(2) != '*' ? m.group(2) : null
+            if( column == null && function != Function.COUNT ) throw new IllegalArgumentException("${spec} for ${name} needs a column")
+            return new Metric( name, function, column )
+        }
+    }
+
+    final String[] by
+    final List<Metric> metrics
+    final int maxGroups
+    final int partitions
+    final SpillCompression compression
+
+    private final Metric[] metricArray
+    private Map<CompositeKey,Group> groups = new LinkedHashMap<>()
+    private File tmpDir
+    private List<File> files
+    private List<SpillWriter> writers
+
+    /**
+     * @param maxGroups the number of groups held in memory before spilling to disk, or 0 to never spill.
+     */
+    Aggregator(String[] by, List<Metric> metrics, int maxGroups = 0, int partitions = 16, SpillCompression compression = SpillCompression.NONE) {
+        this.by = by
+        this.metrics = metrics
+        this.metricArray = metrics.toArray( new Metric[metrics.size()] )
+        this.maxGroups = maxGroups
+        this.partitions = Math.max( 2, partitions )
+        this.compression = compression
+    }
+
+    /**
+     * Adds the row to its group.  The columns being summed or averaged must be Numbers (see asInt() and asDouble()).
+     * Every value is checked before anything is updated, so a row that throws doesn't create its group or count
+     * towards any of its metrics.
+     */
+    void add(Map<String,Object> row) {
+        CompositeKey key = CompositeKey.of( row, by )
+        Group group = groups.get( key )
+        for( int i = 0; i < metricArray.length; i++ ) {
+            Metric metric = metricArray[i]
+            if( metric.column != null ) Group.check( group, i, metric, row.get( metric.column ) )
+        }
+        if( group == null ) {
+            Object[] values = new Object[ by.length ]
+            for( int i = 0; i < by.length; i++ ) values[i] = row.get( by[i] )
+            group = new Group( values, metricArray.length )
+            groups.put( key, group )
+        }
+        for( int i = 0; i < metricArray.length; i++ ) {
+            Metric metric = metricArray[i]
+            Object value = metric.column != null ? row.get( metric.column ) : null
+            group.update( i, metric, value )
+        }
+        if( maxGroups > 0 && groups.size() > maxGroups ) spill()
+    }
+
+    /**
+     * @return true if the groups have been partitioned to disk.
+     */
+    boolean isSpilled() {
+        return writers != null
+    }
+
+    private void spill() {
+        if( writers == null ) {
+            tmpDir = File.createTempDir("aggregating_")
+            files = []
+            writers = []
+            for( int i = 0; i < partitions; i++ ) {
+                File file = new File( tmpDir, "partition_${i}.spill" )
+                files << file
+                writers << new SpillWriter( file, compression )
+            }
+            logger.debug("Aggregate exceeded {} groups, partitioning into {}", maxGroups, tmpDir)
+        }
+        for( Map.Entry<CompositeKey,Group> entry : groups.entrySet() ) {
+            writers[ partitionOf( entry.key ) ].write( entry.value.toState() )
+        }
+        groups = new LinkedHashMap<>()
+    }
+
+    /**
+     * Calls the closure with a row for every group: the by columns followed by each metric.
+     */
+    void finish(@ClosureParams(value = FromString, options = ["java.util.Map<String,Object>"]) Closure emit) {
+        if( writers == null ) {
+            emitAll( groups, emit )
+            groups = new LinkedHashMap<>()
+            return
+        }
+        spill()
+        for( SpillWriter writer : writers ) writer.close()
+        for( int i = 0; i < partitions; i++ ) {
+            Map<CompositeKey,Group> merged = new LinkedHashMap<>()
+            SpillReader states = new SpillReader( files[i] )
+            try {
+                while( states.hasNext() ) {
+                    Group partial = Group.fromState( states.next(), by.length, metricArray.length )
+                    CompositeKey key = CompositeKey.of( partial.keyRow( by ), by )
+                    Group group = merged.get( key )
+                    if( group == null ) {
+                        merged.put( key, partial )
+                    } else {
+                        group.merge( partial, metricArray )
+                    }
+                }
+            } finally {
+                states.close()
+            }
+            if( maxGroups > 0 && merged.size() > maxGroups ) {
+                logger.warn("Aggregate partition has {} groups which is more than {}, merging it in memory", merged.size(), maxGroups)
+            }
+            files[i].delete()
+            emitAll( merged, emit )
+        }
+    }
+
+    private void emitAll(Map<CompositeKey,Group> table, Closure emit) {
+        for( Group group : table.values() ) {
+            Map<String,Object> row = group.keyRow( by )
+            for( int i = 0; i < metricArray.length; i++ ) {
+                row[ metricArray[i].name ] = group.result( i, metricArray[i] )
+            }
+            emit.call( row )
+        }
+    }
+
+    private int partitionOf(CompositeKey key) {
+        int h = key.hashCode() + SEED
+        h ^= h >>> 16
+        h *= (int)0x85EBCA6BL
+        h ^= h >>> 13
+        return (h & 0x7fffffff) % partitions
+    }
+
+    /**
+     * Deletes anything spilled to disk.
+     */
+    @Override
+    void close() {
+        if( writers != null ) {
+            for( SpillWriter writer : writers ) writer.close()
+        }
+        tmpDir?.deleteDir()
+    }
+
+    /**
+     * The accumulators for one group.  Each metric has a slot in the long, double and object arrays, and uses the
+     * ones it needs: counts use longs, sums use longs until they see a floating point number, avg adds its count to
+     * the longs, and min/max/first/last keep the value in the objects.
+     */
+    private static final class Group {
+        private static final byte FLOATING = 1
+        private static final byte BIG = 2
+        private static final byte SEEN = 4
+
+        final Object[] key
+        final long[] longs
+        final double[] doubles
+        final Object[] objects
+        final byte[] flags
+        final long[] counts
+
+        Group(Object[] key, int metrics) {
+            this.key = key
+            this.longs = new long[ metrics ]
+            this.doubles = new double[ metrics ]
+            this.objects = new Object[ metrics ]
+            this.flags = new byte[ metrics ]
+            this.counts = new long[ metrics ]
+        }
+
+        /**
+         * Throws if the value can't be added to the metric's accumulator in the group, which is null for a new group.
+         */
+        static void check(Group group, int i, Metric metric, Object value) {
+            if( value == null ) return
+            switch( metric.function ) {
+                case Function.SUM:
+                case Function.AVG:
+                    if( !(value instanceof Number) ) {
+                        throw new IllegalArgumentException("Can't add ${value.class.simpleName} '${value}' to ${metric.name}, convert it to a number first")
+                    }
+                    break
+                case Function.MIN:
+                case Function.MAX:
+                    if( group != null && group.objects[i] != null ) compare( value, group.objects[i] )
+                    break
+            }
+        }
+
+        private static int compare(Object a, Object b) {
+            return ((Comparable)a) <=> ((Comparable)b)
+        }
+
+        void update(int i, Metric metric, Object value) {
+            switch( metric.function ) {
+                case Function.COUNT:
+                    if( metric.column == null || value != null ) longs[i]++
+                    break
+                case Function.SUM:
+                case Function.AVG:
+                    if( value == null ) return
+                    addNumber( i, value )
+                    counts[i]++
+                    break
+                case Function.MIN:
+                    if( value != null && (objects[i] == null || compare( value, objects[i] ) < 0) ) objects[i] = value
+                    break
+                case Function.MAX:
+                    if( value != null && (objects[i] == null || compare( value, objects[i] ) > 0) ) objects[i] = value
+                    break
+                case Function.FIRST:
+                    if( (flags[i] & SEEN) == 0 ) {
+                        objects[i] = value
+                        flags[i] = (byte)(flags[i] | SEEN)
+                    }
+                    break
+                case Function.LAST:
+                    objects[i] = value
+                    flags[i] = (byte)(flags[i] | SEEN)
+                    break
+            }
+        }
+
+        private void addNumber(int i, Object value) {
+            if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+                long n = ((Number)value).longValue()
+                long sum = longs[i] + n
+                if( ((longs[i] ^ sum) & (n ^ sum)) < 0 ) {
+                    // the long overflowed so carry on in BigDecimal
+                    addBig( i, BigDecimal.valueOf( longs[i] ).add( BigDecimal.valueOf( n ) ) )
+                    longs[i] = 0
+                } else {
+                    longs[i] = sum
+                }
+            } else if( value instanceof BigDecimal || value instanceof BigInteger ) {
+                addBig( i, value instanceof BigInteger ? new BigDecimal( (BigInteger)value ) : (BigDecimal)value )
+            } else if( value instanceof Number ) {
+                doubles[i] += ((Number)value).doubleValue()
+                flags[i] = (byte)(flags[i] | FLOATING)
+            } else {
+                throw new IllegalArgumentException("Can't add ${value.class.simpleName} '${value}', convert it to a number first")
+            }
+        }
+
+        private void addBig(int i, BigDecimal value) {
+            objects[i] = objects[i] != null ? ((BigDecimal)objects[i]).add( value ) : value
+            flags[i] = (byte)(flags[i] | BIG)
+        }
+
+        Object result(int i, Metric metric) {
+            switch( metric.function ) {
+                case Function.COUNT:
+                    return longs[i]
+                case Function.SUM:
+                    return counts[i] == 0 ? null : sum( i )
+                case Function.AVG:
+                    if( counts[i] == 0 ) return null
+                    Number total = sum( i )
+                    if( total instanceof BigDecimal ) {
+                        return ((BigDecimal)total).divide( BigDecimal.valueOf( counts[i] ), java.math.MathContext.DECIMAL64 )
+                    }
+                    return total.doubleValue() / counts[i]
+                default:
+                    return objects[i]
+            }
+        }
+
+        private Number sum(int i) {
+            if( (flags[i] & BIG) != 0 ) {
+                BigDecimal total = ((BigDecimal)objects[i]).add( BigDecimal.valueOf( longs[i] ) )
+                return (flags[i] & FLOATING) != 0 ? total.add( BigDecimal.valueOf( doubles[i] ) ) : total
+            }
+            if( (flags[i] & FLOATING) != 0 ) return doubles[i] + longs[i]
+            return longs[i]
+        }
+
+        /**
+         * Combines a partial group for the same key that was spilled after this one.
+         */
+        void merge(Group other, Metric[] metrics) {
+            for( int i = 0; i < metrics.length; i++ ) {
+                switch( metrics[i].function ) {
+                    case Function.COUNT:
+                        longs[i] += other.longs[i]
+                        break
+                    case Function.SUM:
+                    case Function.AVG:
+                        counts[i] += other.counts[i]
+                        addNumber( i, other.longs[i] )
+                        doubles[i] += other.doubles[i]
+                        if( (other.flags[i] & BIG) != 0 ) addBig( i, (BigDecimal)other.objects[i] )
+                        flags[i] = (byte)(flags[i] | other.flags[i])
+                        break
+                    case Function.MIN:
+                    case Function.MAX:
+                        if( other.objects[i] != null ) update( i, metrics[i], other.objects[i] )
+                        break
+                    case Function.FIRST:
+                        if( (flags[i] & SEEN) == 0 ) update( i, metrics[i], other.objects[i] )
+                        break
+                    case Function.LAST:
+                        if( (other.flags[i] & SEEN) != 0 ) update( i, metrics[i], other.objects[i] )
+                        break
+                }
+            }
+        }
+
+        Map<String,Object> keyRow(String[] by) {
+            Map<String,Object> row = new LinkedHashMap<>()
+            for( int i = 0; i < by.length; i++ ) row[ by[i] ] = key[i]
+            return row
+        }
+
+        Map<String,Object> toState() {
+            Map<String,Object> state = new LinkedHashMap<>()
+            for( int i = 0; i < key.length; i++ ) state[ "k${i}".toString() ] = key[i]
+            for( int i = 0; i < longs.length; i++ ) {
+                state[ "l${i}".toString() ] = longs[i]
+                state[ "d${i}".toString() ] = doubles[i]
+                state[ "o${i}".toString() ] = objects[i]
+                state[ "f${i}".toString() ] = (int)flags[i]
+                state[ "c${i}".toString() ] = counts[i]
+            }
+            return state
+        }
+
+        static Group fromState(Map<String,Object> state, int keys, int metrics) {
+            Object[] key = new Object[ keys ]
+            for( int i = 0; i < keys; i++ ) key[i] = state[ "k${i}".toString() ]
+            Group group = new Group( key, metrics )
+            for( int i = 0; i < metrics; i++ ) {
+                group.longs[i] = state[ "l${i}".toString() ] as long
+                group.doubles[i] = state[ "d${i}".toString() ] as double
+                group.objects[i] = state[ "o${i}".toString() ]
+                group.flags[i] = (byte)(state[ "f${i}".toString() ] as int)
+                group.counts[i] = state[ "c${i}".toString() ] as long
+            }
+            return group
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package gratum.etl
+
+import gratum.csv.HaltPipelineException
+import gratum.util.PipelineAbortException
+import groovy.transform.CompileStatic
+
+import java.lang.reflect.Method
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A step whose closure runs on other threads, added with
+ * {@link Pipeline#addAsyncStep(java.lang.CharSequence, int, boolean, groovy.lang.Closure)}.  Each row is handed to an
+ * executor as it arrives, and up to concurrency rows are in flight at once.  When that many are running the
+ * Pipeline waits for one to finish before it reads the next row.
+ *
+ * Finished rows continue through the steps after this one on the Pipeline's own thread, so only the closure has to
+ * be thread safe.  In ordered mode rows come out in the order they went in; otherwise they come out as soon as
+ * they finish.  Rows still in flight when the Pipeline finishes are waited for before the after closures run.
+ *
+ * The executor uses virtual threads when the JVM has them (Java 21 and up), and a pool of concurrency daemon threads
+ * otherwise.
+ */
+@CompileStatic
+class AsyncStep extends AbstractBufferedStep {
+
+    private static final Method VIRTUAL_THREADS = virtualThreadExecutor()
+
+    final int concurrency
+    final boolean ordered
+
+    private final ArrayDeque<Task> pending = new ArrayDeque<>()
+    private final BlockingQueue<Task> finished = new LinkedBlockingQueue<>()
+    private ExecutorService executor
+    private int inFlight = 0
+
+    AsyncStep(CharSequence name, int concurrency, boolean ordered, Closure<Map<String,Object>> step) {
+        super( name, step )
+        if( concurrency < 1 ) throw new IllegalArgumentException("Concurrency must be at least 1, was ${concurrency}")
+        this.concurrency = concurrency
+        this.ordered = ordered
+    }
+
+    /**
+     * Starts the closure on the row, then passes on any rows that have finished.  If there are already concurrency
+     * rows in flight this waits for one to finish.
+     */
+    @Override
+    protected void buffer(Pipeline pipeline, Map<String,Object> row, int lineNumber) {
+        int sampleRate = pipeline.timingSampleRate
+        boolean sampled = sampleRate > 0 && rowsIn % sampleRate == 0
+        rowsIn++
+        if( executor == null ) executor = newExecutor()
+        Task task = new Task( step, row, lineNumber, sampled, ordered ? null : finished )
+        if( ordered ) pending.add( task )
+        inFlight++
+        executor.execute( task )
+        try {
+            drain( pipeline, concurrency )
+        } catch( Throwable t ) {
+            shutdown()
+            throw t
+        }
+    }
+
+    /**
+     * Waits for every row in flight and passes them on.
+     */
+    @Override
+    void flush(Pipeline pipeline) {
+        if( executor == null ) return
+        try {
+            drain( pipeline, 1 )
+        } finally {
+            shutdown()
+        }
+    }
+
+    /**
+     * Stops the executor and forgets any rows still in flight.  It's safe to call more than once.
+     */
+    private void shutdown() {
+        if( executor == null ) return
+        executor.shutdownNow()
+        executor = null
+        pending.clear()
+        finished.clear()
+        inFlight = 0
+    }
+
+    /**
+     * Passes on the rows that have finished, then waits until fewer than limit rows are in flight.
+     */
+    private void drain(Pipeline pipeline, int limit) {
+        if( ordered ) {
+            while( !pending.isEmpty() && (pending.peek().isDone() || inFlight >= limit) ) {
+                emit( pipeline, pending.poll() )
+            }
+        } else {
+            Task task
+            while( (task = finished.poll()) != null ) {
+                emit( pipeline, task )
+            }
+            while( inFlight >= limit ) {
+                emit( pipeline, finished.take() )
+            }
+        }
+    }
+
+    private void emit(Pipeline pipeline, Task task) {
+        inFlight--
+        Map<String,Object> row = task.row
+        Map<String,Object> next
+        try {
+            next = task.get()
+        } catch( ExecutionException ex ) {
+            reject( pipeline, task, ex.cause ?: ex )
+            return
+        } finally {
+            if( task.sampled ) latency.record( task.nanos )
+        }
+
+        if( next == null ) {
+            next = Pipeline.reject( row, "${name} returned no row", RejectionCategory.IGNORE_ROW )
+        }
+        emit( pipeline, next, task.lineNumber )
+    }
+
+    private void reject(Pipeline pipeline, Task task, Throwable t) {
+        if( t instanceof HaltPipelineException ) throw t
+        handleExceptionToRejection( t, task.lineNumber, task.row, pipeline )
+        if( !(t instanceof Exception) ) {
+            throw new PipelineAbortException("${pipeline.name}:${name}:${task.lineNumber}: Halting pipeline due to a terminating exception encountered: ${t}.", t)
+        }
+        if( loaded == 0 && rejections[RejectionCategory.SCRIPT_ERROR] > MAX_ERROR_THRESHOLD ) {
+            throw new PipelineAbortException("${pipeline.name}:${name}:${task.lineNumber}: Halting pipeline due too many script errors encountered: ${t}.", t)
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        if( VIRTUAL_THREADS != null ) {
+            return (ExecutorService)VIRTUAL_THREADS.invoke( null )
+        }
+        AtomicInteger count = new AtomicInteger()
+        String prefix = "${name}-async-"
+        return Executors.newFixedThreadPool( concurrency, new ThreadFactory() {
+            @Override
+            Thread newThread(Runnable runnable) {
+                Thread thread = new Thread( runnable, prefix + count.incrementAndGet() )
+                thread.daemon = true
+                return thread
+            }
+        })
+    }
+
+    private static Method virtualThreadExecutor() {
+        if( !Boolean.parseBoolean( System.getProperty("gratum.virtualThreads", "true") ) ) return null
+        try {
+            return Executors.getMethod("newVirtualThreadPerTaskExecutor")
+        } catch( NoSuchMethodException ex ) {
+            return null
+        }
+    }
+
+    /**
+     * Runs the closure on one row, and when it's done adds itself to the finished queue if there is one.
+     */
+    private static class Task extends FutureTask<Map<String,Object>> {
+        final Map<String,Object> row
+        final int lineNumber
+        final boolean sampled
+        final BlockingQueue<Task> finished
+        private long start
+        long nanos
+
+        Task(Closure<Map<String,Object>> step, Map<String,Object> row, int lineNumber, boolean sampled, BlockingQueue<Task> finished) {
+            super( (Callable<Map<String,Object>>)step.curry( row ) )
+            this.row = row
+            this.lineNumber = lineNumber
+            this.sampled = sampled
+            this.finished = finished
+        }
+
+        @Override
+        void run() {
+            if( sampled ) start = System.nanoTime()
+            super.run()
+        }
+
+        // the time is taken before the result is published so whoever sees the result sees the time
+        @Override
+        protected void set(Map<String,Object> result) {
+            if( sampled ) nanos = System.nanoTime() - start
+            super.set( result )
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            if( sampled ) nanos = System.nanoTime() - start
+            super.setException( t )
+        }
+
+        @Override
+        protected void done() {
+            finished?.offer( this )
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package gratum.etl
+
+import gratum.csv.HaltPipelineException
+import gratum.util.PipelineAbortException
+import groovy.transform.CompileStatic
+
+/**
+ * A step that's given rows a batch at a time instead of one by one, added with
+ * {@link Pipeline#addBatchStep(java.lang.CharSequence, int, groovy.lang.Closure)}.  Rows are run through the steps
+ * before it as usual and collected here until the batch is full, or the Pipeline finishes, then the whole batch is
+ * passed to the closure and each row it returns continues through the steps after it.
+ *
+ * Rows are counted and rejected one at a time exactly like a {@link Step}: a row the closure marks with
+ * {@link Pipeline#reject(java.util.Map, java.lang.String, gratum.etl.RejectionCategory)} is sent to the rejections
+ * Pipeline attributed to this step, and if the closure throws an exception every row in the batch is rejected as a
+ * {@link RejectionCategory#SCRIPT_ERROR}.  Latency is recorded as each row's share of the time the batch took.
+ */
+@CompileStatic
+class BatchStep extends AbstractBufferedStep {
+
+    final int batchSize
+    final Closure<List<Map<String,Object>>> batch
+
+    private final List<Map<String,Object>> rows = []
+    private final List<Integer> lines = []
+
+    /**
+     * @param batchSize the number of rows in each batch, or 0 to use {@link Pipeline#getBatchSize()}.
+     */
+    BatchStep(CharSequence name, int batchSize, Closure<List<Map<String,Object>>> batch) {
+        super( name )
+        this.batchSize = batchSize
+        this.batch = batch
+    }
+
+    /**
+     * Adds the row to the current batch and processes the batch if it's full.
+     */
+    @Override
+    protected void buffer(Pipeline pipeline, Map<String,Object> row, int lineNumber) {
+        rowsIn++
+        rows << row
+        lines << lineNumber
+        if( rows.size() >= (batchSize > 0 ? batchSize : pipeline.batchSize) ) {
+            flush( pipeline )
+        }
+    }
+
+    /**
+     * Processes the rows waiting in the current batch, if there are any.
+     */
+    @Override
+    void flush(Pipeline pipeline) {
+        if( rows.isEmpty() ) return
+        List<Map<String,Object>> current = new ArrayList<>( rows )
+        Map<Map<String,Object>,Integer> lineOf = new IdentityHashMap<>()
+        for( int i = 0; i < current.size(); i++ ) {
+            lineOf.put( current[i], lines[i] )
+        }
+        rows.clear()
+        lines.clear()
+
+        List<Map<String,Object>> next = null
+        boolean sampled = pipeline.timingSampleRate > 0
+        long start = sampled ? System.nanoTime() : 0L
+        try {
+            next = batch.call( current )
+            if( next == null ) next = current
+        } catch( HaltPipelineException ex ) {
+            throw ex
+        } catch( Exception ex ) {
+            for( Map<String,Object> row : current ) {
+                handleExceptionToRejection( ex, lineOf[row], row, pipeline )
+            }
+            if( loaded == 0 && rejections[RejectionCategory.SCRIPT_ERROR] > MAX_ERROR_THRESHOLD ) {
+                throw new PipelineAbortException("${pipeline.name}:${name}: Halting pipeline due too many script errors encountered: ${ex}.", ex)
+            }
+            return
+        } catch( Throwable t ) {
+            for( Map<String,Object> row : current ) {
+                handleExceptionToRejection( t, lineOf[row], row, pipeline )
+            }
+            throw new PipelineAbortException("${pipeline.name}:${name}: Halting pipeline due to a terminating exception encountered: ${t}.", t)
+        } finally {
+            if( sampled ) {
+                long share = (System.nanoTime() - start).intdiv( current.size() ).longValue()
+                for( int i = 0; i < current.size(); i++ ) {
+                    latency.record( share )
+                }
+            }
+        }
+
+        for( Map<String,Object> row : next ) {
+            if( row == null ) continue
+            Integer line = lineOf[row]
+            emit( pipeline, row, line != null ? line : -1 )
+        }
+    }
+}
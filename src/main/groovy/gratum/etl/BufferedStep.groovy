@@ -0,0 +1,22 @@
+package gratum.etl
+
+/**
+ * A step of a {@link Pipeline}'s execution chain that holds rows back instead of returning each one from
+ * {@link Step#execute(gratum.etl.Pipeline, java.util.Map, int)}, ie {@link BatchStep}.  The Pipeline hands rows to
+ * {@link #add(gratum.etl.Pipeline, int, java.util.Map, int)} rather than executing them, and the step passes them on
+ * to the steps after it with {@link Pipeline#processFrom(int, java.util.Map, int)} whenever it's ready.
+ */
+interface BufferedStep {
+
+    /**
+     * Takes the row, passing on any rows that are ready.
+     *
+     * @param index the position of this step in the Pipeline's execution chain, where rows continue from.
+     */
+    void add(Pipeline pipeline, int index, Map<String,Object> row, int lineNumber)
+
+    /**
+     * Passes on every row still held back.  Called when the Pipeline's source is done.
+     */
+    void flush(Pipeline pipeline)
+}
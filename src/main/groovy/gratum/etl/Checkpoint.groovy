@@ -0,0 +1,70 @@
+package gratum.etl
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import groovy.transform.CompileStatic
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * How far a {@link Pipeline} got, saved to a file so the Pipeline can be restarted from there after it fails (see
+ * {@link Pipeline#checkpoint(java.io.File, long)}).  It records the number of rows the source had passed to the
+ * Pipeline, the source's position if it's a {@link gratum.source.ResumableSource}, and the position of each
+ * {@link gratum.sink.ResumableSink}.  The file is JSON and it's replaced atomically so a crash while it's being
+ * written leaves the previous checkpoint in place.
+ */
+@CompileStatic
+class Checkpoint {
+
+    final File file
+    final long interval
+
+    long rows = 0
+    Map<String,Object> source
+    List<Map<String,Object>> sinks = []
+
+    Checkpoint(File file, long interval) {
+        if( interval < 1 ) throw new IllegalArgumentException("Checkpoint interval must be at least 1 row, was ${interval}")
+        this.file = file
+        this.interval = interval
+    }
+
+    /**
+     * @return the checkpoint saved in the file, or null if there isn't one.
+     */
+    Checkpoint load() {
+        if( !file.exists() ) return null
+        Map<String,Object> json = (Map<String,Object>)new JsonSlurper().parse( file, StandardCharsets.UTF_8.name() )
+        Checkpoint saved = new Checkpoint( file, interval )
+        saved.rows = ((Number)json.rows).longValue()
+        saved.source = (Map<String,Object>)json.source
+        saved.sinks = (List<Map<String,Object>>)json.sinks ?: []
+        return saved
+    }
+
+    void save() {
+        File parent = file.absoluteFile.parentFile
+        if( !parent.exists() ) parent.mkdirs()
+        File temp = new File( parent, file.name + ".tmp" )
+        temp.setText( JsonOutput.toJson( [rows: rows, source: source, sinks: sinks] ), StandardCharsets.UTF_8.name() )
+        try {
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE )
+        } catch( AtomicMoveNotSupportedException ex ) {
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING )
+        }
+    }
+
+    /**
+     * Removes the file once the Pipeline has finished so the next run starts from the beginning.
+     */
+    void delete() {
+        Files.deleteIfExists( file.toPath() )
+    }
+
+    String toString() {
+        return "${file} after ${rows} rows"
+    }
+}
@@ -0,0 +1,278 @@
+package gratum.etl
+
+import gratum.csv.CSVFile
+import gratum.spill.SpillReader
+import gratum.spill.SpillWriter
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.Semaphore
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Sorts more rows than fit in memory.  Rows are collected into a page until the page reaches its share of
+ * {@link SortConfig#memoryBudget} (or {@link SortConfig#pageSize} rows), then the page is sorted and written
+ * to disk with a {@link SpillWriter} on a background thread while rows continue to be collected into a new
+ * page.  Since pages are written in the binary spill format the rows read back keep their types.  Once all rows
+ * have been added the sorted pages are merged in a single pass using a priority queue holding the head row of
+ * each page.
+ * If there are more pages than {@link SortConfig#mergeFanIn} they're merged in groups first so the number of
+ * open files stays bounded.
+ *
+ * Rows that compare equal keep the order they were added in.  Closing it deletes the temporary directory along
+ * with everything written to it.
+ */
+@CompileStatic
+class ExternalSort implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalSort)
+    private static final AtomicInteger threadCount = new AtomicInteger()
+
+    final SortConfig config
+    final File tmpDir
+
+    private final long pageBudget
+    private final ExecutorService spillers
+    private final Semaphore permits
+    private final List<Future<File>> spills = []
+    // every file written to tmpDir, recorded before it's written so close can delete it whatever happened
+    private final List<File> files = []
+    private List<Map<String,Object>> page = []
+    private long pageBytes = 0
+    private int pageIndex = 1
+
+    ExternalSort(SortConfig config, File tmpDir) {
+        this.config = config
+        this.tmpDir = tmpDir
+        int threads = Math.max( 1, config.spillThreads )
+        // the page being filled plus every page being spilled must fit in the budget
+        this.pageBudget = config.memoryBudget > 0 ? Math.max( 1L, (long)(config.memoryBudget / (threads + 1)) ) : Long.MAX_VALUE
+        this.permits = new Semaphore( threads )
+        this.spillers = Executors.newFixedThreadPool( threads, { Runnable r ->
+            Thread t = new Thread( r, "sort-spill-${threadCount.incrementAndGet()}" )
+            t.daemon = true
+            return t
+        } as ThreadFactory )
+    }
+
+    /**
+     * Adds a row to the current page.  If the page is full it's handed off to be sorted and spilled, and this
+     * blocks if all the spill threads are busy.
+     */
+    void add(Map<String,Object> row) {
+        page.add( row )
+        pageBytes += estimateSize( row )
+        if( pageBytes >= pageBudget || (config.pageSize > 0 && page.size() >= config.pageSize) ) {
+            spill()
+        }
+    }
+
+    private void spill() {
+        List<Map<String,Object>> full = page
+        File file = new File( tmpDir, "page_${pageIndex++}.spill" )
+        page = new ArrayList<Map<String,Object>>( full.size() )
+        pageBytes = 0
+        files << file
+        permits.acquire()
+        spills << spillers.submit( {
+            try {
+                Collections.sort( full, config.comparator )
+                writePage( full, file )
+                return file
+            } finally {
+                permits.release()
+            }
+        } as Callable<File> )
+    }
+
+    /**
+     * Spills any remaining rows and waits for all pages to be written.
+     *
+     * @return the sorted pages in the order they were created
+     */
+    List<File> finish() {
+        if( !page.isEmpty() ) spill()
+        List<File> pages = []
+        try {
+            for( Future<File> spill : spills ) {
+                pages << spill.get()
+            }
+        } catch( ExecutionException ex ) {
+            throw new RuntimeException( "Could not spill page to ${tmpDir}", ex.cause )
+        } finally {
+            spillers.shutdown()
+        }
+        logger.debug("Sorted {} pages into {}", pages.size(), tmpDir)
+        return pages
+    }
+
+    /**
+     * Merges the given sorted pages.  The pages are deleted as they're consumed.
+     *
+     * @return an Iterator over all the rows in sorted order
+     */
+    Iterator<Map<String,Object>> merge(List<File> pages) {
+        List<File> remaining = pages
+        while( remaining.size() > Math.max( 2, config.mergeFanIn ) ) {
+            remaining = reduce( remaining )
+        }
+        return new MergeIterator( remaining )
+    }
+
+    /**
+     * Merges the given sorted pages into a single csv file.  A result within tmpDir is deleted by {@link #close()}.
+     *
+     * @return the given file
+     */
+    File mergeTo(List<File> pages, File result) {
+        CSVFile out = new CSVFile( result, "," )
+        try {
+            Iterator<Map<String,Object>> rows = merge( pages )
+            while( rows.hasNext() ) {
+                out.write( rows.next() )
+            }
+        } finally {
+            out.close()
+        }
+        if( !result.exists() ) result.createNewFile()
+        return result
+    }
+
+    private List<File> reduce(List<File> pages) {
+        List<File> reduced = []
+        int fanIn = Math.max( 2, config.mergeFanIn )
+        for( int i = 0; i < pages.size(); i += fanIn ) {
+            List<File> group = pages.subList( i, Math.min( pages.size(), i + fanIn ) )
+            if( group.size() == 1 ) {
+                reduced << group.first()
+            } else {
+                File merged = new File( tmpDir, "page_${pageIndex++}.spill" )
+                files << merged
+                SpillWriter out = new SpillWriter( merged, config.spillCompression )
+                try {
+                    Iterator<Map<String,Object>> rows = new MergeIterator( group )
+                    while( rows.hasNext() ) {
+                        out.write( rows.next() )
+                    }
+                } finally {
+                    out.close()
+                }
+                reduced << merged
+            }
+        }
+        return reduced
+    }
+
+    protected void writePage(List<Map<String,Object>> rows, File file) {
+        SpillWriter out = new SpillWriter( file, config.spillCompression )
+        try {
+            for( Map<String,Object> row : rows ) {
+                out.write( row )
+            }
+        } finally {
+            out.close()
+        }
+    }
+
+    protected Iterator<Map<String,Object>> readPage(File file) {
+        return new SpillReader( file )
+    }
+
+    /**
+     * Stops any spills still running and deletes tmpDir with the pages and anything else written to it.
+     */
+    @Override
+    void close() {
+        spillers.shutdownNow()
+        for( Future<File> spill : spills ) {
+            try {
+                spill.get()
+            } catch( Exception ex ) {
+                // it's being thrown away, all that matters is it's not still writing to tmpDir
+            }
+        }
+        for( File f : files ) {
+            f.delete()
+        }
+        tmpDir.deleteDir()
+    }
+
+    /**
+     * A rough estimate of the number of bytes the row occupies on the heap.  It only needs to be close enough
+     * to keep the pages within the memory budget.
+     */
+    static long estimateSize(Map<String,Object> row) {
+        long size = row instanceof Row ? 32 + 8L * row.size() : 64 + 48L * row.size()
+        for( Object value : row.values() ) {
+            if( value instanceof CharSequence ) {
+                size += 40 + 2L * ((CharSequence)value).length()
+            } else if( value instanceof BigDecimal || value instanceof BigInteger ) {
+                size += 48
+            } else if( value != null && !(value instanceof Boolean) ) {
+                size += 24
+            }
+        }
+        return size
+    }
+
+    private class Cursor {
+        final int order
+        final Iterator<Map<String,Object>> rows
+        final File file
+        Map<String,Object> current
+
+        Cursor(int order, File file) {
+            this.order = order
+            this.file = file
+            this.rows = readPage( file )
+        }
+
+        boolean advance() {
+            current = rows.hasNext() ? rows.next() : null
+            if( current == null ) {
+                if( rows instanceof Closeable ) ((Closeable)rows).close()
+                file.delete()
+            }
+            return current != null
+        }
+    }
+
+    private class MergeIterator implements Iterator<Map<String,Object>> {
+        final PriorityQueue<Cursor> queue
+
+        MergeIterator(List<File> pages) {
+            queue = new PriorityQueue<Cursor>( Math.max( 1, pages.size() ), new Comparator<Cursor>() {
+                @Override
+                int compare(Cursor a, Cursor b) {
+                    int c = config.comparator.compare( a.current, b.current )
+                    return c != 0 ? c : Integer.compare( a.order, b.order )
+                }
+            })
+            pages.eachWithIndex { File page, int i ->
+                Cursor cursor = new Cursor( i, page )
+                if( cursor.advance() ) queue.add( cursor )
+            }
+        }
+
+        @Override
+        boolean hasNext() {
+            return !queue.isEmpty()
+        }
+
+        @Override
+        Map<String,Object> next() {
+            Cursor cursor = queue.poll()
+            if( cursor == null ) throw new NoSuchElementException()
+            Map<String,Object> row = cursor.current
+            if( cursor.advance() ) queue.add( cursor )
+            return row
+        }
+    }
+}
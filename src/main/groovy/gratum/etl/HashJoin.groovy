@@ -0,0 +1,275 @@
+package gratum.etl
+
+import gratum.spill.SpillReader
+import gratum.spill.SpillWriter
+import groovy.transform.CompileStatic
+import groovy.transform.stc.ClosureParams
+import groovy.transform.stc.FromString
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Joins rows against a hash table built from the right side of a join.  While the right side fits within
+ * {@link JoinConfig#memoryBudget} rows are probed against the table as they arrive.  Once it doesn't the join
+ * becomes a grace hash join: the right side rows are hash partitioned to disk, the left side rows are deferred to
+ * the matching partitions, and when the left side is finished each partition is joined in memory on its own.
+ * A partition that still doesn't fit is partitioned again with a different hash, up to {@link #MAX_DEPTH} times.
+ *
+ * Rows joined from the partitions come out grouped by partition rather than in the order they were added.
+ */
+@CompileStatic
+class HashJoin implements Closeable {
+
+    static final int MAX_DEPTH = 4
+
+    private static final Logger logger = LoggerFactory.getLogger(HashJoin)
+    private static final int SEED = (int)0x9E3779B9L
+    private static final int MIX1 = (int)0x85EBCA6BL
+    private static final int MIX2 = (int)0xC2B2AE35L
+
+    final JoinConfig config
+    final boolean left
+
+    private final String[] leftColumns
+    private final String[] rightColumns
+    private final int partitions
+    private Map<CompositeKey,List<Map<String,Object>>> table = [:]
+    private long tableBytes = 0
+    private Map<String,Object> firstRow
+    private File tmpDir
+    private Partitions buildSide
+    private Partitions probeSide
+    private int fileIndex = 1
+
+    HashJoin(JoinConfig config, String[] leftColumns, String[] rightColumns, boolean left) {
+        this.config = config
+        this.leftColumns = leftColumns
+        this.rightColumns = rightColumns
+        this.left = left
+        this.partitions = Math.max( 2, config.partitions )
+    }
+
+    /**
+     * Adds a row from the right side of the join.  If the table grows past the memory budget it's spilled to disk.
+     */
+    void build(Map<String,Object> row) {
+        if( firstRow == null ) firstRow = row
+        CompositeKey key = CompositeKey.of( row, rightColumns )
+        if( buildSide != null ) {
+            buildSide.write( partitionOf( key, 0 ), row )
+        } else {
+            tableBytes += add( table, key, row )
+            if( config.memoryBudget > 0 && tableBytes > config.memoryBudget ) {
+                spill()
+            }
+        }
+    }
+
+    /**
+     * @return true when the right side has been spilled to disk and left side rows must be deferred.
+     */
+    boolean isSpilled() {
+        return buildSide != null
+    }
+
+    private void spill() {
+        tmpDir = File.createTempDir("joining_")
+        buildSide = new Partitions( "build", 0 )
+        for( Map.Entry<CompositeKey,List<Map<String,Object>>> entry : table.entrySet() ) {
+            int partition = partitionOf( entry.key, 0 )
+            for( Map<String,Object> row : entry.value ) {
+                buildSide.write( partition, row )
+            }
+        }
+        logger.debug("Join table exceeded {} bytes, partitioning into {}", config.memoryBudget, tmpDir)
+        table = [:]
+        tableBytes = 0
+    }
+
+    /**
+     * Joins a row from the left side against the in memory table.
+     *
+     * @return the joined rows, which is empty if there wasn't a match for an inner join.
+     */
+    List<Map<String,Object>> probe(Map<String,Object> row) {
+        return lookup( table, row )
+    }
+
+    /**
+     * Holds a row from the left side until its partition is joined in {@link #finish(Closure)}.
+     */
+    void defer(Map<String,Object> row) {
+        if( probeSide == null ) probeSide = new Partitions( "probe", 0 )
+        probeSide.write( partitionOf( CompositeKey.of( row, leftColumns ), 0 ), row )
+    }
+
+    /**
+     * Joins each of the partitions.  The given closure is called with every deferred row and the rows it joined to
+     * in the same way as {@link #probe(Map)}.  Nothing happens if the join never spilled.
+     */
+    void finish(@ClosureParams(value = FromString, options = ["java.util.Map<String,Object>,java.util.List<java.util.Map<String,Object>>"])
+                Closure emit) {
+        if( buildSide == null ) return
+        buildSide.close()
+        if( probeSide == null ) return
+        probeSide.close()
+        for( int i = 0; i < partitions; i++ ) {
+            joinPartition( buildSide, probeSide, i, 1, emit )
+        }
+    }
+
+    private void joinPartition(Partitions builds, Partitions probes, int partition, int depth, Closure emit) {
+        if( probes.rows( partition ) == 0 ) return
+
+        Map<CompositeKey,List<Map<String,Object>>> partitionTable = [:]
+        long bytes = 0
+        if( builds.rows( partition ) > 0 ) {
+            SpillReader rows = new SpillReader( builds.files[partition] )
+            try {
+                while( rows.hasNext() ) {
+                    Map<String,Object> row = rows.next()
+                    bytes += add( partitionTable, CompositeKey.of( row, rightColumns ), row )
+                    if( config.memoryBudget > 0 && bytes > config.memoryBudget && depth < MAX_DEPTH ) {
+                        partitionTable = null
+                        break
+                    }
+                }
+            } finally {
+                rows.close()
+            }
+        }
+
+        if( partitionTable == null ) {
+            // too many rows landed in this partition so split it again using a different hash
+            Partitions subBuild = repartition( builds.files[partition], rightColumns, "build", depth )
+            Partitions subProbe = repartition( probes.files[partition], leftColumns, "probe", depth )
+            for( int i = 0; i < partitions; i++ ) {
+                joinPartition( subBuild, subProbe, i, depth + 1, emit )
+            }
+        } else {
+            if( depth > MAX_DEPTH - 1 && config.memoryBudget > 0 && bytes > config.memoryBudget ) {
+                logger.warn("Join partition exceeded {} bytes after {} passes, joining it in memory", config.memoryBudget, depth)
+            }
+            SpillReader rows = new SpillReader( probes.files[partition] )
+            try {
+                while( rows.hasNext() ) {
+                    Map<String,Object> row = rows.next()
+                    emit.call( row, lookup( partitionTable, row ) )
+                }
+            } finally {
+                rows.close()
+            }
+        }
+        builds.files[partition].delete()
+        probes.files[partition].delete()
+    }
+
+    private Partitions repartition(File file, String[] columns, String prefix, int depth) {
+        Partitions split = new Partitions( prefix, depth )
+        SpillReader rows = new SpillReader( file )
+        try {
+            while( rows.hasNext() ) {
+                Map<String,Object> row = rows.next()
+                split.write( partitionOf( CompositeKey.of( row, columns ), depth ), row )
+            }
+        } finally {
+            rows.close()
+            split.close()
+        }
+        return split
+    }
+
+    private List<Map<String,Object>> lookup(Map<CompositeKey,List<Map<String,Object>>> table, Map<String,Object> row) {
+        List<Map<String,Object>> matches = table.get( CompositeKey.of( row, leftColumns ) )
+        if( matches ) {
+            List<Map<String,Object>> joined = new ArrayList<>( matches.size() )
+            for( Map<String,Object> match : matches ) {
+                Map<String,Object> j = copyOf( match )
+                j.putAll( row )
+                joined << j
+            }
+            return joined
+        } else if( left ) {
+            // make sure we add columns even if they are null so sources write out columns we expect.
+            if( firstRow != null ) {
+                for( String column : firstRow.keySet() ) {
+                    if( !row.containsKey( column ) ) row[column] = null
+                }
+            }
+            return [row]
+        } else {
+            return []
+        }
+    }
+
+    private File newFile(String prefix) {
+        return new File( tmpDir, "${prefix}_${fileIndex++}.spill" )
+    }
+
+    private static long add(Map<CompositeKey,List<Map<String,Object>>> table, CompositeKey key, Map<String,Object> row) {
+        long bytes = ExternalSort.estimateSize( row ) + 16
+        List<Map<String,Object>> rows = table.get( key )
+        if( rows == null ) {
+            rows = []
+            table.put( key, rows )
+            bytes += 96 + 16L * key.size()
+        }
+        rows << row
+        return bytes
+    }
+
+    private int partitionOf(CompositeKey key, int depth) {
+        int h = key.hashCode() + depth * SEED
+        h ^= h >>> 16
+        h *= MIX1
+        h ^= h >>> 13
+        h *= MIX2
+        h ^= h >>> 16
+        return (h & 0x7fffffff) % partitions
+    }
+
+    private static Map<String,Object> copyOf(Map<String,Object> row) {
+        return row instanceof Row ? ((Row)row).clone() : new LinkedHashMap<String,Object>( row )
+    }
+
+    /**
+     * Deletes the partitions.
+     */
+    @Override
+    void close() {
+        buildSide?.close()
+        probeSide?.close()
+        tmpDir?.deleteDir()
+    }
+
+    private class Partitions implements Closeable {
+        final List<File> files = []
+        final List<SpillWriter> writers = []
+        private boolean closed = false
+
+        Partitions(String prefix, int depth) {
+            for( int i = 0; i < partitions; i++ ) {
+                File file = newFile( "${prefix}_${depth}" )
+                files << file
+                writers << new SpillWriter( file, config.spillCompression )
+            }
+        }
+
+        void write(int partition, Map<String,Object> row) {
+            writers[partition].write( row )
+        }
+
+        long rows(int partition) {
+            return writers[partition].rows
+        }
+
+        @Override
+        void close() {
+            if( closed ) return
+            closed = true
+            for( SpillWriter writer : writers ) {
+                writer.close()
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package gratum.etl
+
+import gratum.spill.SpillCompression
+import groovy.transform.CompileStatic
+
+@CompileStatic
+class JoinConfig {
+    /**
+     * The approximate number of bytes of right side rows held in memory while joining.  Once the right side
+     * exceeds the budget both sides are hash partitioned to disk and joined one partition at a time.  The
+     * default, 0, holds the whole right side in memory.
+     */
+    long memoryBudget = 0
+    /**
+     * The number of partitions each side is split into once the join spills to disk.
+     */
+    int partitions = 16
+    /**
+     * The compression used for the partitions written to disk.
+     */
+    SpillCompression spillCompression = SpillCompression.NONE
+}
@@ -7,12 +7,14 @@ import groovy.transform.CompileStatic
  * {@link gratum.etl.Pipeline} is contained in the name property.  Things included in this object are
  * number of rows loaded, number of rows rejected, categories and count of each row rejected, the total
  * time spent processing the {@link gratum.etl.Pipeline}, and the time each step took to process the rows.
+ * Each step's rows in, rows out, and latency histogram are kept in {@link #stepStatistics}.
  */
 @CompileStatic
 class LoadStatistic {
     String name
     Map<RejectionCategory, Map<? extends CharSequence,Integer>> rejectionsByCategory = [:]
     Map<CharSequence,Long> stepTimings = [:]
+    Map<String,StepStatistic> stepStatistics = [:]
     Integer loaded = 0
     Long start = 0
     Long end = 0
@@ -97,11 +99,31 @@ class LoadStatistic {
         return ret
     }
 
+    /**
+     * @return the average time in milliseconds the given step took per row.
+     */
     public double avg( CharSequence step ) {
+        StepStatistic stepStat = stepStatistics[ step.toString() ]
+        if( stepStat && stepStat.latency.count > 0 ) {
+            return stepStat.latency.mean / 1_000_000.0
+        }
         double avg = stepTimings[step] / (loaded + rejections)
         return avg
     }
 
+    public StepStatistic getStepStatistic( CharSequence step ) {
+        return stepStatistics[ step.toString() ]
+    }
+
+    void addStepStatistic( StepStatistic stepStat ) {
+        StepStatistic existing = stepStatistics[ stepStat.name ]
+        if( existing ) {
+            existing.merge( stepStat )
+        } else {
+            stepStatistics[ stepStat.name ] = stepStat.copy()
+        }
+    }
+
     public String toString() {
         return toString(false)
     }
@@ -113,7 +135,12 @@ class LoadStatistic {
             pw.println("\n----")
             pw.println("Step Timings")
             this.stepTimings.each { step, totalTime ->
-                pw.printf("%s: %,.2f ms%n", step, this.avg(step) )
+                StepStatistic stepStat = stepStatistics[ step.toString() ]
+                if( stepStat && stepStat.latency.count > 0 ) {
+                    pw.printf("%s: %,.4f ms avg, %s, in %,d, out %,d%n", step, this.avg(step), stepStat.latency, stepStat.rowsIn, stepStat.rowsOut )
+                } else {
+                    pw.printf("%s: %,.2f ms%n", step, this.avg(step) )
+                }
             }
         }
 
@@ -159,5 +186,8 @@ class LoadStatistic {
             if( !stepTimings[ step ] ) stepTimings.put( step, 0L )
             stepTimings[ step ] = stepTimings[ step ] + src.stepTimings [ step ]
         }
+        src.stepStatistics.each { String step, StepStatistic stepStat ->
+            addStepStatistic( stepStat )
+        }
     }
 }
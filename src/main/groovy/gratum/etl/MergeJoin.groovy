@@ -0,0 +1,193 @@
+package gratum.etl
+
+import gratum.csv.HaltPipelineException
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Joins two Pipelines that are both ordered by the join columns by walking them at the same time.  The right
+ * Pipeline runs on its own thread and hands its rows over in batches through a small bounded queue, and only the
+ * right rows sharing the current key are held in memory, so the join runs in constant memory no matter how many
+ * rows are on either side.
+ *
+ * Keys are compared with {@link CompositeKey}, which orders values the same way as {@link Pipeline#sort(java.lang.String [ ])}.
+ * A row whose key is less than the key of the row before it on the same side is out of order and is skipped.
+ */
+@CompileStatic
+class MergeJoin implements Closeable {
+
+    static final int BATCH_SIZE = 256
+
+    private static final Logger logger = LoggerFactory.getLogger(MergeJoin)
+    private static final AtomicInteger threadCount = new AtomicInteger()
+    private static final List<Map<String,Object>> END = Collections.unmodifiableList( new ArrayList<Map<String,Object>>() )
+
+    final Pipeline other
+    final boolean left
+
+    private final String[] leftColumns
+    private final String[] rightColumns
+    private final ArrayBlockingQueue<List<Map<String,Object>>> queue = new ArrayBlockingQueue<>(16)
+    private volatile boolean closed = false
+    private volatile Throwable failure
+    private Thread producer
+
+    // only touched by the thread running the right Pipeline
+    private List<Map<String,Object>> buffer = new ArrayList<>( BATCH_SIZE )
+    private CompositeKey lastRightKey
+
+    // only touched by the thread running the left Pipeline
+    private Iterator<Map<String,Object>> batch = Collections.<Map<String,Object>>emptyIterator()
+    private boolean rightDone = false
+    private Map<String,Object> pending
+    private CompositeKey pendingKey
+    private final List<Map<String,Object>> group = []
+    private CompositeKey groupKey
+    private CompositeKey lastLeftKey
+    private Map<String,Object> firstRow
+
+    MergeJoin(Pipeline other, String[] leftColumns, String[] rightColumns, boolean left) {
+        this.other = other
+        this.leftColumns = leftColumns
+        this.rightColumns = rightColumns
+        this.left = left
+    }
+
+    /**
+     * Hands a row from the right Pipeline over to the join.  This is called on the right Pipeline's thread.
+     *
+     * @return false if the row is out of order.
+     */
+    boolean offer(Map<String,Object> row) {
+        if( closed ) throw new HaltPipelineException("Merge join with ${other.name} has finished")
+        CompositeKey key = CompositeKey.of( row, rightColumns )
+        if( lastRightKey != null && key.compareTo( lastRightKey ) < 0 ) return false
+        lastRightKey = key
+        buffer.add( row )
+        if( buffer.size() >= BATCH_SIZE ) {
+            queue.put( buffer )
+            buffer = new ArrayList<>( BATCH_SIZE )
+        }
+        return true
+    }
+
+    /**
+     * Joins a row from the left Pipeline with the right rows that have the same key.  The right Pipeline is started
+     * the first time this is called.
+     *
+     * @return the joined rows, which is empty if there wasn't a match for an inner join, or null if the row is out of
+     * order.
+     */
+    List<Map<String,Object>> probe(Map<String,Object> row) {
+        CompositeKey key = CompositeKey.of( row, leftColumns )
+        if( lastLeftKey != null && key.compareTo( lastLeftKey ) < 0 ) return null
+        lastLeftKey = key
+        if( producer == null ) start()
+
+        while( !rightDone && (groupKey == null || groupKey.compareTo( key ) < 0) ) {
+            nextGroup()
+        }
+
+        if( groupKey != null && groupKey.equals( key ) ) {
+            List<Map<String,Object>> joined = new ArrayList<>( group.size() )
+            for( Map<String,Object> match : group ) {
+                Map<String,Object> j = copyOf( match )
+                j.putAll( row )
+                joined << j
+            }
+            return joined
+        } else if( left ) {
+            // make sure we add columns even if they are null so sources write out columns we expect.
+            if( firstRow != null ) {
+                for( String column : firstRow.keySet() ) {
+                    if( !row.containsKey( column ) ) row[column] = null
+                }
+            }
+            return [row]
+        } else {
+            return []
+        }
+    }
+
+    private void start() {
+        producer = new Thread( {
+            try {
+                other.go()
+            } catch( Throwable t ) {
+                failure = t
+            } finally {
+                try {
+                    if( !buffer.isEmpty() && !closed ) queue.put( buffer )
+                    queue.put( END )
+                } catch( InterruptedException ex ) {
+                    logger.debug("Interrupted finishing merge join with {}", other.name)
+                }
+            }
+        } as Runnable, "merge-join-${threadCount.incrementAndGet()}" )
+        producer.daemon = true
+        producer.start()
+    }
+
+    private void nextGroup() {
+        group.clear()
+        groupKey = null
+        Map<String,Object> row = pending != null ? pending : pull()
+        CompositeKey key = pending != null ? pendingKey : (row != null ? CompositeKey.of( row, rightColumns ) : null)
+        pending = null
+        pendingKey = null
+        if( row == null ) {
+            rightDone = true
+            return
+        }
+        group.add( row )
+        groupKey = key
+        while( (row = pull()) != null ) {
+            key = CompositeKey.of( row, rightColumns )
+            if( key.equals( groupKey ) ) {
+                group.add( row )
+            } else {
+                pending = row
+                pendingKey = key
+                break
+            }
+        }
+    }
+
+    private Map<String,Object> pull() {
+        while( !batch.hasNext() ) {
+            if( rightDone ) return null
+            List<Map<String,Object>> next = queue.take()
+            if( next.is( END ) ) {
+                rightDone = true
+                if( failure ) throw new RuntimeException( "Merge join failed reading ${other.name}", failure )
+                return null
+            }
+            batch = next.iterator()
+        }
+        Map<String,Object> row = batch.next()
+        if( firstRow == null ) firstRow = row
+        return row
+    }
+
+    private static Map<String,Object> copyOf(Map<String,Object> row) {
+        return row instanceof Row ? ((Row)row).clone() : new LinkedHashMap<String,Object>( row )
+    }
+
+    /**
+     * Stops the right Pipeline if it's still running and waits for its thread to finish.
+     */
+    @Override
+    void close() {
+        closed = true
+        if( producer != null ) {
+            while( producer.alive ) {
+                queue.clear()
+                producer.join( 10 )
+            }
+        }
+    }
+}
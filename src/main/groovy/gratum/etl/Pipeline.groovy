@@ -1,16 +1,21 @@
 package gratum.etl
 
+import gratum.columnar.ColumnType
 import gratum.csv.CSVFile
 import gratum.pgp.PgpContext
+import gratum.sink.ColumnarSink
 import gratum.sink.CsvSink
 import gratum.sink.JsonSink
+import gratum.sink.ResumableSink
 import gratum.sink.Sink
 import gratum.source.AbstractSource
 import gratum.csv.HaltPipelineException
+import gratum.metrics.Metrics
 import gratum.source.ChainedSource
 import gratum.source.ClosureSource
-import gratum.source.CollectionSource
+import gratum.source.ResumableSource
 import gratum.source.Source
+import gratum.spill.SpillCompression
 import groovy.transform.CompileDynamic
 import groovy.transform.CompileStatic
 import groovy.transform.stc.ClosureParams
@@ -69,6 +74,28 @@ public class Pipeline {
 
     public static final String REJECTED_KEY = "__reject__"
     public static final int DO_NOT_TRACK = -1
+    /**
+     * The default for {@link #sampleTimings(int)}, which can be set with the gratum.timing.sampleRate system property.
+     */
+    public static final int DEFAULT_TIMING_SAMPLE_RATE = Integer.getInteger("gratum.timing.sampleRate", 1)
+    /**
+     * The default for {@link #fuseSteps(boolean)}, which can be turned off with -Dgratum.fuseSteps=false.
+     */
+    public static final boolean DEFAULT_FUSE_STEPS = Boolean.parseBoolean( System.getProperty("gratum.fuseSteps", "true") )
+    /**
+     * The default for {@link #batchSize(int)}, which can be set with the gratum.batchSize system property.
+     */
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("gratum.batchSize", 1000)
+    /**
+     * The default number of rows in flight for {@link #addAsyncStep(java.lang.CharSequence, int, boolean, groovy.lang.Closure)},
+     * which can be set with the gratum.asyncConcurrency system property.
+     */
+    public static final int DEFAULT_ASYNC_CONCURRENCY = Integer.getInteger("gratum.asyncConcurrency", 16)
+    /**
+     * The default number of rows between checkpoints for {@link #checkpoint(java.io.File, long)}, which can be set with
+     * the gratum.checkpoint.interval system property.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = Long.getLong("gratum.checkpoint.interval", 1_000_000L)
     public static final Logger logger = LoggerFactory.getLogger(Pipeline)
 
     CharSequence name
@@ -79,6 +106,13 @@ public class Pipeline {
     Pipeline rejections
     boolean complete = false
     int loaded = 0
+    private int timingSampleRate = -1
+    private boolean fuseSteps = DEFAULT_FUSE_STEPS
+    private int batchSize = -1
+    private List<Step> executionChain
+    private Checkpoint checkpoint
+    private long skipRows = 0
+    private List<Sink> sinks = []
 
     Pipeline(CharSequence name, Pipeline parent = null) {
         this.name = name
@@ -110,6 +144,111 @@ public class Pipeline {
         return this.name
     }
 
+    /**
+     * Sets how often the steps record how long they took to process a row.  Every Nth row is timed with
+     * System.nanoTime() and recorded in each step's latency histogram, and the rows in between don't read the clock
+     * at all.  Passing 1 times every row, and 0 turns timing off.  This applies to this Pipeline and the Pipelines
+     * chained from it that haven't set their own rate.
+     *
+     * @param everyNth time one out of every N rows
+     * @return this Pipeline
+     */
+    public Pipeline sampleTimings(int everyNth) {
+        this.timingSampleRate = Math.max( 0, everyNth )
+        return this
+    }
+
+    /**
+     * @return the rate set by {@link #sampleTimings(int)} on this Pipeline or the closest parent that set one.
+     */
+    public int getTimingSampleRate() {
+        if( timingSampleRate >= 0 ) return timingSampleRate
+        return parent ? parent.getTimingSampleRate() : DEFAULT_TIMING_SAMPLE_RATE
+    }
+
+    /**
+     * Sets how many rows the batch steps on this Pipeline collect before they're processed (see
+     * {@link #addBatchStep(java.lang.CharSequence, int, groovy.lang.Closure)}).  This applies to this Pipeline and the
+     * Pipelines chained from it that haven't set their own size.
+     *
+     * @param size the number of rows in a batch
+     * @return this Pipeline
+     */
+    public Pipeline batchSize(int size) {
+        if( size < 1 ) throw new IllegalArgumentException("Batch size must be at least 1, was ${size}")
+        this.batchSize = size
+        return this
+    }
+
+    /**
+     * @return the size set by {@link #batchSize(int)} on this Pipeline or the closest parent that set one.
+     */
+    public int getBatchSize() {
+        if( batchSize > 0 ) return batchSize
+        return parent ? parent.getBatchSize() : DEFAULT_BATCH_SIZE
+    }
+
+    /**
+     * Turns fusing steps on or off for this Pipeline.  When it's on, runs of consecutive {@link RowFunction} steps
+     * (most of the built in operations like setField, renameFields, defaultValues, asInt, and filter(Map)) are
+     * executed as a single {@link FusedStep} which avoids most of the per step overhead.  Each step still reports
+     * its own statistics and rejections.
+     *
+     * @param fuse true to fuse steps, false to execute each step on its own
+     * @return this Pipeline
+     */
+    public Pipeline fuseSteps(boolean fuse) {
+        this.fuseSteps = fuse
+        this.executionChain = null
+        return this
+    }
+
+    /**
+     * Saves how far the Pipeline has got to the given file every interval rows, so if it fails it can be run again
+     * and carry on from the last checkpoint rather than starting over.  When the Pipeline starts and the file exists
+     * the Pipeline resumes from it, and once the Pipeline finishes the file is deleted.
+     *
+     * A checkpoint holds the number of rows read from the source along with the positions of the source and the
+     * sinks.  A {@link gratum.source.ResumableSource} (ie csv, jdbc with a resumeBy column, and files) seeks past
+     * the rows that were already processed, and any other source is read from the beginning with the rows that were
+     * already processed skipped before the first step.  A {@link gratum.sink.ResumableSink} (ie csv and json files)
+     * throws away what it wrote after the checkpoint and appends to the rest.  Other sinks are started over so
+     * they only get the rows after the checkpoint.
+     *
+     * <pre>
+     *     csv("/data/big_extract.csv")
+     *          .checkpoint( new File("/data/big_extract.checkpoint"), 5_000_000 )
+     *          .addStep("enrich") { row -&gt; ... }
+     *          .save("/data/enriched.csv")
+     *          .go()
+     * </pre>
+     *
+     * A checkpoint is taken after a row has gone through every step, so steps that hold rows back (ie sort, groupBy,
+     * aggregate, reduce, flattenWindow, mergeJoin and the batch and async steps) would lose the rows they're holding
+     * if the Pipeline resumed.  The Pipeline fails to start if any of them are in its chain, so they should be done
+     * in a Pipeline of their own that reads what the checkpointed one saved.  The source must also read the rows in
+     * the same order every time.
+     *
+     * @param file the file to save the checkpoint to
+     * @param interval the number of rows between checkpoints
+     * @return this Pipeline
+     */
+    public Pipeline checkpoint(File file, long interval = DEFAULT_CHECKPOINT_INTERVAL) {
+        if( parent ) {
+            parent.checkpoint( file, interval )
+        } else {
+            this.checkpoint = new Checkpoint( file, interval )
+        }
+        return this
+    }
+
+    /**
+     * @return true if {@link #checkpoint(java.io.File, long)} was called on this Pipeline or one it's chained from.
+     */
+    public boolean isCheckpointed() {
+        return root().checkpoint != null
+    }
+
     /**
      * Prepend a step to the pipeline.
      * @param name The Step name
@@ -122,6 +261,7 @@ public class Pipeline {
                                  Closure<Map<String,Object>> step ) {
         step.delegate = this
         processChain.add(0, new Step( name, step ) )
+        executionChain = null
         return this
     }
 
@@ -140,6 +280,91 @@ public class Pipeline {
                              @DelegatesTo(Pipeline) Closure<Map<String,Object>> step ) {
         step.delegate = this
         processChain << new Step( name, step )
+        executionChain = null
+        return this
+    }
+
+    /**
+     * Adds a step written as a {@link RowFunction} rather than a Closure.  It behaves the same as
+     * {@link #addStep(java.lang.CharSequence, groovy.lang.Closure)}, but it's called directly and consecutive
+     * RowFunction steps can be fused together (see {@link #fuseSteps(boolean)}).
+     *
+     * @param name The step name
+     * @param function The function used to process each row on the Pipeline.
+     * @return this Pipeline.
+     */
+    public Pipeline addStep( CharSequence name, RowFunction function ) {
+        processChain << new Step( name, function )
+        executionChain = null
+        return this
+    }
+
+    /**
+     * Adds a step that's passed rows in batches rather than one at a time.  This is meant for steps that can do their
+     * work more efficiently a batch at a time, like writing to a database, calling a remote service, or encrypting.
+     * Rows are processed through the previous steps one at a time and collected until there are batchSize of them,
+     * then the closure is called with the batch.  Any rows still waiting when the Pipeline finishes are passed as a
+     * final smaller batch before the after closures run.
+     *
+     * The closure returns the rows to pass on to the next step, which can be the same List it was given, a List with
+     * fewer or more rows, or null to pass on the whole batch.  Reject a row by returning it marked with
+     * {@link #reject(java.util.Map, java.lang.String, gratum.etl.RejectionCategory)} the same as any other step.  If
+     * the closure throws an exception every row in the batch is rejected.
+     *
+     * <pre>
+     *     pipeline.addBatchStep("lookup", 500) { List&lt;Map&lt;String,Object&gt;&gt; rows -&gt;
+     *         Map&lt;Object,String&gt; names = service.lookup( rows*.id )
+     *         rows.each { row -&gt; row.name = names[row.id] }
+     *         return rows
+     *     }
+     * </pre>
+     *
+     * @param name The step name
+     * @param batchSize the number of rows in each batch, or 0 to use {@link #getBatchSize()}
+     * @param step The closure that's passed each batch.
+     * @return this Pipeline.
+     */
+    public Pipeline addBatchStep( CharSequence name, int batchSize = 0,
+                                  @ClosureParams( value = FromString, options = ["java.util.List<java.util.Map<String,Object>>"])
+                                  @DelegatesTo(Pipeline) Closure<List<Map<String,Object>>> step ) {
+        step.delegate = this
+        processChain << new BatchStep( name, batchSize, step )
+        executionChain = null
+        return this
+    }
+
+    /**
+     * Adds a step whose closure runs on other threads so up to concurrency rows can be processed at once.  This is
+     * meant for steps that spend most of their time waiting, like calling a web service, reading files, or
+     * decrypting, where running them one at a time leaves the Pipeline idle.  The closure is written like any other
+     * step: it returns the row to pass on, or a row marked with
+     * {@link #reject(java.util.Map, java.lang.String, gratum.etl.RejectionCategory)} to reject it, and exceptions
+     * reject the row as a {@link RejectionCategory#SCRIPT_ERROR}.  The closure must be thread safe, but every step
+     * after it still runs on the Pipeline's thread.
+     *
+     * When concurrency rows are in flight the Pipeline waits for one to finish before reading the next row, and any
+     * rows still in flight are finished before the after closures run.  Virtual threads are used on Java 21 and up
+     * (turn them off with -Dgratum.virtualThreads=false), otherwise a pool of concurrency threads is started.
+     *
+     * <pre>
+     *     pipeline.addAsyncStep("geocode", 32) { Map&lt;String,Object&gt; row -&gt;
+     *         row.location = geocoder.lookup( row.address )
+     *         return row
+     *     }
+     * </pre>
+     *
+     * @param name The step name
+     * @param concurrency the most rows processed at once, {@link #DEFAULT_ASYNC_CONCURRENCY} by default
+     * @param ordered true to pass rows on in the order they arrived, false to pass them on as soon as they're done
+     * @param step The code used to process each row.
+     * @return this Pipeline.
+     */
+    public Pipeline addAsyncStep( CharSequence name, int concurrency = DEFAULT_ASYNC_CONCURRENCY, boolean ordered = true,
+                                  @ClosureParams( value = FromString, options = ["java.util.Map<String,Object>"])
+                                  @DelegatesTo(Pipeline) Closure<Map<String,Object>> step ) {
+        step.delegate = this
+        processChain << new AsyncStep( name, concurrency, ordered, step )
+        executionChain = null
         return this
     }
 
@@ -283,13 +508,16 @@ public class Pipeline {
      */
     public Pipeline filter( Map columns ) {
         Condition condition = new Condition( columns )
-        addStep( "filter ${ condition }" ) { row ->
-            if( condition.matches(row) ) {
-                return row
-            } else {
-                return reject( row,"Row did not match the filter ${columns}", RejectionCategory.IGNORE_ROW )
+        addStep( "filter ${ condition }", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                if( condition.matches(row) ) {
+                    return row
+                } else {
+                    return Pipeline.reject( row,"Row did not match the filter ${columns}", RejectionCategory.IGNORE_ROW )
+                }
             }
-        }
+        })
         return this
     }
 
@@ -299,10 +527,13 @@ public class Pipeline {
      * @return Pipeline where all columns of each row has white space removed.
      */
     public Pipeline trim() {
-        addStep("trim()") { row ->
-            row.each { String key, Object value -> row[key] = (value as String)?.trim() }
-            return row
-        }
+        addStep("trim()", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                row.each { String key, Object value -> row[key] = (value as String)?.trim() }
+                return row
+            }
+        })
     }
 
     /**
@@ -320,7 +551,7 @@ public class Pipeline {
         Pipeline tail = split( branch )
 
         addStep( "branch(${branchName})" ) { row ->
-            branch.process( new LinkedHashMap(row) )
+            branch.process( copyOf(row) )
             return row
         }
 
@@ -349,7 +580,7 @@ public class Pipeline {
         Condition selection = new Condition( condition )
         addStep( "branch(${condition})" ) { row ->
             if( selection.matches( row )) {
-                branch.process( new LinkedHashMap(row) )
+                branch.process( copyOf(row) )
             }
             return row
         }
@@ -383,47 +614,111 @@ public class Pipeline {
      * @return A Pipeline where the rows contain all columns from the this Pipeline and right Pipeline joined on the given columns.
      */
     public Pipeline join( Pipeline other, def columns, boolean left = false ) {
-        Map<String,List<Map<String,Object>>> cache =[:]
+        return join( other, columns, left, null )
+    }
+
+    /**
+     * Returns Pipeline that joins the columns from this Pipeline with the given Pipeline where the columns are
+     * equal, in the same way as {@link #join(gratum.etl.Pipeline, java.lang.Object, boolean)}.  The given closure
+     * configures the join through a {@link gratum.etl.JoinConfig}.  Setting a memoryBudget lets the join handle a right
+     * Pipeline that is larger than memory:
+     *
+     * people.join( hobbies, [id: "person_id"], false ) {
+     *     memoryBudget = 256 * 1024 * 1024
+     * }
+     *
+     * When the rows from the right Pipeline exceed the budget both Pipelines are hash partitioned to disk and joined
+     * one partition at a time after this Pipeline finishes.  In that case the joined rows are emitted grouped by
+     * partition instead of in the order of this Pipeline.
+     *
+     * @param other The right side Pipeline to use for the join
+     * @param columns The columns to join on
+     * @param left perform a left join (ie true) or a right join (false)
+     * @param configure a closure to configure the join.  The delegate is a {@link gratum.etl.JoinConfig}
+     * @return A Pipeline where the rows contain all columns from the this Pipeline and right Pipeline joined on the given columns.
+     */
+    public Pipeline join( Pipeline other, def columns, boolean left, @DelegatesTo(JoinConfig) Closure configure ) {
+        JoinConfig cfg = new JoinConfig()
+        if( configure ) {
+            configure.delegate = cfg
+            configure()
+        }
+        HashJoin hashJoin = new HashJoin( cfg, leftColumn(columns), rightColumn(columns), left )
         other.addStep("join(${other.name}, ${columns}).cache") { row ->
-            String key = keyOf(row, rightColumn(columns) )
-            if( !cache.containsKey(key) ) cache.put(key, [])
-            cache[key] << row
+            hashJoin.build( row )
             return row
         }
 
-        return this.inject("join(${this.name}, ${columns})", { Map<String,Object> row ->
+        String reason = "Could not join on ${columns}"
+        Pipeline next = this.inject("join(${this.name}, ${columns})", { Map<String,Object> row ->
             if( !other.complete ) {
                 other.go()
             }
-            String key = keyOf( row, leftColumn(columns) )
-
-            if( left ) {
-                if( cache.containsKey(key) ) {
-                    return cache[key].collect { Map k ->
-                        Map j = (Map)k.clone()
-                        j.putAll(row)
-                        return j
-                    }
-                } else {
-                    // make sure we add columns even if they are null so sources write out columns we expect.
-                    if( !cache.isEmpty() ) {
-                        String c = cache.keySet().first()
-                        cache[c].first().each { String i, Object v ->
-                            if( !row.containsKey(i) ) row[i] = null
+            if( hashJoin.spilled ) {
+                // the right side didn't fit in memory so this row waits for its partition to be joined
+                hashJoin.defer( row )
+                return []
+            }
+            List<Map<String,Object>> joined = hashJoin.probe( row )
+            return joined.isEmpty() ? [ reject( row, reason, RejectionCategory.IGNORE_ROW ) ] : joined
+        } as Closure<Iterable<Map<String,Object>>>)
+
+        Step joinStep = processChain.last()
+        after {
+            try {
+                hashJoin.finish { Map<String,Object> row, List<Map<String,Object>> joined ->
+                    if( joined.isEmpty() ) {
+                        reject( row, reason, RejectionCategory.IGNORE_ROW )
+                        joinStep.incrementRejections( RejectionCategory.IGNORE_ROW )
+                        Metrics.rowRejected( this, joinStep.name, RejectionCategory.IGNORE_ROW )
+                        doRejections( row, joinStep.name, -1 )
+                    } else {
+                        for( Map<String,Object> j : joined ) {
+                            next.process( j, -1 )
                         }
                     }
-                    return [row]
                 }
-            } else if( cache.containsKey(key) ) {
-                return cache[key].collect { Map k ->
-                    Map j = (Map)k.clone()
-                    j.putAll(row)
-                    return j
-                }
-            } else {
-                return [ reject( row,"Could not join on ${columns}", RejectionCategory.IGNORE_ROW ) ]
+            } finally {
+                hashJoin.close()
+            }
+        }
+        return next
+    }
+
+    /**
+     * Returns Pipeline that joins the columns from this Pipeline with the given Pipeline where the columns are
+     * equal, like {@link #join(gratum.etl.Pipeline, java.lang.Object, boolean)}, but for Pipelines that are both already
+     * ordered by the join columns (ie the output of {@link #sort(java.lang.String [ ])} or an extract ordered by its key).
+     * Instead of loading the right Pipeline into memory both Pipelines are read at the same time, and only the
+     * rows on the right that share the current key are held in memory.  The right Pipeline runs on its own thread.
+     *
+     * Rows that are out of order are rejected and skipped.  Columns can be specified in the same ways as join().
+     *
+     * @param other The right side Pipeline to use for the join, ordered by its join columns
+     * @param columns The columns to join on
+     * @param left perform a left join (ie true) or a right join (false)
+     * @return A Pipeline where the rows contain all columns from the this Pipeline and right Pipeline joined on the given columns.
+     */
+    public Pipeline mergeJoin( Pipeline other, def columns, boolean left = false ) {
+        MergeJoin mergeJoin = new MergeJoin( other, leftColumn(columns), rightColumn(columns), left )
+        String outOfOrder = "Out of order for ${columns}"
+        other.addStep("mergeJoin(${other.name}, ${columns}).stream") { row ->
+            return mergeJoin.offer( row ) ? row : reject( row, outOfOrder, RejectionCategory.REJECTION )
+        }
+
+        String reason = "Could not join on ${columns}"
+        Pipeline next = this.inject("mergeJoin(${this.name}, ${columns})", { Map<String,Object> row ->
+            List<Map<String,Object>> joined = mergeJoin.probe( row )
+            if( joined == null ) {
+                return [ reject( row, outOfOrder, RejectionCategory.REJECTION ) ]
             }
+            return joined.isEmpty() ? [ reject( row, reason, RejectionCategory.IGNORE_ROW ) ] : joined
         } as Closure<Iterable<Map<String,Object>>>)
+        processChain.last().holdsRows = true
+        after {
+            mergeJoin.close()
+        }
+        return next
     }
 
     /**
@@ -461,13 +756,16 @@ public class Pipeline {
      * @return A Pipeline where all of the columns in the keys of the Map are renamed to the Map's corresponding values.
      */
     public Pipeline renameFields( Map fieldNames ) {
-        addStep("renameFields(${fieldNames}") { row ->
-            for( String src : fieldNames.keySet() ) {
-                String dest = fieldNames.get( src )
-                row[dest] = row.remove( src )
+        addStep("renameFields(${fieldNames}", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                for( String src : fieldNames.keySet() ) {
+                    String dest = fieldNames.get( src )
+                    row[dest] = row.remove( src )
+                }
+                return row
             }
-            return row
-        }
+        })
         return this
     }
 
@@ -486,17 +784,16 @@ public class Pipeline {
      */
 
     public Pipeline intersect( Pipeline other, def columns ) {
-        Map <String,List<Map>> cache = [:]
+        Set<CompositeKey> cache = new HashSet<>()
+        String[] rightColumns = rightColumn(columns)
+        String[] leftColumns = leftColumn(columns)
         other.addStep("intersect(${other.name}, ${columns}).cache") { row ->
-            String key = keyOf(row, rightColumn(columns) )
-            if( !cache.containsKey(key) ) cache.put(key, [])
-            cache[key] << row
+            cache.add( CompositeKey.of( row, rightColumns ) )
             return row
         }.start()
 
         addStep("intersect(${this.name}, ${columns})") { row ->
-            String key = keyOf( row, leftColumn(columns) )
-            row.included = cache.containsKey(key)
+            row.included = cache.contains( CompositeKey.of( row, leftColumns ) )
             return row
 //            return cache.containsKey(key) ? row : null
         }
@@ -504,23 +801,19 @@ public class Pipeline {
         return this
     }
 
-    private Iterable<String> leftColumn(Object columns) {
-        if( columns instanceof Collection ) {
-            return ((Collection<String>)columns)
-        } else if( columns instanceof Map ) {
-            return ((Map<String,String>)columns).keySet()
+    private String[] leftColumn(Object columns) {
+        if( columns instanceof Map ) {
+            return CompositeKey.columns( ((Map<String,String>)columns).keySet() )
         } else {
-            return [columns.toString()]
+            return CompositeKey.columns( columns )
         }
     }
 
-    private Iterable<String> rightColumn(Object columns) {
-        if( columns instanceof Collection ) {
-            return ((Collection<String>)columns)
-        } else if( columns instanceof Map ) {
-            return ((Map<String,String>)columns).values()
+    private String[] rightColumn(Object columns) {
+        if( columns instanceof Map ) {
+            return CompositeKey.columns( ((Map<String,String>)columns).values() )
         } else {
-            return [columns.toString()]
+            return CompositeKey.columns( columns )
         }
     }
 
@@ -554,6 +847,7 @@ public class Pipeline {
             ((List)current[ row[columns.last()] ]) << row
             return row
         }
+        processChain.last().holdsRows = true
 
         Pipeline other = new Pipeline( name, this ).source(new AbstractSource() {
             @Override
@@ -590,48 +884,50 @@ public class Pipeline {
             configure.delegate = cfg
             configure()
         }
-        File tmpDir = File.createTempDir("sorting_")
         List<Map> page = []
-        int pageIndex = 1
+        // created by the first row so a Pipeline that never runs doesn't start threads or create directories
+        ExternalSort external = null
 
-        addStep(name) { row ->
-            page << row
-            if( page.size() >= cfg.pageSize && cfg.pageSize > 0 ) {
-                page.sort(cfg.comparator)
-                String filename = "${tmpDir}/page_${pageIndex++}.csv"
-                CollectionSource.from(page).save(filename).go()
-                page.clear()
+        addStep(name) { Map<String,Object> row ->
+            if( cfg.external ) {
+                if( external == null ) external = new ExternalSort( cfg, File.createTempDir("sorting_") )
+                external.add( row )
+            } else {
+                page << row
             }
             return row
         }
+        processChain.last().holdsRows = true
 
         Pipeline next = new Pipeline(name, this).source(new ChainedSource(this))
         after {
-            if( cfg.pageSize > 0 ) {
-                // any residual rows left in the page buffer flush to disk
-                if( !page.isEmpty() ) {
-                    page.sort(cfg.comparator)
-                    String filename = "${tmpDir}/page_${pageIndex++}.csv"
-                    CollectionSource.from(page).save(filename).go()
-                    page.clear()
-                }
-
-                List<File> pages = tmpDir.listFiles() as List<File>
-                while(pages.size() > 1) {
-                    File page1 = pages.pop()
-                    File page2 = pages.pop()
-                    CSVFile mergedPage = mergePage( new CSVFile(page1, ","), new CSVFile(page2, ","), cfg.comparator )
-                    pages.add( mergedPage.file )
-                    page1.delete()
-                    page2.delete()
-                }
-                cfg?.after?.call(pages.first())
-                if( cfg.downstream ) {
-                    CSVFile csvFile = new CSVFile( pages.first(), "," )
-                    Iterator<Map<String,Object>> rows = csvFile.mapIterator()
-                    while( rows.hasNext() ) {
-                        next.process( rows.next() )
+            if( cfg.external ) {
+                if( external == null ) external = new ExternalSort( cfg, File.createTempDir("sorting_") )
+                try {
+                    List<File> pages = external.finish()
+                    if( cfg.after ) {
+                        File sorted = external.mergeTo( pages, new File( external.tmpDir, "sorted.csv" ) )
+                        cfg.after.call( sorted )
+                        if( cfg.downstream ) {
+                            CSVFile csvFile = new CSVFile( sorted, "," )
+                            try {
+                                Iterator<Map<String,Object>> rows = csvFile.mapIterator()
+                                while( rows.hasNext() ) {
+                                    next.process( rows.next() )
+                                }
+                            } finally {
+                                csvFile.close()
+                            }
+                        }
+                    } else if( cfg.downstream ) {
+                        // stream the merge straight downstream rather than writing it out first
+                        Iterator<Map<String,Object>> rows = external.merge( pages )
+                        while( rows.hasNext() ) {
+                            next.process( rows.next() )
+                        }
                     }
+                } finally {
+                    external.close()
                 }
             } else {
                 page.sort(cfg.comparator)
@@ -642,8 +938,9 @@ public class Pipeline {
     }
 
     /**
-     * Return a Pipeline where the rows are ordered by the given columns.  The value of
-     * each column is compared using the <=> operator.
+     * Return a Pipeline where the rows are ordered by the given columns.  The values of
+     * each column are ordered the same way as the keys of {@link #mergeJoin}, so nulls come first and
+     * Strings holding whole numbers sort with the numbers (see {@link CompositeKey}).
      * @param columns to sort by
      * @return a Pipeline that where it's rows are ordered according to the given columns.
      */
@@ -653,6 +950,12 @@ public class Pipeline {
         }
     }
 
+    /**
+     * Merges two csv pages sorted by the comparator into a new csv file next to the first page, and closes both.
+     *
+     * @deprecated sort no longer spills csv pages.  Its pages are merged in one pass by {@link ExternalSort}.
+     */
+    @Deprecated
     CSVFile mergePage(CSVFile page1, CSVFile page2, Comparator<Map<String,Object>> comparator) {
         String[] p1 = page1.file.name.split("[_.]")
         String[] p2 = page2.file.name.split("[_.]")
@@ -665,10 +968,10 @@ public class Pipeline {
             Iterator<Map<String, Object>> it2 = page2.mapIterator()
             Map<String, Object> row1 = null
             Map<String, Object> row2 = null
-            while (it1.hasNext() || it2.hasNext()) {
-                if (!row1 && it1.hasNext()) row1 = it1.next()
-                if (!row2 && it2.hasNext()) row2 = it2.next()
-                int c = row1 && row2 ? comparator.compare(row1, row2) : (row1 ? -1 : 1)
+            while (row1 != null || row2 != null || it1.hasNext() || it2.hasNext()) {
+                if (row1 == null && it1.hasNext()) row1 = it1.next()
+                if (row2 == null && it2.hasNext()) row2 = it2.next()
+                int c = row1 != null && row2 != null ? comparator.compare(row1, row2) : (row1 != null ? -1 : 1)
                 if (c == 0) {
                     result.write(row1)
                     result.write(row2)
@@ -690,22 +993,24 @@ public class Pipeline {
         }
     }
 
-
     /**
      * Return a Pipeline where the given column is converted from a string to a java.lang.Double.
      * @param column The name of the column to convert into a Double
      * @return A Pipeline where all rows contains a java.lang.Double at the given column
      */
     Pipeline asDouble(String column) {
-        addStep("asDouble(${column})") { row ->
-            String value = row[column] as String
-            try {
-                if (value) row[column] = Double.parseDouble(value)
-                return row
-            } catch( NumberFormatException ex) {
-                return reject( row,"Could not parse ${value} as a Double", RejectionCategory.INVALID_FORMAT)
+        addStep("asDouble(${column})", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                String value = row[column] as String
+                try {
+                    if (value) row[column] = Double.parseDouble(value)
+                    return row
+                } catch( NumberFormatException ex) {
+                    return Pipeline.reject( row,"Could not parse ${value} as a Double", RejectionCategory.INVALID_FORMAT)
+                }
             }
-        }
+        })
     }
 
     /**
@@ -714,15 +1019,18 @@ public class Pipeline {
      * @return A Pipeline where all rows contain a java.lang.Integer at given column
      */
     Pipeline asInt(String column) {
-        addStep("asInt(${column})") { row ->
-            String value = row[column] as String
-            try {
-                if( value ) row[column] = Integer.parseInt(value)
-                return row
-            } catch( NumberFormatException ex ) {
-                return reject( row,"Could not parse ${value} to an integer.", RejectionCategory.INVALID_FORMAT)
+        addStep("asInt(${column})", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                String value = row[column] as String
+                try {
+                    if( value ) row[column] = Integer.parseInt(value)
+                    return row
+                } catch( NumberFormatException ex ) {
+                    return Pipeline.reject( row,"Could not parse ${value} to an integer.", RejectionCategory.INVALID_FORMAT)
+                }
             }
-        }
+        })
     }
 
     /**
@@ -731,41 +1039,44 @@ public class Pipeline {
      * @return A Pipeline where all rows contain a java.lang.Boolean at given column
      */
     Pipeline asBoolean(String column) {
-        addStep("asBoolean(${column}") { row ->
-            String value = row[column]
-            if( value ) {
-                switch( value ) {
-                    case "Y":
-                    case "y":
-                    case "yes":
-                    case "YES":
-                    case "Yes":
-                    case "1":
-                    case "T":
-                    case "t":
-                        row[column] = true
-                        break
-                    case "n":
-                    case "N":
-                    case "NO":
-                    case "no":
-                    case "No":
-                    case "0":
-                    case "F":
-                    case "f":
-                    case "null":
-                    case "Null":
-                    case "NULL":
-                    case null:
-                        row[column] = false
-                        break
-                    default:
-                        row[column] = Boolean.parseBoolean(value)
-                        break
+        addStep("asBoolean(${column}", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                String value = row[column]
+                if( value ) {
+                    switch( value ) {
+                        case "Y":
+                        case "y":
+                        case "yes":
+                        case "YES":
+                        case "Yes":
+                        case "1":
+                        case "T":
+                        case "t":
+                            row[column] = true
+                            break
+                        case "n":
+                        case "N":
+                        case "NO":
+                        case "no":
+                        case "No":
+                        case "0":
+                        case "F":
+                        case "f":
+                        case "null":
+                        case "Null":
+                        case "NULL":
+                        case null:
+                            row[column] = false
+                            break
+                        default:
+                            row[column] = Boolean.parseBoolean(value)
+                            break
+                    }
                 }
+                return row
             }
-            return row
-        }
+        })
     }
 
     /**
@@ -832,6 +1143,7 @@ public class Pipeline {
      */
     public Pipeline save(Sink<Map<String,Object>> sink ) {
         sink.attach( this )
+        root().sinks << sink
 
         Pipeline next = new Pipeline( sink.name, this ).source(new ChainedSource(this))
         next.loaded = DO_NOT_TRACK
@@ -876,6 +1188,18 @@ public class Pipeline {
         return save( new JsonSink( file, columns).jsonObjectPerLine(true) )
     }
 
+    /**
+     * Write out the rows produced into an Arrow IPC file that {@link gratum.source.ColumnarSource} can read back.
+     * Arrow has to be on the classpath (see {@link ColumnarSink}).
+     * @param file the java.io.File to save the rows into.
+     * @param schema Optional columns and their types to write.  If left off they're inferred from the first batch of
+     * rows.
+     * @return A Pipeline that returns a row for the columnar file.
+     */
+    public Pipeline columnar(File file, Map<String,ColumnType> schema = null) {
+        return save( new ColumnarSink( file, schema ) )
+    }
+
     /**
      * Prints the values of the given columns for each row to the console, or all columns if no columns are given.
      * @param columns The names of the columns to print to the console
@@ -910,10 +1234,13 @@ public class Pipeline {
      * @return The Pipeline where each row has a fieldname set to the given value
      */
     public Pipeline setField(String fieldName, Object value ) {
-        addStep("setField(${fieldName})") { row ->
-            row[fieldName] = value
-            return row
-        }
+        addStep("setField(${fieldName})", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                row[fieldName] = value
+                return row
+            }
+        })
         return this
     }
     /**
@@ -967,12 +1294,15 @@ public class Pipeline {
      * @return The pipeline where only the given columns are returned
      */
     public Pipeline clip(String... columns) {
-        addStep( "clip(${columns.join(",")}") { row ->
-            row.retainAll { key, value ->
-                columns.contains(key)
+        addStep( "clip(${columns.join(",")}", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                row.retainAll { key, value ->
+                    columns.contains(key)
+                }
+                return row
             }
-            return row
-        }
+        })
         return this
     }
 
@@ -983,12 +1313,21 @@ public class Pipeline {
      * @return A Pipeline that only contains the unique rows for the given column
      */
     Pipeline unique(String column) {
-        Set<Object> unique = [:] as HashSet
-        addStep("unique(${column})") { row ->
-            if( unique.contains(row[column]) ) {
+        return unique( [column] as String[] )
+    }
+
+    /**
+     * Only allows rows that are unique per the given columns.
+     *
+     * @param columns The column names to use for checking uniqueness
+     * @return A Pipeline that only contains the unique rows for the given columns
+     */
+    Pipeline unique(String... columns) {
+        Set<CompositeKey> unique = new HashSet<>()
+        addStep("unique(${columns.length == 1 ? columns[0] : columns.toList()})") { row ->
+            if( !unique.add( CompositeKey.of( row, columns ) ) ) {
                 return reject(row, "Non-unique row returned", RejectionCategory.IGNORE_ROW)
             }
-            unique.add( row[column] )
             return row
         }
         return this
@@ -1071,12 +1410,15 @@ public class Pipeline {
      * column is empty.
      */
     public Pipeline defaultValues( Map<String,Object> defaults ) {
-        this.addStep("defaultValues for ${defaults.keySet()}") { row ->
-            defaults?.each { String column, Object value ->
-                if( !row[column] ) row[column] = value
+        this.addStep("defaultValues for ${defaults.keySet()}", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                defaults?.each { String column, Object value ->
+                    if( !row[column] ) row[column] = value
+                }
+                return row
             }
-            return row
-        }
+        })
     }
 
     /**
@@ -1085,12 +1427,15 @@ public class Pipeline {
      * @return A pipeline where the rows will have the destination columns set to the source column if empty/null.
      */
     public Pipeline defaultsBy( Map<String,String> defaults ) {
-        this.addStep("defaultsBy for ${defaults.keySet()}") { row ->
-            defaults?.each { String destColumn, String srcColumn ->
-                if( !row[destColumn] ) row[destColumn] = row[srcColumn]
+        this.addStep("defaultsBy for ${defaults.keySet()}", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                defaults?.each { String destColumn, String srcColumn ->
+                    if( !row[destColumn] ) row[destColumn] = row[srcColumn]
+                }
+                return row
             }
-            return row
-        }
+        })
     }
 
     /**
@@ -1144,11 +1489,14 @@ public class Pipeline {
      * replaced with the given withClause
      */
     public Pipeline replaceAll(String column, Pattern regEx, String withClause) {
-        addStep( "replaceAll(${column}, ${regEx.toString()})") { row ->
-            String v = row[column]
-            row[column] = v?.replaceAll( regEx, withClause )
-            return row
-        }
+        addStep( "replaceAll(${column}, ${regEx.toString()})", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                String v = row[column]
+                row[column] = v?.replaceAll( regEx, withClause )
+                return row
+            }
+        })
     }
 
     /**
@@ -1161,13 +1509,16 @@ public class Pipeline {
      * @return this Pipeline
      */
     public Pipeline replaceValues(String column, Map<String,String> values ) {
-        addStep( "replaceValues(${column}, ${values})" ) { row ->
-            String v = row[column]
-            if( values.containsKey(v) ) {
-                row[column] = values[ v ] ?: row[column]
+        addStep( "replaceValues(${column}, ${values})", new RowFunction() {
+            @Override
+            Map<String,Object> apply(Map<String,Object> row) {
+                String v = row[column]
+                if( values.containsKey(v) ) {
+                    row[column] = values[ v ] ?: row[column]
+                }
+                return row
             }
-            return row
-        }
+        })
     }
 
     /**
@@ -1261,6 +1612,7 @@ public class Pipeline {
             current = logic.call( current, row )
             row
         }
+        processChain.last().holdsRows = true
         after {
             downstream.process(current, 1)
             return
@@ -1268,6 +1620,70 @@ public class Pipeline {
         return downstream
     }
 
+    /**
+     * Returns a Pipeline with one row per group of rows that share the same values in the by columns, holding those
+     * columns and the given metrics computed over each group.  Each metric is named by its key and computed with one
+     * of count, count(column), sum(column), min(column), max(column), avg(column), first(column), or last(column).
+     * Unlike {@link #groupBy(java.lang.String [ ])} the rows aren't kept, only a small accumulator for each group, so
+     * this works for any number of rows.
+     *
+     * <pre>
+     *     csv("orders.csv")
+     *        .asDouble("amount")
+     *        .aggregate( by: ["customer"], metrics: [orders: "count", total: "sum(amount)", largest: "max(amount)", average: "avg(amount)"] )
+     *        .save("totals.csv")
+     * </pre>
+     *
+     * The columns being summed or averaged must already be numbers (see {@link #asInt(java.lang.String)} and
+     * {@link #asDouble(java.lang.String)}).  Sums of integers are Longs, and sums including floating point or
+     * BigDecimal values are Doubles or BigDecimals.  Nulls are skipped, and sum, avg, min and max of a group with
+     * only nulls are null.
+     *
+     * Options:
+     * <ul>
+     *     <li>by - a column or list of columns to group by, or none to aggregate all rows into one group.</li>
+     *     <li>metrics - a Map of the output column name to the metric to compute.</li>
+     *     <li>maxGroups - the number of groups to hold in memory before they're spilled to disk and merged once all
+     *     rows are added (default 0, never spill).  Once spilled the groups come out grouped by partition rather than
+     *     in the order they were first seen.</li>
+     *     <li>partitions - the number of partitions groups are spilled to (default 16).</li>
+     *     <li>spillCompression - the {@link gratum.spill.SpillCompression} used for the spilled partitions.</li>
+     * </ul>
+     *
+     * @param options the by columns, metrics and spill options described above
+     * @return A Pipeline with a row for each group.
+     */
+    public Pipeline aggregate(Map<String,Object> options) {
+        String[] by = options.by != null ? CompositeKey.columns( options.by ) : new String[0]
+        Map<String,Object> specs = (Map<String,Object>)options.metrics
+        if( !specs ) throw new IllegalArgumentException("aggregate needs at least one metric")
+        List<Aggregator.Metric> metrics = specs.collect { String name, Object spec -> Aggregator.Metric.parse( name, spec.toString() ) }
+        Aggregator aggregator = new Aggregator( by, metrics,
+                (options.maxGroups ?: 0) as int,
+                (options.partitions ?: 16) as int,
+                (options.spillCompression ?: SpillCompression.NONE) as SpillCompression )
+
+        String name = "aggregate(${by.toList()})"
+        addStep(name) { Map<String,Object> row ->
+            aggregator.add( row )
+            return row
+        }
+        processChain.last().holdsRows = true
+
+        Pipeline next = new Pipeline(name, this).source(new ChainedSource(this))
+        after {
+            try {
+                aggregator.finish { Map<String,Object> group ->
+                    next.process( group )
+                }
+            } finally {
+                aggregator.close()
+            }
+            return
+        }
+        return next
+    }
+
     /**
      * Collects, or flattens, a set of rows that share the same value in succession within the stream into a List of
      * those matching rows.  This groups rows that share the same value of the given field name.  Then invokes the given
@@ -1302,7 +1718,8 @@ public class Pipeline {
             }
             return row
         }
-        .after {
+        processChain.last().holdsRows = true
+        after {
             if( !window.isEmpty() ) {
                 List<Map<String,Object>> rows = windowClosure( window.entrySet().first().value )
                 rows.each { r -> downstream.process( r, ++line ) }
@@ -1316,11 +1733,85 @@ public class Pipeline {
      * Start processing rows from the source of the pipeline.
      */
     public void start() {
+        checkBufferedSteps()
+        if( checkpoint ) resume()
         try {
             src?.start(this)
         } catch( HaltPipelineException ex ) {
             logger.debug("Halting pipeline during steps due to exception.", ex)
         }
+        checkpoint?.delete()
+    }
+
+    /**
+     * @return the Pipeline at the top of this one's chain, which is the one that reads the source.
+     */
+    private Pipeline root() {
+        Pipeline root = this
+        while( root.parent ) root = root.parent
+        return root
+    }
+
+    /**
+     * Fails if a step on this Pipeline holds rows back while the chain it belongs to is checkpointed, because the rows
+     * it holds are lost when the chain resumes.  Downstream Pipelines start before the one they read from so the whole
+     * chain is checked before the first row is read.
+     */
+    private void checkBufferedSteps() {
+        Pipeline root = root()
+        if( !root.checkpoint ) return
+        List<Step> steps = root.is( this ) && rejections ? processChain + rejections.processChain : processChain
+        for( Step step : steps ) {
+            if( step instanceof BufferedStep ) {
+                throw new IllegalStateException("${root.name} can't be checkpointed because ${step.name} holds rows back until its batch is full.")
+            }
+            if( step.holdsRows ) {
+                throw new IllegalStateException("${root.name} can't be checkpointed because ${step.name} holds rows until the Pipeline finishes.")
+            }
+        }
+    }
+
+    /**
+     * Hands the last checkpoint, if there is one, to the source and sinks before the source starts.
+     */
+    private void resume() {
+        Checkpoint saved = checkpoint.load()
+        boolean seeked = src instanceof ResumableSource && ((ResumableSource)src).resume( saved?.source )
+        if( !saved ) return
+
+        List<Sink> resumable = resumableSinks()
+        if( saved.sinks.size() != resumable.size() ) {
+            throw new IllegalStateException("${checkpoint.file} has ${saved.sinks.size()} sinks, but ${name} has ${resumable.size()}.  Delete it to start over.")
+        }
+        for( int i = 0; i < resumable.size(); i++ ) {
+            Map<String,Object> position = saved.sinks[i]
+            if( position.name != resumable[i].name ) {
+                throw new IllegalStateException("${checkpoint.file} was saved for sink ${position.name}, but ${name} has ${resumable[i].name}.  Delete it to start over.")
+            }
+            ((ResumableSink)resumable[i]).resume( (Map<String,Object>)position.position )
+        }
+        for( Sink sink : allSinks() ) {
+            if( !(sink instanceof ResumableSink) ) logger.warn("${sink.name} can't resume so it only gets the rows after the checkpoint.")
+        }
+        checkpoint.rows = saved.rows
+        skipRows = seeked ? 0 : saved.rows
+        logger.info("Resuming ${name} from ${saved}")
+    }
+
+    private List<Sink> allSinks() {
+        return rejections ? sinks + rejections.sinks : sinks
+    }
+
+    private List<Sink> resumableSinks() {
+        return allSinks().findAll { Sink sink -> sink instanceof ResumableSink }
+    }
+
+    private void saveCheckpoint() {
+        checkpoint.sinks = resumableSinks().collect { Sink sink ->
+            [name: sink.name, position: ((ResumableSink)sink).checkpoint()] as Map<String,Object>
+        }
+        checkpoint.source = src instanceof ResumableSource ? ((ResumableSource)src).position : null
+        checkpoint.save()
     }
 
     /**
@@ -1334,11 +1825,17 @@ public class Pipeline {
         addDefaultRejections()
         long s = System.currentTimeMillis()
         logger.info("Starting ${name} pipeline")
-        start()
-        long e = System.currentTimeMillis()
-        LoadStatistic stat = toLoadStatistic(s, e)
-        logger.info("${stat}")
-        return stat
+        Metrics.pipelineStarted( this )
+        LoadStatistic stat = null
+        try {
+            start()
+            long e = System.currentTimeMillis()
+            stat = toLoadStatistic(s, e)
+            logger.info("${stat}")
+            return stat
+        } finally {
+            Metrics.pipelineFinished( this, stat )
+        }
     }
 
     /**
@@ -1348,8 +1845,60 @@ public class Pipeline {
      * @param lineNumber The lineNumber from the {@link gratum.source.Source} to use when tracking this row through the Pipeline
      */
     public boolean process(Map row, int lineNumber = -1) {
+        if( checkpoint ) return processCheckpointed( row, lineNumber )
+        return processFrom( 0, row, lineNumber )
+    }
+
+    private boolean processCheckpointed(Map row, int lineNumber) {
+        if( skipRows > 0 ) {
+            skipRows--
+            return false
+        }
+        boolean stop = processFrom( 0, row, lineNumber )
+        if( ++checkpoint.rows % checkpoint.interval == 0 ) saveCheckpoint()
+        return stop
+    }
+
+    /**
+     * Sends a chunk of rows to the Pipeline.  This is the same as calling {@link #process(java.util.Map, int)} for
+     * each row, but sources that read rows in chunks can hand them over at once.  The csv, jdbc and collection
+     * sources hand over {@link #getBatchSize()} rows at a time (see {@link gratum.source.RowChunk}).
+     *
+     * @param rows The rows to be processed.
+     * @param firstLine The lineNumber of the first row.  The rows after it are numbered consecutively.
+     */
+    public void processBatch(Collection<? extends Map> rows, int firstLine = -1) {
+        int line = firstLine
+        int step = firstLine >= 0 ? 1 : 0
+        if( checkpoint ) {
+            for( Map row : rows ) {
+                processCheckpointed( row, line )
+                line += step
+            }
+        } else {
+            for( Map row : rows ) {
+                processFrom( 0, row, line )
+                line += step
+            }
+        }
+    }
+
+    /**
+     * Processes the row starting at the given position in the execution chain.  Rows stop at a {@link BufferedStep}
+     * (ie {@link BatchStep} or {@link AsyncStep}) and continue from the step after it once it passes them on.
+     */
+    boolean processFrom(int start, Map row, int lineNumber) {
+        List<Step> chain = executionChain
+        if( chain == null ) {
+            chain = executionChain = fuseSteps ? FusedStep.fuse( processChain ) : processChain
+        }
         Map next = row
-        for (Step step : processChain) {
+        for (int i = start; i < chain.size(); i++) {
+            Step step = chain.get( i )
+            if( step instanceof BufferedStep ) {
+                ((BufferedStep)step).add( this, i, next, lineNumber )
+                return false
+            }
             next = step.execute( this, next, lineNumber )
             if( next == null || next[REJECTED_KEY] ) return false
         }
@@ -1357,6 +1906,16 @@ public class Pipeline {
         return false // don't stop!
     }
 
+    /**
+     * Processes every batch step's partial batch, in order, so rows flushed from one batch step reach the next.
+     */
+    private void flushBatches() {
+        if( executionChain == null ) return
+        for( Step step : executionChain ) {
+            if( step instanceof BufferedStep ) ((BufferedStep)step).flush( this )
+        }
+    }
+
     void doRejections(Map<String,Object> current, CharSequence stepName, int lineNumber) {
         if( parent ) {
             parent.doRejections( current, stepName, lineNumber )
@@ -1367,8 +1926,8 @@ public class Pipeline {
         }
     }
 
-    private String keyOf( Map row, Iterable<String> columns ) {
-        return columns.collect { key -> row[key] }.join(":")
+    private static Map<String,Object> copyOf( Map<String,Object> row ) {
+        return row instanceof Row ? ((Row)row).clone() : new LinkedHashMap<String,Object>(row)
     }
 
     /**
@@ -1403,7 +1962,9 @@ public class Pipeline {
                 stat.addRejection( cat, s.name, count )
             }
 
-            stat.addTiming(s.name, s.duration )
+            StepStatistic stepStat = s.toStepStatistic()
+            stat.addTiming(s.name, stepStat.duration )
+            stat.addStepStatistic( stepStat )
         }
 
         if( doneChain ) {
@@ -1426,6 +1987,7 @@ public class Pipeline {
 
     public void finished() {
         try {
+            flushBatches()
             doneChain.each { current ->
                 current.execute()
             }
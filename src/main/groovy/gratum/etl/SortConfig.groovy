@@ -1,16 +1,42 @@
 package gratum.etl
 
+import gratum.spill.SpillCompression
 import groovy.transform.CompileStatic
 import groovy.transform.stc.ClosureParams
 import groovy.transform.stc.SimpleType
 
 @CompileStatic
 class SortConfig {
+    /**
+     * The approximate number of bytes of rows held in memory while sorting.  Once rows exceed the budget they're
+     * sorted in pages and spilled to disk, then merged.  The default, 0, sorts everything in memory.
+     */
+    long memoryBudget = 0
+    /**
+     * The maximum number of rows in a page before it's spilled to disk.  Prefer {@link #memoryBudget}.  The default,
+     * 0, means pages are only limited by the memory budget.
+     */
     int pageSize = 0
+    /**
+     * The number of background threads sorting and writing pages to disk while rows are still being added.
+     */
+    int spillThreads = 2
+    /**
+     * The maximum number of pages merged at once.  More pages than this are merged in groups first.
+     */
+    int mergeFanIn = 128
+    /**
+     * The compression used for the pages written to disk.
+     */
+    SpillCompression spillCompression = SpillCompression.NONE
     Closure after = null
     boolean downstream = true
     Comparator<Map<String,Object>> comparator
 
+    boolean isExternal() {
+        return memoryBudget > 0 || pageSize > 0
+    }
+
     void after(@ClosureParams(value = SimpleType, options = "java.io.File") Closure callback) {
         after = callback
     }
@@ -20,7 +46,7 @@ class SortConfig {
             @Override
             int compare(Map<String, Object> o1, Map<String, Object> o2) {
                 for( String key : columns ) {
-                    int value = (Comparable)o1[key] <=> (Comparable)o2[key]
+                    int value = CompositeKey.compareValues( o1[key], o2[key] )
                     if( value != 0 ) return value
                 }
                 return 0
@@ -33,7 +59,7 @@ class SortConfig {
             @Override
             int compare(Map<String, Object> o1, Map<String, Object> o2) {
                 for( Tuple2<String,SortOrder> key : ordering ) {
-                    int value = (Comparable)o1[key.first] <=> (Comparable)o2[key.first]
+                    int value = CompositeKey.compareValues( o1[key.first], o2[key.first] )
                     switch( key.second ){
                         case SortOrder.ASC:
                             break
@@ -1,6 +1,7 @@
 package gratum.etl
 
 import gratum.csv.HaltPipelineException
+import gratum.metrics.Metrics
 import gratum.util.PipelineAbortException
 import groovy.transform.CompileStatic
 
@@ -10,23 +11,69 @@ class Step {
 
     public CharSequence name
     public Closure<Map<String,Object>> step
-    private int loaded = 0
-    private Map<RejectionCategory,Integer> rejections = [:]
-    private long duration = 0
+    private final RowFunction function
+    protected int loaded = 0
+    protected long rowsIn = 0
+    private Map<RejectionCategory,Integer> rejections = new EnumMap<>(RejectionCategory)
+    private final LatencyHistogram latency = new LatencyHistogram()
+    /**
+     * True for steps like sort and aggregate that keep rows, or totals built from them, until the Pipeline finishes.
+     * A checkpoint can't save what they're holding so they can't be checkpointed.
+     */
+    boolean holdsRows = false
 
     Step(CharSequence name, @DelegatesTo(Step) Closure<Map<String,Object>> step) {
         this.name = name
         this.step = step
         this.step.delegate = this
+        this.function = null
+    }
+
+    Step(CharSequence name, RowFunction function) {
+        this.name = name
+        this.function = function
+        this.step = { Map<String,Object> row -> function.apply( row ) }
+    }
+
+    protected Step(CharSequence name) {
+        this.name = name
+        this.function = null
+    }
+
+    /**
+     * @return true if this step is a {@link RowFunction} that can be fused with its neighbors into a {@link FusedStep}.
+     */
+    boolean isFusible() {
+        return function != null
+    }
+
+    RowFunction getFunction() {
+        return function
     }
 
     public Map<String,Object> execute(Pipeline pipeline, Map<String,Object> row, int lineNumber) {
-        long start = System.currentTimeMillis()
+        int sampleRate = pipeline.timingSampleRate
+        // only the sampled rows pay for reading the clock
+        boolean sampled = sampleRate > 0 && rowsIn % sampleRate == 0
+        long start = sampled ? System.nanoTime() : 0L
+        try {
+            return run( pipeline, row, lineNumber )
+        } finally {
+            if( sampled ) latency.record( System.nanoTime() - start )
+        }
+    }
+
+    /**
+     * Processes the row and counts it without timing it.
+     */
+    Map<String,Object> run(Pipeline pipeline, Map<String,Object> row, int lineNumber) {
+        rowsIn++
         try {
-            Map<String, Object> next = step.call(row)
+            Map<String, Object> next = function != null ? function.apply(row) : step.call(row)
             if (next == null || next[Pipeline.REJECTED_KEY]) {
                 Rejection rejection = next[Pipeline.REJECTED_KEY] as Rejection
                 incrementRejections( rejection.category )
+                Metrics.rowRejected( pipeline, name, rejection.category )
                 pipeline.doRejections(row, name, lineNumber)
             } else {
                 loaded++
@@ -44,14 +91,12 @@ class Step {
         } catch(Throwable t ) {
             handleExceptionToRejection(t, lineNumber, row, pipeline)
             throw new PipelineAbortException("${pipeline.name}:${name}:${lineNumber}: Halting pipeline due to a terminating exception encountered: ${t}.", t)
-        } finally {
-            long elapsed = System.currentTimeMillis() - start
-            this.duration = this.duration + elapsed
         }
     }
 
-    private Map<String,Object> handleExceptionToRejection(Throwable ex, int lineNumber, Map<String, Object> row, Pipeline pipeline) {
+    protected Map<String,Object> handleExceptionToRejection(Throwable ex, int lineNumber, Map<String, Object> row, Pipeline pipeline) {
         incrementRejections(RejectionCategory.SCRIPT_ERROR)
+        Metrics.rowRejected( pipeline, name, RejectionCategory.SCRIPT_ERROR )
         Rejection rejection = new Rejection("Encountered ${ex.message ?: ex} on ${pipeline.name} in step ${name} at ${lineNumber}", RejectionCategory.SCRIPT_ERROR, name, ex)
         row[Pipeline.REJECTED_KEY] = rejection
         pipeline.doRejections(row, name, lineNumber)
@@ -62,8 +107,23 @@ class Step {
         return rejections
     }
 
+    /**
+     * @return the estimated total time spent in this step in milliseconds.
+     */
     public long getDuration() {
-        return duration
+        return toStepStatistic().duration
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency
+    }
+
+    public long getRowsIn() {
+        return rowsIn
+    }
+
+    public StepStatistic toStepStatistic() {
+        return new StepStatistic( name: name.toString(), rowsIn: rowsIn, rowsOut: loaded, latency: latency.copy() )
     }
 
     public int getLoaded() {
@@ -0,0 +1,40 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * The rows in, rows out, and latency of a single {@link Step}.  Rows in counts every row passed to the step, rows
+ * out counts the rows it passed on, and the difference is the rows it rejected.  Latency is only recorded for the
+ * rows that were sampled, see {@link Pipeline#sampleTimings(int)}.
+ */
+@CompileStatic
+class StepStatistic {
+    String name
+    long rowsIn = 0
+    long rowsOut = 0
+    LatencyHistogram latency = new LatencyHistogram()
+
+    /**
+     * @return the estimated total time spent in this step in milliseconds, scaling the sampled rows up to all rows.
+     */
+    long getDuration() {
+        if( latency.count == 0 ) return 0
+        double total = latency.sum * ((double)Math.max( rowsIn, latency.count ) / latency.count)
+        return Math.round( total / 1_000_000.0 )
+    }
+
+    StepStatistic merge(StepStatistic src) {
+        rowsIn += src.rowsIn
+        rowsOut += src.rowsOut
+        latency.merge( src.latency )
+        return this
+    }
+
+    StepStatistic copy() {
+        return new StepStatistic( name: name, rowsIn: rowsIn, rowsOut: rowsOut, latency: latency.copy() )
+    }
+
+    String toString() {
+        return "${name}: in ${rowsIn}, out ${rowsOut}, ${latency}"
+    }
+}
@@ -0,0 +1,29 @@
+package gratum.metrics
+
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import gratum.etl.RejectionCategory
+import groovy.transform.CompileStatic
+
+/**
+ * A {@link MetricsListener} that ignores everything, so subclasses only override what they're interested in.
+ */
+@CompileStatic
+abstract class AbstractMetricsListener implements MetricsListener {
+
+    @Override
+    void pipelineStarted(Pipeline pipeline) {
+    }
+
+    @Override
+    void pipelineFinished(Pipeline pipeline, LoadStatistic statistic) {
+    }
+
+    @Override
+    void rowRejected(Pipeline pipeline, CharSequence step, RejectionCategory category) {
+    }
+
+    @Override
+    void report(MetricsSnapshot snapshot) {
+    }
+}
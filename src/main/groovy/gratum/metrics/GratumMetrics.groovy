@@ -0,0 +1,59 @@
+package gratum.metrics
+
+import groovy.transform.CompileStatic
+
+/**
+ * The MBean registered by {@link Metrics#registerMBean()}.  Attributes are read from a snapshot that's refreshed
+ * when it's more than a second old, and rates are measured between refreshes.
+ */
+@CompileStatic
+class GratumMetrics implements GratumMetricsMXBean {
+
+    private static final long REFRESH_NANOS = 1_000_000_000L
+
+    private MetricsSnapshot previous
+    private MetricsSnapshot current
+
+    synchronized MetricsSnapshot getSnapshot() {
+        if( current == null || System.nanoTime() - current.nanoTime > REFRESH_NANOS ) {
+            previous = current
+            current = Metrics.snapshot( previous )
+        }
+        return current
+    }
+
+    @Override
+    List<String> getActivePipelines() {
+        return snapshot.activePipelines
+    }
+
+    @Override
+    Map<String,Long> getRowsIn() {
+        return snapshot.steps.collectEntries { String key, MetricsSnapshot.StepMetrics step -> [key, step.rowsIn] } as Map<String,Long>
+    }
+
+    @Override
+    Map<String,Long> getRowsOut() {
+        return snapshot.steps.collectEntries { String key, MetricsSnapshot.StepMetrics step -> [key, step.rowsOut] } as Map<String,Long>
+    }
+
+    @Override
+    Map<String,Double> getRowsPerSecond() {
+        return snapshot.steps.collectEntries { String key, MetricsSnapshot.StepMetrics step -> [key, step.rowsPerSecond] } as Map<String,Double>
+    }
+
+    @Override
+    Map<String,Long> getRejections() {
+        return snapshot.rejections.collectEntries { category, count -> [category.toString(), count] } as Map<String,Long>
+    }
+
+    @Override
+    Map<String,Double> getGauges() {
+        return new TreeMap<String,Double>( snapshot.gauges )
+    }
+
+    @Override
+    Map<String,Double> getRates() {
+        return new TreeMap<String,Double>( snapshot.rates )
+    }
+}
@@ -0,0 +1,275 @@
+package gratum.metrics
+
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import gratum.etl.RejectionCategory
+import gratum.etl.Step
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import javax.management.MBeanServer
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+/**
+ * The registry that running Pipelines report their metrics to.  Nothing is tracked until something is watching,
+ * that is a {@link MetricsListener} was added, a {@link MetricsReporter} was started, or the MBean was registered.
+ *
+ * <pre>
+ * Metrics.registerMBean()
+ * Metrics.startReporter( 30, TimeUnit.SECONDS )   // logs a {@link MetricsSnapshot} every 30 seconds
+ * </pre>
+ *
+ * Steps keep their own counts so taking a snapshot reads them from the running Pipelines rather than Pipelines
+ * reporting every row.  Other components can publish gauges (a value right now, ie the depth of a queue) and
+ * counters (a total that grows, whose rate per second is reported) by name.
+ */
+@CompileStatic
+class Metrics {
+
+    public static final String MBEAN_NAME = "gratum:type=Metrics"
+
+    private static final Logger logger = LoggerFactory.getLogger(Metrics)
+
+    private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<>()
+    private static final Set<Pipeline> active = Collections.newSetFromMap( new ConcurrentHashMap<Pipeline,Boolean>() )
+    private static final Map<String,MetricsSnapshot.StepMetrics> finished = new ConcurrentHashMap<>()
+    private static final Map<RejectionCategory,Long> finishedRejections = new ConcurrentHashMap<>()
+    private static final Map<String,Supplier<? extends Number>> gauges = new ConcurrentHashMap<>()
+    private static final Map<String,Supplier<? extends Number>> counters = new ConcurrentHashMap<>()
+    private static final AtomicInteger watchers = new AtomicInteger()
+    private static volatile boolean listening = false
+
+    private Metrics() {
+    }
+
+    static void addListener(MetricsListener listener) {
+        listeners.add( listener )
+        listening = true
+    }
+
+    static void removeListener(MetricsListener listener) {
+        listeners.remove( listener )
+        listening = !listeners.isEmpty()
+    }
+
+    static boolean hasListeners() {
+        return listening
+    }
+
+    /**
+     * @return true when something is watching the metrics so Pipelines should report to it.
+     */
+    static boolean isEnabled() {
+        return listening || watchers.get() > 0
+    }
+
+    static void pipelineStarted(Pipeline pipeline) {
+        if( !enabled ) return
+        active.add( pipeline )
+        for( MetricsListener listener : listeners ) {
+            listener.pipelineStarted( pipeline )
+        }
+    }
+
+    static void pipelineFinished(Pipeline pipeline, LoadStatistic statistic) {
+        if( !active.remove( pipeline ) ) return
+        // keep the final counts so totals and rates don't drop when a Pipeline finishes
+        Map<String,MetricsSnapshot.StepMetrics> counts = [:]
+        Map<RejectionCategory,Long> rejections = new EnumMap<>(RejectionCategory)
+        collect( pipeline, counts, rejections, Collections.newSetFromMap( new IdentityHashMap<Step,Boolean>() ) )
+        synchronized( finished ) {
+            counts.each { String key, MetricsSnapshot.StepMetrics step ->
+                MetricsSnapshot.StepMetrics existing = finished[key]
+                finished[key] = existing ? add( copy( existing ), step ) : step
+            }
+            rejections.each { RejectionCategory category, Long count ->
+                finishedRejections[category] = (finishedRejections[category] ?: 0L) + count
+            }
+        }
+        for( MetricsListener listener : listeners ) {
+            listener.pipelineFinished( pipeline, statistic )
+        }
+    }
+
+    static void rowRejected(Pipeline pipeline, CharSequence step, RejectionCategory category) {
+        if( !listening ) return
+        for( MetricsListener listener : listeners ) {
+            listener.rowRejected( pipeline, step, category )
+        }
+    }
+
+    /**
+     * Sends the snapshot to every listener.
+     */
+    static void report(MetricsSnapshot snapshot) {
+        for( MetricsListener listener : listeners ) {
+            try {
+                listener.report( snapshot )
+            } catch( Exception ex ) {
+                logger.warn("Metrics listener ${listener} failed", ex)
+            }
+        }
+    }
+
+    /**
+     * Publishes a value that is read every time a snapshot is taken.
+     */
+    static void gauge(String name, Supplier<? extends Number> value) {
+        gauges.put( name, value )
+    }
+
+    /**
+     * Publishes a total that only grows.  Snapshots report its rate per second.
+     */
+    static void counter(String name, Supplier<? extends Number> value) {
+        counters.put( name, value )
+    }
+
+    /**
+     * Removes every gauge and counter whose name starts with the given prefix.
+     */
+    static void remove(String prefix) {
+        gauges.keySet().removeIf { String name -> name.startsWith( prefix ) }
+        counters.keySet().removeIf { String name -> name.startsWith( prefix ) }
+    }
+
+    /**
+     * Takes a snapshot of every running Pipeline, gauge and counter.
+     *
+     * @param previous an earlier snapshot used to compute rates, or null.
+     */
+    static MetricsSnapshot snapshot(MetricsSnapshot previous = null) {
+        MetricsSnapshot snapshot = new MetricsSnapshot()
+        synchronized( finished ) {
+            finished.each { String key, MetricsSnapshot.StepMetrics step ->
+                snapshot.steps[key] = copy( step )
+            }
+            snapshot.rejections.putAll( finishedRejections )
+        }
+        Set<Step> seen = Collections.newSetFromMap( new IdentityHashMap<Step,Boolean>() )
+        for( Pipeline pipeline : new ArrayList<Pipeline>( active ) ) {
+            snapshot.activePipelines << pipeline.name.toString()
+            collect( pipeline, snapshot.steps, snapshot.rejections, seen )
+        }
+        snapshot.activePipelines.sort()
+
+        double seconds = snapshot.secondsSince( previous )
+        snapshot.steps.each { String key, MetricsSnapshot.StepMetrics step ->
+            MetricsSnapshot.StepMetrics before = previous?.steps?.get( key )
+            if( before && seconds > 0 ) {
+                step.rowsPerSecond = (double)((step.rowsIn - before.rowsIn) / seconds)
+            }
+        }
+
+        gauges.each { String name, Supplier<? extends Number> value ->
+            Double current = read( name, value )
+            if( current != null ) snapshot.gauges[name] = current
+        }
+        counters.each { String name, Supplier<? extends Number> value ->
+            Double current = read( name, value )
+            if( current == null ) return
+            snapshot.counters[name] = current
+            Double before = previous?.counters?.get( name )
+            snapshot.rates[name] = before != null && seconds > 0 ? (double)((current - before) / seconds) : 0.0d
+        }
+        return snapshot
+    }
+
+    private static void collect(Pipeline pipeline, Map<String,MetricsSnapshot.StepMetrics> steps, Map<RejectionCategory,Long> rejections, Set<Step> seen) {
+        for( Pipeline current = pipeline; current != null; current = current.parent ) {
+            for( Step step : new ArrayList<Step>( current.processChain ) ) {
+                if( !seen.add( step ) ) continue
+                long rejected = 0
+                step.rejections.each { RejectionCategory category, Integer count ->
+                    rejected += count
+                    rejections[category] = (rejections[category] ?: 0L) + count
+                }
+                String key = "${current.name}/${step.name}".toString()
+                MetricsSnapshot.StepMetrics counts = new MetricsSnapshot.StepMetrics(
+                        pipeline: current.name.toString(),
+                        step: step.name.toString(),
+                        rowsIn: step.rowsIn,
+                        rowsOut: step.loaded,
+                        rejected: rejected )
+                MetricsSnapshot.StepMetrics existing = steps[key]
+                steps[key] = existing ? add( existing, counts ) : counts
+            }
+        }
+    }
+
+    private static Double read(String name, Supplier<? extends Number> value) {
+        try {
+            return value.get()?.doubleValue()
+        } catch( Exception ex ) {
+            logger.debug("Could not read metric ${name}", ex)
+            return null
+        }
+    }
+
+    private static MetricsSnapshot.StepMetrics copy(MetricsSnapshot.StepMetrics step) {
+        return new MetricsSnapshot.StepMetrics( pipeline: step.pipeline, step: step.step, rowsIn: step.rowsIn, rowsOut: step.rowsOut, rejected: step.rejected )
+    }
+
+    private static MetricsSnapshot.StepMetrics add(MetricsSnapshot.StepMetrics total, MetricsSnapshot.StepMetrics step) {
+        total.rowsIn += step.rowsIn
+        total.rowsOut += step.rowsOut
+        total.rejected += step.rejected
+        return total
+    }
+
+    /**
+     * Starts a daemon thread that takes a snapshot at the given period and sends it to the listeners.  If there
+     * aren't any listeners the snapshots are logged.
+     */
+    static MetricsReporter startReporter(long period, TimeUnit unit) {
+        MetricsReporter reporter = new MetricsReporter( period, unit )
+        reporter.start()
+        return reporter
+    }
+
+    /**
+     * Registers the {@link GratumMetricsMXBean} with the platform MBeanServer under {@link #MBEAN_NAME}.  Calling
+     * this more than once does nothing.
+     */
+    static synchronized ObjectName registerMBean() {
+        ObjectName name = new ObjectName( MBEAN_NAME )
+        MBeanServer server = ManagementFactory.platformMBeanServer
+        if( !server.isRegistered( name ) ) {
+            server.registerMBean( new GratumMetrics(), name )
+            watch()
+        }
+        return name
+    }
+
+    static synchronized void unregisterMBean() {
+        ObjectName name = new ObjectName( MBEAN_NAME )
+        MBeanServer server = ManagementFactory.platformMBeanServer
+        if( server.isRegistered( name ) ) {
+            server.unregisterMBean( name )
+            unwatch()
+        }
+    }
+
+    static void watch() {
+        watchers.incrementAndGet()
+    }
+
+    static void unwatch() {
+        watchers.decrementAndGet()
+    }
+
+    /**
+     * Forgets the totals of finished Pipelines.
+     */
+    static void reset() {
+        finished.clear()
+        finishedRejections.clear()
+    }
+}
@@ -0,0 +1,27 @@
+package gratum.metrics
+
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import gratum.etl.RejectionCategory
+import groovy.transform.CompileStatic
+
+/**
+ * Receives metrics while Pipelines are running.  Register a listener with {@link Metrics#addListener(MetricsListener)}.
+ * Pipelines report when they start and finish, steps report each rejection, and a {@link MetricsReporter} reports a
+ * {@link MetricsSnapshot} periodically containing rows/sec per step, rejections per category, and the queue and
+ * worker gauges of any {@link gratum.concurrency.LocalConcurrentContext}.
+ *
+ * Listeners are called on the thread doing the work so they should return quickly.  Extend
+ * {@link AbstractMetricsListener} to only implement the methods you need.
+ */
+@CompileStatic
+interface MetricsListener {
+
+    void pipelineStarted(Pipeline pipeline)
+
+    void pipelineFinished(Pipeline pipeline, LoadStatistic statistic)
+
+    void rowRejected(Pipeline pipeline, CharSequence step, RejectionCategory category)
+
+    void report(MetricsSnapshot snapshot)
+}
@@ -0,0 +1,73 @@
+package gratum.metrics
+
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+
+/**
+ * Takes a {@link MetricsSnapshot} periodically on a daemon thread and sends it to the {@link MetricsListener}s, or
+ * logs it if there aren't any listeners.  Start one with {@link Metrics#startReporter(long, TimeUnit)} and close it
+ * to stop reporting.
+ */
+@CompileStatic
+class MetricsReporter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsReporter)
+
+    final long period
+    final TimeUnit unit
+
+    private ScheduledExecutorService scheduler
+    private MetricsSnapshot previous
+
+    MetricsReporter(long period, TimeUnit unit) {
+        this.period = period
+        this.unit = unit
+    }
+
+    synchronized void start() {
+        if( scheduler ) return
+        Metrics.watch()
+        previous = Metrics.snapshot()
+        scheduler = Executors.newSingleThreadScheduledExecutor( { Runnable r ->
+            Thread t = new Thread( r, "gratum-metrics" )
+            t.daemon = true
+            return t
+        } as ThreadFactory )
+        scheduler.scheduleAtFixedRate( { report() } as Runnable, period, period, unit )
+    }
+
+    /**
+     * Takes a snapshot and reports it now.
+     */
+    synchronized MetricsSnapshot report() {
+        try {
+            MetricsSnapshot snapshot = Metrics.snapshot( previous )
+            previous = snapshot
+            if( Metrics.hasListeners() ) {
+                Metrics.report( snapshot )
+            } else {
+                logger.info("Metrics\n{}", snapshot)
+            }
+            return snapshot
+        } catch( Exception ex ) {
+            // an exception would cancel the schedule so log it and carry on
+            logger.warn("Could not report metrics", ex)
+            return null
+        }
+    }
+
+    @Override
+    synchronized void close() {
+        if( scheduler ) {
+            scheduler.shutdownNow()
+            scheduler = null
+            Metrics.unwatch()
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package gratum.metrics
+
+import gratum.etl.RejectionCategory
+import groovy.transform.CompileStatic
+
+/**
+ * The metrics of every Pipeline at a point in time.  Steps are keyed by pipeline/step, and steps with the same
+ * key in different Pipelines (ie the workers of a {@link gratum.concurrency.LocalConcurrentContext}) are added
+ * together.  Rates are per second since the previous snapshot and are 0 in the first snapshot.
+ */
+@CompileStatic
+class MetricsSnapshot {
+    long timestamp = System.currentTimeMillis()
+    long nanoTime = System.nanoTime()
+    List<String> activePipelines = []
+    Map<String,StepMetrics> steps = new TreeMap<>()
+    Map<RejectionCategory,Long> rejections = new EnumMap<>(RejectionCategory)
+    /**
+     * The current value of each gauge, ie the depth of a queue.
+     */
+    Map<String,Double> gauges = new TreeMap<>()
+    /**
+     * The current total of each counter.
+     */
+    Map<String,Double> counters = new TreeMap<>()
+    /**
+     * How fast each counter grew per second since the previous snapshot.
+     */
+    Map<String,Double> rates = new TreeMap<>()
+
+    /**
+     * @return the seconds between the given earlier snapshot and this one.
+     */
+    double secondsSince(MetricsSnapshot previous) {
+        return previous ? (nanoTime - previous.nanoTime) / 1_000_000_000.0d : 0.0d
+    }
+
+    long getRejected() {
+        return (long)rejections.values().sum(0L)
+    }
+
+    String toString() {
+        StringWriter out = new StringWriter()
+        PrintWriter pw = new PrintWriter(out)
+        pw.printf("Pipelines %s%n", activePipelines)
+        steps.each { String key, StepMetrics step ->
+            pw.printf("  %s: %,.1f rows/sec, in %,d, out %,d, rejected %,d%n", key, step.rowsPerSecond, step.rowsIn, step.rowsOut, step.rejected)
+        }
+        if( rejections ) pw.printf("  rejections %s%n", rejections)
+        gauges.each { String name, Double value ->
+            pw.printf("  %s = %,.2f%n", name, value)
+        }
+        rates.each { String name, Double value ->
+            pw.printf("  %s = %,.2f/sec%n", name, value)
+        }
+        pw.flush()
+        return out.toString()
+    }
+
+    @CompileStatic
+    static class StepMetrics {
+        String pipeline
+        String step
+        long rowsIn = 0
+        long rowsOut = 0
+        long rejected = 0
+        double rowsPerSecond = 0.0d
+    }
+}
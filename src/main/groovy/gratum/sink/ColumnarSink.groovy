@@ -0,0 +1,89 @@
+package gratum.sink
+
+import gratum.columnar.ColumnType
+import gratum.columnar.ColumnarWriter
+import gratum.etl.FileOpenable
+import gratum.etl.Pipeline
+import groovy.transform.CompileStatic
+
+/**
+ * Writes rows to an Arrow IPC file with a {@link ColumnarWriter}, which {@link gratum.source.ColumnarSource} and
+ * other Arrow tools (pyarrow, DuckDB, Spark, ...) read back.  Columns are stored typed so reading them back doesn't
+ * have to parse text.  This needs org.apache.arrow:arrow-vector and an allocator (arrow-memory-netty or
+ * arrow-memory-unsafe) on the classpath since gratum doesn't depend on Arrow itself.  On Java 9 and up Arrow also
+ * needs the JVM started with --add-opens=java.base/java.nio=ALL-UNNAMED, otherwise creating its allocator fails with
+ * a NoClassDefFoundError for RootAllocator.
+ *
+ * <pre>
+ *     csv("/resources/extract.csv")
+ *          .save( new ColumnarSink(new File("extract.arrow")).schema([id: ColumnType.LONG, name: ColumnType.STRING]) )
+ *          .go()
+ * </pre>
+ *
+ * Without a schema the columns and their types are inferred from the first batch of rows.  A row with a value that
+ * can't be converted to its column's type is rejected.  String columns whose values repeat in the first batch are
+ * dictionary encoded, unless the columns to encode are given with {@link #dictionary(java.lang.String [ ])}.
+ */
+@CompileStatic
+class ColumnarSink implements Sink<Map<String,Object>> {
+
+    File output
+    Map<String,ColumnType> schema = null
+    int batchSize = ColumnarWriter.DEFAULT_BATCH_SIZE
+    Collection<String> dictionary = null
+    private ColumnarWriter writer
+
+    ColumnarSink(File output, Map<String,ColumnType> schema = null) {
+        this.output = output
+        this.schema = schema
+    }
+
+    /**
+     * @param schema the columns to write and their types, in order
+     */
+    ColumnarSink schema(Map<String,ColumnType> schema) {
+        this.schema = schema
+        return this
+    }
+
+    /**
+     * @param rows the number of rows held in memory and written together as a record batch (default 65536)
+     */
+    ColumnarSink batchSize(int rows) {
+        this.batchSize = rows
+        return this
+    }
+
+    /**
+     * @param columns the string columns to dictionary encode instead of choosing them from the first batch.  Pass
+     * none to turn dictionary encoding off.
+     */
+    ColumnarSink dictionary(String... columns) {
+        this.dictionary = Arrays.asList( columns )
+        return this
+    }
+
+    @Override
+    String getName() {
+        return output.name
+    }
+
+    @Override
+    void attach(Pipeline pipeline) {
+        writer = new ColumnarWriter( output, schema, batchSize, dictionary )
+        pipeline.addStep("columnarOut(${output.name})") { Map<String,Object> row ->
+            writer.write( row )
+            return row
+        }
+    }
+
+    @Override
+    Map<String, Object> getResult() {
+        return [ file: output, filename: output.absolutePath, stream: new FileOpenable(output), rows: writer?.rows ] as Map<String,Object>
+    }
+
+    @Override
+    void close() throws IOException {
+        writer?.close()
+    }
+}
@@ -6,7 +6,7 @@ import gratum.etl.Pipeline
 import groovy.transform.CompileStatic
 
 @CompileStatic
-class CsvSink implements Sink<Map<String,Object>> {
+class CsvSink implements ResumableSink<Map<String,Object>> {
 
     CSVFile csvFile
 
@@ -24,6 +24,25 @@ class CsvSink implements Sink<Map<String,Object>> {
         }
     }
 
+    /**
+     * Only quote the values that contain the separator, a quote or a carriage return rather than every value.
+     */
+    CsvSink minimalQuoting(boolean value = true) {
+        csvFile.minimalQuoting = value
+        return this
+    }
+
+    /**
+     * Gzip the file as it's written, compressing blocks on multiple threads.  The result is a standard gzip file
+     * made of several members.  Files whose name ends in .gz are gzipped without this.
+     *
+     * @param threads the number of threads to compress with (defaults to the number of processors)
+     */
+    CsvSink gzip(int threads = Runtime.runtime.availableProcessors()) {
+        csvFile.gzip = threads
+        return this
+    }
+
     @Override
     String getName() {
         return csvFile.getFile().name
@@ -42,6 +61,20 @@ class CsvSink implements Sink<Map<String,Object>> {
         return [ file: csvFile.file, filename: csvFile.file.absolutePath, stream: new FileOpenable(csvFile.file) ]
     }
 
+    /**
+     * Only uncompressed files can be checkpointed.
+     */
+    @Override
+    Map<String,Object> checkpoint() {
+        return [offset: csvFile.checkpoint(), rows: csvFile.rows, headers: csvFile.columnHeaders] as Map<String,Object>
+    }
+
+    @Override
+    void resume(Map<String,Object> position) {
+        if( csvFile.columnHeaders == null && position.headers != null ) csvFile.setColumnHeaders( (List<String>)position.headers )
+        csvFile.resume( ((Number)position.offset).longValue(), ((Number)position.rows).intValue() )
+    }
+
     @Override
     void close() throws IOException {
         csvFile.close()
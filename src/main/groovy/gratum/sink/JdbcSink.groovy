@@ -0,0 +1,244 @@
+package gratum.sink
+
+import gratum.etl.Pipeline
+import gratum.etl.RejectionCategory
+import groovy.sql.Sql
+import groovy.transform.CompileStatic
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.SQLException
+import java.sql.Savepoint
+import java.sql.Timestamp
+import java.sql.Types
+
+/**
+ * Writes rows into a database table using batched prepared statements.  Rows are collected into batches of
+ * {@link #batchSize(int)} rows, each batch is sent with a single executeBatch, and the transaction is committed
+ * every {@link #commitEvery(int)} rows and when the Pipeline finishes.  For example:
+ *
+ * <pre>
+ *     csv("people.csv")
+ *        .asInt("id")
+ *        .save( new JdbcSink( sql, "staging_people" ).upsert("id").batchSize(1000) )
+ *        .go()
+ * </pre>
+ *
+ * The columns written are the ones given to {@link #columns(java.lang.String [ ])}, or the columns of the first row.
+ * An upsert uses MERGE, INSERT ... ON CONFLICT, or INSERT ... ON DUPLICATE KEY UPDATE depending on the database.
+ *
+ * If a batch fails it's rolled back on its own (using a savepoint when the database supports them, otherwise by
+ * committing before every batch), every row in it is sent to the rejections Pipeline, and the load carries on
+ * with the next batch.
+ */
+@CompileStatic
+class JdbcSink implements Sink<Map<String,Object>> {
+
+    public static final Logger logger = LoggerFactory.getLogger(JdbcSink)
+
+    final String table
+    private final Sql db
+    private List<String> columns
+    private List<String> keys = []
+    private int batchSize = 1000
+    private int commitEvery = 10_000
+
+    private Connection connection
+    private boolean ownsConnection = false
+    private boolean autoCommit
+    private boolean savepoints
+    private PreparedStatement statement
+    private int[] nullTypes
+    private long uncommitted = 0
+    private long rows = 0
+    private long rejected = 0
+    private int batches = 0
+
+    JdbcSink(Sql db, String table) {
+        this.db = db
+        this.table = table
+    }
+
+    JdbcSink(Connection connection, String table) {
+        this( new Sql( connection ), table )
+    }
+
+    /**
+     * The columns to write.  By default it's the columns of the first row.
+     */
+    JdbcSink columns(String... columns) {
+        this.columns = columns.toList()
+        return this
+    }
+
+    /**
+     * Updates the existing row with the same values in the given key columns instead of inserting a new one.
+     */
+    JdbcSink upsert(String... keys) {
+        this.keys = keys.toList()
+        return this
+    }
+
+    /**
+     * The number of rows sent to the database at once (default 1000).
+     */
+    JdbcSink batchSize(int size) {
+        if( size < 1 ) throw new IllegalArgumentException("Batch size must be at least 1, was ${size}")
+        this.batchSize = size
+        return this
+    }
+
+    /**
+     * Commits after at least this many rows have been written (default 10,000).  Pass 0 to only commit once all
+     * rows are written.
+     */
+    JdbcSink commitEvery(int rows) {
+        this.commitEvery = Math.max( 0, rows )
+        return this
+    }
+
+    @Override
+    String getName() {
+        return table
+    }
+
+    @Override
+    void attach(Pipeline pipeline) {
+        pipeline.addBatchStep("jdbcOut(${table})", batchSize) { List<Map<String,Object>> batch ->
+            write( batch )
+            return batch
+        }
+    }
+
+    /**
+     * Writes the rows as a single batch.  If the batch fails the rows are marked as rejected.
+     */
+    void write(List<Map<String,Object>> batch) {
+        if( statement == null ) prepare( batch.first() )
+        if( !savepoints && uncommitted > 0 ) commit()
+        Savepoint savepoint = savepoints ? connection.setSavepoint() : null
+        try {
+            for( Map<String,Object> row : batch ) {
+                bind( row )
+                statement.addBatch()
+            }
+            statement.executeBatch()
+            if( savepoint ) connection.releaseSavepoint( savepoint )
+            rows += batch.size()
+            uncommitted += batch.size()
+            batches++
+        } catch( SQLException ex ) {
+            logger.warn("Batch of ${batch.size()} rows into ${table} failed: ${ex.message}")
+            statement.clearBatch()
+            if( savepoint ) {
+                connection.rollback( savepoint )
+            } else {
+                connection.rollback()
+            }
+            rejected += batch.size()
+            SQLException cause = ex.nextException ?: ex
+            for( Map<String,Object> row : batch ) {
+                Pipeline.reject( row, "Batch insert into ${table} failed: ${cause.message}", RejectionCategory.REJECTION )
+            }
+        }
+        if( commitEvery > 0 && uncommitted >= commitEvery ) commit()
+    }
+
+    private void prepare(Map<String,Object> first) {
+        if( !columns ) columns = first.keySet().toList()
+        connection = db.connection
+        if( connection == null ) {
+            connection = db.dataSource.connection
+            ownsConnection = true
+        }
+        autoCommit = connection.autoCommit
+        connection.autoCommit = false
+        savepoints = connection.metaData.supportsSavepoints()
+        String sql = keys ? upsertSql( connection.metaData.databaseProductName ) : insertSql()
+        logger.debug("Writing to ${table} using ${sql}")
+        statement = connection.prepareStatement( sql )
+        nullTypes = new int[ columns.size() ]
+        for( int i = 0; i < columns.size(); i++ ) {
+            nullTypes[i] = parameterType( i + 1 )
+        }
+    }
+
+    private int parameterType(int index) {
+        try {
+            return statement.parameterMetaData.getParameterType( index )
+        } catch( SQLException ex ) {
+            // not every driver can describe the parameters
+            return Types.NULL
+        }
+    }
+
+    private void bind(Map<String,Object> row) {
+        for( int i = 0; i < columns.size(); i++ ) {
+            Object value = row.get( columns[i] )
+            if( value == null ) {
+                statement.setNull( i + 1, nullTypes[i] )
+            } else if( value instanceof CharSequence ) {
+                statement.setString( i + 1, value.toString() )
+            } else if( value instanceof Date && !(value instanceof java.sql.Date || value instanceof java.sql.Time || value instanceof Timestamp) ) {
+                statement.setTimestamp( i + 1, new Timestamp( ((Date)value).time ) )
+            } else {
+                statement.setObject( i + 1, value )
+            }
+        }
+    }
+
+    String insertSql() {
+        return "INSERT INTO ${table} (${columns.join(', ')}) VALUES (${placeholders()})".toString()
+    }
+
+    String upsertSql(String product) {
+        List<String> updates = columns.findAll { String column -> !keys.contains( column ) }
+        String p = product?.toLowerCase() ?: ""
+        if( p.contains("h2") ) {
+            return "MERGE INTO ${table} (${columns.join(', ')}) KEY (${keys.join(', ')}) VALUES (${placeholders()})".toString()
+        } else if( p.contains("postgres") || p.contains("sqlite") ) {
+            String action = updates ? "UPDATE SET ${updates.collect { "${it} = EXCLUDED.${it}" }.join(', ')}" : "NOTHING"
+            return "INSERT INTO ${table} (${columns.join(', ')}) VALUES (${placeholders()}) ON CONFLICT (${keys.join(', ')}) DO ${action}".toString()
+        } else if( p.contains("mysql") || p.contains("mariadb") ) {
+            List<String> set = (updates ?: keys).collect { "${it} = VALUES(${it})".toString() }
+            return "INSERT INTO ${table} (${columns.join(', ')}) VALUES (${placeholders()}) ON DUPLICATE KEY UPDATE ${set.join(', ')}".toString()
+        } else {
+            String on = keys.collect { "t.${it} = s.${it}" }.join(' AND ')
+            String matched = updates ? " WHEN MATCHED THEN UPDATE SET ${updates.collect { "${it} = s.${it}" }.join(', ')}" : ""
+            return ("MERGE INTO ${table} t USING (VALUES (${placeholders()})) s (${columns.join(', ')}) ON (${on})${matched}" +
+                    " WHEN NOT MATCHED THEN INSERT (${columns.join(', ')}) VALUES (${columns.collect { "s.${it}" }.join(', ')})").toString()
+        }
+    }
+
+    private String placeholders() {
+        return columns.collect { '?' }.join(', ')
+    }
+
+    private void commit() {
+        connection.commit()
+        uncommitted = 0
+    }
+
+    @Override
+    Map<String, Object> getResult() {
+        return [ table: table, rows: rows, rejected: rejected, batches: batches ] as Map<String,Object>
+    }
+
+    /**
+     * Commits what's left and restores the connection's auto commit setting.
+     */
+    @Override
+    void close() throws IOException {
+        if( connection == null ) return
+        try {
+            connection.commit()
+            uncommitted = 0
+        } finally {
+            statement?.close()
+            connection.autoCommit = autoCommit
+            if( ownsConnection ) connection.close()
+        }
+    }
+}
@@ -2,28 +2,39 @@ package gratum.sink
 
 import gratum.etl.FileOpenable
 import gratum.etl.Pipeline
-import groovy.json.JsonOutput
+import gratum.json.JsonWriter
+import gratum.util.Compression
 import groovy.transform.CompileStatic
 
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption
+
 @CompileStatic
-class JsonSink implements Sink<Map<String,Object>> {
+class JsonSink implements ResumableSink<Map<String,Object>> {
 
     String name
-    BufferedWriter writer
+    Writer writer
     Collection<String> columns
     File output
     boolean jsonObjectPerLine = false
+    int gzipThreads = 0
+    private JsonWriter json
+    private boolean attached = false
+    private boolean started = false
+    private FileOutputStream file
+    private long resumeOffset = -1
 
     JsonSink(File file, Collection<String> columns = null){
         this.output = file
         this.name = file.name
-        this.writer = file.newWriter("UTF-8")
         this.columns = columns
     }
 
     JsonSink(String name, Writer writer, Collection<String> columns = null) {
         this.name = name
-        this.writer = new BufferedWriter( writer )
+        this.writer = writer
+        this.json = new JsonWriter( writer )
         this.columns = columns
     }
 
@@ -37,32 +48,81 @@ class JsonSink implements Sink<Map<String,Object>> {
         return this
     }
 
+    /**
+     * Gzip the file as it's written, compressing blocks on multiple threads.  The result is a standard gzip file
+     * made of several members.  Files whose name ends in .gz are gzipped without this.
+     *
+     * @param threads the number of threads to compress with (defaults to the number of processors)
+     */
+    JsonSink gzip(int threads = Runtime.runtime.availableProcessors()) {
+        gzipThreads = threads
+        return this
+    }
+
     @Override
     void attach(Pipeline pipeline) {
-        if( !jsonObjectPerLine ) writer.writeLine("[")
+        attached = true
+        String separator = jsonObjectPerLine ? "\n" : ",\n"
         if( columns ) {
+            String[] fields = columns as String[]
+            char[][] names = JsonWriter.fieldNames( columns )
             pipeline.addStep("Json to ${name}") { Map row ->
-                String json = JsonOutput.toJson( row.subMap( columns ) )
-                writer.write( json )
-                if( jsonObjectPerLine ) {
-                    writer.write("\n")
-                } else {
-                    writer.write(",\n")
-                }
+                start().writeRow( row, fields, names ).write( separator )
                 return row
             }
         } else {
             pipeline.addStep("Json to ${name}") { Map row ->
-                String json = JsonOutput.toJson( row )
-                writer.write( json )
-                if( jsonObjectPerLine ) {
-                    writer.write("\n")
+                start().writeRow( row ).write( separator )
+                return row
+            }
+        }
+    }
+
+    /**
+     * Opens the file and starts the array the first time it's called.  The file is opened when the first row is
+     * written so gzip can still be changed after it's constructed, and a checkpoint can be resumed.
+     */
+    private JsonWriter start() {
+        if( started ) return json
+        started = true
+        if( json == null ) {
+            if( gzipThreads > 0 || Compression.isCompressed( output ) ) {
+                writer = new OutputStreamWriter( Compression.create( output, gzipThreads ), StandardCharsets.UTF_8 )
+            } else {
+                if( resumeOffset >= 0 ) {
+                    FileChannel.open( output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE ).withCloseable { FileChannel channel ->
+                        channel.truncate( resumeOffset )
+                    }
                 } else {
-                    writer.write(",\n")
+                    output.absoluteFile.parentFile?.mkdirs()
                 }
-                return row
+                file = new FileOutputStream( output, resumeOffset >= 0 )
+                writer = new OutputStreamWriter( new BufferedOutputStream( file, Compression.BUFFER_SIZE ), StandardCharsets.UTF_8 )
             }
+            json = new JsonWriter( writer )
         }
+        // a checkpoint taken before the first row is written has nothing to carry on from
+        if( !jsonObjectPerLine && resumeOffset <= 0 ) json.write("[\n")
+        return json
+    }
+
+    /**
+     * Only uncompressed files can be checkpointed.
+     */
+    @Override
+    Map<String,Object> checkpoint() {
+        if( output == null || gzipThreads > 0 || Compression.isCompressed( output ) ) {
+            throw new IllegalStateException("${name} can't be checkpointed, only an uncompressed file can be.")
+        }
+        if( !started ) return [offset: Math.max( resumeOffset, 0L )] as Map<String,Object>
+        json.flush()
+        return [offset: file.channel.position()] as Map<String,Object>
+    }
+
+    @Override
+    void resume(Map<String,Object> position) {
+        if( started ) throw new IllegalStateException("${name} can't resume once it's been written to.")
+        resumeOffset = ((Number)position.offset).longValue()
     }
 
     @Override
@@ -76,8 +136,10 @@ class JsonSink implements Sink<Map<String,Object>> {
 
     @Override
     void close() throws IOException {
-        if( !jsonObjectPerLine ) writer.write("\n]")
-        writer.flush()
-        writer.close()
+        if( !attached ) return
+        start()
+        if( !jsonObjectPerLine ) json.write("\n]")
+        json.flush()
+        json.close()
     }
 }
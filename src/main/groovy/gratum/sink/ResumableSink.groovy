@@ -0,0 +1,25 @@
+package gratum.sink
+
+/**
+ * A {@link Sink} that can carry on from a checkpoint instead of writing everything again.  Each time the
+ * {@link gratum.etl.Pipeline} checkpoints, the sink flushes what it's written and returns its position, and a
+ * Pipeline that's restarted after failing hands the position back before any rows are written so the sink can throw
+ * away anything written after the checkpoint and append to the rest.
+ */
+interface ResumableSink<T> extends Sink<T> {
+
+    /**
+     * Flushes everything written so far.
+     *
+     * @return the position to resume from.  It's saved as JSON so it should only hold Strings, numbers, booleans,
+     * Lists and Maps.
+     */
+    Map<String,Object> checkpoint()
+
+    /**
+     * Called before any rows are written when the Pipeline is restarted from a checkpoint.
+     *
+     * @param position the position returned by {@link #checkpoint()}
+     */
+    void resume(Map<String,Object> position)
+}
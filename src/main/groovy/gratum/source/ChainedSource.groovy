@@ -26,8 +26,7 @@ public class ChainedSource extends AbstractSource {
     }
 
     public void process( Collection<Map> rows ) {
-        for( Map r : rows ) {
-            this.delegate.process( r, line++ )
-        }
+        this.delegate.processBatch( rows, line )
+        line += rows.size()
     }
 }
@@ -31,9 +31,11 @@ class CollectionSource extends AbstractSource {
     @Override
     void doStart(Pipeline pipeline) {
         int line = 1;
+        RowChunk chunk = new RowChunk( pipeline )
         for( Map r : source ) {
-            pipeline.process( r, line++ )
+            chunk.add( r, line++ )
         }
+        chunk.flush()
     }
 
     public static CollectionSource of( Map... src ) {
@@ -0,0 +1,55 @@
+package gratum.source
+
+import gratum.columnar.ColumnarReader
+import gratum.etl.Pipeline
+import groovy.transform.CompileStatic
+
+/**
+ * Reads Arrow IPC files, like the ones written by {@link gratum.sink.ColumnarSink}, with a {@link ColumnarReader}.
+ * Only the columns asked for are turned into rows, so selecting a few columns of a wide file is much cheaper than
+ * reading all of it.  Like the sink this needs Arrow on the classpath, and on Java 9 and up the JVM started with
+ * --add-opens=java.base/java.nio=ALL-UNNAMED.
+ *
+ * <pre>
+ *     ColumnarSource.columnar( new File("extract.arrow"), ["id", "status"] )
+ *          .filter([ status: "Active" ])
+ *          .go()
+ * </pre>
+ */
+@CompileStatic
+class ColumnarSource extends AbstractSource {
+
+    File file
+    Collection<String> columns
+
+    ColumnarSource(File file, Collection<String> columns = null) {
+        super( file.name )
+        this.file = file
+        this.columns = columns
+    }
+
+    public static ColumnarSource of(File file, Collection<String> columns = null) {
+        return new ColumnarSource( file, columns )
+    }
+
+    public static Pipeline columnar(File file, Collection<String> columns = null) {
+        return new ColumnarSource( file, columns ).into()
+    }
+
+    public static Pipeline columnar(String filename, Collection<String> columns = null) {
+        return columnar( new File( filename ), columns )
+    }
+
+    @Override
+    void doStart(Pipeline pipeline) {
+        ColumnarReader reader = new ColumnarReader( file, columns )
+        try {
+            int line = 1
+            while( reader.hasNext() ) {
+                if( pipeline.process( reader.next(), line++ ) ) break
+            }
+        } finally {
+            reader.close()
+        }
+    }
+}
@@ -3,6 +3,8 @@ package gratum.source
 import gratum.csv.CSVFile
 import gratum.csv.CSVReader
 import gratum.etl.Pipeline
+import gratum.etl.Row
+import gratum.etl.RowSchema
 import groovy.transform.CompileStatic
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
@@ -38,6 +40,12 @@ import org.slf4j.LoggerFactory
  *     csv( "External InputStream", stream, "|" ).filter( [ someColumn: "someValue" ] ).go()
  * </pre>
  *
+ * Files ending in .gz, .bz2, .xz or .zst are decompressed as they're read.
+ *
+ * <pre>
+ *     csv( "/resources/extract.csv.gz" ).filter([ Embarked: "Q"]).go()
+ * </pre>
+ *
  * Using {@link #of} to configure CsvSource.
  *
  * <pre>
@@ -47,7 +55,7 @@ import org.slf4j.LoggerFactory
  * </pre>
  */
 @CompileStatic
-public class CsvSource extends AbstractSource {
+public class CsvSource extends AbstractSource implements ResumableSource {
 
     public static final Logger logger = LoggerFactory.getLogger(CsvSource.class)
 
@@ -55,6 +63,10 @@ public class CsvSource extends AbstractSource {
 
     Closure<Void> headerClosure = null
 
+    private int lastRow = 0
+    private long resumeOffset = -1
+    private boolean resumeHeaders = false
+
     CsvSource(File file, String separator = ",", List<String> headers = null) {
         super(file.name)
         csvFile = new CSVFile( file, separator );
@@ -128,10 +140,63 @@ public class CsvSource extends AbstractSource {
         return this
     }
 
+    /**
+     * Parse the file on multiple threads.  The file is memory mapped, split into chunks on record boundaries,
+     * and the chunks are parsed on a ForkJoinPool while the rows are processed by the pipeline on the calling
+     * thread.  Rows keep their line numbers whether or not they're ordered.  This only applies to files read
+     * as UTF-8 (ie not streams), and when escaping is on the separator must be an ASCII character.  Otherwise
+     * the file is read on a single thread.
+     *
+     * <pre>
+     *     CsvSource.of("/resources/big_extract.csv", "|").parallel(8, false).into()
+     *          .filter([ status: "Active" ])
+     *          .go()
+     * </pre>
+     *
+     * @param threads the number of threads used to parse the file (defaults to the number of processors)
+     * @param ordered true (default) to process rows in the order they appear in the file, or false to process
+     * chunks in the order they finish parsing
+     * @return this
+     */
+    public CsvSource parallel( int threads = Runtime.runtime.availableProcessors(), boolean ordered = true ) {
+        csvFile.setParallelism( threads, ordered )
+        return this
+    }
+
+    /**
+     * Resumes from the byte offset of the next row when the file is uncompressed UTF-8 and was parsed on a single
+     * thread, otherwise the Pipeline skips the rows.  Files parsed in parallel are parsed in order so the rows that
+     * are skipped are the same ones.
+     */
+    @Override
+    boolean resume(Map<String,Object> position) {
+        csvFile.setTrackOffset( true )
+        if( csvFile.parallelism > 1 ) csvFile.setParallelism( csvFile.parallelism, true )
+        long offset = position?.offset != null ? ((Number)position.offset).longValue() : -1
+        if( offset < 0 || csvFile.file == null ) return false
+        resumeOffset = offset
+        lastRow = ((Number)position.row).intValue()
+        if( csvFile.columnHeaders == null ) {
+            csvFile.setColumnHeaders( (List<String>)position.headers )
+            resumeHeaders = true
+        }
+        return true
+    }
+
+    @Override
+    Map<String,Object> getPosition() {
+        return [offset: csvFile.offset, row: lastRow, headers: csvFile.columnHeaders] as Map<String,Object>
+    }
+
     @Override
     void doStart(Pipeline pipeline) {
         int line = 1
+        RowChunk chunk = new RowChunk( pipeline )
         CSVReader csvReader = new CSVReader() {
+            List<String> schemaHeader
+            RowSchema schema
+            int[] positions
+
             @Override
             void processHeaders(List<String> header) {
                 if( headerClosure ) {
@@ -141,18 +206,32 @@ public class CsvSource extends AbstractSource {
 
             @Override
             boolean processRow(List<String> header, List<String> row) {
-                Map<String,Object> obj = [:]
-                for( int i = 0; i < row.size(); i++ ) {
-                    obj[header[i]] = row[i]
-                }
+                return processRow( header, row, line )
+            }
 
-                if( header.size() > row.size() ) {
-                    for( int j = row.size(); j < header.size(); j++ ) {
-                        obj[header[j]] = null
-                    }
+            @Override
+            boolean processRow(List<String> header, List<String> row, int lineNumber) {
+                if( !header.is(schemaHeader) ) {
+                    // every row shares one schema built from the header
+                    schemaHeader = header
+                    schema = RowSchema.of( header )
+                    positions = schema.indexesOf( header )
+                }
+                Object[] values = new Object[ schema.size() ]
+                int columns = Math.min( row.size(), positions.length )
+                for( int i = 0; i < columns; i++ ) {
+                    values[ positions[i] ] = row[i]
+                }
+                Row obj = new Row( schema, values )
+                for( int i = columns; i < row.size(); i++ ) {
+                    // ragged rows with more columns than the header
+                    obj.put( null, row[i] )
                 }
 
-                return pipeline.process( obj, line++ )
+                line++
+                lastRow = lineNumber
+                chunk.add( obj, lineNumber )
+                return false
             }
 
             @Override
@@ -161,6 +240,13 @@ public class CsvSource extends AbstractSource {
             }
         }
 
-        csvFile.parse(csvReader)
+        if( resumeOffset >= 0 ) {
+            logger.info("{} => Resuming after row {} at byte {}", name, lastRow, resumeOffset)
+            if( resumeHeaders ) csvReader.processHeaders( csvFile.columnHeaders )
+            csvFile.parse( csvReader, resumeOffset, lastRow + 1 )
+        } else {
+            csvFile.parse(csvReader)
+        }
+        chunk.flush()
     }
 }
@@ -2,7 +2,6 @@ package gratum.source
 
 import gratum.etl.FileOpenable
 import gratum.etl.Pipeline
-import groovy.io.FileType
 import groovy.transform.CompileStatic
 
 import java.util.regex.Pattern
@@ -17,12 +16,13 @@ import java.util.regex.Pattern
  * {@link FileSystemSource#filter(java.util.regex.Pattern)}.
  */
 @CompileStatic
-class FileSystemSource extends AbstractSource {
+class FileSystemSource extends AbstractSource implements ResumableSource {
 
     Iterable<File> files
     Pattern filter = ~/.*/
     int line = 1
     boolean recursive = true
+    private int skip = 0
 
     FileSystemSource(Iterable<File> files) {
         super( files.collect {it.name }.join(",") )
@@ -56,6 +56,21 @@ class FileSystemSource extends AbstractSource {
         }
     }
 
+    /**
+     * Resumes by skipping over the number of files that were already processed.  Directories are listed in name order
+     * so the files come in the same order on each run, as long as the files already processed are left in place.
+     */
+    @Override
+    boolean resume(Map<String,Object> position) {
+        skip = position ? ((Number)position.files).intValue() : 0
+        return true
+    }
+
+    @Override
+    Map<String,Object> getPosition() {
+        return [files: line - 1] as Map<String,Object>
+    }
+
     /**
      * Add a filename filter using a regular expression to match filenames against.
      * Anything that matches the given filternameFilter will be passed onto the
@@ -82,18 +97,29 @@ class FileSystemSource extends AbstractSource {
     void process(File file, Pipeline pipeline) {
         if( file.isFile() ) {
             if( file.name ==~ filter ) {
-                pipeline.process([file: file, stream: new FileOpenable(file)], line++)
+                if( skip > 0 ) {
+                    skip--
+                    line++
+                } else {
+                    pipeline.process([file: file, stream: new FileOpenable(file)], line++)
+                }
             }
         } else {
-            if( recursive ) {
-                file.eachFileRecurse(FileType.FILES) { File current ->
-                    process( current, pipeline )
-                }
-            } else {
-                file.eachFile( FileType.FILES ) { File current ->
-                    process( current, pipeline )
-                }
+            for( File current : listSorted( file ) ) {
+                if( current.isFile() || recursive ) process( current, pipeline )
             }
         }
     }
+
+    /**
+     * The order File.listFiles() returns is up to the file system, so it's sorted by name to keep resume positions
+     * pointing at the same file from one run to the next.
+     */
+    private static List<File> listSorted(File directory) {
+        File[] children = directory.listFiles()
+        if( children == null ) return Collections.<File>emptyList()
+        List<File> sorted = Arrays.asList( children )
+        Collections.sort( sorted, { File a, File b -> a.name <=> b.name } as Comparator<File> )
+        return sorted
+    }
 }
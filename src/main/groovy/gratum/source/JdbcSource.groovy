@@ -1,11 +1,30 @@
 package gratum.source
 
 import gratum.etl.Pipeline
-import groovy.sql.GroovyResultSet
+import gratum.etl.Row
+import gratum.etl.RowSchema
 import groovy.sql.Sql
 import groovy.transform.CompileStatic
+import org.codehaus.groovy.runtime.GStringImpl
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
 
+import javax.sql.DataSource
+import java.math.MathContext
+import java.sql.Connection
+import java.sql.DriverManager
+import java.sql.PreparedStatement
+import java.sql.ResultSet
 import java.sql.ResultSetMetaData
+import java.sql.Timestamp
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * A source that uses a database query for the source of the rows it feeds through the pipeline.
@@ -17,12 +36,51 @@ import java.sql.ResultSetMetaData
  *      .into()
  *      .go()
  * </pre>
+ *
+ * Large results should be streamed so the driver doesn't hold the whole result in memory:
+ *
+ * <pre>
+ *     database( sql ).query("select * from events").stream().fetchSize(5000)
+ * </pre>
+ *
+ * A query can also be split into ranges of a numeric or date column that are read in parallel, each on its own
+ * connection.  The connections come from the Sql's DataSource, or the url the source was created with.
+ *
+ * <pre>
+ *     database( url, username, password ).query("select * from events").partitionBy("id", 8)
+ * </pre>
+ *
+ * A checkpointed Pipeline (see {@link Pipeline#checkpoint(java.io.File, long)}) can resume the query after the
+ * last key it processed rather than reading the rows before it again:
+ *
+ * <pre>
+ *     database( sql ).query("select * from events").stream().resumeBy("id")
+ * </pre>
  */
 @CompileStatic
-class JdbcSource extends AbstractSource {
+class JdbcSource extends AbstractSource implements ResumableSource {
+
+    static final int BATCH_SIZE = 256
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSource)
+    private static final AtomicInteger threadCount = new AtomicInteger()
+    private static final List<Row> END = Collections.unmodifiableList( new ArrayList<Row>() )
 
     Sql db
     GString query
+    int fetchSize = 0
+    boolean stream = false
+    String partitionColumn
+    int partitions = 1
+    Object lowerBound
+    Object upperBound
+    String resumeColumn
+
+    private Object resumeAfter
+    private Object lastKey
+    private String url
+    private String username
+    private String password
 
     JdbcSource(Sql db) {
         super("jdbc")
@@ -32,6 +90,9 @@ class JdbcSource extends AbstractSource {
     JdbcSource(String url, String username, String password) {
         super(url)
         db = Sql.newInstance(url, username, password)
+        this.url = url
+        this.username = username
+        this.password = password
     }
 
     static JdbcSource database( Sql sql ) {
@@ -47,20 +108,338 @@ class JdbcSource extends AbstractSource {
         return this
     }
 
+    JdbcSource query( String query ) {
+        this.query = new GStringImpl( new Object[0], [query] as String[] )
+        return this
+    }
+
+    /**
+     * Sets how many rows the driver fetches from the database at a time.
+     */
+    JdbcSource fetchSize(int rows) {
+        this.fetchSize = rows
+        return this
+    }
+
+    /**
+     * Reads the results with a forward only, read only cursor in a transaction, which is what drivers like
+     * PostgreSQL need to fetch rows a batch at a time rather than reading the whole result into memory.  If a fetch
+     * size isn't set it defaults to 1000, except for MySQL which streams one row at a time (Integer.MIN_VALUE).
+     */
+    JdbcSource stream(boolean stream = true) {
+        this.stream = stream
+        return this
+    }
+
+    /**
+     * Splits the query into the given number of ranges of the column and reads them in parallel, each on its own
+     * connection.  The column must be a number or a date.  Rows are passed to the Pipeline on the calling thread in
+     * the order they arrive, so rows from different ranges are interleaved.  Rows where the column is null are read
+     * with the last range.
+     *
+     * @param column the column to split the query by
+     * @param partitions how many ranges to read at the same time
+     * @param lowerBound the low end of the range, or null to query the minimum of the column
+     * @param upperBound the high end of the range, or null to query the maximum of the column.  Rows outside of the
+     * bounds are still read by the first and last range, the bounds only decide how evenly the rows are split.
+     */
+    JdbcSource partitionBy(String column, int partitions, Object lowerBound = null, Object upperBound = null) {
+        if( partitions < 1 ) throw new IllegalArgumentException("Partitions must be at least 1, was ${partitions}")
+        this.partitionColumn = column
+        this.partitions = partitions
+        this.lowerBound = lowerBound
+        this.upperBound = upperBound
+        return this
+    }
+
+    /**
+     * Orders the query by the given column so a checkpointed Pipeline can resume after the last value of it that
+     * was processed.  The column must be unique and not null, and its values numbers, strings or dates.
+     */
+    JdbcSource resumeBy(String column) {
+        this.resumeColumn = column
+        return this
+    }
+
+    /**
+     * Resumes after the last key when {@link #resumeBy(java.lang.String)} is set, otherwise the Pipeline skips the
+     * rows so the query must return them in the same order each time.  Partitioned queries interleave their rows
+     * differently on every run so they can't be resumed.
+     */
+    @Override
+    boolean resume(Map<String,Object> position) {
+        if( partitionColumn && partitions > 1 ) {
+            throw new IllegalStateException("${name} can't be checkpointed because it's partitioned and the order of its rows changes with every run.")
+        }
+        if( !resumeColumn ) return false
+        if( position?.key != null ) {
+            resumeAfter = position.type == "timestamp" ? new Timestamp( ((Number)position.key).longValue() ) : position.key
+        }
+        return true
+    }
+
+    @Override
+    Map<String,Object> getPosition() {
+        if( !resumeColumn || lastKey == null ) return null
+        if( lastKey instanceof Date ) return [key: ((Date)lastKey).time, type: "timestamp"] as Map<String,Object>
+        if( lastKey instanceof Number || lastKey instanceof CharSequence ) return [key: lastKey] as Map<String,Object>
+        throw new IllegalStateException("${name} can't resume by ${resumeColumn} because it's a ${lastKey.class.name}.")
+    }
+
     @Override
     void doStart(Pipeline pipeline) {
-        List<String> columns = []
+        if( partitionColumn && partitions > 1 ) {
+            readPartitions( pipeline )
+        } else {
+            int line = 1
+            Connection connection = db.connection
+            boolean owned = connection == null
+            if( owned ) connection = newConnection()
+            String sql = sqlText()
+            List<Object> params = query.values.toList()
+            if( resumeColumn ) {
+                sql = "SELECT * FROM (${sql}) p ${resumeAfter != null ? "WHERE ${resumeColumn} > ? " : ""}ORDER BY ${resumeColumn}".toString()
+                if( resumeAfter != null ) params << resumeAfter
+            }
+            String key = null
+            RowChunk chunk = new RowChunk( pipeline )
+            try {
+                read( connection, sql, params ) { Row row ->
+                    if( resumeColumn ) {
+                        // drivers differ in the case of the column names they return
+                        if( key == null ) {
+                            key = row.keySet().find { String k -> k.equalsIgnoreCase( resumeColumn ) }
+                            if( key == null ) throw new IllegalStateException("${name} can't resume by ${resumeColumn} because the query doesn't return it.")
+                        }
+                        lastKey = row.get( key )
+                    }
+                    chunk.add( row, line++ )
+                    return true
+                }
+                chunk.flush()
+            } finally {
+                if( owned ) connection.close()
+            }
+        }
+    }
+
+    private String sqlText() {
+        return query.strings.join('?')
+    }
+
+    /**
+     * Runs the query and calls the closure with each row until it returns false.
+     */
+    private void read(Connection connection, String sql, List<Object> params, Closure<Boolean> each) {
+        boolean autoCommit = connection.autoCommit
+        if( stream && autoCommit ) connection.autoCommit = false
+        PreparedStatement statement = connection.prepareStatement( sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY )
+        try {
+            int rows = fetchSize
+            if( stream && rows == 0 ) {
+                rows = connection.metaData.databaseProductName?.toLowerCase()?.contains("mysql") ? Integer.MIN_VALUE : 1000
+            }
+            if( rows != 0 ) statement.fetchSize = rows
+            for( int i = 0; i < params.size(); i++ ) {
+                statement.setObject( i + 1, params[i] )
+            }
+            ResultSet rs = statement.executeQuery()
+            try {
+                ResultSetMetaData md = rs.metaData
+                List<String> columns = []
+                for( int i = 1; i <= md.columnCount; i++ ) {
+                    columns << md.getColumnName(i)
+                }
+                RowSchema schema = RowSchema.of( columns )
+                int[] positions = schema.indexesOf( columns )
+                while( rs.next() ) {
+                    Object[] values = new Object[ schema.size() ]
+                    for( int i = 0; i < positions.length; i++ ) {
+                        values[ positions[i] ] = rs.getObject( i + 1 )
+                    }
+                    if( !each.call( new Row( schema, values ) ) ) break
+                }
+            } finally {
+                rs.close()
+            }
+        } finally {
+            statement.close()
+            if( stream && autoCommit ) {
+                connection.rollback()
+                connection.autoCommit = true
+            }
+        }
+    }
+
+    private Connection newConnection() {
+        if( db.dataSource != null ) {
+            DataSource ds = db.dataSource
+            return ds.connection
+        } else if( url ) {
+            return DriverManager.getConnection( url, username, password )
+        } else {
+            throw new IllegalStateException("${name} needs a DataSource or a url to open more connections.  Create the Sql from a DataSource or use database(url, username, password).")
+        }
+    }
+
+    private void readPartitions(Pipeline pipeline) {
+        List<Range> ranges = ranges()
+        ArrayBlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>( ranges.size() * 4 )
+        AtomicReference<Throwable> failure = new AtomicReference<>()
+        ExecutorService executor = Executors.newFixedThreadPool( ranges.size(), { Runnable r ->
+            Thread t = new Thread( r, "jdbc-partition-${threadCount.incrementAndGet()}" )
+            t.daemon = true
+            return t
+        } as ThreadFactory )
+        AtomicBoolean closed = new AtomicBoolean( false )
+
+        for( Range r : ranges ) {
+            Range range = r
+            executor.execute {
+                try {
+                    Connection connection = newConnection()
+                    try {
+                        List<Row> batch = new ArrayList<>( BATCH_SIZE )
+                        read( connection, range.sql, range.params ) { Row row ->
+                            batch << row
+                            if( batch.size() >= BATCH_SIZE ) {
+                                queue.put( batch )
+                                batch = new ArrayList<>( BATCH_SIZE )
+                            }
+                            return !closed.get()
+                        }
+                        if( !batch.isEmpty() && !closed.get() ) queue.put( batch )
+                    } finally {
+                        connection.close()
+                    }
+                } catch( InterruptedException ex ) {
+                    logger.debug("Interrupted reading {}", range)
+                } catch( Throwable t ) {
+                    failure.compareAndSet( null, t )
+                } finally {
+                    try {
+                        queue.put( END )
+                    } catch( InterruptedException ex ) {
+                        logger.debug("Interrupted finishing {}", range)
+                    }
+                }
+            }
+        }
+
         int line = 1
-        db.eachRow( query, { ResultSetMetaData md ->
-            for( int i = 1; i <= md.columnCount; i++ ) {
-                columns << md.getColumnName(i)
+        int remaining = ranges.size()
+        RowChunk chunk = new RowChunk( pipeline )
+        try {
+            while( remaining > 0 ) {
+                List<Row> batch = queue.take()
+                if( batch.is( END ) ) {
+                    remaining--
+                    if( failure.get() ) throw new RuntimeException( "Reading ${name} failed", failure.get() )
+                    continue
+                }
+                for( Row row : batch ) {
+                    chunk.add( row, line++ )
+                }
+            }
+            chunk.flush()
+        } finally {
+            closed.set( true )
+            executor.shutdownNow()
+            while( !executor.awaitTermination( 10, TimeUnit.MILLISECONDS ) ) {
+                queue.clear()
             }
-        } ) { GroovyResultSet row ->
-            Map<String,Object> result = [:]
-            columns.eachWithIndex { String col, int index ->
-                result[col] = row[index]
+        }
+    }
+
+    /**
+     * Splits the query into ranges of the partition column.  The first range is open at the bottom, and the last is
+     * open at the top and includes nulls, so every row is read exactly once whatever the bounds are.
+     */
+    List<Range> ranges() {
+        String base = sqlText()
+        List<Object> params = query.values.toList()
+        Object min = lowerBound
+        Object max = upperBound
+        if( min == null || max == null ) {
+            Map<String,Object> bounds = db.firstRow( "SELECT MIN(${partitionColumn}) AS lo, MAX(${partitionColumn}) AS hi FROM (${base}) p".toString(), params ) as Map<String,Object>
+            // GroovyRowResult ignores the case of the column names
+            if( min == null ) min = bounds?.get("lo")
+            if( max == null ) max = bounds?.get("hi")
+        }
+        if( min == null || max == null ) {
+            // empty, or all nulls
+            return [ new Range( base, params ) ]
+        }
+
+        List<Object> boundaries = split( min, max, partitions )
+        String column = partitionColumn
+        List<Range> ranges = []
+        for( int i = 0; i < partitions; i++ ) {
+            String where
+            List<Object> p = new ArrayList<>( params )
+            if( i == 0 ) {
+                where = "${column} < ?"
+                p << boundaries[0]
+            } else if( i == partitions - 1 ) {
+                where = "${column} >= ? OR ${column} IS NULL"
+                p << boundaries[i - 1]
+            } else {
+                where = "${column} >= ? AND ${column} < ?"
+                p << boundaries[i - 1]
+                p << boundaries[i]
+            }
+            ranges << new Range( "SELECT * FROM (${base}) p WHERE ${where}".toString(), p )
+        }
+        return ranges
+    }
+
+    /**
+     * @return the partitions - 1 boundaries that split min to max into equal ranges.
+     */
+    static List<Object> split(Object min, Object max, int partitions) {
+        List<Object> boundaries = []
+        if( min instanceof Date && max instanceof Date ) {
+            BigInteger lo = BigInteger.valueOf( ((Date)min).time )
+            BigInteger span = BigInteger.valueOf( ((Date)max).time ).subtract( lo )
+            for( int i = 1; i < partitions; i++ ) {
+                long millis = lo.add( span.multiply( BigInteger.valueOf(i) ).divide( BigInteger.valueOf(partitions) ) ).longValue()
+                boundaries << (min instanceof java.sql.Date ? new java.sql.Date( millis ) : new Timestamp( millis ))
             }
-            pipeline.process( result, line )
+        } else if( isIntegral( min ) && isIntegral( max ) ) {
+            BigInteger lo = new BigInteger( min.toString() )
+            BigInteger span = new BigInteger( max.toString() ).subtract( lo )
+            for( int i = 1; i < partitions; i++ ) {
+                boundaries << lo.add( span.multiply( BigInteger.valueOf(i) ).divide( BigInteger.valueOf(partitions) ) ).longValue()
+            }
+        } else if( min instanceof Number && max instanceof Number ) {
+            BigDecimal lo = new BigDecimal( min.toString() )
+            BigDecimal span = new BigDecimal( max.toString() ).subtract( lo )
+            for( int i = 1; i < partitions; i++ ) {
+                boundaries << lo.add( span.multiply( BigDecimal.valueOf(i) ).divide( BigDecimal.valueOf(partitions), MathContext.DECIMAL64 ) )
+            }
+        } else {
+            throw new IllegalArgumentException("Can only partition by a number or a date, not ${min?.class?.name}")
+        }
+        return boundaries
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte || value instanceof BigInteger ||
+                (value instanceof BigDecimal && ((BigDecimal)value).scale() <= 0)
+    }
+
+    @CompileStatic
+    static class Range {
+        final String sql
+        final List<Object> params
+
+        Range(String sql, List<Object> params) {
+            this.sql = sql
+            this.params = params
+        }
+
+        String toString() {
+            return "${sql} ${params}"
         }
     }
 }
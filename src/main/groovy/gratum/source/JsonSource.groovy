@@ -1,9 +1,14 @@
 package gratum.source
 
 import gratum.etl.Pipeline
+import gratum.json.JsonStreamParser
+import gratum.util.Compression
 import groovy.json.JsonSlurper
 import groovy.transform.CompileStatic
 
+import java.nio.charset.StandardCharsets
+import java.util.function.Consumer
+
 @CompileStatic
 class JsonSource extends AbstractSource {
 
@@ -12,6 +17,7 @@ class JsonSource extends AbstractSource {
     def rootJson
     boolean recordPerLine = false
     boolean includeRoot = false
+    boolean streaming = false
     String rootJsonField
 
     JsonSource(String name, Reader reader ) {
@@ -25,7 +31,7 @@ class JsonSource extends AbstractSource {
     }
 
     public static JsonSource json(File file ) {
-        return json( new FileReader( file ), file.name )
+        return json( new InputStreamReader( Compression.open( file ), StandardCharsets.UTF_8 ), file.name )
     }
 
     public static JsonSource json(Reader reader, String name = "Reader") {
@@ -41,7 +47,7 @@ class JsonSource extends AbstractSource {
     }
 
     public static JsonSource jsonl(File file) {
-        return jsonl( new FileReader(file), file.name ).recordPerLine(true)
+        return jsonl( new InputStreamReader( Compression.open( file ), StandardCharsets.UTF_8 ), file.name ).recordPerLine(true)
     }
 
     public JsonSource recordPerLine( boolean recordPerLine ) {
@@ -49,6 +55,20 @@ class JsonSource extends AbstractSource {
         return this
     }
 
+    /**
+     * Parses the document incrementally instead of reading all of it into memory first.  Each object at the
+     * {@link #path(java.util.List)} is sent down the Pipeline as soon as it's parsed and everything else is skipped,
+     * so memory only has to hold one row at a time no matter how large the document is.  This can't be combined with
+     * {@link #includeRoot(boolean, java.lang.String)} since that needs the whole document.
+     *
+     * Paths are followed the same way whether or not the document is streamed.  An array along the path stands in
+     * for one element of the path, so ["pages", "*", "people"] reads the people of every page.
+     */
+    public JsonSource stream( boolean streaming = true ) {
+        this.streaming = streaming
+        return this
+    }
+
     public JsonSource includeRoot( boolean includeRootJson, String fieldName = "_root_json" ) {
         this.includeRoot = includeRootJson
         this.rootJsonField = fieldName
@@ -60,6 +80,8 @@ class JsonSource extends AbstractSource {
         try {
             if( recordPerLine ) {
                 parseRecordPerLine( reader, pipeline )
+            } else if( streaming ) {
+                parseStream( reader, pipeline )
             } else {
                 parseJson(reader, pipeline)
             }
@@ -76,6 +98,14 @@ class JsonSource extends AbstractSource {
         recurseJson(rootJson, jsonPath, pipeline)
     }
 
+    private void parseStream(Reader reader, Pipeline pipeline) {
+        if( includeRoot ) throw new IllegalStateException("${name}: includeRoot can't be used when streaming since the whole document isn't kept")
+        int line = 1
+        new JsonStreamParser( reader ).each( jsonPath, { Map<String,Object> row ->
+            pipeline.process( row, line++ )
+        } as Consumer<Map<String,Object>> )
+    }
+
     private int recurseJson(def json, List<String> path, Pipeline callback, int lines = 0) {
         if( json instanceof Collection ) {
             Collection col = json as Collection
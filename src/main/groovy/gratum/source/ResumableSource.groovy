@@ -0,0 +1,25 @@
+package gratum.source
+
+/**
+ * A {@link Source} that can say how far it's read and start again from there.  When a {@link gratum.etl.Pipeline}
+ * is checkpointed (see {@link gratum.etl.Pipeline#checkpoint(java.io.File, long)}) the position is saved with each
+ * checkpoint, and a Pipeline that's restarted after failing hands it back before the source starts so it can seek
+ * past the rows that were already processed instead of reading them again.
+ */
+interface ResumableSource extends Source {
+
+    /**
+     * Called before the source starts when its Pipeline is being checkpointed.
+     *
+     * @param position the position saved by the last checkpoint, or null when starting from the beginning
+     * @return true if the source will start after the position, or false if it will start from the beginning and
+     * the Pipeline should skip the rows that were already processed
+     */
+    boolean resume(Map<String,Object> position)
+
+    /**
+     * @return where the row after the last one passed to the Pipeline is.  It's saved as JSON so it should only
+     * hold Strings, numbers, booleans, Lists and Maps.
+     */
+    Map<String,Object> getPosition()
+}
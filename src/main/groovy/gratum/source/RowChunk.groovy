@@ -0,0 +1,55 @@
+package gratum.source
+
+import gratum.etl.Pipeline
+import groovy.transform.CompileStatic
+
+/**
+ * Collects the rows a {@link Source} reads and hands them to the Pipeline {@link Pipeline#getBatchSize()} at a time
+ * through {@link Pipeline#processBatch(java.util.Collection, int)}.  Rows are handed over early when their line
+ * numbers aren't consecutive, and {@link #flush()} hands over what's left once the source has read every row.
+ *
+ * A checkpointed Pipeline gets one row at a time because the source's position is saved as the rows are processed,
+ * and rows read ahead of it would be skipped on resume.
+ */
+@CompileStatic
+class RowChunk {
+
+    private final Pipeline pipeline
+    private final int size
+    private final List<Map> rows
+    private int firstLine = -1
+
+    RowChunk(Pipeline pipeline) {
+        this.pipeline = pipeline
+        this.size = pipeline.checkpointed ? 1 : pipeline.batchSize
+        this.rows = new ArrayList<>( size )
+    }
+
+    /**
+     * Adds a row to the chunk and hands the chunk to the Pipeline once it's full.
+     * @param row the row read by the source
+     * @param lineNumber the line number of the row
+     */
+    void add(Map row, int lineNumber) {
+        if( size == 1 ) {
+            pipeline.process( row, lineNumber )
+            return
+        }
+        if( !rows.isEmpty() && lineNumber != firstLine + rows.size() ) flush()
+        if( rows.isEmpty() ) firstLine = lineNumber
+        rows.add( row )
+        if( rows.size() >= size ) flush()
+    }
+
+    /**
+     * Hands the rows collected so far to the Pipeline.
+     */
+    void flush() {
+        if( rows.isEmpty() ) return
+        try {
+            pipeline.processBatch( rows, firstLine )
+        } finally {
+            rows.clear()
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package gratum.source
 
 import gratum.etl.Pipeline
+import gratum.etl.Row
+import gratum.etl.RowSchema
 import groovy.transform.CompileStatic
 import org.apache.poi.openxml4j.opc.OPCPackage
 import org.apache.poi.poifs.crypt.Decryptor
@@ -200,6 +202,7 @@ class XlsxSource extends AbstractSource {
 
         int headerRow = -1
         List<String> headers
+        RowSchema schema
         Pipeline pipeline
         Map current
         int currentRow = 0
@@ -216,7 +219,8 @@ class XlsxSource extends AbstractSource {
             } else {
                 // make sure we start with all headers included because if the first row doesn't have any values
                 // in the last columns won't make it into the row.  It will produce ragged results
-                current = headers.collectEntries() { e -> [e,null] }
+                if( schema == null ) schema = RowSchema.of( headers )
+                current = new Row( schema )
             }
             currentRow = rowNum
         }
@@ -0,0 +1,66 @@
+package gratum.columnar;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * The type of a column in a columnar file.  Every value in a column is stored as the column's type, and read back
+ * as the Java type listed here.  See {@link ColumnarFormat} for the Arrow type each one is stored as.
+ */
+public enum ColumnType {
+    /** String */
+    STRING,
+    /** Integer */
+    INT,
+    /** Long */
+    LONG,
+    /** Double */
+    DOUBLE,
+    /** Boolean */
+    BOOLEAN,
+    /** BigDecimal, with the same scale for every value in the column */
+    DECIMAL,
+    /** java.util.Date, stored as milliseconds since the epoch */
+    DATE,
+    /** LocalDate */
+    LOCAL_DATE,
+    /** LocalDateTime */
+    LOCAL_DATE_TIME;
+
+    /**
+     * @return the type that holds the given value, or null for null.
+     */
+    public static ColumnType of(Object value) {
+        if( value == null ) return null;
+        if( value instanceof Integer || value instanceof Short || value instanceof Byte ) return INT;
+        if( value instanceof Long ) return LONG;
+        if( value instanceof Double || value instanceof Float ) return DOUBLE;
+        if( value instanceof BigDecimal || value instanceof BigInteger ) return DECIMAL;
+        if( value instanceof Boolean ) return BOOLEAN;
+        if( value instanceof Date ) return DATE;
+        if( value instanceof LocalDate ) return LOCAL_DATE;
+        if( value instanceof LocalDateTime ) return LOCAL_DATE_TIME;
+        return STRING;
+    }
+
+    /**
+     * @return the narrowest type that holds values of both types.  Numbers widen to the larger number type and
+     * anything else that doesn't match becomes a STRING.
+     */
+    public ColumnType widen(ColumnType other) {
+        if( other == null || other == this ) return this;
+        if( isNumber() && other.isNumber() ) {
+            if( this == DECIMAL || other == DECIMAL ) return DECIMAL;
+            if( this == DOUBLE || other == DOUBLE ) return DOUBLE;
+            return LONG;
+        }
+        return STRING;
+    }
+
+    boolean isNumber() {
+        return this == INT || this == LONG || this == DOUBLE || this == DECIMAL;
+    }
+}
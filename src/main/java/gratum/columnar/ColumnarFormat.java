@@ -0,0 +1,103 @@
+package gratum.columnar;
+
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+/**
+ * How each {@link ColumnType} is stored in an Arrow IPC file.
+ *
+ * <pre>
+ * STRING           Utf8
+ * INT              Int(32, signed)
+ * LONG             Int(64, signed)
+ * DOUBLE           FloatingPoint(DOUBLE)
+ * BOOLEAN          Bool
+ * DECIMAL          Decimal(38, scale)               the scale is fixed per column
+ * DATE             Timestamp(MILLISECOND, "UTC")
+ * LOCAL_DATE       Date(DAY)
+ * LOCAL_DATE_TIME  Timestamp(NANOSECOND)            no time zone
+ * </pre>
+ *
+ * A dictionary encoded STRING column is stored as Int(32, signed) indexes into a Utf8 dictionary.
+ */
+final class ColumnarFormat {
+
+    static final int DECIMAL_PRECISION = 38;
+    static final String UTC = "UTC";
+    static final ArrowType.Int DICTIONARY_INDEX = new ArrowType.Int( 32, true );
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * @param scale the number of digits after the decimal point, only used by DECIMAL columns
+     * @param encoding the dictionary the column's values are indexes into, or null if it isn't encoded
+     */
+    static Field field(String name, ColumnType type, int scale, DictionaryEncoding encoding) {
+        if( encoding != null ) {
+            return new Field( name, new FieldType( true, encoding.getIndexType(), encoding ), null );
+        }
+        return new Field( name, FieldType.nullable( arrowType( type, scale ) ), null );
+    }
+
+    private static ArrowType arrowType(ColumnType type, int scale) {
+        switch( type ) {
+            case INT:
+                return new ArrowType.Int( 32, true );
+            case LONG:
+                return new ArrowType.Int( 64, true );
+            case DOUBLE:
+                return new ArrowType.FloatingPoint( FloatingPointPrecision.DOUBLE );
+            case BOOLEAN:
+                return ArrowType.Bool.INSTANCE;
+            case DECIMAL:
+                return new ArrowType.Decimal( DECIMAL_PRECISION, scale, 128 );
+            case DATE:
+                return new ArrowType.Timestamp( TimeUnit.MILLISECOND, UTC );
+            case LOCAL_DATE:
+                return new ArrowType.Date( DateUnit.DAY );
+            case LOCAL_DATE_TIME:
+                return new ArrowType.Timestamp( TimeUnit.NANOSECOND, null );
+            default:
+                return ArrowType.Utf8.INSTANCE;
+        }
+    }
+
+    /**
+     * @param dictionaries where the dictionaries of encoded columns are looked up
+     * @return the type of the column, or null if it's an Arrow type that isn't one a {@link ColumnarWriter} writes.
+     */
+    static ColumnType typeOf(Field field, DictionaryProvider dictionaries) {
+        DictionaryEncoding encoding = field.getDictionary();
+        ArrowType type = encoding != null ? dictionaries.lookup( encoding.getId() ).getVectorType() : field.getType();
+        switch( type.getTypeID() ) {
+            case Utf8:
+                return ColumnType.STRING;
+            case Int:
+                ArrowType.Int integer = (ArrowType.Int)type;
+                if( !integer.getIsSigned() ) return null;
+                return integer.getBitWidth() == 64 ? ColumnType.LONG : integer.getBitWidth() == 32 ? ColumnType.INT : null;
+            case FloatingPoint:
+                return ((ArrowType.FloatingPoint)type).getPrecision() == FloatingPointPrecision.DOUBLE ? ColumnType.DOUBLE : null;
+            case Bool:
+                return ColumnType.BOOLEAN;
+            case Decimal:
+                return ColumnType.DECIMAL;
+            case Date:
+                return ((ArrowType.Date)type).getUnit() == DateUnit.DAY ? ColumnType.LOCAL_DATE : null;
+            case Timestamp:
+                ArrowType.Timestamp timestamp = (ArrowType.Timestamp)type;
+                if( timestamp.getUnit() == TimeUnit.MILLISECOND && UTC.equals( timestamp.getTimezone() ) ) return ColumnType.DATE;
+                if( timestamp.getUnit() == TimeUnit.NANOSECOND && timestamp.getTimezone() == null ) return ColumnType.LOCAL_DATE_TIME;
+                return null;
+            default:
+                return null;
+        }
+    }
+}
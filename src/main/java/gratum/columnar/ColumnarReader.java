@@ -0,0 +1,178 @@
+package gratum.columnar;
+
+import gratum.etl.Row;
+import gratum.etl.RowSchema;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.InvalidArrowFileException;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.util.Text;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the rows of an Arrow IPC file, like the ones written by a {@link ColumnarWriter}.  Arrow loads a whole
+ * record batch at a time, but only the given columns are turned into Java objects.  Rows are returned as
+ * {@link Row}s sharing one {@link RowSchema} with the columns in the order they were asked for.  The file is closed
+ * once the last row has been read.
+ *
+ * Columns of the types in {@link ColumnarFormat} are read back as their {@link ColumnType}'s Java type.  Columns of
+ * other Arrow types are read as Arrow returns them, except that text is returned as a String.  Dictionary encoded
+ * columns are decoded, and each dictionary value is only converted once.
+ */
+public class ColumnarReader implements Iterator<Map<String,Object>>, Closeable {
+
+    private final BufferAllocator allocator;
+    private final ArrowFileReader reader;
+    private final VectorSchemaRoot root;
+    private final Map<String,ColumnType> schema = new LinkedHashMap<>();
+    private final FieldVector[] vectors;
+    private final ColumnType[] types;
+    // the dictionary of each encoded column and its values as they're converted, null for the others
+    private final FieldVector[] dictionaries;
+    private final Object[][] decoded;
+    private final RowSchema rowSchema;
+
+    private int batchRows;
+    private int next;
+    private boolean closed;
+
+    public ColumnarReader(File file) throws IOException {
+        this( file, null );
+    }
+
+    /**
+     * @param columns the columns to read, or null for all of them
+     */
+    public ColumnarReader(File file, Collection<String> columns) throws IOException {
+        allocator = new RootAllocator();
+        try {
+            reader = new ArrowFileReader( FileChannel.open( file.toPath(), StandardOpenOption.READ ), allocator );
+        } catch( IOException | RuntimeException ex ) {
+            allocator.close();
+            throw ex;
+        }
+        try {
+            root = reader.getVectorSchemaRoot();
+        } catch( InvalidArrowFileException ex ) {
+            close();
+            throw new IOException( file + " is not an Arrow file.", ex );
+        } catch( IOException | RuntimeException ex ) {
+            close();
+            throw ex;
+        }
+
+        for( Field field : root.getSchema().getFields() ) {
+            schema.put( field.getName(), ColumnarFormat.typeOf( field, reader ) );
+        }
+        List<String> names = new ArrayList<>( schema.keySet() );
+        List<String> selected = columns != null ? new ArrayList<>( new LinkedHashSet<>( columns ) ) : names;
+        vectors = new FieldVector[ selected.size() ];
+        types = new ColumnType[ selected.size() ];
+        dictionaries = new FieldVector[ selected.size() ];
+        decoded = new Object[ selected.size() ][];
+        for( int i = 0; i < vectors.length; i++ ) {
+            String column = selected.get( i );
+            if( !schema.containsKey( column ) ) {
+                close();
+                throw new IllegalArgumentException( file.getName() + " has no column " + column + ", it has " + names );
+            }
+            vectors[i] = root.getVector( column );
+            types[i] = schema.get( column );
+            DictionaryEncoding encoding = vectors[i].getField().getDictionary();
+            if( encoding != null ) {
+                dictionaries[i] = reader.lookup( encoding.getId() ).getVector();
+                decoded[i] = new Object[ dictionaries[i].getValueCount() ];
+            }
+        }
+        rowSchema = RowSchema.of( selected );
+    }
+
+    /**
+     * @return every column in the file and its type, whether or not it's being read.  The type is null for columns
+     * of an Arrow type that a {@link ColumnarWriter} doesn't write.
+     */
+    public Map<String,ColumnType> getSchema() {
+        return Collections.unmodifiableMap( schema );
+    }
+
+    @Override
+    public boolean hasNext() {
+        while( next >= batchRows && !closed ) {
+            try {
+                if( reader.loadNextBatch() ) {
+                    batchRows = root.getRowCount();
+                    next = 0;
+                } else {
+                    close();
+                }
+            } catch( IOException ex ) {
+                throw new UncheckedIOException( ex );
+            }
+        }
+        return next < batchRows;
+    }
+
+    @Override
+    public Map<String,Object> next() {
+        if( !hasNext() ) throw new NoSuchElementException();
+        Object[] values = new Object[ vectors.length ];
+        for( int i = 0; i < values.length; i++ ) {
+            values[i] = dictionaries[i] != null ? decode( i ) : valueOf( types[i], vectors[i].getObject( next ) );
+        }
+        next++;
+        return new Row( rowSchema, values );
+    }
+
+    private Object decode(int column) {
+        if( vectors[column].isNull( next ) ) return null;
+        int index = (int)((BaseIntVector)vectors[column]).getValueAsLong( next );
+        Object value = decoded[column][index];
+        if( value == null ) {
+            value = valueOf( types[column], dictionaries[column].getObject( index ) );
+            decoded[column][index] = value;
+        }
+        return value;
+    }
+
+    private static Object valueOf(ColumnType type, Object value) {
+        if( value == null ) return null;
+        if( value instanceof Text ) return value.toString();
+        if( type == ColumnType.DATE ) return new Date( ((Number)value).longValue() );
+        if( type == ColumnType.LOCAL_DATE ) return LocalDate.ofEpochDay( ((Number)value).longValue() );
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if( closed ) return;
+        closed = true;
+        batchRows = 0;
+        try {
+            reader.close();
+        } finally {
+            allocator.close();
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package gratum.columnar;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.TimeStampNanoVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gratum.columnar.ColumnarFormat.DECIMAL_PRECISION;
+
+/**
+ * Writes rows to an Arrow IPC file, which a {@link ColumnarReader} or any other Arrow implementation reads back.
+ * Rows are gathered into record batches of typed column vectors and each batch is written as it fills up.  Arrow is
+ * an optional dependency of gratum, so using this needs org.apache.arrow:arrow-vector and an allocator
+ * (arrow-memory-netty or arrow-memory-unsafe) on the classpath.
+ *
+ * The columns and their types are either given up front or inferred from the first batch: every column seen in
+ * the first batch is written, with the narrowest type that holds all of its values.  Columns that only show up
+ * after the first batch aren't written.  A DECIMAL column's scale is the largest scale in the first batch.  Values
+ * are converted to their column's type, which lets text from a CSV be written as numbers, and a value that can't be
+ * converted throws an IllegalArgumentException without writing any of its row.
+ *
+ * STRING columns can be dictionary encoded, storing each distinct value once and an int index per row.  The columns
+ * are either given up front or chosen from the first batch: a STRING column is encoded when its values there repeat
+ * twice on average, like a status or a country code.  The file format only allows one dictionary per column, so each
+ * one grows as new values arrive, stays in memory, and is written after the record batches when the file is closed.
+ */
+public class ColumnarWriter implements Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+    private final File file;
+    private final int batchSize;
+    private final Collection<String> dictionaryColumns;
+    private final BufferAllocator allocator = new RootAllocator();
+
+    private String[] names;
+    private ColumnType[] types;
+    private int[] scales;
+    // rows held until the schema is inferred, then their converted values until the decimal scales are known
+    private List<Map<String,?>> firstBatch = new ArrayList<>();
+    private List<Object[]> converted = new ArrayList<>();
+
+    private VectorSchemaRoot root;
+    private FieldVector[] vectors;
+    // the dictionary and the index of each value in it for encoded columns, null for the others
+    private VarCharVector[] dictionaryVectors;
+    private List<Map<String,Integer>> dictionaryIndexes;
+    private DictionaryProvider.MapDictionaryProvider dictionaries;
+    private FileChannel channel;
+    private ArrowFileWriter writer;
+    private int size;
+    private long rows;
+
+    public ColumnarWriter(File file) {
+        this( file, null, DEFAULT_BATCH_SIZE );
+    }
+
+    /**
+     * @param schema the columns to write and their types in order, or null to infer them from the first batch.
+     * @param batchSize the number of rows in each record batch
+     */
+    public ColumnarWriter(File file, Map<String,ColumnType> schema, int batchSize) {
+        this( file, schema, batchSize, null );
+    }
+
+    /**
+     * @param schema the columns to write and their types in order, or null to infer them from the first batch.
+     * @param batchSize the number of rows in each record batch
+     * @param dictionaryColumns the STRING columns to dictionary encode, or null to choose them from the first batch.
+     */
+    public ColumnarWriter(File file, Map<String,ColumnType> schema, int batchSize, Collection<String> dictionaryColumns) {
+        if( batchSize < 1 ) throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        this.file = file;
+        this.batchSize = batchSize;
+        this.dictionaryColumns = dictionaryColumns;
+        if( schema != null ) setSchema( schema );
+    }
+
+    public void write(Map<String,?> row) throws IOException {
+        if( types == null ) {
+            firstBatch.add( row );
+            rows++;
+            if( firstBatch.size() == batchSize ) inferSchema();
+            return;
+        }
+        Object[] values = convert( row );
+        rows++;
+        if( root == null ) {
+            converted.add( values );
+            if( converted.size() == batchSize ) start();
+            return;
+        }
+        append( values );
+    }
+
+    private void inferSchema() throws IOException {
+        Map<String,ColumnType> schema = new LinkedHashMap<>();
+        for( Map<String,?> row : firstBatch ) {
+            for( Map.Entry<String,?> entry : row.entrySet() ) {
+                if( entry.getKey() == null ) continue;
+                String name = entry.getKey();
+                ColumnType type = ColumnType.of( entry.getValue() );
+                ColumnType current = schema.get( name );
+                schema.put( name, current == null ? type : current.widen( type ) );
+            }
+        }
+        // columns that were always null are written as strings
+        schema.replaceAll( (name, type) -> type != null ? type : ColumnType.STRING );
+        setSchema( schema );
+        for( Map<String,?> row : firstBatch ) {
+            converted.add( convert( row ) );
+        }
+        firstBatch = null;
+        start();
+    }
+
+    private void setSchema(Map<String,ColumnType> schema) {
+        names = schema.keySet().toArray( new String[0] );
+        types = schema.values().toArray( new ColumnType[0] );
+    }
+
+    /**
+     * Fixes the decimal scales and the dictionary encoded columns from the rows gathered so far, opens the file and
+     * writes those rows.
+     */
+    private void start() throws IOException {
+        scales = new int[ types.length ];
+        dictionaryVectors = new VarCharVector[ types.length ];
+        dictionaryIndexes = new ArrayList<>( types.length );
+        dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        List<Field> fields = new ArrayList<>( names.length );
+        for( int i = 0; i < names.length; i++ ) {
+            DictionaryEncoding encoding = null;
+            if( types[i] == ColumnType.STRING && (dictionaryColumns != null ? dictionaryColumns.contains( names[i] ) : repeats( i )) ) {
+                encoding = new DictionaryEncoding( i, false, ColumnarFormat.DICTIONARY_INDEX );
+                dictionaryVectors[i] = new VarCharVector( names[i], allocator );
+                dictionaries.put( new Dictionary( dictionaryVectors[i], encoding ) );
+            }
+            dictionaryIndexes.add( encoding != null ? new HashMap<>() : null );
+            if( types[i] == ColumnType.DECIMAL ) {
+                for( Object[] values : converted ) {
+                    if( values[i] != null ) scales[i] = Math.max( scales[i], ((BigDecimal)values[i]).scale() );
+                }
+                for( Object[] values : converted ) {
+                    if( values[i] != null ) values[i] = ((BigDecimal)values[i]).setScale( scales[i] );
+                }
+            }
+            fields.add( ColumnarFormat.field( names[i], types[i], scales[i], encoding ) );
+        }
+        root = VectorSchemaRoot.create( new Schema( fields ), allocator );
+        root.allocateNew();
+        vectors = root.getFieldVectors().toArray( new FieldVector[0] );
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+        writer = new DictionaryLastFileWriter( root, dictionaries, channel );
+        writer.start();
+
+        List<Object[]> pending = converted;
+        converted = null;
+        for( Object[] values : pending ) {
+            append( values );
+        }
+    }
+
+    /**
+     * @return true if the column's values in the rows gathered so far repeat twice on average.
+     */
+    private boolean repeats(int column) {
+        Set<Object> distinct = new HashSet<>();
+        int count = 0;
+        for( Object[] values : converted ) {
+            if( values[column] == null ) continue;
+            distinct.add( values[column] );
+            count++;
+        }
+        return !distinct.isEmpty() && distinct.size() * 2 <= count;
+    }
+
+    private void append(Object[] values) throws IOException {
+        for( int i = 0; i < vectors.length; i++ ) {
+            if( dictionaryVectors[i] != null && values[i] != null ) {
+                ((IntVector)vectors[i]).setSafe( size, indexOf( i, (String)values[i] ) );
+            } else {
+                set( vectors[i], types[i], size, values[i] );
+            }
+        }
+        size++;
+        if( size == batchSize ) flushBatch();
+    }
+
+    /**
+     * @return the value's index in the column's dictionary, adding it if it's new.
+     */
+    private int indexOf(int column, String value) {
+        Map<String,Integer> index = dictionaryIndexes.get( column );
+        Integer i = index.get( value );
+        if( i == null ) {
+            i = index.size();
+            dictionaryVectors[column].setSafe( i, value.getBytes( StandardCharsets.UTF_8 ) );
+            index.put( value, i );
+        }
+        return i;
+    }
+
+    private void flushBatch() throws IOException {
+        if( size == 0 ) return;
+        root.setRowCount( size );
+        writer.writeBatch();
+        root.allocateNew();
+        size = 0;
+    }
+
+    /**
+     * @return the values of the row as they're stored in each column's vector.
+     */
+    private Object[] convert(Map<String,?> row) {
+        Object[] values = new Object[ names.length ];
+        for( int i = 0; i < names.length; i++ ) {
+            Object value = row.get( names[i] );
+            try {
+                values[i] = convert( i, value );
+            } catch( RuntimeException ex ) {
+                throw new IllegalArgumentException( "Column " + names[i] + " can't hold " + value + ": " + ex.getMessage(), ex );
+            }
+        }
+        return values;
+    }
+
+    private Object convert(int column, Object value) {
+        ColumnType type = types[column];
+        if( value instanceof CharSequence && type != ColumnType.STRING ) {
+            String text = value.toString().trim();
+            // an empty field in text is a missing value
+            value = text.isEmpty() ? null : parse( type, text );
+        }
+        if( value == null ) return null;
+        switch( type ) {
+            case STRING:
+                return value.toString();
+            case INT:
+                return value instanceof Integer ? value : Math.toIntExact( wholeNumber( value ) );
+            case LONG:
+                return value instanceof Long ? value : wholeNumber( value );
+            case DOUBLE:
+                return number( value ).doubleValue();
+            case DECIMAL:
+                Number n = number( value );
+                BigDecimal decimal = n instanceof BigDecimal ? (BigDecimal)n
+                        : n instanceof BigInteger ? new BigDecimal( (BigInteger)n )
+                        : n instanceof Double || n instanceof Float ? BigDecimal.valueOf( n.doubleValue() )
+                        : BigDecimal.valueOf( n.longValue() );
+                // once the scale is fixed a value that needs rounding to fit it throws
+                if( scales != null ) decimal = decimal.setScale( scales[column] );
+                if( decimal.precision() > DECIMAL_PRECISION ) throw new IllegalArgumentException("more than " + DECIMAL_PRECISION + " digits");
+                return decimal;
+            case BOOLEAN:
+                if( !(value instanceof Boolean) ) throw new IllegalArgumentException("not a boolean");
+                return value;
+            case DATE:
+                if( !(value instanceof Date) ) throw new IllegalArgumentException("not a date");
+                return ((Date)value).getTime();
+            case LOCAL_DATE:
+                if( !(value instanceof LocalDate) ) throw new IllegalArgumentException("not a LocalDate");
+                return Math.toIntExact( ((LocalDate)value).toEpochDay() );
+            case LOCAL_DATE_TIME:
+                if( !(value instanceof LocalDateTime) ) throw new IllegalArgumentException("not a LocalDateTime");
+                LocalDateTime dateTime = (LocalDateTime)value;
+                return Math.addExact( Math.multiplyExact( dateTime.toEpochSecond( ZoneOffset.UTC ), 1_000_000_000L ), dateTime.getNano() );
+            default:
+                throw new IllegalArgumentException("unknown type " + type);
+        }
+    }
+
+    private static Object parse(ColumnType type, String text) {
+        switch( type ) {
+            case INT:
+            case LONG:
+                return Long.parseLong( text );
+            case DOUBLE:
+                return Double.parseDouble( text );
+            case DECIMAL:
+                return new BigDecimal( text );
+            case BOOLEAN:
+                if( text.equalsIgnoreCase("true") ) return Boolean.TRUE;
+                if( text.equalsIgnoreCase("false") ) return Boolean.FALSE;
+                throw new IllegalArgumentException("not a boolean");
+            case LOCAL_DATE:
+                return LocalDate.parse( text );
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse( text );
+            default:
+                throw new IllegalArgumentException("text can't be converted to " + type);
+        }
+    }
+
+    private static Number number(Object value) {
+        if( !(value instanceof Number) ) throw new IllegalArgumentException("not a number");
+        return (Number)value;
+    }
+
+    private static long wholeNumber(Object value) {
+        Number n = number( value );
+        if( n instanceof Double || n instanceof Float || n instanceof BigDecimal ) {
+            throw new IllegalArgumentException("not a whole number");
+        }
+        return n instanceof BigInteger ? ((BigInteger)n).longValueExact() : n.longValue();
+    }
+
+    private static void set(FieldVector vector, ColumnType type, int index, Object value) {
+        if( value == null ) {
+            if( vector instanceof BaseVariableWidthVector ) {
+                ((BaseVariableWidthVector)vector).setNull( index );
+            } else {
+                ((BaseFixedWidthVector)vector).setNull( index );
+            }
+            return;
+        }
+        switch( type ) {
+            case STRING:
+                ((VarCharVector)vector).setSafe( index, ((String)value).getBytes( StandardCharsets.UTF_8 ) );
+                break;
+            case INT:
+                ((IntVector)vector).setSafe( index, (Integer)value );
+                break;
+            case LONG:
+                ((BigIntVector)vector).setSafe( index, (Long)value );
+                break;
+            case DOUBLE:
+                ((Float8Vector)vector).setSafe( index, (Double)value );
+                break;
+            case DECIMAL:
+                ((DecimalVector)vector).setSafe( index, (BigDecimal)value );
+                break;
+            case BOOLEAN:
+                ((BitVector)vector).setSafe( index, (Boolean)value ? 1 : 0 );
+                break;
+            case DATE:
+                ((TimeStampMilliTZVector)vector).setSafe( index, (Long)value );
+                break;
+            case LOCAL_DATE:
+                ((DateDayVector)vector).setSafe( index, (Integer)value );
+                break;
+            case LOCAL_DATE_TIME:
+                ((TimeStampNanoVector)vector).setSafe( index, (Long)value );
+                break;
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the columns and their types, or null if they haven't been inferred yet.
+     */
+    public Map<String,ColumnType> getSchema() {
+        if( names == null ) return null;
+        Map<String,ColumnType> schema = new LinkedHashMap<>();
+        for( int i = 0; i < names.length; i++ ) {
+            schema.put( names[i], types[i] );
+        }
+        return schema;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if( types == null ) inferSchema();
+            if( root == null ) start();
+            flushBatch();
+            for( int i = 0; i < dictionaryVectors.length; i++ ) {
+                if( dictionaryVectors[i] != null ) dictionaryVectors[i].setValueCount( dictionaryIndexes.get( i ).size() );
+            }
+            writer.end();
+        } finally {
+            try {
+                if( writer != null ) writer.close();
+                if( channel != null ) channel.close();
+            } finally {
+                if( root != null ) root.close();
+                if( dictionaries != null ) dictionaries.close();
+                allocator.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the dictionaries once the last batch is written rather than before the first, since they keep growing
+     * until then.  Readers find dictionaries through the file's footer, so the file format allows them anywhere.
+     */
+    private static class DictionaryLastFileWriter extends ArrowFileWriter {
+
+        private final DictionaryProvider dictionaries;
+
+        DictionaryLastFileWriter(VectorSchemaRoot root, DictionaryProvider dictionaries, WritableByteChannel out) {
+            super( root, dictionaries, out );
+            this.dictionaries = dictionaries;
+        }
+
+        @Override
+        protected void ensureDictionariesWritten(DictionaryProvider provider, Set<Long> dictionaryIdsUsed) {
+        }
+
+        @Override
+        protected void endInternal(WriteChannel out) throws IOException {
+            for( long id : dictionaries.getDictionaryIds() ) {
+                writeDictionaryBatch( dictionaries.lookup( id ) );
+            }
+            super.endInternal( out );
+        }
+    }
+}
@@ -1,25 +1,41 @@
 package gratum.csv;
 
+import gratum.util.Compression;
 import org.apache.commons.io.input.BOMInputStream;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.function.Consumer;
 
 public class CSVFile implements Closeable, Iterable<List<String>> {
 
+    public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
     private File file;
     private Reader reader;
     private String separator;
-    private PrintWriter writer;
-    private String lastLine;
+    private Writer writer;
+    private CsvWriter csvWriter;
+    private FileChannel channel;
+    private long resumeOffset = -1;
+    private CsvParser parser;
+    // the byte in the file the parser's input starts at, or -1 if bytes can't be counted (ie compressed or a stream)
+    private long parserStart = -1;
+    private boolean trackOffset = false;
 
     private int rows = 0;
     private List<String> columnHeaders;
     private boolean escaped = true;
     private boolean writeBom = false;
+    private boolean minimalQuoting = false;
+    private int gzipThreads = 0;
+    private int parallelism = 1;
+    private boolean ordered = true;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
 
     public CSVFile(String filename, String separator) {
         this( new File(filename), separator );
@@ -35,46 +51,133 @@ public class CSVFile implements Closeable, Iterable<List<String>> {
         this.separator = separator;
     }
 
-    public CSVFile(PrintWriter out, String separator) {
+    public CSVFile(Writer out, String separator) {
         this.writer = out;
         this.separator = separator;
     }
 
+    public CSVFile(PrintWriter out, String separator) {
+        this( (Writer)out, separator );
+    }
+
     public void setEscaped(boolean escaped) {
         this.escaped = escaped;
     }
 
+    public boolean isEscaped() {
+        return escaped;
+    }
+
+    /**
+     * Parse files using multiple threads.  The file is memory mapped and split into chunks that are parsed on a
+     * ForkJoinPool with the given parallelism while rows are handed to the {@link CSVReader} on the calling
+     * thread.  This only applies to UTF-8 files (ie not a Reader), and when escaped the separator must be an ASCII
+     * character.  Otherwise the file is parsed on a single thread.
+     *
+     * @param parallelism the number of threads to parse with, 1 or less parses on the calling thread
+     * @param ordered true to receive rows in the order they appear in the file, false to receive each chunk of
+     *                rows as soon as it's parsed.
+     */
+    public void setParallelism(int parallelism, boolean ordered) {
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param chunkSize the approximate number of bytes in each chunk when parsing in parallel
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
     public int parse( CSVReader callback ) throws IOException {
+        if( parallelism > 1 && ParallelCsvParser.supports(this) ) {
+            return new ParallelCsvParser( this, parallelism, ordered, chunkSize ).parse( callback );
+        }
         return parse(getReader(), callback);
     }
 
+    /**
+     * Parses the file starting at a byte offset returned by {@link #getOffset()} during an earlier parse instead of
+     * from the beginning.  The header isn't read so the column headers must be set.
+     *
+     * @param firstRow the row number of the first row parsed
+     */
+    public int parse( CSVReader callback, long offset, int firstRow ) throws IOException {
+        if( file == null || Compression.isCompressed(file) ) {
+            throw new IllegalStateException( getName() + ": Only an uncompressed file can be parsed from an offset." );
+        }
+        if( columnHeaders == null ) {
+            throw new IllegalStateException( getName() + ": The column headers must be set to parse from an offset." );
+        }
+        FileInputStream in = new FileInputStream( file );
+        in.getChannel().position( offset );
+        reader = new InputStreamReader( new BufferedInputStream( in, Compression.BUFFER_SIZE ), StandardCharsets.UTF_8 );
+        parserStart = offset;
+        return parse( reader, callback, firstRow );
+    }
+
     protected Reader getReader() throws IOException {
         if( file != null ) {
-            BOMInputStream bom = new BOMInputStream(new FileInputStream(file));
+            BOMInputStream bom = new BOMInputStream(Compression.open(file));
             reader = bom.hasBOM() ? new InputStreamReader(bom, bom.getBOMCharsetName()) : new InputStreamReader(bom, StandardCharsets.UTF_8);
+            boolean utf8 = !bom.hasBOM() || StandardCharsets.UTF_8.name().equals( bom.getBOMCharsetName() );
+            parserStart = utf8 && !Compression.isCompressed(file) ? (bom.hasBOM() ? bom.getBOM().length() : 0) : -1;
             return reader;
         } else {
             return reader;
         }
     }
 
+    /**
+     * Keeps count of the bytes parsed so {@link #getOffset()} can say where the next row starts.  Offsets are only
+     * counted for uncompressed UTF-8 files parsed on a single thread.
+     */
+    public void setTrackOffset(boolean trackOffset) {
+        this.trackOffset = trackOffset;
+    }
+
+    /**
+     * @return while the file is being parsed, the byte offset of the row after the last one passed to the
+     * {@link CSVReader}, which can be given to {@link #parse(CSVReader, long, int)} to carry on from there.  -1 if the
+     * offset isn't known.
+     */
+    public long getOffset() {
+        CsvParser current = parser;
+        if( current == null || parserStart < 0 ) return -1;
+        long offset = current.getOffset();
+        return offset < 0 ? -1 : parserStart + offset;
+    }
+
     protected int parse(Reader reader, CSVReader callback) throws IOException {
-        LineNumberReader lineNumberReader = new LineNumberReader(reader);
-        int lines = 1;
+        return parse( reader, callback, 1 );
+    }
+
+    private int parse(Reader reader, CSVReader callback, int firstRow) throws IOException {
+        CsvParser parser = newParser(reader);
+        parser.trackOffset( trackOffset && parserStart >= 0 );
+        this.parser = parser;
+        CsvRecord record = null;
+        int lines = firstRow;
         if( columnHeaders == null ) {
             try {
-                columnHeaders = readNext(lineNumberReader);
+                record = parser.next();
+                columnHeaders = record != null ? new ArrayList<>( record ) : null;
                 callback.processHeaders( columnHeaders );
                 lines++;
             } catch( Exception ex ) {
-                throw new IOException( getName() + ": Could not process header " + lines + ": " + lastLine, ex );
+                throw new IOException( getName() + ": Could not process header " + lines + ": " + textOf(record), ex );
             }
         }
 
         try {
-            List<String> row;
-            while ((row = readNext(lineNumberReader)) != null) {
-                boolean stop = callback.processRow(columnHeaders, row);
+            int line = firstRow;
+            while ((record = parser.next()) != null) {
+                boolean stop = callback.processRow(columnHeaders, record, line++);
                 if (stop) {
                     return lines;
                 }
@@ -84,11 +187,12 @@ public class CSVFile implements Closeable, Iterable<List<String>> {
         } catch( HaltPipelineException ex ) {
             throw ex;
         } catch( RuntimeException ex ) {
-            throw new RuntimeException( getName() + ": Could not parse line " + lines + ": " +  lastLine, ex );
+            throw new RuntimeException( getName() + ": Could not parse line " + lines + ": " +  textOf(record), ex );
         } catch( Exception ex ) {
-            throw new IOException( getName() + ": Could not process line " + lines + ": " + lastLine, ex );
+            throw new IOException( getName() + ": Could not process line " + lines + ": " + textOf(record), ex );
         } finally {
-            lineNumberReader.close();
+            this.parser = null;
+            parser.close();
             callback.afterProcessing();
         }
     }
@@ -97,160 +201,78 @@ public class CSVFile implements Closeable, Iterable<List<String>> {
         return file != null ? file.getName() : "<stream>";
     }
 
-    protected List<String> readNext( LineNumberReader reader ) throws IOException {
-        do {
-            lastLine = reader.readLine();
-            if( lastLine == null ) return null;
-        } while( lastLine.length() == 0 );
-
-        return escaped ? parseColumnsWithEscaping() : parseColumnsWithoutEscaping();
+    private String textOf(CsvRecord record) {
+        return record != null ? record.getText() : null;
     }
 
-    private List<String> parseColumnsWithoutEscaping() {
-        List<String> row = new ArrayList<>( columnHeaders != null ? columnHeaders.size() : 10 );
-        int columnStart = 0;
-        while( columnStart < lastLine.length() ) {
-            int index = lastLine.indexOf( separator, columnStart );
-            if( index < 0 ) {
-                row.add( columnStart == 0 ? lastLine : lastLine.substring( columnStart ) );
-                columnStart = lastLine.length();
-            } else {
-                row.add( lastLine.substring(columnStart, index ) );
-                columnStart = index + separator.length();
-            }
-        }
-        if( columnStart == lastLine.length() && lastLine.endsWith(separator) ) {
-            // we found a trailing separator issue which means we didn't get a separator
-            row.add("");
-        }
-        return row;
-    }
-
-    private List<String> parseColumnsWithEscaping() {
-        List<String> line = new ArrayList<>( columnHeaders != null ? columnHeaders.size() : 10 );
-        int columnStart = 0;
-        char sep = separator.charAt(0);
-        boolean skipSeparator = false;
-        boolean stripQuotes = false;
-        for( int i = 0; i < lastLine.length(); i++ ) {
-            char currentChar = lastLine.charAt(i);
-            if( currentChar == '"' ) {
-                if( skipSeparator && isEscaped(i) ) {
-                    i++;
-                } else {
-                    skipSeparator = !skipSeparator;
-                    stripQuotes = stripQuotes || i == columnStart;
-                }
-            } else if( !skipSeparator && sep == currentChar ) {
-                String content = stripQuotes ? lastLine.substring( columnStart + 1, i - 1 ) : lastLine.substring( columnStart, i );
-                line.add( unescape(content) );
-                columnStart = i + 1;
-                stripQuotes = false;
-            }
-        }
-
-        if( columnStart < lastLine.length() ) {
-            String content = stripQuotes ? lastLine.substring( columnStart + 1, lastLine.length() - 1 ) : lastLine.substring( columnStart );
-            line.add( unescape(content) );
-        } else {
-            // we have a trailing comma at the end without anything after it so add an empty string.
-            line.add( "" );
-        }
-
-        return line;
-    }
-
-    private boolean isEscaped(int i) {
-        return i + 1 < lastLine.length() && lastLine.charAt(i+1) == '"';
-    }
-
-    private String unescape( String input ) {
-        return input.replace("\\n", "\n").replace("\"\"", "\"");
+    /**
+     * Creates a parser over the given reader using this file's separator and escaping.
+     */
+    protected CsvParser newParser(Reader reader) {
+        return new CsvParser( reader, separator, escaped );
     }
 
     public void write( Map row, String[] columnHeaders ) throws IOException {
         if( this.columnHeaders == null ) {
             this.columnHeaders = Arrays.asList( columnHeaders );
         }
-        String[] rowArray = new String[this.columnHeaders.size()];
-        int i = 0;
-        for (String columnHeader : this.columnHeaders) {
-            rowArray[i++] = row.get(columnHeader) == null ? "" : row.get(columnHeader).toString();
-        }
-        write((Object[]) rowArray);
+        writeFields( row );
     }
 
     public void write( Map row ) throws IOException {
         if (columnHeaders == null) {
             columnHeaders = new ArrayList<>( row.keySet().size() );
-            int i = 0;
             for (Object headerKey : row.keySet()) {
                 columnHeaders.add( headerKey.toString() );
             }
         }
         if( rows == 0 ) write(columnHeaders.toArray());
-        String[] rowArray = new String[columnHeaders.size()];
-        int i = 0;
-        for (String columnHeader : columnHeaders) {
-            if (row.get(columnHeader) == null) {
-                rowArray[i++] = "";
-            } else {
-                rowArray[i++] = row.get(columnHeader).toString();
-            }
-        }
-        write((Object[]) rowArray);
+        writeFields( row );
     }
+
     public void write( Object... row ) throws IOException {
-        if( writer == null ) {
-            File parentFile = file.getParentFile();
-            if( parentFile == null ) parentFile = file.getAbsoluteFile().getParentFile();
-            if( !parentFile.exists() ) parentFile.mkdirs();
-            // make sure we write BOM since excel seems to need this to recognize UTF8
-            writer = new PrintWriter( new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8) );
-            if( writeBom ) writer.print('\ufeff');
+        CsvWriter out = getWriter();
+        for( Object value : row ) {
+            out.field( value );
         }
-        StringBuilder buffer = new StringBuilder();
-        for( int i = 0; i < row.length; i++ ) {
-            if( i > 0 ) {
-                buffer.append(separator);
-            }
-            if( row[i] != null ) {
-                buffer.append( escape( format( row[i] ) ) );
-            }
+        out.endRecord();
+        rows++;
+    }
+
+    private void writeFields( Map row ) throws IOException {
+        CsvWriter out = getWriter();
+        for( String columnHeader : columnHeaders ) {
+            out.field( row.get(columnHeader) );
         }
-        writer.println( buffer.toString() );
+        out.endRecord();
         rows++;
     }
 
-    private String format(Object o) {
-        return o.toString();
-    }
-
-    private CharSequence escape(String source) {
-        if( source.isEmpty() ) return source;
-        StringBuilder builder = new StringBuilder( source.length() + 2 );
-        builder.append('"');
-        int lastIndex = 0;
-        for( int i = 0; i < source.length(); i++ ) {
-            char c = source.charAt(i);
-            switch( c ) {
-                case '"':
-                    builder.append( source, lastIndex, i );
-                    builder.append("\"\"");
-                    lastIndex = i + 1;
-                    break;
-                case '\n':
-                    builder.append( source, lastIndex, i );
-                    builder.append("\\n");
-                    lastIndex = i + 1;
-                    break;
+    private CsvWriter getWriter() throws IOException {
+        if( csvWriter == null ) {
+            if( writer != null ) {
+                csvWriter = new CsvWriter( writer, separator, minimalQuoting );
+            } else {
+                File parentFile = file.getParentFile();
+                if( parentFile == null ) parentFile = file.getAbsoluteFile().getParentFile();
+                if( !parentFile.exists() ) parentFile.mkdirs();
+                if( gzipThreads > 0 || Compression.isCompressed(file) ) {
+                    Writer out = new OutputStreamWriter( Compression.create( file, gzipThreads ), StandardCharsets.UTF_8 );
+                    csvWriter = new CsvWriter( out, separator, minimalQuoting );
+                } else if( resumeOffset >= 0 ) {
+                    channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+                    channel.truncate( resumeOffset );
+                    channel.position( resumeOffset );
+                    csvWriter = new CsvWriter( channel, separator, minimalQuoting );
+                } else {
+                    channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE );
+                    csvWriter = new CsvWriter( channel, separator, minimalQuoting );
+                }
             }
+            // make sure we write BOM since excel seems to need this to recognize UTF8
+            if( writeBom && resumeOffset <= 0 ) csvWriter.writeBom();
         }
-        if( lastIndex < source.length() ) {
-            builder.append( source.subSequence(lastIndex, source.length() ) );
-        }
-        builder.append('"');
-        return builder.toString();
+        return csvWriter;
     }
 
     @NotNull
@@ -297,13 +319,45 @@ public class CSVFile implements Closeable, Iterable<List<String>> {
     }
 
     public void flush() {
-        if( writer != null ) {
-            writer.flush();
+        if( csvWriter != null ) {
+            try {
+                csvWriter.flush();
+            } catch( IOException ex ) {
+                throw new UncheckedIOException( ex );
+            }
         }
     }
+
+    /**
+     * Flushes the rows written so far to the file.
+     *
+     * @return the length of the file, which {@link #resume(long, int)} can carry on writing from.
+     */
+    public long checkpoint() throws IOException {
+        if( writer != null || gzipThreads > 0 || Compression.isCompressed(file) ) {
+            throw new IllegalStateException( getName() + ": Only an uncompressed file can be checkpointed." );
+        }
+        if( csvWriter == null ) return Math.max( resumeOffset, 0 );
+        csvWriter.flush();
+        return channel.position();
+    }
+
+    /**
+     * Carries on writing a file that was checkpointed rather than overwriting it.  Everything after the offset is
+     * truncated when the file is opened.
+     *
+     * @param offset the length returned by {@link #checkpoint()}
+     * @param rows the rows, including the header, written before the offset
+     */
+    public void resume(long offset, int rows) {
+        if( csvWriter != null ) throw new IllegalStateException( getName() + ": Can't resume a file that's already been written to." );
+        this.resumeOffset = offset;
+        this.rows = rows;
+    }
     public void close() throws IOException {
-        if( writer != null ) {
-            flush();
+        if( csvWriter != null ) {
+            csvWriter.close();
+        } else if( writer != null ) {
             writer.close();
         }
         if( reader != null ) {
@@ -342,4 +396,26 @@ public class CSVFile implements Closeable, Iterable<List<String>> {
     public void setWriteBom(boolean writeBom) {
         this.writeBom = writeBom;
     }
+
+    /**
+     * Only quote the fields that need it, ie those containing the separator, a quote or a carriage return, instead
+     * of every non-empty field.
+     */
+    public void setMinimalQuoting(boolean minimalQuoting) {
+        this.minimalQuoting = minimalQuoting;
+    }
+
+    public boolean isMinimalQuoting() {
+        return minimalQuoting;
+    }
+
+    /**
+     * Gzip the file as it's written, compressing blocks on the given number of threads.  Files ending in .gz, .bz2,
+     * .xz or .zst are compressed without this, and read back decompressed.
+     *
+     * @param threads the number of threads to compress with, 0 turns it off
+     */
+    public void setGzip(int threads) {
+        this.gzipThreads = threads;
+    }
 }
@@ -12,5 +12,16 @@ public interface CSVReader {
     /* Return true to stop parsing csv */
     public boolean processRow( List<String> header, List<String> row ) throws Exception;
 
+    /**
+     * Called for each row with the row's position within the file (ie 1 is the first row after the header).
+     * When a file is parsed in parallel and unordered rows can arrive out of order, so the line is passed
+     * along with the row.  Defaults to {@link #processRow(List, List)}.
+     *
+     * Return true to stop parsing csv
+     */
+    public default boolean processRow( List<String> header, List<String> row, int line ) throws Exception {
+        return processRow( header, row );
+    }
+
     public default void afterProcessing() {};
 }
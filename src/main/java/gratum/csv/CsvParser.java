@@ -0,0 +1,378 @@
+package gratum.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A state machine parser that reads records directly out of a large char[] buffer that's reused for the
+ * whole file.  Rather than reading a line and splitting it the parser records where each field starts and
+ * ends within the buffer, and returns a {@link CsvRecord} that only creates Strings for the fields that are
+ * actually accessed.
+ *
+ * When escaped, fields may be quoted, and quoted fields may contain separators, doubled quotes, and line
+ * breaks so a single record can span multiple lines.  The escaped newline sequence written by
+ * {@link CSVFile#write(Object...)} (ie \n) is converted back into a newline.  When not escaped the separator
+ * may be more than one character and fields are split on it verbatim.  Blank lines are skipped in both modes.
+ */
+public class CsvParser implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int PROTECTED = 4;
+    private static final int QUOTE_IN_PROTECTED = 5;
+
+    private final Reader reader;
+    private final char[] separator;
+    private final boolean escaped;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private int shift;
+    private boolean eof;
+    private boolean skipLineFeed;
+    private int line;
+    private boolean trackOffset;
+    private long discarded;
+
+    private int recordStart;
+    private int recordEnd;
+    private int recordLine;
+    private int fields;
+    private int[] offsets = new int[32];
+    private byte[] flags = new byte[16];
+    private final List<CsvRecord> outstanding = new ArrayList<>();
+
+    public CsvParser(Reader reader, String separator, boolean escaped) {
+        this( reader, separator, escaped, DEFAULT_BUFFER_SIZE );
+    }
+
+    public CsvParser(Reader reader, String separator, boolean escaped, int bufferSize) {
+        if( separator == null || separator.isEmpty() ) throw new IllegalArgumentException("A separator is required.");
+        this.reader = reader;
+        this.separator = escaped ? new char[] { separator.charAt(0) } : separator.toCharArray();
+        this.escaped = escaped;
+        this.buffer = new char[ Math.max( 16, bufferSize ) ];
+    }
+
+    /**
+     * Creates a parser over characters that have already been read.  The array is used as the parser's buffer
+     * so it's never copied or reused.
+     *
+     * @param line the number of lines in the source that precede the given characters
+     */
+    CsvParser(char[] chars, int offset, int length, String separator, boolean escaped, int line) {
+        this( null, separator, escaped, 16 );
+        this.buffer = chars;
+        this.position = offset;
+        this.limit = offset + length;
+        this.eof = true;
+        this.line = line;
+    }
+
+    /**
+     * Reads the next record skipping over any blank lines.
+     *
+     * @return the next record or null if the end of the input has been reached.
+     */
+    public CsvRecord next() throws IOException {
+        while( escaped ? parseEscaped() : parseUnescaped() ) {
+            if( fields > 0 ) {
+                CsvRecord record = new CsvRecord( buffer, recordStart, recordEnd - recordStart,
+                        Arrays.copyOf( offsets, fields * 2 ), Arrays.copyOf( flags, fields ), fields, recordLine );
+                outstanding.add( record );
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts the UTF-8 bytes of the characters parsed so {@link #getOffset()} can say where in the input the next
+     * record starts.  It costs a pass over every character, so it's off unless asked for.
+     */
+    public void trackOffset(boolean track) {
+        this.trackOffset = track;
+    }
+
+    /**
+     * @return the number of bytes, encoded as UTF-8, from where this parser started to the record after the last one
+     * returned, or -1 if offsets aren't being tracked.
+     */
+    public long getOffset() {
+        return trackOffset ? discarded + utf8Length( buffer, 0, position ) : -1;
+    }
+
+    private static long utf8Length(char[] chars, int start, int end) {
+        long length = 0;
+        for( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            // each half of a surrogate pair is 2 of the pair's 4 bytes
+            length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate( c ) ? 2 : 3;
+        }
+        return length;
+    }
+
+    /**
+     * @return the number of lines consumed so far including blank lines and lines within quoted fields.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    private boolean parseEscaped() throws IOException {
+        startRecord();
+        char sep = separator[0];
+        int state = FIELD_START;
+        int fieldStart = position;
+        byte fieldFlags = 0;
+        int i = position;
+        while( true ) {
+            if( i >= limit ) {
+                boolean more = fill();
+                i -= shift;
+                fieldStart -= shift;
+                if( !more ) {
+                    if( i == recordStart ) return false;
+                    switch( state ) {
+                        case FIELD_START:
+                            addField( i, i, (byte)0 );
+                            break;
+                        case QUOTED:
+                            // unterminated quote so there isn't a closing quote to drop
+                            addField( fieldStart, i, (byte)(fieldFlags | CsvRecord.UNESCAPE) );
+                            break;
+                        default:
+                            addField( fieldStart, i, fieldFlags );
+                    }
+                    endRecord( i, i, false );
+                    return true;
+                }
+                continue;
+            }
+
+            char c = buffer[i];
+            switch( state ) {
+                case FIELD_START:
+                    if( c == '"' ) {
+                        state = QUOTED;
+                        fieldStart = i + 1;
+                        fieldFlags = CsvRecord.QUOTED;
+                        i++;
+                        continue;
+                    } else if( c == '\n' || c == '\r' ) {
+                        // a blank line, or a trailing separator means there's one more empty field
+                        if( i > recordStart ) addField( i, i, (byte)0 );
+                        endRecord( i, i + 1, c == '\r' );
+                        return true;
+                    }
+                    // the first character of an unquoted field, which is only a separator when the field is empty
+                    fieldStart = i;
+                    fieldFlags = 0;
+                    if( c == sep ) {
+                        addField( i, i, fieldFlags );
+                    } else {
+                        if( c == '\\' ) fieldFlags = CsvRecord.UNESCAPE;
+                        state = UNQUOTED;
+                    }
+                    i++;
+                    break;
+                case UNQUOTED:
+                    if( c == sep ) {
+                        addField( fieldStart, i, fieldFlags );
+                        state = FIELD_START;
+                    } else if( c == '\n' || c == '\r' ) {
+                        addField( fieldStart, i, fieldFlags );
+                        endRecord( i, i + 1, c == '\r' );
+                        return true;
+                    } else if( c == '"' ) {
+                        // quotes within an unquoted field protect separators until the next quote
+                        fieldFlags |= CsvRecord.UNESCAPE;
+                        state = PROTECTED;
+                    } else if( c == '\\' ) {
+                        fieldFlags |= CsvRecord.UNESCAPE;
+                    }
+                    i++;
+                    break;
+                case QUOTED:
+                    if( c == '"' ) {
+                        state = QUOTE_IN_QUOTED;
+                    } else if( c == '\\' ) {
+                        fieldFlags |= CsvRecord.UNESCAPE;
+                    } else if( c == '\n' ) {
+                        if( buffer[i - 1] != '\r' ) line++;
+                    } else if( c == '\r' ) {
+                        line++;
+                    }
+                    i++;
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if( c == '"' ) {
+                        fieldFlags |= CsvRecord.UNESCAPE;
+                        state = QUOTED;
+                        i++;
+                    } else if( c == sep ) {
+                        addField( fieldStart, i, fieldFlags );
+                        state = FIELD_START;
+                        i++;
+                    } else if( c == '\n' || c == '\r' ) {
+                        addField( fieldStart, i, fieldFlags );
+                        endRecord( i, i + 1, c == '\r' );
+                        return true;
+                    } else {
+                        // text following the closing quote is kept as part of the field
+                        fieldFlags |= CsvRecord.UNESCAPE;
+                        state = UNQUOTED;
+                    }
+                    break;
+                case PROTECTED:
+                    if( c == '"' ) {
+                        state = QUOTE_IN_PROTECTED;
+                    } else if( c == '\n' || c == '\r' ) {
+                        addField( fieldStart, i, fieldFlags );
+                        endRecord( i, i + 1, c == '\r' );
+                        return true;
+                    }
+                    i++;
+                    break;
+                case QUOTE_IN_PROTECTED:
+                    if( c == '"' ) {
+                        state = PROTECTED;
+                        i++;
+                    } else {
+                        state = UNQUOTED;
+                    }
+                    break;
+            }
+            if( state == FIELD_START ) {
+                fieldStart = i;
+                fieldFlags = 0;
+            }
+        }
+    }
+
+    private boolean parseUnescaped() throws IOException {
+        startRecord();
+        int fieldStart = position;
+        int i = position;
+        while( true ) {
+            if( i + separator.length > limit && !eof ) {
+                boolean more = fill();
+                i -= shift;
+                fieldStart -= shift;
+                if( more ) continue;
+            }
+            if( i >= limit ) {
+                if( i == recordStart ) return false;
+                addField( fieldStart, i, (byte)0 );
+                endRecord( i, i, false );
+                return true;
+            }
+
+            char c = buffer[i];
+            if( c == '\n' || c == '\r' ) {
+                if( i > recordStart ) addField( fieldStart, i, (byte)0 );
+                endRecord( i, i + 1, c == '\r' );
+                return true;
+            } else if( c == separator[0] && matchesSeparator( i ) ) {
+                addField( fieldStart, i, (byte)0 );
+                i += separator.length;
+                fieldStart = i;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private boolean matchesSeparator(int i) {
+        if( i + separator.length > limit ) return false;
+        for( int j = 1; j < separator.length; j++ ) {
+            if( buffer[i + j] != separator[j] ) return false;
+        }
+        return true;
+    }
+
+    private void startRecord() throws IOException {
+        if( skipLineFeed ) {
+            skipLineFeed = false;
+            recordStart = position;
+            if( position >= limit ) fill();
+            if( position < limit && buffer[position] == '\n' ) position++;
+        }
+        recordStart = position;
+        recordLine = line + 1;
+        fields = 0;
+    }
+
+    private void endRecord(int end, int next, boolean carriageReturn) {
+        recordEnd = end;
+        position = next;
+        skipLineFeed = carriageReturn;
+        line++;
+    }
+
+    private void addField(int start, int end, byte fieldFlags) {
+        if( fields == flags.length ) {
+            flags = Arrays.copyOf( flags, fields * 2 );
+            offsets = Arrays.copyOf( offsets, fields * 4 );
+        }
+        offsets[ fields * 2 ] = start - recordStart;
+        offsets[ fields * 2 + 1 ] = end - recordStart;
+        flags[ fields ] = fieldFlags;
+        fields++;
+    }
+
+    /**
+     * Reads more characters into the buffer.  If the buffer is full the current record is moved to the front
+     * of the buffer (or the buffer is grown if the record fills it), and shift is set to the distance the
+     * record moved so the caller can adjust its positions.
+     *
+     * @return false when the end of the input has been reached.
+     */
+    private boolean fill() throws IOException {
+        shift = 0;
+        if( eof ) return false;
+        if( limit == buffer.length ) {
+            if( recordStart > 0 ) {
+                // records already returned still point into the part of the buffer we're about to overwrite
+                for( CsvRecord record : outstanding ) {
+                    record.detach();
+                }
+                outstanding.clear();
+                if( trackOffset ) discarded += utf8Length( buffer, 0, recordStart );
+                shift = recordStart;
+                System.arraycopy( buffer, recordStart, buffer, 0, limit - recordStart );
+                limit -= shift;
+                position -= shift;
+                recordStart = 0;
+            } else {
+                // the old buffer is left to the records that point into it
+                buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+                outstanding.clear();
+            }
+        }
+        int read;
+        do {
+            read = reader.read( buffer, limit, buffer.length - limit );
+        } while( read == 0 );
+        if( read < 0 ) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if( reader != null ) reader.close();
+    }
+}
@@ -0,0 +1,135 @@
+package gratum.csv;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A single record returned by {@link CsvParser}.  The record holds the offsets of each field within
+ * the parser's buffer, and a field is only turned into a String (and unescaped) the first time it's
+ * accessed.  Once materialized the String is cached.
+ *
+ * Before the parser reuses the region of its buffer a record points into, it detaches the record by
+ * copying the record's characters, so records stay valid after the parser has moved on.
+ */
+public class CsvRecord extends AbstractList<String> implements RandomAccess {
+
+    static final byte QUOTED = 1;
+    static final byte UNESCAPE = 2;
+
+    private char[] chars;
+    private int base;
+    private final int length;
+    private final int[] offsets;
+    private final byte[] flags;
+    private final String[] values;
+    private final int line;
+
+    CsvRecord(char[] chars, int base, int length, int[] offsets, byte[] flags, int size, int line) {
+        this.chars = chars;
+        this.base = base;
+        this.length = length;
+        this.offsets = offsets;
+        this.flags = flags;
+        this.values = new String[size];
+        this.line = line;
+    }
+
+    @Override
+    public String get(int index) {
+        String value = values[index];
+        if( value == null ) {
+            value = materialize( index );
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String set(int index, String element) {
+        String previous = get( index );
+        values[index] = element;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return the line within the source where this record started (1 based).
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the raw text of this record as it appeared in the source without its line terminator.
+     */
+    public String getText() {
+        return new String( chars, base, length );
+    }
+
+    /**
+     * Copies this record's characters out of the parser's buffer.  It's copied even when every field has been
+     * materialized because {@link #getText()} still reads the characters.
+     */
+    void detach() {
+        if( chars != null ) {
+            char[] copy = new char[ length ];
+            System.arraycopy( chars, base, copy, 0, length );
+            chars = copy;
+            base = 0;
+        }
+    }
+
+    /**
+     * Materializes every field so later reads don't do any parsing work.
+     */
+    void materializeAll() {
+        for( int i = 0; i < values.length; i++ ) {
+            get( i );
+        }
+    }
+
+    private String materialize(int index) {
+        int start = base + offsets[ index * 2 ];
+        int end = base + offsets[ index * 2 + 1 ];
+        byte flag = flags[index];
+        if( (flag & QUOTED) != 0 ) {
+            if( (flag & UNESCAPE) == 0 ) {
+                // the common case "value", drop the closing quote
+                return new String( chars, start, end - start - 1 );
+            }
+            return unescape( start, end, true );
+        } else if( (flag & UNESCAPE) != 0 ) {
+            return unescape( start, end, false );
+        }
+        return start == end ? "" : new String( chars, start, end - start );
+    }
+
+    /**
+     * Replaces the escaped newline sequence (ie \n) with a newline and doubled quotes with a single quote.  Within
+     * a quoted field a lone quote is the closing quote so it's dropped.
+     */
+    private String unescape(int start, int end, boolean quoted) {
+        StringBuilder builder = new StringBuilder( end - start );
+        for( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            if( c == '"' ) {
+                if( i + 1 < end && chars[i + 1] == '"' ) {
+                    builder.append('"');
+                    i++;
+                } else if( !quoted ) {
+                    builder.append(c);
+                }
+            } else if( c == '\\' && i + 1 < end && chars[i + 1] == 'n' ) {
+                builder.append('\n');
+                i++;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
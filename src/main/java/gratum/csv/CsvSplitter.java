@@ -0,0 +1,210 @@
+package gratum.csv;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Splits a memory mapped file into byte ranges that begin and end on record boundaries.  Finding a
+ * boundary means knowing whether a line break is inside a quoted field, so the splitter runs the same
+ * state machine as {@link CsvParser} over the raw bytes.  That's much cheaper than parsing because no
+ * characters are decoded and nothing is allocated.  It also counts the records and lines that precede
+ * each chunk so the chunks can be parsed independently and still report correct line numbers.
+ *
+ * The bytes are copied out of the mapping a block at a time and scanned as a byte[].  The bytes the state
+ * machine cares about (quote, separator, CR, and LF) are all ASCII, so this works with any ASCII compatible
+ * encoding like UTF-8.
+ */
+final class CsvSplitter {
+
+    static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    static final int BLOCK_SIZE = 256 * 1024;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int PROTECTED = 4;
+    private static final int QUOTE_IN_PROTECTED = 5;
+
+    private final FileChannel channel;
+    private final long size;
+    private final boolean escaped;
+    private final byte separator;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+    private final byte[] block = new byte[ BLOCK_SIZE ];
+    private long blockStart;
+    private int blockLength;
+
+    private long position;
+    private long records;
+    private int lines;
+
+    /**
+     * @param start the offset of the first byte after any byte order mark
+     * @param separator the separator character, which must be ASCII when escaped
+     */
+    CsvSplitter(FileChannel channel, long start, char separator, boolean escaped) throws IOException {
+        if( escaped && separator > 0x7f ) throw new IllegalArgumentException("The separator must be an ASCII character.");
+        this.channel = channel;
+        this.size = channel.size();
+        this.position = start;
+        this.escaped = escaped;
+        this.separator = escaped ? (byte)separator : (byte)'\n';
+    }
+
+    /**
+     * Finds the next chunk.  The chunk ends at the first record boundary at or beyond the given size, and
+     * always contains at least one record unless the rest of the file is blank lines.
+     *
+     * @param target the minimum size of the chunk in bytes
+     * @return the next chunk or null if the end of the file has been reached
+     */
+    Chunk next(long target) throws IOException {
+        if( position >= size ) return null;
+        long start = position;
+        long firstRecord = records;
+        int firstLine = lines;
+        int state = FIELD_START;
+        boolean content = false;
+        boolean skipLineFeed = false;
+        byte previous = 0;
+        long pos = start;
+        while( pos < size ) {
+            if( pos < blockStart || pos >= blockStart + blockLength ) load( pos );
+            // scan the block with locals so the loop doesn't touch fields or check the window per byte
+            byte[] bytes = block;
+            int length = blockLength;
+            int i = (int)(pos - blockStart);
+            for( ; i < length; i++ ) {
+                byte b = bytes[i];
+                if( skipLineFeed ) {
+                    skipLineFeed = false;
+                    if( b == '\n' ) {
+                        previous = b;
+                        continue;
+                    }
+                }
+                boolean end = false;
+                switch( state ) {
+                    case FIELD_START:
+                        if( b == '\n' || b == '\r' ) {
+                            end = true;
+                            break;
+                        }
+                        content = true;
+                        if( escaped && b == '"' ) {
+                            state = QUOTED;
+                        } else if( !escaped || b != separator ) {
+                            // a separator straight away is an empty field so the next field starts after it
+                            state = UNQUOTED;
+                        }
+                        break;
+                    case UNQUOTED:
+                        if( b == '\n' || b == '\r' ) {
+                            end = true;
+                        } else if( escaped ) {
+                            if( b == separator ) {
+                                state = FIELD_START;
+                            } else if( b == '"' ) {
+                                state = PROTECTED;
+                            }
+                        }
+                        break;
+                    case QUOTED:
+                        if( b == '"' ) {
+                            state = QUOTE_IN_QUOTED;
+                        } else if( b == '\r' || (b == '\n' && previous != '\r') ) {
+                            lines++;
+                        }
+                        break;
+                    case QUOTE_IN_QUOTED:
+                    case QUOTE_IN_PROTECTED:
+                        if( b == '"' ) {
+                            state = state == QUOTE_IN_QUOTED ? QUOTED : PROTECTED;
+                        } else if( b == separator ) {
+                            state = FIELD_START;
+                        } else if( b == '\n' || b == '\r' ) {
+                            end = true;
+                        } else {
+                            state = UNQUOTED;
+                        }
+                        break;
+                    case PROTECTED:
+                        if( b == '"' ) {
+                            state = QUOTE_IN_PROTECTED;
+                        } else if( b == '\n' || b == '\r' ) {
+                            end = true;
+                        }
+                        break;
+                }
+                previous = b;
+                if( end ) {
+                    lines++;
+                    if( content ) records++;
+                    content = false;
+                    state = FIELD_START;
+                    skipLineFeed = b == '\r';
+                    long next = blockStart + i + 1;
+                    if( records > firstRecord && next - start >= target ) {
+                        if( skipLineFeed && next < size && byteAt( next ) == '\n' ) next++;
+                        position = next;
+                        return new Chunk( start, next, firstRecord, firstLine );
+                    }
+                }
+            }
+            pos = blockStart + length;
+        }
+        if( content ) {
+            // the last record didn't end with a line break
+            records++;
+            lines++;
+        }
+        position = size;
+        return new Chunk( start, size, firstRecord, firstLine );
+    }
+
+    private byte byteAt(long pos) throws IOException {
+        if( pos < blockStart || pos >= blockStart + blockLength ) load( pos );
+        return block[ (int)(pos - blockStart) ];
+    }
+
+    /**
+     * Copies the block of bytes starting at pos out of the mapped window, mapping a new window if pos is
+     * outside the current one.
+     */
+    private void load(long pos) throws IOException {
+        if( window == null || pos < windowStart || pos >= windowEnd ) {
+            windowStart = pos;
+            windowEnd = Math.min( size, pos + WINDOW_SIZE );
+            window = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart );
+        }
+        int offset = (int)(pos - windowStart);
+        blockLength = (int)Math.min( block.length, windowEnd - pos );
+        window.position( offset );
+        window.get( block, 0, blockLength );
+        blockStart = pos;
+    }
+
+    /**
+     * A range of bytes within the file that holds whole records.
+     */
+    static final class Chunk {
+        final long start;
+        final long end;
+        /** the number of records, including the header, that come before this chunk */
+        final long firstRecord;
+        /** the number of lines that come before this chunk */
+        final int firstLine;
+
+        Chunk(long start, long end, long firstRecord, int firstLine) {
+            this.start = start;
+            this.end = end;
+            this.firstRecord = firstRecord;
+            this.firstLine = firstLine;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package gratum.csv;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes records straight into a large char[] buffer that's reused for the whole file, so no Strings or
+ * StringBuilders are created per field.  When the buffer fills it's encoded as UTF-8 into a reused byte buffer and
+ * written to a FileChannel, or handed to a Writer as is.
+ *
+ * Fields are escaped the way {@link CsvParser} reads them: quotes are doubled and newlines are written as \n.  By
+ * default every non-empty field is quoted.  With minimal quoting a field is only quoted when it contains the
+ * separator, a quote or a carriage return, which makes most files noticeably smaller.
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final FileChannel channel;
+    private final Writer writer;
+    private final char[] separator;
+    private final boolean minimalQuoting;
+    private final char[] buffer;
+    private final char[] digits = new char[20];
+    private int position;
+    private boolean firstField = true;
+
+    private CharsetEncoder encoder;
+    private ByteBuffer bytes;
+
+    public CsvWriter(FileChannel channel, String separator, boolean minimalQuoting) {
+        this( channel, null, separator, minimalQuoting, DEFAULT_BUFFER_SIZE );
+    }
+
+    public CsvWriter(Writer writer, String separator, boolean minimalQuoting) {
+        this( null, writer, separator, minimalQuoting, DEFAULT_BUFFER_SIZE );
+    }
+
+    private CsvWriter(FileChannel channel, Writer writer, String separator, boolean minimalQuoting, int bufferSize) {
+        this.channel = channel;
+        this.writer = writer;
+        this.separator = separator.toCharArray();
+        this.minimalQuoting = minimalQuoting;
+        this.buffer = new char[ Math.max( bufferSize, 64 ) ];
+        if( channel != null ) {
+            this.encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput( CodingErrorAction.REPLACE )
+                    .onUnmappableCharacter( CodingErrorAction.REPLACE );
+            this.bytes = ByteBuffer.allocate( buffer.length * 3 );
+        }
+    }
+
+    /**
+     * Writes the byte order mark Excel looks for to recognize UTF-8.
+     */
+    public void writeBom() throws IOException {
+        write( '\ufeff' );
+    }
+
+    /**
+     * Writes the next field of the current record.  Null is written as an empty field.
+     */
+    public void field(Object value) throws IOException {
+        if( !firstField ) write( separator );
+        firstField = false;
+        if( value == null ) return;
+        if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+            // digits never need quoting, so they only get quotes when everything does
+            if( !minimalQuoting ) write( '"' );
+            writeLong( ((Number)value).longValue() );
+            if( !minimalQuoting ) write( '"' );
+        } else {
+            writeText( value instanceof CharSequence ? (CharSequence)value : value.toString() );
+        }
+    }
+
+    /**
+     * Ends the current record.
+     */
+    public void endRecord() throws IOException {
+        write( LINE_SEPARATOR );
+        firstField = true;
+    }
+
+    private void writeText(CharSequence text) throws IOException {
+        int length = text.length();
+        if( length == 0 ) return;
+        boolean quoted = !minimalQuoting || needsQuotes( text );
+        if( quoted ) write( '"' );
+        for( int i = 0; i < length; i++ ) {
+            char c = text.charAt( i );
+            if( position + 2 > buffer.length ) drain();
+            if( c == '"' ) {
+                buffer[position++] = '"';
+                buffer[position++] = '"';
+            } else if( c == '\n' ) {
+                buffer[position++] = '\\';
+                buffer[position++] = 'n';
+            } else {
+                buffer[position++] = c;
+            }
+        }
+        if( quoted ) write( '"' );
+    }
+
+    private boolean needsQuotes(CharSequence text) {
+        for( int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt( i );
+            if( c == '"' || c == '\r' ) return true;
+            for( char s : separator ) {
+                if( c == s ) return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if( value == Long.MIN_VALUE ) {
+            write( Long.toString( value ) );
+            return;
+        }
+        if( buffer.length - position < 20 ) drain();
+        if( value < 0 ) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char)('0' + value % 10);
+            value /= 10;
+        } while( value != 0 );
+        int count = digits.length - i;
+        System.arraycopy( digits, i, buffer, position, count );
+        position += count;
+    }
+
+    private void write(char c) throws IOException {
+        if( position == buffer.length ) drain();
+        buffer[position++] = c;
+    }
+
+    private void write(char[] chars) throws IOException {
+        if( buffer.length - position < chars.length ) drain();
+        System.arraycopy( chars, 0, buffer, position, chars.length );
+        position += chars.length;
+    }
+
+    private void write(String text) throws IOException {
+        if( buffer.length - position < text.length() ) drain();
+        text.getChars( 0, text.length(), buffer, position );
+        position += text.length();
+    }
+
+    private void drain() throws IOException {
+        if( position == 0 ) return;
+        if( writer != null ) {
+            writer.write( buffer, 0, position );
+            position = 0;
+            return;
+        }
+        CharBuffer chars = CharBuffer.wrap( buffer, 0, position );
+        CoderResult result = encoder.encode( chars, bytes, false );
+        if( result.isError() ) result.throwException();
+        writeBytes();
+        // a high surrogate at the very end waits for the rest of its pair
+        int remaining = chars.remaining();
+        if( remaining > 0 ) System.arraycopy( buffer, chars.position(), buffer, 0, remaining );
+        position = remaining;
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while( bytes.hasRemaining() ) {
+            channel.write( bytes );
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if( writer != null ) writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if( channel != null ) {
+                CharBuffer chars = CharBuffer.wrap( buffer, 0, position );
+                CoderResult result = encoder.encode( chars, bytes, true );
+                if( result.isError() ) result.throwException();
+                encoder.flush( bytes );
+                writeBytes();
+                position = 0;
+            } else {
+                flush();
+            }
+        } finally {
+            if( channel != null ) channel.close();
+            if( writer != null ) writer.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package gratum.csv;
+
+import gratum.util.Compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a UTF-8 file by memory mapping it, splitting it into chunks aligned on record boundaries with a
+ * {@link CsvSplitter} on a thread of its own, and parsing those chunks on a ForkJoinPool.  The callback is
+ * always invoked from the thread that called {@link #parse(CSVReader)}, so only the splitting and parsing happen
+ * in parallel.  Rows are handed to the callback in file order when ordered, otherwise each chunk is handed over
+ * as soon as it's parsed.  Either way the line given to the callback is the row's position within the file just
+ * like a sequential parse.
+ */
+class ParallelCsvParser {
+
+    private static final AtomicInteger SPLITTERS = new AtomicInteger();
+
+    private final CSVFile csv;
+    private final File file;
+    private final int parallelism;
+    private final boolean ordered;
+    private final long chunkSize;
+
+    ParallelCsvParser(CSVFile csv, int parallelism, boolean ordered, long chunkSize) {
+        this.csv = csv;
+        this.file = csv.getFile();
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return true if the file can be split on raw bytes.  The separator has to be a single byte when escaped, and
+     * compressed files can only be read from the start.
+     */
+    static boolean supports(CSVFile csv) {
+        return csv.getFile() != null && !Compression.isCompressed(csv.getFile()) && (!csv.isEscaped() || csv.getSeparator().charAt(0) < 0x80);
+    }
+
+    int parse(CSVReader callback) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool( parallelism );
+        int lines = 1;
+        CsvRecord record = null;
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            CsvSplitter splitter = new CsvSplitter( channel, byteOrderMark( channel ), csv.getSeparator().charAt(0), csv.isEscaped() );
+            long headerRecords = 0;
+            if( csv.getColumnHeaders() == null ) {
+                try {
+                    CsvSplitter.Chunk chunk = splitter.next( 0 );
+                    List<CsvRecord> header = chunk != null ? parseChunk( channel, chunk ) : Collections.<CsvRecord>emptyList();
+                    record = header.isEmpty() ? null : header.get(0);
+                    csv.setColumnHeaders( record != null ? new ArrayList<>( record ) : null );
+                    callback.processHeaders( csv.getColumnHeaders() );
+                    lines++;
+                    headerRecords = 1;
+                } catch( Exception ex ) {
+                    throw new IOException( file.getName() + ": Could not process header " + lines + ": " + textOf(record), ex );
+                }
+            }
+
+            int maxInFlight = parallelism * 2;
+            // the tasks in file order, which ordered takes its chunks from and anything left over is cancelled from
+            BlockingQueue<Future<ParsedChunk>> pending = new LinkedBlockingQueue<>();
+            BlockingQueue<ParsedChunk> completed = new LinkedBlockingQueue<>();
+            Semaphore permits = new Semaphore( maxInFlight );
+            AtomicBoolean stopped = new AtomicBoolean();
+            Thread splitting = new Thread( () -> split( splitter, channel, pool, pending, completed, permits, stopped ),
+                    "csv-splitter-" + SPLITTERS.incrementAndGet() );
+            splitting.setDaemon( true );
+            splitting.start();
+            long handled = 0;
+            long total = -1;
+            try {
+                while( true ) {
+                    // unordered takes whichever chunk finishes first, and the tasks are only kept for cancelling
+                    ParsedChunk parsed = ordered ? pending.take().get() : completed.take();
+                    if( parsed.chunk == null ) {
+                        if( parsed.error != null ) {
+                            throw new IOException( file.getName() + ": Could not split the file into chunks", parsed.error );
+                        }
+                        total = parsed.total;
+                        if( handled == total ) return lines;
+                        continue;
+                    }
+                    if( !ordered ) pending.removeIf( Future::isDone );
+                    permits.release();
+                    handled++;
+                    if( parsed.error != null ) {
+                        throw new IOException( file.getName() + ": Could not read bytes " + parsed.chunk.start + " to " + parsed.chunk.end, parsed.error );
+                    }
+
+                    long line = parsed.chunk.firstRecord - headerRecords + 1;
+                    for( CsvRecord r : parsed.records ) {
+                        record = r;
+                        boolean stop = callback.processRow( csv.getColumnHeaders(), r, (int)line++ );
+                        if( stop ) {
+                            return lines;
+                        }
+                        lines++;
+                    }
+                    if( handled == total ) return lines;
+                }
+            } catch( HaltPipelineException ex ) {
+                throw ex;
+            } catch( RuntimeException ex ) {
+                throw new RuntimeException( file.getName() + ": Could not parse line " + lines + ": " +  textOf(record), ex );
+            } catch( IOException ex ) {
+                throw ex;
+            } catch( Exception ex ) {
+                throw new IOException( file.getName() + ": Could not process line " + lines + ": " + textOf(record), ex );
+            } finally {
+                // wake the splitter if it's waiting for a permit, and wait for it so it's done with the channel
+                stopped.set( true );
+                permits.release( maxInFlight );
+                joinQuietly( splitting );
+                for( Future<ParsedChunk> task : pending ) {
+                    task.cancel( false );
+                }
+                callback.afterProcessing();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs on its own thread splitting the file and submitting each chunk to the pool, at most as many chunks ahead
+     * of the caller as there are permits, so the caller only has to hand rows to the callback.  A chunk without a
+     * range marks the end, and says how many chunks there were.
+     */
+    private void split(CsvSplitter splitter, FileChannel channel, ForkJoinPool pool, BlockingQueue<Future<ParsedChunk>> pending,
+                       BlockingQueue<ParsedChunk> completed, Semaphore permits, AtomicBoolean stopped) {
+        ParsedChunk end = new ParsedChunk( null );
+        try {
+            CsvSplitter.Chunk chunk;
+            while( !stopped.get() && (chunk = splitter.next( chunkSize )) != null ) {
+                permits.acquire();
+                if( stopped.get() ) break;
+                ParsedChunk parsed = new ParsedChunk( chunk );
+                pending.add( pool.submit( () -> {
+                    try {
+                        parsed.records = parseChunk( channel, parsed.chunk );
+                    } catch( Throwable t ) {
+                        parsed.error = t;
+                    }
+                    if( !ordered ) completed.add( parsed );
+                    return parsed;
+                } ) );
+                end.total++;
+            }
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            end.error = ex;
+        } catch( Throwable t ) {
+            end.error = t;
+        } finally {
+            if( ordered ) {
+                pending.add( CompletableFuture.completedFuture( end ) );
+            } else {
+                completed.add( end );
+            }
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        boolean interrupted = false;
+        while( thread.isAlive() ) {
+            try {
+                thread.join();
+            } catch( InterruptedException ex ) {
+                interrupted = true;
+            }
+        }
+        if( interrupted ) Thread.currentThread().interrupt();
+    }
+
+    private List<CsvRecord> parseChunk(FileChannel channel, CsvSplitter.Chunk chunk) throws IOException {
+        MappedByteBuffer bytes = channel.map( FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start );
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput( CodingErrorAction.REPLACE )
+                .onUnmappableCharacter( CodingErrorAction.REPLACE );
+        CharBuffer chars = decoder.decode( bytes );
+        CsvParser parser = new CsvParser( chars.array(), chars.arrayOffset() + chars.position(), chars.remaining(),
+                csv.getSeparator(), csv.isEscaped(), chunk.firstLine );
+        List<CsvRecord> records = new ArrayList<>();
+        CsvRecord record;
+        while( (record = parser.next()) != null ) {
+            // do the work of creating the Strings here rather than on the thread that receives the rows
+            record.materializeAll();
+            records.add( record );
+        }
+        return records;
+    }
+
+    private long byteOrderMark(FileChannel channel) throws IOException {
+        if( channel.size() < 3 ) return 0;
+        MappedByteBuffer start = channel.map( FileChannel.MapMode.READ_ONLY, 0, 3 );
+        return (start.get(0) & 0xff) == 0xef && (start.get(1) & 0xff) == 0xbb && (start.get(2) & 0xff) == 0xbf ? 3 : 0;
+    }
+
+    private String textOf(CsvRecord record) {
+        return record != null ? record.getText() : null;
+    }
+
+    private static class ParsedChunk {
+        final CsvSplitter.Chunk chunk;
+        List<CsvRecord> records;
+        Throwable error;
+        long total;
+
+        ParsedChunk(CsvSplitter.Chunk chunk) {
+            this.chunk = chunk;
+        }
+    }
+}
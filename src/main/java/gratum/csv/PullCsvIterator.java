@@ -1,39 +1,46 @@
 package gratum.csv;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
 import java.util.Iterator;
 import java.util.List;
 
-public class PullCsvIterator implements Iterator<List<String>> {
+public class PullCsvIterator implements Iterator<List<String>>, Closeable {
     CSVFile csv;
     int lines = 1;
     List<String> nextRow;
-    LineNumberReader lineNumberReader;
+    CsvParser parser;
 
     public PullCsvIterator(CSVFile aCsv, Reader reader) {
         csv = aCsv;
-        lineNumberReader = new LineNumberReader(reader);
+        parser = csv.newParser(reader);
     }
 
     @Override
     public boolean hasNext() {
         try {
-            nextRow = csv.readNext(lineNumberReader);
-            lines++;
+            if( nextRow == null ) {
+                readNextRow();
+            }
             return nextRow != null;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void readNextRow() throws IOException {
+        nextRow = parser.next();
+        if( nextRow != null ) {
+            lines++;
+        }
+    }
+
     @Override
     public List<String> next() {
         try {
             if( nextRow == null ) {
-                nextRow = csv.readNext(lineNumberReader);
-                lines++;
+                readNextRow();
             }
             List<String> r = nextRow;
             nextRow = null;
@@ -42,4 +49,9 @@ public class PullCsvIterator implements Iterator<List<String>> {
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
 }
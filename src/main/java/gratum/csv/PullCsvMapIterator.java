@@ -1,21 +1,26 @@
 package gratum.csv;
 
+import gratum.etl.Row;
+import gratum.etl.RowSchema;
+
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
 import java.util.*;
 
-public class PullCsvMapIterator implements Iterator<Map<String, Object>> {
+public class PullCsvMapIterator implements Iterator<Map<String, Object>>, Closeable {
 
     CSVFile csv;
-    LineNumberReader lineNumberReader;
+    CsvParser parser;
     int lines = 1;
     Map<String,Object> nextRow;
     List<String> header;
+    RowSchema schema;
+    int[] positions;
 
     public PullCsvMapIterator(CSVFile aCsv, Reader reader) {
         csv = aCsv;
-        this.lineNumberReader = new LineNumberReader(reader);
+        this.parser = csv.newParser(reader);
     }
 
     @Override
@@ -31,16 +36,20 @@ public class PullCsvMapIterator implements Iterator<Map<String, Object>> {
     }
 
     private void readNextRow() throws IOException {
-        List<String> row = csv.readNext(lineNumberReader);
+        List<String> row = parser.next();
         if( header == null && row != null ) {
-            header = row;
-            row = csv.readNext(lineNumberReader);
+            header = new ArrayList<>( row );
+            schema = RowSchema.of( header );
+            positions = schema.indexesOf( header );
+            row = parser.next();
         }
         if( row != null ) {
-            nextRow = new HashMap<>();
-            for( int i = 0; i < header.size(); i++ ) {
-                nextRow.put(header.get(i), row.get(i));
+            Object[] values = new Object[ schema.size() ];
+            int columns = Math.min( positions.length, row.size() );
+            for( int i = 0; i < columns; i++ ) {
+                values[ positions[i] ] = row.get(i);
             }
+            nextRow = new Row( schema, values );
             lines++;
         }
     }
@@ -58,4 +67,9 @@ public class PullCsvMapIterator implements Iterator<Map<String, Object>> {
             throw new RuntimeException(ex);
         }
     }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
 }
@@ -0,0 +1,263 @@
+package gratum.etl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The values of one or more columns of a row used as a key in a hash table, ie for join, intersect and unique.
+ * The hash is computed once when the key is created, and the values are compared by type rather than by their
+ * String form so values containing separators can't collide.
+ *
+ * Numbers compare by value regardless of their type, so an Integer 1, a Long 1 and a BigDecimal 1.0 are the
+ * same key.  CharSequences compare by their characters, so a GString matches the equivalent String.  A String
+ * holding a whole number in its canonical form (ie "42" or "-7", but not "042", "+7" or "42.0") is the same key as
+ * that number, so a column of "1" read from a CSV still matches a column of 1 read from a database.  Other Strings
+ * never equal numbers.  A null matches a null.
+ *
+ * Keys are ordered value by value in the same order as sorting by those columns.  Nulls come first, then numbers
+ * and the Strings that equal them in numeric order, then the other Strings, then any other values grouped by class.
+ * So "2" comes before "10", and "042" comes after both.
+ */
+public final class CompositeKey implements Comparable<CompositeKey> {
+
+    private static final Object[] SINGLE = new Object[0];
+
+    private final Object value;
+    private final Object[] values;
+    private final int hash;
+
+    private CompositeKey(Object value, Object[] values, int hash) {
+        this.value = value;
+        this.values = values;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates the key for the given columns of the row.
+     */
+    public static CompositeKey of(Map<String,?> row, String[] columns) {
+        if( columns.length == 1 ) {
+            Object value = row.get( columns[0] );
+            return new CompositeKey( value, SINGLE, hashOf( value ) );
+        }
+        Object[] values = new Object[ columns.length ];
+        int hash = 1;
+        for( int i = 0; i < columns.length; i++ ) {
+            values[i] = row.get( columns[i] );
+            hash = 31 * hash + hashOf( values[i] );
+        }
+        return new CompositeKey( null, values, hash );
+    }
+
+    /**
+     * Resolves the given columns, which are either a Collection of column names or a single column, into an array.
+     */
+    static String[] columns(Object columns) {
+        if( columns instanceof Collection ) {
+            Collection<?> c = (Collection<?>)columns;
+            String[] result = new String[ c.size() ];
+            int i = 0;
+            for( Object column : c ) {
+                result[i++] = String.valueOf( column );
+            }
+            return result;
+        } else {
+            return new String[] { String.valueOf( columns ) };
+        }
+    }
+
+    /**
+     * @return the number of values in this key.
+     */
+    public int size() {
+        return values == SINGLE ? 1 : values.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if( this == o ) return true;
+        if( !(o instanceof CompositeKey) ) return false;
+        CompositeKey other = (CompositeKey)o;
+        if( hash != other.hash ) return false;
+        if( values == SINGLE || other.values == SINGLE ) {
+            return values == other.values && valueEquals( value, other.value );
+        }
+        if( values.length != other.values.length ) return false;
+        for( int i = 0; i < values.length; i++ ) {
+            if( !valueEquals( values[i], other.values[i] ) ) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int compareTo(CompositeKey other) {
+        if( values == SINGLE && other.values == SINGLE ) {
+            return compareValues( value, other.value );
+        }
+        Object[] mine = values == SINGLE ? new Object[] { value } : values;
+        Object[] theirs = other.values == SINGLE ? new Object[] { other.value } : other.values;
+        for( int i = 0; i < Math.min( mine.length, theirs.length ); i++ ) {
+            int c = compareValues( mine[i], theirs[i] );
+            if( c != 0 ) return c;
+        }
+        return Integer.compare( mine.length, theirs.length );
+    }
+
+    @Override
+    public String toString() {
+        return values == SINGLE ? String.valueOf( value ) : Arrays.toString( values );
+    }
+
+    static int hashOf(Object value) {
+        if( value == null ) {
+            return 0;
+        } else if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+            return Long.hashCode( ((Number)value).longValue() );
+        } else if( value instanceof Double || value instanceof Float ) {
+            double d = ((Number)value).doubleValue();
+            long l = (long)d;
+            // whole numbers hash like a Long so they match integers, (long) saturates so MAX_VALUE is excluded
+            return l == d && l != Long.MAX_VALUE ? Long.hashCode( l ) : Double.hashCode( d );
+        } else if( value instanceof BigInteger ) {
+            BigInteger i = (BigInteger)value;
+            return i.bitLength() < 64 ? Long.hashCode( i.longValue() ) : Double.hashCode( i.doubleValue() );
+        } else if( value instanceof BigDecimal ) {
+            BigDecimal d = (BigDecimal)value;
+            if( d.signum() == 0 ) return 0;
+            if( d.scale() > 0 ) d = d.stripTrailingZeros();
+            if( d.scale() <= 0 ) {
+                return hashOf( d.toBigInteger() );
+            }
+            return Double.hashCode( d.doubleValue() );
+        } else if( value instanceof CharSequence ) {
+            Number n = integerOf( (CharSequence)value );
+            return n != null ? hashOf( n ) : value.toString().hashCode();
+        } else {
+            return value.hashCode();
+        }
+    }
+
+    static boolean valueEquals(Object a, Object b) {
+        if( a == b ) return true;
+        if( a == null || b == null ) return false;
+        if( a instanceof Number && b instanceof Number ) {
+            return numberEquals( (Number)a, (Number)b );
+        }
+        if( a instanceof CharSequence && b instanceof CharSequence ) {
+            return a.toString().contentEquals( (CharSequence)b );
+        }
+        if( a instanceof CharSequence && b instanceof Number ) {
+            Number n = integerOf( (CharSequence)a );
+            return n != null && numberEquals( n, (Number)b );
+        }
+        if( a instanceof Number && b instanceof CharSequence ) {
+            Number n = integerOf( (CharSequence)b );
+            return n != null && numberEquals( (Number)a, n );
+        }
+        return a.equals( b );
+    }
+
+    /**
+     * Orders nulls first, then numbers along with the Strings that equal them (see {@link #integerOf(CharSequence)}),
+     * then the other CharSequences by their characters, then everything else grouped by class.  The order doesn't
+     * depend on which side a value is on, so it's transitive and values that are equal compare as 0.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object a, Object b) {
+        if( a == b ) return 0;
+        Object x = a instanceof CharSequence && integerOf( (CharSequence)a ) != null ? integerOf( (CharSequence)a ) : a;
+        Object y = b instanceof CharSequence && integerOf( (CharSequence)b ) != null ? integerOf( (CharSequence)b ) : b;
+        int rank = rankOf( x );
+        int c = Integer.compare( rank, rankOf( y ) );
+        if( c != 0 ) return c;
+        switch( rank ) {
+            case 0:
+                return 0;
+            case 1:
+                return compareNumbers( (Number)x, (Number)y );
+            case 2:
+                return x.toString().compareTo( y.toString() );
+            default:
+                c = x.getClass().getName().compareTo( y.getClass().getName() );
+                if( c != 0 ) return c;
+                if( x instanceof Comparable ) return ((Comparable<Object>)x).compareTo( y );
+                throw new IllegalArgumentException( "Cannot compare " + x.getClass().getName() + " to " + y.getClass().getName() );
+        }
+    }
+
+    private static int rankOf(Object value) {
+        if( value == null ) return 0;
+        if( value instanceof Number ) return 1;
+        if( value instanceof CharSequence ) return 2;
+        return 3;
+    }
+
+    /**
+     * @return the whole number the given characters hold in canonical form, as a Long or a BigInteger if it's too
+     * big, or null if they hold anything else.
+     */
+    static Number integerOf(CharSequence s) {
+        int length = s.length();
+        int start = length > 0 && s.charAt( 0 ) == '-' ? 1 : 0;
+        if( length == start || length - start > 1 && s.charAt( start ) == '0' ) return null;
+        for( int i = start; i < length; i++ ) {
+            char c = s.charAt( i );
+            if( c < '0' || c > '9' ) return null;
+        }
+        if( start == 1 && length == 2 && s.charAt( 1 ) == '0' ) return null;
+        String digits = s.toString();
+        return length - start < 19 ? (Number)Long.valueOf( digits ) : new BigInteger( digits );
+    }
+
+    private static int compareNumbers(Number a, Number b) {
+        if( isIntegral( a ) && isIntegral( b ) ) {
+            return Long.compare( a.longValue(), b.longValue() );
+        }
+        if( !isFloating( a ) || !isFloating( b ) ) {
+            BigDecimal x = toBigDecimal( a );
+            BigDecimal y = toBigDecimal( b );
+            if( x != null && y != null ) return x.compareTo( y );
+        }
+        double x = a.doubleValue();
+        double y = b.doubleValue();
+        return x < y ? -1 : x > y ? 1 : x == y ? 0 : Double.compare( x, y );
+    }
+
+    private static boolean numberEquals(Number a, Number b) {
+        if( isIntegral( a ) && isIntegral( b ) ) {
+            return a.longValue() == b.longValue();
+        }
+        if( isFloating( a ) && isFloating( b ) ) {
+            return a.doubleValue() == b.doubleValue();
+        }
+        // mixed types compare exactly so a large Long doesn't equal the nearest double
+        BigDecimal x = toBigDecimal( a );
+        BigDecimal y = toBigDecimal( b );
+        return x != null && y != null && x.compareTo( y ) == 0;
+    }
+
+    private static boolean isFloating(Number n) {
+        return n instanceof Double || n instanceof Float;
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if( n instanceof BigDecimal ) return (BigDecimal)n;
+        if( n instanceof BigInteger ) return new BigDecimal( (BigInteger)n );
+        if( isIntegral( n ) ) return BigDecimal.valueOf( n.longValue() );
+        double d = n.doubleValue();
+        if( Double.isNaN( d ) || Double.isInfinite( d ) ) return null;
+        return new BigDecimal( d );
+    }
+}
@@ -0,0 +1,135 @@
+package gratum.etl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A histogram of latencies in nanoseconds using log-linear buckets: every power of two is split into 16 buckets so
+ * a percentile is within about 6% of the recorded value, and the whole range of a long fits in under a thousand
+ * buckets.  Histograms can be merged, which adds the counts in each bucket, so percentiles across several workers
+ * come out the same as if every value was recorded into one histogram.
+ *
+ * A histogram is not thread safe.  Each {@link Step} records into its own.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[ BUCKETS ];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Records a single latency in nanoseconds.  Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if( nanos < 0 ) nanos = 0;
+        counts[ indexOf( nanos ) ]++;
+        count++;
+        sum += nanos;
+        if( nanos < min ) min = nanos;
+        if( nanos > max ) max = nanos;
+    }
+
+    /**
+     * Adds all of the values recorded in the given histogram to this histogram.
+     */
+    public LatencyHistogram merge(LatencyHistogram other) {
+        if( other == null || other.count == 0 ) return this;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min( min, other.min );
+        max = Math.max( max, other.max );
+        return this;
+    }
+
+    public LatencyHistogram copy() {
+        return new LatencyHistogram().merge( this );
+    }
+
+    /**
+     * @return the number of values recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the values recorded in nanoseconds.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double)sum / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value in nanoseconds of the bucket containing the given percentile, capped at the largest
+     * value recorded.  Returns 0 if nothing was recorded.
+     */
+    public long percentile(double percentile) {
+        if( count == 0 ) return 0;
+        long target = Math.max( 1, (long)Math.ceil( count * Math.min( 100.0, Math.max( 0.0, percentile ) ) / 100.0 ) );
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            seen += counts[i];
+            if( seen >= target ) {
+                return Math.max( getMin(), Math.min( max, upperBoundOf( i ) ) );
+            }
+        }
+        return max;
+    }
+
+    public long getP50() {
+        return percentile( 50 );
+    }
+
+    public long getP99() {
+        return percentile( 99 );
+    }
+
+    static int indexOf(long value) {
+        if( value < SUB_BUCKETS ) return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if( index < SUB_BUCKETS ) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (1L << exponent) | (subBucket << shift);
+        long upper = lower + (1L << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "p50 %s, p99 %s, max %s", format( getP50() ), format( getP99() ), format( max ) );
+    }
+
+    static String format(long nanos) {
+        if( nanos < TimeUnit.MICROSECONDS.toNanos( 1 ) ) return nanos + " ns";
+        if( nanos < TimeUnit.MILLISECONDS.toNanos( 1 ) ) return String.format( "%.1f us", nanos / 1_000.0 );
+        return String.format( "%,.2f ms", nanos / 1_000_000.0 );
+    }
+}
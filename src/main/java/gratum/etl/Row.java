@@ -0,0 +1,316 @@
+package gratum.etl;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A row whose values are stored in an Object[] indexed by a shared {@link RowSchema}.  Sources that
+ * know their columns up front (csv, xlsx, jdbc) emit Rows instead of a LinkedHashMap per row, which
+ * avoids repeating the column names, the hashing, and the entry objects for every row.
+ *
+ * A Row behaves like a LinkedHashMap with insertion ordered keys.  Adding a column that isn't in the
+ * schema moves the row to the schema extended by that column (copy-on-extend), and removing a column
+ * moves it to the reduced schema.  Schema transitions are cached so rows that go through the same
+ * steps continue to share schemas.  Keys are column names, so non-String keys (ie GString) are
+ * converted to Strings.
+ */
+public class Row extends AbstractMap<String,Object> implements Cloneable {
+
+    private RowSchema schema;
+    private Object[] values;
+
+    /**
+     * Creates a row with every column in the given schema set to null.
+     */
+    public Row(RowSchema schema) {
+        this( schema, new Object[ schema.size() ] );
+    }
+
+    /**
+     * Creates a row that uses the given array as its storage.  The array is not copied, and it must
+     * be at least as long as the schema.
+     */
+    public Row(RowSchema schema, Object[] values) {
+        if( values.length < schema.size() ) {
+            throw new IllegalArgumentException("Expected at least " + schema.size() + " values but got " + values.length);
+        }
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the value at the given position in this row's schema.
+     */
+    public Object valueAt(int index) {
+        if( index < 0 || index >= schema.size() ) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + schema.size());
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return schema.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return schema.size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return schema.contains( key );
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for( int i = 0; i < schema.size(); i++ ) {
+            if( value == null ? values[i] == null : value.equals( values[i] ) ) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = schema.indexOf( key );
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int i = schema.indexOf( key );
+        if( i >= 0 ) {
+            Object previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        int size = schema.size();
+        if( values.length <= size ) {
+            values = Arrays.copyOf( values, size + Math.max( 2, size >> 2 ) );
+        }
+        schema = schema.with( RowSchema.keyOf( key ) );
+        values[size] = value;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = schema.indexOf( key );
+        if( i < 0 ) return null;
+        return removeAt( i );
+    }
+
+    private Object removeAt(int i) {
+        Object previous = values[i];
+        int size = schema.size();
+        Object[] next = new Object[ size - 1 ];
+        System.arraycopy( values, 0, next, 0, i );
+        System.arraycopy( values, i + 1, next, i, size - i - 1 );
+        schema = schema.without( schema.getColumn(i) );
+        values = next;
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        for( Map.Entry<? extends String, ?> e : m.entrySet() ) {
+            put( e.getKey(), e.getValue() );
+        }
+    }
+
+    @Override
+    public void clear() {
+        schema = RowSchema.empty();
+        values = new Object[0];
+    }
+
+    @Override
+    public Row clone() {
+        return new Row( schema, Arrays.copyOf( values, schema.size() ) );
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String,Object>>() {
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator() {
+                return new RowIterator<Map.Entry<String,Object>>() {
+                    @Override
+                    Map.Entry<String,Object> at(int i) {
+                        return new RowEntry( i );
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Row.this.size();
+            }
+
+            @Override
+            public void clear() {
+                Row.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new RowIterator<String>() {
+                    @Override
+                    String at(int i) {
+                        return schema.getColumn(i);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Row.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return Row.this.containsKey( o );
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if( !Row.this.containsKey( o ) ) return false;
+                Row.this.remove( o );
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                Row.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new RowIterator<Object>() {
+                    @Override
+                    Object at(int i) {
+                        return values[i];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Row.this.size();
+            }
+
+            @Override
+            public void clear() {
+                Row.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Iterates the row in column order.  Iterators support remove(), and any other change to the row's columns
+     * while iterating fails fast like a LinkedHashMap does.
+     */
+    private abstract class RowIterator<T> implements Iterator<T> {
+        RowSchema expected = schema;
+        int next = 0;
+        int last = -1;
+
+        abstract T at(int i);
+
+        @Override
+        public boolean hasNext() {
+            return next < expected.size();
+        }
+
+        @Override
+        public T next() {
+            if( schema != expected ) throw new ConcurrentModificationException();
+            if( next >= expected.size() ) throw new NoSuchElementException();
+            last = next++;
+            return at( last );
+        }
+
+        @Override
+        public void remove() {
+            if( last < 0 ) throw new IllegalStateException();
+            if( schema != expected ) throw new ConcurrentModificationException();
+            removeAt( last );
+            expected = schema;
+            next = last;
+            last = -1;
+        }
+    }
+
+    private class RowEntry implements Map.Entry<String,Object> {
+        private final RowSchema entrySchema = schema;
+        private final int index;
+
+        RowEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return entrySchema.getColumn( index );
+        }
+
+        @Override
+        public Object getValue() {
+            return schema == entrySchema ? values[index] : get( getKey() );
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return schema == entrySchema ? swap( value ) : put( getKey(), value );
+        }
+
+        private Object swap(Object value) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof Map.Entry) ) return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object key = getKey();
+            Object value = getValue();
+            return (key == null ? e.getKey() == null : key.equals( e.getKey() )) &&
+                   (value == null ? e.getValue() == null : value.equals( e.getValue() ));
+        }
+
+        @Override
+        public int hashCode() {
+            Object key = getKey();
+            Object value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package gratum.etl;
+
+import java.util.Map;
+
+/**
+ * A step written as a plain function of a row instead of a Closure.  It returns the row to pass to the next step,
+ * or a row rejected with {@link Pipeline#reject(java.util.Map, java.lang.String, gratum.etl.RejectionCategory)}
+ * (or null) to reject it, just like the Closure given to {@link Pipeline#addStep(java.lang.CharSequence, groovy.lang.Closure)}.
+ *
+ * Steps added this way are called directly instead of through Closure.call, and consecutive ones are fused into
+ * a single step when the Pipeline runs.  Pipeline's built in operations like setField, renameFields and asInt are
+ * written this way.
+ */
+public interface RowFunction {
+
+    Map<String,Object> apply(Map<String,Object> row);
+}
@@ -0,0 +1,187 @@
+package gratum.etl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, ordered set of column names shared by many {@link Row} instances.  Sources create
+ * a single RowSchema from their header and every row they emit points at it, so column names are
+ * stored once instead of once per row.
+ *
+ * Adding or removing a column produces a new RowSchema.  Those transitions are cached on the
+ * schema so every row that has the same column added (ie addField, renameFields, REJECTED_KEY)
+ * ends up sharing the same extended schema.  Only the first {@link #MAX_CACHED_TRANSITIONS} columns added
+ * or removed are cached on each schema, so rows with data driven column names (ie pivots) don't grow the
+ * cache without bound.
+ */
+public final class RowSchema {
+
+    public static final int MAX_CACHED_TRANSITIONS = 256;
+
+    private static final RowSchema EMPTY = new RowSchema( new String[0] );
+
+    private final String[] columns;
+    private final Map<String,Integer> index;
+    private final ConcurrentMap<String,RowSchema> extensions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,RowSchema> reductions = new ConcurrentHashMap<>();
+    // ConcurrentHashMap doesn't permit null keys so the transitions for the null column are held separately
+    private volatile RowSchema nullExtension;
+    private volatile RowSchema nullReduction;
+
+    private RowSchema(String[] columns) {
+        this.columns = columns;
+        this.index = new HashMap<>( Math.max( 4, (int)(columns.length / 0.75f) + 1 ) );
+        for( int i = 0; i < columns.length; i++ ) {
+            index.put( columns[i], i );
+        }
+    }
+
+    /**
+     * Returns the schema without any columns.
+     */
+    public static RowSchema empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a schema from the given column names.  Names are interned, and duplicate names are
+     * collapsed into a single column the same way repeated puts into a Map would.
+     *
+     * @param columns the column names in order
+     * @return a RowSchema for the given columns
+     */
+    public static RowSchema of(Collection<?> columns) {
+        String[] names = new String[ columns.size() ];
+        Map<String,Boolean> seen = new HashMap<>( names.length * 2 );
+        int size = 0;
+        for( Object column : columns ) {
+            String name = intern( keyOf( column ) );
+            if( seen.put( name, Boolean.TRUE ) == null ) {
+                names[size++] = name;
+            }
+        }
+        return new RowSchema( size == names.length ? names : Arrays.copyOf( names, size ) );
+    }
+
+    public static RowSchema of(String... columns) {
+        return of( Arrays.asList( columns ) );
+    }
+
+    /**
+     * Converts a Map key into the column name used by a schema.  Column names are Strings, so
+     * GStrings and other CharSequences are converted to their String form.  Null is a legal column.
+     */
+    static String keyOf(Object key) {
+        if( key == null || key instanceof String ) return (String)key;
+        return key.toString();
+    }
+
+    private static String intern(String name) {
+        return name != null ? name.intern() : null;
+    }
+
+    /**
+     * @return the position of the given column within this schema or -1 if it isn't part of this schema.
+     */
+    public int indexOf(Object column) {
+        Integer i = index.get( keyOf( column ) );
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Maps each of the given column names to its position in this schema.  Sources use this once
+     * per header so each value can be placed in a row without looking up the column per row.
+     *
+     * @param header the column names as they appear in the source
+     * @return an array the same length as header containing the position of each column
+     */
+    public int[] indexesOf(List<?> header) {
+        int[] positions = new int[ header.size() ];
+        for( int i = 0; i < positions.length; i++ ) {
+            positions[i] = indexOf( header.get(i) );
+        }
+        return positions;
+    }
+
+    public boolean contains(Object column) {
+        return index.containsKey( keyOf( column ) );
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    public String getColumn(int i) {
+        return columns[i];
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList( Arrays.asList( columns ) );
+    }
+
+    /**
+     * Returns the schema with the given column appended to the end.  The result is cached so all rows
+     * extended by the same column share a single schema.
+     */
+    public RowSchema with(String column) {
+        if( column == null ) {
+            if( nullExtension == null ) nullExtension = extend( null );
+            return nullExtension;
+        }
+        RowSchema extended = extensions.get( column );
+        if( extended == null ) {
+            extended = extend( column );
+            if( extensions.size() < MAX_CACHED_TRANSITIONS ) {
+                RowSchema existing = extensions.putIfAbsent( column, extended );
+                if( existing != null ) extended = existing;
+            }
+        }
+        return extended;
+    }
+
+    private RowSchema extend(String column) {
+        String[] cols = Arrays.copyOf( columns, columns.length + 1 );
+        cols[ columns.length ] = intern( column );
+        return new RowSchema( cols );
+    }
+
+    /**
+     * Returns the schema with the given column removed.  The result is cached so all rows that drop the
+     * same column share a single schema.
+     */
+    public RowSchema without(String column) {
+        int position = indexOf( column );
+        if( position < 0 ) return this;
+        if( column == null ) {
+            if( nullReduction == null ) nullReduction = reduce( position );
+            return nullReduction;
+        }
+        RowSchema reduced = reductions.get( column );
+        if( reduced == null ) {
+            reduced = reduce( position );
+            if( reductions.size() < MAX_CACHED_TRANSITIONS ) {
+                RowSchema existing = reductions.putIfAbsent( column, reduced );
+                if( existing != null ) reduced = existing;
+            }
+        }
+        return reduced;
+    }
+
+    private RowSchema reduce(int position) {
+        String[] cols = new String[ columns.length - 1 ];
+        System.arraycopy( columns, 0, cols, 0, position );
+        System.arraycopy( columns, position + 1, cols, position, columns.length - position - 1 );
+        return new RowSchema( cols );
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString( columns );
+    }
+}
@@ -0,0 +1,335 @@
+package gratum.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads a JSON document incrementally, handing each object found at a path to a callback as soon as it has been
+ * parsed.  Everything that isn't on the path is skipped without being built, so memory is bounded by the size of a
+ * single object rather than the document.
+ *
+ * The path is a list of field names.  Starting at the root each name selects that field of the current object.  An
+ * array along the way stands in for one element of the path, the same way {@link gratum.source.JsonSource} does when
+ * it isn't streaming: each of its elements gets the path after that element.  So ["pages", "*", "people"] reads the
+ * people of every page, whatever the "*" is.  The objects at the end of the path (or the elements of arrays there)
+ * are the rows.  Values are parsed into the same types JsonSlurper uses:
+ * LinkedHashMap, ArrayList, String, Integer, Long, BigInteger, BigDecimal, Boolean and null.
+ */
+public class JsonStreamParser implements Closeable {
+
+    private final Reader reader;
+    private final char[] buffer;
+    private final StringBuilder text = new StringBuilder();
+    private int position;
+    private int limit;
+    private long offset;
+
+    public JsonStreamParser(Reader reader) {
+        this( reader, 64 * 1024 );
+    }
+
+    public JsonStreamParser(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[ bufferSize ];
+    }
+
+    /**
+     * Parses the document calling the callback with every object found at the path.
+     *
+     * @return the number of objects found.
+     */
+    public long each(List<String> path, Consumer<Map<String,Object>> callback) throws IOException {
+        long rows = walk( path, 0, callback );
+        if( peek() >= 0 ) throw error( "Expected the end of the document" );
+        return rows;
+    }
+
+    private long walk(List<String> path, int index, Consumer<Map<String,Object>> callback) throws IOException {
+        int c = peek();
+        if( c == '[' ) {
+            position++;
+            long rows = 0;
+            if( peek() == ']' ) {
+                position++;
+                return 0;
+            }
+            // the array takes the place of the next name in the path, if there is one
+            int elements = index < path.size() ? index + 1 : index;
+            while( true ) {
+                rows += walk( path, elements, callback );
+                int next = next();
+                if( next == ']' ) return rows;
+                if( next != ',' ) throw error( "Expected ',' or ']'" );
+            }
+        } else if( index == path.size() ) {
+            Object value = readValue();
+            if( !(value instanceof Map) ) throw error( "Expected an object but found " + value );
+            @SuppressWarnings("unchecked")
+            Map<String,Object> row = (Map<String,Object>)value;
+            callback.accept( row );
+            return 1;
+        } else if( c == '{' ) {
+            position++;
+            long rows = 0;
+            if( peek() == '}' ) {
+                position++;
+                return 0;
+            }
+            while( true ) {
+                if( next() != '"' ) throw error( "Expected a field name" );
+                String field = readString();
+                if( next() != ':' ) throw error( "Expected ':'" );
+                if( field.equals( path.get( index ) ) ) {
+                    rows += walk( path, index + 1, callback );
+                } else {
+                    skipValue();
+                }
+                int next = next();
+                if( next == '}' ) return rows;
+                if( next != ',' ) throw error( "Expected ',' or '}'" );
+            }
+        } else {
+            // the path doesn't go any further here
+            skipValue();
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the next value and everything inside it.
+     */
+    public Object readValue() throws IOException {
+        int c = next();
+        switch( c ) {
+            case '{': {
+                Map<String,Object> map = new LinkedHashMap<>();
+                if( peek() == '}' ) {
+                    position++;
+                    return map;
+                }
+                while( true ) {
+                    if( next() != '"' ) throw error( "Expected a field name" );
+                    String field = readString();
+                    if( next() != ':' ) throw error( "Expected ':'" );
+                    map.put( field, readValue() );
+                    int next = next();
+                    if( next == '}' ) return map;
+                    if( next != ',' ) throw error( "Expected ',' or '}'" );
+                }
+            }
+            case '[': {
+                List<Object> list = new ArrayList<>();
+                if( peek() == ']' ) {
+                    position++;
+                    return list;
+                }
+                while( true ) {
+                    list.add( readValue() );
+                    int next = next();
+                    if( next == ']' ) return list;
+                    if( next != ',' ) throw error( "Expected ',' or ']'" );
+                }
+            }
+            case '"':
+                return readString();
+            case 't':
+                literal( "rue" );
+                return Boolean.TRUE;
+            case 'f':
+                literal( "alse" );
+                return Boolean.FALSE;
+            case 'n':
+                literal( "ull" );
+                return null;
+            case -1:
+                throw error( "Unexpected end of the document" );
+            default:
+                if( c == '-' || (c >= '0' && c <= '9') ) return readNumber( (char)c );
+                throw error( "Unexpected character '" + (char)c + "'" );
+        }
+    }
+
+    /**
+     * Skips the next value without building it.
+     */
+    private void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int c = next();
+            switch( c ) {
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                case -1:
+                    throw error( "Unexpected end of the document" );
+                default:
+                    // a literal or number runs until the next delimiter
+                    while( position < limit || fill() ) {
+                        char n = buffer[position];
+                        if( n == ',' || n == '}' || n == ']' || n <= ' ' ) break;
+                        position++;
+                    }
+            }
+            if( depth > 0 ) {
+                // commas and colons between the members
+                int n = peek();
+                if( n == ',' || n == ':' ) position++;
+            }
+        } while( depth > 0 );
+    }
+
+    private String readString() throws IOException {
+        // most strings have no escapes and fit in the buffer, so take them straight out of it
+        int start = position;
+        while( position < limit ) {
+            char c = buffer[position];
+            if( c == '"' ) {
+                String s = new String( buffer, start, position - start );
+                position++;
+                return s;
+            }
+            if( c == '\\' ) break;
+            position++;
+        }
+        text.setLength( 0 );
+        text.append( buffer, start, position - start );
+        while( true ) {
+            if( position >= limit && !fill() ) throw error( "Unterminated string" );
+            char c = buffer[position++];
+            if( c == '"' ) return text.toString();
+            if( c == '\\' ) {
+                text.append( escape() );
+            } else {
+                text.append( c );
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while( true ) {
+            if( position >= limit && !fill() ) throw error( "Unterminated string" );
+            char c = buffer[position++];
+            if( c == '"' ) return;
+            if( c == '\\' ) escape();
+        }
+    }
+
+    private char escape() throws IOException {
+        if( position >= limit && !fill() ) throw error( "Unterminated string" );
+        char c = buffer[position++];
+        switch( c ) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int code = 0;
+                for( int i = 0; i < 4; i++ ) {
+                    if( position >= limit && !fill() ) throw error( "Unterminated string" );
+                    int digit = Character.digit( buffer[position++], 16 );
+                    if( digit < 0 ) throw error( "Invalid unicode escape" );
+                    code = code * 16 + digit;
+                }
+                return (char)code;
+            default:
+                throw error( "Invalid escape '\\" + c + "'" );
+        }
+    }
+
+    private Number readNumber(char first) throws IOException {
+        text.setLength( 0 );
+        text.append( first );
+        boolean decimal = false;
+        while( position < limit || fill() ) {
+            char c = buffer[position];
+            if( (c >= '0' && c <= '9') || c == '-' || c == '+' ) {
+                text.append( c );
+            } else if( c == '.' || c == 'e' || c == 'E' ) {
+                decimal = true;
+                text.append( c );
+            } else {
+                break;
+            }
+            position++;
+        }
+        String number = text.toString();
+        try {
+            if( decimal ) return new BigDecimal( number );
+            if( number.length() < 19 ) {
+                long value = Long.parseLong( number );
+                if( value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ) return (int)value;
+                return value;
+            }
+            BigInteger value = new BigInteger( number );
+            return value.bitLength() < 64 ? (Number)value.longValue() : value;
+        } catch( NumberFormatException ex ) {
+            throw error( "Invalid number " + number );
+        }
+    }
+
+    private void literal(String rest) throws IOException {
+        for( int i = 0; i < rest.length(); i++ ) {
+            if( next() != rest.charAt( i ) ) throw error( "Invalid literal" );
+        }
+    }
+
+    /**
+     * @return the next character that isn't whitespace without consuming it, or -1 at the end.
+     */
+    private int peek() throws IOException {
+        while( position < limit || fill() ) {
+            char c = buffer[position];
+            if( c > ' ' ) return c;
+            position++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the next character that isn't whitespace, or -1 at the end.
+     */
+    private int next() throws IOException {
+        int c = peek();
+        if( c >= 0 ) position++;
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int read = reader.read( buffer, 0, buffer.length );
+        if( read <= 0 ) return false;
+        limit = read;
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException( message + " at character " + (offset + position) );
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,360 @@
+package gratum.json;
+
+import groovy.json.JsonException;
+import groovy.json.JsonOutput;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes values as JSON directly into a large buffer that is written out when it fills up, so no intermediate
+ * Strings are built for the rows.  Field names are encoded once and reused: either up front for a fixed set of
+ * columns with {@link #fieldNames(Collection)}, or the first time a key is seen.
+ *
+ * The output is the same as JsonOutput.toJson produces for the types a row normally holds: Strings, Numbers,
+ * Booleans, Dates, Calendars, Enums, Maps, Collections and arrays.  Anything else is handed to JsonOutput.  This
+ * isn't thread safe, and is meant to be used by a single sink.
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] NULL = "null".toCharArray();
+    private static final char[] TRUE = "true".toCharArray();
+    private static final char[] FALSE = "false".toCharArray();
+    private static final char[] LONG_MIN = Long.toString( Long.MIN_VALUE ).toCharArray();
+    private static final int MAX_CACHED_NAMES = 4096;
+
+    private final Writer writer;
+    private final char[] buffer;
+    private int position;
+    private final Map<String,char[]> names = new HashMap<>();
+    private final char[] digits = new char[20];
+    private SimpleDateFormat dateFormat;
+    private StringBuffer dateText;
+
+    public JsonWriter(Writer writer) {
+        this( writer, 64 * 1024 );
+    }
+
+    public JsonWriter(Writer writer, int bufferSize) {
+        this.writer = writer;
+        this.buffer = new char[ Math.max( bufferSize, 64 ) ];
+    }
+
+    /**
+     * Encodes the given columns as field name tokens (quoted and followed by a colon) for
+     * {@link #writeRow(Map, String[], char[][])}.
+     */
+    public static char[][] fieldNames(Collection<String> columns) {
+        char[][] tokens = new char[ columns.size() ][];
+        int i = 0;
+        for( String column : columns ) {
+            tokens[i++] = encodeName( column );
+        }
+        return tokens;
+    }
+
+    /**
+     * Writes the row as an object with all of its fields.
+     */
+    public JsonWriter writeRow(Map<?,?> row) throws IOException {
+        writeMap( row );
+        return this;
+    }
+
+    /**
+     * Writes the row as an object with only the given columns, in the order given.  Columns the row doesn't have
+     * are left out, the same as Map.subMap.  The names are the tokens returned by {@link #fieldNames(Collection)}
+     * for the columns.
+     */
+    public JsonWriter writeRow(Map<?,?> row, String[] columns, char[][] names) throws IOException {
+        write( '{' );
+        boolean first = true;
+        for( int i = 0; i < columns.length; i++ ) {
+            Object value = row.get( columns[i] );
+            if( value == null && !row.containsKey( columns[i] ) ) continue;
+            if( !first ) write( ',' );
+            first = false;
+            write( names[i] );
+            writeValue( value );
+        }
+        write( '}' );
+        return this;
+    }
+
+    /**
+     * Writes any value as JSON.
+     */
+    public JsonWriter writeValue(Object value) throws IOException {
+        if( value == null ) {
+            write( NULL );
+        } else if( value instanceof String ) {
+            writeString( (String)value );
+        } else if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof AtomicInteger || value instanceof AtomicLong ) {
+            writeLong( ((Number)value).longValue() );
+        } else if( value instanceof Boolean ) {
+            write( (Boolean)value ? TRUE : FALSE );
+        } else if( value instanceof Map ) {
+            writeMap( (Map<?,?>)value );
+        } else if( value instanceof Collection ) {
+            writeIterator( ((Collection<?>)value).iterator() );
+        } else if( value instanceof Double || value instanceof Float ) {
+            double d = ((Number)value).doubleValue();
+            if( Double.isNaN( d ) ) throw new JsonException( "Number " + value + " can't be serialized as JSON: NaN are not allowed in JSON." );
+            if( Double.isInfinite( d ) ) throw new JsonException( "Number " + value + " can't be serialized as JSON: infinite are not allowed in JSON." );
+            write( value.toString() );
+        } else if( value instanceof BigDecimal || value instanceof BigInteger ) {
+            write( value.toString() );
+        } else if( value instanceof Date ) {
+            writeDate( (Date)value );
+        } else if( value instanceof Calendar ) {
+            writeDate( ((Calendar)value).getTime() );
+        } else if( value instanceof CharSequence ) {
+            writeString( value.toString() );
+        } else if( value instanceof Character || value instanceof Enum ) {
+            writeString( value.toString() );
+        } else if( value.getClass().isArray() ) {
+            writeArray( value );
+        } else {
+            write( JsonOutput.toJson( value ) );
+        }
+        return this;
+    }
+
+    /**
+     * Writes text as is, for the separators between rows.
+     */
+    public JsonWriter write(String text) throws IOException {
+        int length = text.length();
+        int start = 0;
+        while( start < length ) {
+            if( position == buffer.length ) drain();
+            int count = Math.min( length - start, buffer.length - position );
+            text.getChars( start, start + count, buffer, position );
+            position += count;
+            start += count;
+        }
+        return this;
+    }
+
+    private void writeMap(Map<?,?> map) throws IOException {
+        write( '{' );
+        boolean first = true;
+        for( Map.Entry<?,?> entry : map.entrySet() ) {
+            if( !first ) write( ',' );
+            first = false;
+            write( name( String.valueOf( entry.getKey() ) ) );
+            writeValue( entry.getValue() );
+        }
+        write( '}' );
+    }
+
+    private void writeIterator(Iterator<?> values) throws IOException {
+        write( '[' );
+        boolean first = true;
+        while( values.hasNext() ) {
+            if( !first ) write( ',' );
+            first = false;
+            writeValue( values.next() );
+        }
+        write( ']' );
+    }
+
+    private void writeArray(Object array) throws IOException {
+        write( '[' );
+        int length = Array.getLength( array );
+        for( int i = 0; i < length; i++ ) {
+            if( i > 0 ) write( ',' );
+            writeValue( Array.get( array, i ) );
+        }
+        write( ']' );
+    }
+
+    private char[] name(String key) {
+        char[] token = names.get( key );
+        if( token == null ) {
+            token = encodeName( key );
+            // rows with ever changing keys shouldn't grow the cache without bound
+            if( names.size() < MAX_CACHED_NAMES ) names.put( key, token );
+        }
+        return token;
+    }
+
+    private static char[] encodeName(String name) {
+        StringBuilder token = new StringBuilder( name.length() + 3 );
+        token.append( '"' );
+        for( int i = 0; i < name.length(); i++ ) {
+            char c = name.charAt( i );
+            if( needsEscape( c ) ) {
+                appendEscape( token, c );
+            } else {
+                token.append( c );
+            }
+        }
+        token.append( "\":" );
+        char[] chars = new char[ token.length() ];
+        token.getChars( 0, chars.length, chars, 0 );
+        return chars;
+    }
+
+    private void writeString(String value) throws IOException {
+        write( '"' );
+        int length = value.length();
+        int start = 0;
+        for( int i = 0; i < length; i++ ) {
+            char c = value.charAt( i );
+            if( needsEscape( c ) ) {
+                // copy the run of plain characters before the escape in one go
+                if( i > start ) write( value, start, i );
+                writeEscape( c );
+                start = i + 1;
+            }
+        }
+        if( start < length ) write( value, start, length );
+        write( '"' );
+    }
+
+    private void write(String value, int start, int end) throws IOException {
+        while( start < end ) {
+            if( position == buffer.length ) drain();
+            int count = Math.min( end - start, buffer.length - position );
+            value.getChars( start, start + count, buffer, position );
+            position += count;
+            start += count;
+        }
+    }
+
+    private static boolean needsEscape(char c) {
+        return c < 0x20 || c == '"' || c == '\\' || c >= 0x7f;
+    }
+
+    private void writeEscape(char c) throws IOException {
+        if( buffer.length - position < 6 ) drain();
+        buffer[position++] = '\\';
+        switch( c ) {
+            case '"': buffer[position++] = '"'; break;
+            case '\\': buffer[position++] = '\\'; break;
+            case '\b': buffer[position++] = 'b'; break;
+            case '\f': buffer[position++] = 'f'; break;
+            case '\n': buffer[position++] = 'n'; break;
+            case '\r': buffer[position++] = 'r'; break;
+            case '\t': buffer[position++] = 't'; break;
+            default:
+                buffer[position++] = 'u';
+                buffer[position++] = HEX[ (c >> 12) & 0xf ];
+                buffer[position++] = HEX[ (c >> 8) & 0xf ];
+                buffer[position++] = HEX[ (c >> 4) & 0xf ];
+                buffer[position++] = HEX[ c & 0xf ];
+        }
+    }
+
+    private static void appendEscape(StringBuilder builder, char c) {
+        builder.append( '\\' );
+        switch( c ) {
+            case '"': builder.append( '"' ); break;
+            case '\\': builder.append( '\\' ); break;
+            case '\b': builder.append( 'b' ); break;
+            case '\f': builder.append( 'f' ); break;
+            case '\n': builder.append( 'n' ); break;
+            case '\r': builder.append( 'r' ); break;
+            case '\t': builder.append( 't' ); break;
+            default:
+                builder.append( 'u' )
+                    .append( HEX[ (c >> 12) & 0xf ] )
+                    .append( HEX[ (c >> 8) & 0xf ] )
+                    .append( HEX[ (c >> 4) & 0xf ] )
+                    .append( HEX[ c & 0xf ] );
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if( value == Long.MIN_VALUE ) {
+            write( LONG_MIN );
+            return;
+        }
+        if( buffer.length - position < 20 ) drain();
+        if( value < 0 ) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char)('0' + value % 10);
+            value /= 10;
+        } while( value != 0 );
+        int count = digits.length - i;
+        System.arraycopy( digits, i, buffer, position, count );
+        position += count;
+    }
+
+    private void writeDate(Date date) throws IOException {
+        if( dateFormat == null ) {
+            // the format JsonOutput uses
+            dateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ssZ", Locale.US );
+            dateFormat.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+            dateText = new StringBuffer( 24 );
+        }
+        dateText.setLength( 0 );
+        dateFormat.format( date, dateText, new FieldPosition( 0 ) );
+        if( buffer.length - position < dateText.length() + 2 ) drain();
+        buffer[position++] = '"';
+        dateText.getChars( 0, dateText.length(), buffer, position );
+        position += dateText.length();
+        buffer[position++] = '"';
+    }
+
+    private void write(char c) throws IOException {
+        if( position == buffer.length ) drain();
+        buffer[position++] = c;
+    }
+
+    private void write(char[] chars) throws IOException {
+        if( buffer.length - position < chars.length ) {
+            drain();
+            if( chars.length > buffer.length ) {
+                writer.write( chars );
+                return;
+            }
+        }
+        System.arraycopy( chars, 0, buffer, position, chars.length );
+        position += chars.length;
+    }
+
+    private void drain() throws IOException {
+        if( position > 0 ) writer.write( buffer, 0, position );
+        position = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            writer.close();
+        }
+    }
+}
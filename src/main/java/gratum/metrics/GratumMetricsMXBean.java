@@ -0,0 +1,25 @@
+package gratum.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JMX view of {@link Metrics}.  Register it with {@link Metrics#registerMBean()}.  Steps are named
+ * pipeline/step.
+ */
+public interface GratumMetricsMXBean {
+
+    List<String> getActivePipelines();
+
+    Map<String,Long> getRowsIn();
+
+    Map<String,Long> getRowsOut();
+
+    Map<String,Double> getRowsPerSecond();
+
+    Map<String,Long> getRejections();
+
+    Map<String,Double> getGauges();
+
+    Map<String,Double> getRates();
+}
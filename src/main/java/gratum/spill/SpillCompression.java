@@ -0,0 +1,107 @@
+package gratum.spill;
+
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The compression applied to each block of a spill file.  Blocks that don't get smaller are stored as is.
+ */
+public enum SpillCompression {
+    NONE(0),
+    DEFLATE(1),
+    LZ4(2);
+
+    final int id;
+
+    SpillCompression(int id) {
+        this.id = id;
+    }
+
+    static SpillCompression valueOf(int id) throws IOException {
+        for( SpillCompression c : values() ) {
+            if( c.id == id ) return c;
+        }
+        throw new IOException("Unknown spill compression " + id);
+    }
+
+    /**
+     * Compresses the first length bytes of the given block.
+     *
+     * @return the compressed bytes, or null if compressing didn't make the block smaller
+     */
+    byte[] compress(byte[] block, int length, Deflater deflater) throws IOException {
+        byte[] compressed;
+        switch( this ) {
+            case DEFLATE:
+                deflater.reset();
+                deflater.setInput( block, 0, length );
+                deflater.finish();
+                compressed = new byte[ length ];
+                int size = 0;
+                while( !deflater.finished() && size < compressed.length ) {
+                    size += deflater.deflate( compressed, size, compressed.length - size );
+                }
+                if( !deflater.finished() ) return null;
+                return trim( compressed, size, length );
+            case LZ4:
+                ByteArrayOutputStream out = new ByteArrayOutputStream( length / 2 );
+                try( BlockLZ4CompressorOutputStream lz4 = new BlockLZ4CompressorOutputStream( out ) ) {
+                    lz4.write( block, 0, length );
+                }
+                compressed = out.toByteArray();
+                return trim( compressed, compressed.length, length );
+            default:
+                return null;
+        }
+    }
+
+    private static byte[] trim(byte[] compressed, int size, int length) {
+        if( size >= length ) return null;
+        byte[] result = new byte[ size ];
+        System.arraycopy( compressed, 0, result, 0, size );
+        return result;
+    }
+
+    /**
+     * Decompresses the stored bytes into the given block which must be large enough to hold the raw bytes.
+     */
+    void decompress(byte[] stored, int storedLength, byte[] block, int rawLength, Inflater inflater) throws IOException {
+        switch( this ) {
+            case DEFLATE:
+                inflater.reset();
+                inflater.setInput( stored, 0, storedLength );
+                try {
+                    int size = 0;
+                    while( size < rawLength && !inflater.finished() ) {
+                        int n = inflater.inflate( block, size, rawLength - size );
+                        if( n == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) break;
+                        size += n;
+                    }
+                    if( size != rawLength ) throw new IOException("Truncated deflate block expected " + rawLength + " bytes but got " + size);
+                } catch( DataFormatException ex ) {
+                    throw new IOException( ex );
+                }
+                break;
+            case LZ4:
+                try( InputStream in = new BlockLZ4CompressorInputStream( new ByteArrayInputStream( stored, 0, storedLength ) ) ) {
+                    int size = 0;
+                    while( size < rawLength ) {
+                        int n = in.read( block, size, rawLength - size );
+                        if( n < 0 ) throw new IOException("Truncated lz4 block expected " + rawLength + " bytes but got " + size);
+                        size += n;
+                    }
+                }
+                break;
+            default:
+                System.arraycopy( stored, 0, block, 0, rawLength );
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package gratum.spill;
+
+/**
+ * Constants describing the layout of a spill file.
+ *
+ * <pre>
+ * file   := magic(4) version(1) compression(1) block*
+ * block  := codec(1) rawLength(int) storedLength(int) stored bytes
+ * entry  := COLUMN varint(nameLength + 1) utf8 name      (nameLength 0 is encoded as 1, and 0 means a null name)
+ *         | RECORD varint(payloadLength) payload
+ * payload:= varint(fieldCount) (varint(columnId) value)*
+ * value  := tag(1) data
+ * </pre>
+ *
+ * Blocks hold whole entries.  Column names are defined once per file the first time they're used, and records
+ * refer to them by their position in that dictionary.
+ */
+final class SpillFormat {
+
+    static final byte[] MAGIC = { 'G', 'S', 'P', 'L' };
+    static final int VERSION = 1;
+    static final int BLOCK_HEADER = 9;
+
+    static final int COLUMN = 1;
+    static final int RECORD = 2;
+
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int INT = 2;
+    static final int LONG = 3;
+    static final int DOUBLE = 4;
+    static final int FLOAT = 5;
+    static final int TRUE = 6;
+    static final int FALSE = 7;
+    static final int BIG_DECIMAL = 8;
+    static final int BIG_INTEGER = 9;
+    static final int DATE = 10;
+    static final int TIMESTAMP = 11;
+    static final int SQL_DATE = 12;
+    static final int LOCAL_DATE = 13;
+    static final int LOCAL_DATE_TIME = 14;
+    static final int SHORT = 15;
+    static final int BYTE = 16;
+    static final int BYTES = 17;
+    static final int CHARACTER = 18;
+    static final int SERIALIZED = 19;
+    static final int SQL_TIME = 20;
+
+    private SpillFormat() {
+    }
+}
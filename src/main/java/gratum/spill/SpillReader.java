@@ -0,0 +1,323 @@
+package gratum.spill;
+
+import gratum.etl.Row;
+import gratum.etl.RowSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.Inflater;
+
+import static gratum.spill.SpillFormat.*;
+
+/**
+ * Reads the rows written by a {@link SpillWriter}.  Rows are returned as {@link Row}s, and rows that were written
+ * with the same columns share a single {@link RowSchema}.  The file is closed once the last row has been read.
+ */
+public class SpillReader implements Iterator<Map<String,Object>>, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer blockHeader = ByteBuffer.allocate( BLOCK_HEADER );
+    private final Inflater inflater = new Inflater();
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<SchemaKey,RowSchema> schemas = new HashMap<>();
+    private int[] lastIds;
+    private RowSchema lastSchema;
+    private int[] ids = new int[16];
+
+    private byte[] stored = new byte[0];
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int limit;
+    private Map<String,Object> next;
+    private boolean closed;
+
+    public SpillReader(File file) throws IOException {
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        ByteBuffer header = ByteBuffer.allocate( MAGIC.length + 2 );
+        if( !readFully( header ) || !Arrays.equals( Arrays.copyOf( header.array(), MAGIC.length ), MAGIC ) ) {
+            channel.close();
+            throw new IOException( file + " is not a spill file." );
+        }
+        if( header.get( MAGIC.length ) != VERSION ) {
+            channel.close();
+            throw new IOException( file + " has an unsupported spill version " + header.get( MAGIC.length ) );
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if( next == null && !closed ) {
+            try {
+                next = readRow();
+                if( next == null ) close();
+            } catch( IOException ex ) {
+                throw new UncheckedIOException( ex );
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map<String,Object> next() {
+        if( !hasNext() ) throw new NoSuchElementException();
+        Map<String,Object> row = next;
+        next = null;
+        return row;
+    }
+
+    private Map<String,Object> readRow() throws IOException {
+        while( true ) {
+            if( position >= limit && !readBlock() ) return null;
+            int entry = buffer[position++];
+            if( entry == COLUMN ) {
+                int length = readVarInt();
+                dictionary.add( length == 0 ? null : readString( length - 1 ) );
+            } else if( entry == RECORD ) {
+                readVarInt(); // the payload length lets other readers skip records
+                return readRecord();
+            } else {
+                throw new IOException( "Unknown spill entry " + entry );
+            }
+        }
+    }
+
+    private Row readRecord() throws IOException {
+        int fields = readVarInt();
+        if( ids.length < fields ) ids = new int[ fields * 2 ];
+        Object[] values = new Object[ fields ];
+        for( int i = 0; i < fields; i++ ) {
+            ids[i] = readVarInt();
+            values[i] = readValue();
+        }
+        return new Row( schemaOf( fields ), values );
+    }
+
+    private RowSchema schemaOf(int fields) {
+        if( lastIds != null && lastIds.length == fields && equals( lastIds, ids, fields ) ) return lastSchema;
+        SchemaKey key = new SchemaKey( Arrays.copyOf( ids, fields ) );
+        RowSchema schema = schemas.get( key );
+        if( schema == null ) {
+            List<String> columns = new ArrayList<>( fields );
+            for( int i = 0; i < fields; i++ ) {
+                columns.add( dictionary.get( ids[i] ) );
+            }
+            schema = RowSchema.of( columns );
+            schemas.put( key, schema );
+        }
+        lastIds = key.ids;
+        lastSchema = schema;
+        return schema;
+    }
+
+    private static boolean equals(int[] a, int[] b, int length) {
+        for( int i = 0; i < length; i++ ) {
+            if( a[i] != b[i] ) return false;
+        }
+        return true;
+    }
+
+    private Object readValue() throws IOException {
+        int tag = buffer[position++];
+        switch( tag ) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString( readVarInt() );
+            case INT:
+                return unZigZag( readVarInt() );
+            case LONG:
+                return unZigZag( readVarLong() );
+            case DOUBLE:
+                return Double.longBitsToDouble( readLong() );
+            case FLOAT:
+                return Float.intBitsToFloat( readInt() );
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BIG_DECIMAL:
+                int scale = unZigZag( readVarInt() );
+                return new BigDecimal( new BigInteger( readBytes() ), scale );
+            case BIG_INTEGER:
+                return new BigInteger( readBytes() );
+            case DATE:
+                return new Date( unZigZag( readVarLong() ) );
+            case TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp( unZigZag( readVarLong() ) );
+                timestamp.setNanos( readVarInt() );
+                return timestamp;
+            case SQL_DATE:
+                return new java.sql.Date( unZigZag( readVarLong() ) );
+            case SQL_TIME:
+                return new java.sql.Time( unZigZag( readVarLong() ) );
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay( unZigZag( readVarLong() ) );
+            case LOCAL_DATE_TIME:
+                long seconds = unZigZag( readVarLong() );
+                return LocalDateTime.ofEpochSecond( seconds, readVarInt(), ZoneOffset.UTC );
+            case SHORT:
+                return (short)unZigZag( readVarInt() );
+            case BYTE:
+                return buffer[position++];
+            case CHARACTER:
+                return (char)readVarInt();
+            case BYTES:
+                return readBytes();
+            case SERIALIZED:
+                try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( readBytes() ) ) ) {
+                    return in.readObject();
+                } catch( ClassNotFoundException ex ) {
+                    throw new IOException( ex );
+                }
+            default:
+                throw new IOException( "Unknown spill value type " + tag );
+        }
+    }
+
+    private String readString(int length) {
+        boolean ascii = true;
+        for( int i = position; i < position + length; i++ ) {
+            if( buffer[i] < 0 ) {
+                ascii = false;
+                break;
+            }
+        }
+        String value = new String( buffer, position, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8 );
+        position += length;
+        return value;
+    }
+
+    private byte[] readBytes() {
+        int length = readVarInt();
+        byte[] bytes = Arrays.copyOfRange( buffer, position, position + length );
+        position += length;
+        return bytes;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while( b < 0 );
+        return value;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position++];
+            value |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        } while( b < 0 );
+        return value;
+    }
+
+    private int readInt() {
+        int value = ((buffer[position] & 0xff) << 24) | ((buffer[position + 1] & 0xff) << 16) |
+                ((buffer[position + 2] & 0xff) << 8) | (buffer[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+
+    private long readLong() {
+        return ((long)readInt() << 32) | (readInt() & 0xffffffffL);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private boolean readBlock() throws IOException {
+        blockHeader.clear();
+        if( !readFully( blockHeader ) ) return false;
+        SpillCompression codec = SpillCompression.valueOf( blockHeader.get(0) );
+        int rawLength = blockHeader.getInt(1);
+        int storedLength = blockHeader.getInt(5);
+        if( buffer.length < rawLength ) buffer = new byte[ rawLength ];
+        if( codec == SpillCompression.NONE ) {
+            if( !readFully( ByteBuffer.wrap( buffer, 0, rawLength ) ) ) throw new EOFException("Truncated spill block");
+        } else {
+            if( stored.length < storedLength ) stored = new byte[ storedLength ];
+            if( !readFully( ByteBuffer.wrap( stored, 0, storedLength ) ) ) throw new EOFException("Truncated spill block");
+            codec.decompress( stored, storedLength, buffer, rawLength, inflater );
+        }
+        position = 0;
+        limit = rawLength;
+        return true;
+    }
+
+    /**
+     * @return false if the end of the file was reached before reading anything
+     */
+    private boolean readFully(ByteBuffer bytes) throws IOException {
+        while( bytes.hasRemaining() ) {
+            if( channel.read( bytes ) < 0 ) {
+                if( bytes.position() == 0 ) return false;
+                throw new EOFException("Truncated spill file");
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if( !closed ) {
+            closed = true;
+            inflater.end();
+            channel.close();
+        }
+    }
+
+    private static final class SchemaKey {
+        final int[] ids;
+        final int hash;
+
+        SchemaKey(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode( ids );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SchemaKey && Arrays.equals( ids, ((SchemaKey)o).ids );
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
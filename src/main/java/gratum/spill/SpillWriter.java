@@ -0,0 +1,395 @@
+package gratum.spill;
+
+import gratum.etl.Row;
+import gratum.etl.RowSchema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static gratum.spill.SpillFormat.*;
+
+/**
+ * Writes rows to disk in a compact binary format so they can be read back by a {@link SpillReader} with their
+ * types intact.  Records are length prefixed, every value carries a type tag, and column names are written once
+ * per file into a dictionary that records refer to by number.  Records are gathered into blocks, which are
+ * optionally compressed, and written to a FileChannel.
+ *
+ * Values that aren't one of the built in types are written with Java serialization when they're Serializable
+ * or as their toString() otherwise.
+ */
+public class SpillWriter implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final SpillCompression compression;
+    private final int blockSize;
+    private final Deflater deflater;
+    private final ByteBuffer blockHeader = ByteBuffer.allocate( BLOCK_HEADER );
+
+    private final Map<String,Integer> dictionary = new HashMap<>();
+    private int nullColumn = -1;
+    private int columnCount;
+    private RowSchema lastSchema;
+    private int[] lastIds;
+    private int[] ids = new int[16];
+
+    private byte[] buffer;
+    private int size;
+    private long rows;
+    private long bytesWritten;
+
+    public SpillWriter(File file) throws IOException {
+        this( file, SpillCompression.NONE );
+    }
+
+    public SpillWriter(File file, SpillCompression compression) throws IOException {
+        this( file, compression, DEFAULT_BLOCK_SIZE );
+    }
+
+    public SpillWriter(File file, SpillCompression compression, int blockSize) throws IOException {
+        this.channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+        this.compression = compression;
+        this.blockSize = blockSize;
+        this.deflater = compression == SpillCompression.DEFLATE ? new Deflater( Deflater.BEST_SPEED ) : null;
+        this.buffer = new byte[ blockSize + blockSize / 4 ];
+
+        ByteBuffer header = ByteBuffer.allocate( MAGIC.length + 2 );
+        header.put( MAGIC ).put( (byte)VERSION ).put( (byte)compression.id ).flip();
+        writeFully( header );
+    }
+
+    /**
+     * Writes the given row.  The row's keys are used as column names.
+     */
+    public void write(Map<String,?> row) throws IOException {
+        int[] columns = columnsOf( row );
+        int start = size;
+        ensure( 6 );
+        buffer[size++] = RECORD;
+        // leave room for the largest length prefix and move the payload back once its length is known
+        int payloadStart = size + 5;
+        size = payloadStart;
+        writeVarInt( row.size() );
+        int i = 0;
+        for( Object value : row.values() ) {
+            writeVarInt( columns[i++] );
+            writeValue( value );
+        }
+        int payloadLength = size - payloadStart;
+        size = start + 1;
+        writeVarInt( payloadLength );
+        System.arraycopy( buffer, payloadStart, buffer, size, payloadLength );
+        size += payloadLength;
+        rows++;
+        if( size >= blockSize ) flushBlock();
+    }
+
+    /**
+     * Looks up the id of each of the row's columns defining any that haven't been seen yet.  Rows that share a
+     * {@link RowSchema} with the previous row reuse the previous lookup.
+     */
+    private int[] columnsOf(Map<String,?> row) throws IOException {
+        RowSchema schema = row instanceof Row ? ((Row)row).getSchema() : null;
+        if( schema != null && schema == lastSchema ) return lastIds;
+
+        if( ids.length < row.size() ) ids = new int[ row.size() * 2 ];
+        int i = 0;
+        for( Object key : row.keySet() ) {
+            ids[i++] = idOf( key != null ? key.toString() : null );
+        }
+        if( schema != null ) {
+            lastSchema = schema;
+            lastIds = Arrays.copyOf( ids, i );
+            return lastIds;
+        }
+        return ids;
+    }
+
+    private int idOf(String column) throws IOException {
+        if( column == null ) {
+            if( nullColumn < 0 ) nullColumn = define( null );
+            return nullColumn;
+        }
+        Integer id = dictionary.get( column );
+        if( id == null ) {
+            id = define( column );
+            dictionary.put( column, id );
+        }
+        return id;
+    }
+
+    private int define(String column) {
+        ensure( 6 );
+        buffer[size++] = COLUMN;
+        if( column == null ) {
+            writeVarInt( 0 );
+        } else {
+            writeString( column, 1 );
+        }
+        return columnCount++;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        ensure( 11 );
+        if( value == null ) {
+            buffer[size++] = NULL;
+        } else if( value instanceof String ) {
+            buffer[size++] = STRING;
+            writeString( (String)value, 0 );
+        } else if( value instanceof Integer ) {
+            buffer[size++] = INT;
+            writeVarInt( zigZag( (Integer)value ) );
+        } else if( value instanceof Long ) {
+            buffer[size++] = LONG;
+            writeVarLong( zigZag( (Long)value ) );
+        } else if( value instanceof Double ) {
+            buffer[size++] = DOUBLE;
+            writeLong( Double.doubleToRawLongBits( (Double)value ) );
+        } else if( value instanceof Boolean ) {
+            buffer[size++] = (Boolean)value ? (byte)TRUE : (byte)FALSE;
+        } else if( value instanceof BigDecimal ) {
+            BigDecimal decimal = (BigDecimal)value;
+            buffer[size++] = BIG_DECIMAL;
+            writeVarInt( zigZag( decimal.scale() ) );
+            writeBytes( decimal.unscaledValue().toByteArray() );
+        } else if( value instanceof java.sql.Timestamp ) {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp)value;
+            buffer[size++] = TIMESTAMP;
+            writeVarLong( zigZag( timestamp.getTime() ) );
+            writeVarInt( timestamp.getNanos() );
+        } else if( value instanceof java.sql.Date ) {
+            buffer[size++] = SQL_DATE;
+            writeVarLong( zigZag( ((Date)value).getTime() ) );
+        } else if( value instanceof java.sql.Time ) {
+            buffer[size++] = SQL_TIME;
+            writeVarLong( zigZag( ((Date)value).getTime() ) );
+        } else if( value instanceof Date && value.getClass() == Date.class ) {
+            buffer[size++] = DATE;
+            writeVarLong( zigZag( ((Date)value).getTime() ) );
+        } else if( value instanceof LocalDate ) {
+            buffer[size++] = LOCAL_DATE;
+            writeVarLong( zigZag( ((LocalDate)value).toEpochDay() ) );
+        } else if( value instanceof LocalDateTime ) {
+            LocalDateTime dateTime = (LocalDateTime)value;
+            buffer[size++] = LOCAL_DATE_TIME;
+            writeVarLong( zigZag( dateTime.toEpochSecond( ZoneOffset.UTC ) ) );
+            writeVarInt( dateTime.getNano() );
+        } else if( value instanceof Float ) {
+            buffer[size++] = FLOAT;
+            writeInt( Float.floatToRawIntBits( (Float)value ) );
+        } else if( value instanceof BigInteger ) {
+            buffer[size++] = BIG_INTEGER;
+            writeBytes( ((BigInteger)value).toByteArray() );
+        } else if( value instanceof Short ) {
+            buffer[size++] = SHORT;
+            writeVarInt( zigZag( (Short)value ) );
+        } else if( value instanceof Byte ) {
+            buffer[size++] = BYTE;
+            buffer[size++] = (Byte)value;
+        } else if( value instanceof Character ) {
+            buffer[size++] = CHARACTER;
+            writeVarInt( (Character)value );
+        } else if( value instanceof byte[] ) {
+            buffer[size++] = BYTES;
+            writeBytes( (byte[])value );
+        } else if( value instanceof CharSequence ) {
+            buffer[size++] = STRING;
+            writeString( value.toString(), 0 );
+        } else if( value instanceof Serializable ) {
+            buffer[size++] = SERIALIZED;
+            writeBytes( serialize( value ) );
+        } else {
+            buffer[size++] = STRING;
+            writeString( value.toString(), 0 );
+        }
+    }
+
+    private byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try( ObjectOutputStream out = new ObjectOutputStream( bytes ) ) {
+            out.writeObject( value );
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the string as UTF-8 prefixed by its length in bytes plus the given bias.
+     */
+    private void writeString(String value, int bias) {
+        int length = value.length();
+        int encoded = length;
+        for( int i = 0; i < length; i++ ) {
+            char c = value.charAt(i);
+            if( c >= 0x80 ) {
+                encoded = utf8Length( value, i );
+                break;
+            }
+        }
+        ensure( 5 + encoded );
+        writeVarInt( encoded + bias );
+        if( encoded == length ) {
+            for( int i = 0; i < length; i++ ) {
+                buffer[size++] = (byte)value.charAt(i);
+            }
+        } else {
+            for( int i = 0; i < length; i++ ) {
+                char c = value.charAt(i);
+                if( c < 0x80 ) {
+                    buffer[size++] = (byte)c;
+                } else if( c < 0x800 ) {
+                    buffer[size++] = (byte)(0xc0 | (c >> 6));
+                    buffer[size++] = (byte)(0x80 | (c & 0x3f));
+                } else if( Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate( value.charAt(i + 1) ) ) {
+                    int codePoint = Character.toCodePoint( c, value.charAt(++i) );
+                    buffer[size++] = (byte)(0xf0 | (codePoint >> 18));
+                    buffer[size++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+                    buffer[size++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+                    buffer[size++] = (byte)(0x80 | (codePoint & 0x3f));
+                } else {
+                    // lone surrogates are replaced with ? just like String.getBytes does
+                    char e = Character.isSurrogate(c) ? '?' : c;
+                    if( e < 0x80 ) {
+                        buffer[size++] = (byte)e;
+                    } else {
+                        buffer[size++] = (byte)(0xe0 | (e >> 12));
+                        buffer[size++] = (byte)(0x80 | ((e >> 6) & 0x3f));
+                        buffer[size++] = (byte)(0x80 | (e & 0x3f));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int utf8Length(String value, int from) {
+        int length = from;
+        for( int i = from; i < value.length(); i++ ) {
+            char c = value.charAt(i);
+            if( c < 0x80 ) {
+                length++;
+            } else if( c < 0x800 ) {
+                length += 2;
+            } else if( Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate( value.charAt(i + 1) ) ) {
+                length += 4;
+                i++;
+            } else if( Character.isSurrogate(c) ) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensure( 5 + bytes.length );
+        writeVarInt( bytes.length );
+        System.arraycopy( bytes, 0, buffer, size, bytes.length );
+        size += bytes.length;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarInt(int value) {
+        ensure( 5 );
+        while( (value & ~0x7f) != 0 ) {
+            buffer[size++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte)value;
+    }
+
+    private void writeVarLong(long value) {
+        ensure( 10 );
+        while( (value & ~0x7fL) != 0 ) {
+            buffer[size++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte)value;
+    }
+
+    private void writeInt(int value) {
+        ensure( 4 );
+        buffer[size++] = (byte)(value >>> 24);
+        buffer[size++] = (byte)(value >>> 16);
+        buffer[size++] = (byte)(value >>> 8);
+        buffer[size++] = (byte)value;
+    }
+
+    private void writeLong(long value) {
+        writeInt( (int)(value >>> 32) );
+        writeInt( (int)value );
+    }
+
+    private void ensure(int bytes) {
+        if( size + bytes > buffer.length ) {
+            buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, size + bytes ) );
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if( size == 0 ) return;
+        byte[] compressed = compression.compress( buffer, size, deflater );
+        SpillCompression codec = compressed != null ? compression : SpillCompression.NONE;
+        int stored = compressed != null ? compressed.length : size;
+        blockHeader.clear();
+        blockHeader.put( (byte)codec.id ).putInt( size ).putInt( stored ).flip();
+        writeFully( blockHeader );
+        writeFully( compressed != null ? ByteBuffer.wrap( compressed ) : ByteBuffer.wrap( buffer, 0, size ) );
+        size = 0;
+        if( buffer.length > blockSize * 4 ) {
+            // a very large record grew the buffer so give it back
+            buffer = new byte[ blockSize + blockSize / 4 ];
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while( bytes.hasRemaining() ) {
+            bytesWritten += channel.write( bytes );
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of bytes written to the file so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+        } finally {
+            if( deflater != null ) deflater.end();
+            channel.close();
+        }
+    }
+}
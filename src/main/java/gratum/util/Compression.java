@@ -0,0 +1,85 @@
+package gratum.util;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Opens files that may be compressed.  The compression is picked by the file's extension: .gz, .bz2, .xz and .zst
+ * (or .zstd) are decompressed while they're read and compressed while they're written, and anything else is read
+ * and written as is.  Concatenated gzip members, like those written by {@link ParallelGzipOutputStream}, are read as
+ * a single stream.  xz and zstd need the optional org.tukaani:xz and com.github.luben:zstd-jni libraries on the
+ * classpath.
+ */
+public class Compression {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private Compression() {
+    }
+
+    /**
+     * @return the commons-compress name of the compressor for the file, or null if it isn't compressed.
+     */
+    public static String compressorOf(File file) {
+        String name = file.getName().toLowerCase( Locale.ROOT );
+        if( name.endsWith(".gz") || name.endsWith(".gzip") ) return CompressorStreamFactory.GZIP;
+        if( name.endsWith(".bz2") ) return CompressorStreamFactory.BZIP2;
+        if( name.endsWith(".xz") ) return CompressorStreamFactory.XZ;
+        if( name.endsWith(".zst") || name.endsWith(".zstd") ) return CompressorStreamFactory.ZSTANDARD;
+        return null;
+    }
+
+    public static boolean isCompressed(File file) {
+        return compressorOf( file ) != null;
+    }
+
+    /**
+     * Opens the file for reading, decompressing it if its extension says it's compressed.
+     */
+    public static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE );
+        String compressor = compressorOf( file );
+        if( compressor == null ) return in;
+        try {
+            // true reads every concatenated member rather than stopping after the first
+            return new BufferedInputStream( new CompressorStreamFactory( true ).createCompressorInputStream( compressor, in ), BUFFER_SIZE );
+        } catch( CompressorException ex ) {
+            in.close();
+            throw new IOException( file.getName() + ": Could not open " + compressor + " stream: " + ex.getMessage(), ex );
+        }
+    }
+
+    /**
+     * Creates the file for writing, compressing it if its extension says it should be.  gzip is compressed on
+     * multiple threads with {@link ParallelGzipOutputStream}.
+     *
+     * @param threads the number of threads to gzip with, or 0 to use the number of processors.  More than 0 gzips
+     *                the file whatever its extension is.
+     */
+    public static OutputStream create(File file, int threads) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if( parent != null && !parent.exists() ) parent.mkdirs();
+        String compressor = compressorOf( file );
+        if( threads > 0 || CompressorStreamFactory.GZIP.equals( compressor ) ) {
+            return new ParallelGzipOutputStream( new FileOutputStream( file ), threads > 0 ? threads : Runtime.getRuntime().availableProcessors() );
+        }
+        OutputStream out = new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE );
+        if( compressor == null ) return out;
+        try {
+            return new BufferedOutputStream( new CompressorStreamFactory().createCompressorOutputStream( compressor, out ), BUFFER_SIZE );
+        } catch( CompressorException ex ) {
+            out.close();
+            throw new IOException( file.getName() + ": Could not create " + compressor + " stream: " + ex.getMessage(), ex );
+        }
+    }
+}
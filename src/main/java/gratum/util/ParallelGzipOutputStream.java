@@ -0,0 +1,198 @@
+package gratum.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses on multiple threads the way pigz does.  The data is cut into blocks, each block is compressed on its own
+ * as a complete gzip member, and the members are written out in order.  Concatenated members are standard gzip so
+ * gunzip, GZIPInputStream and anything else that reads gzip reads the result as one stream.  Compressing blocks
+ * independently costs a little in ratio, but keeps every core busy instead of one.
+ *
+ * At most twice the number of threads blocks are buffered at once, so a slow destination holds up the writer
+ * rather than filling the heap.  Each thread reuses a Deflater from a pool owned by the stream, and they're all ended
+ * when the stream is closed so their native memory doesn't wait on the garbage collector.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final byte[] HEADER = new byte[] { 0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final OutputStream out;
+    private final int level;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final List<Deflater> deflaters = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<>();
+    private boolean ended;
+    private byte[] block;
+    private int position;
+    private boolean written;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out) {
+        this( out, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int threads) {
+        this( out, threads, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION );
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize, int level) {
+        if( threads < 1 ) throw new IllegalArgumentException("Threads must be at least 1, was " + threads);
+        if( blockSize < 1 ) throw new IllegalArgumentException("Block size must be at least 1, was " + blockSize);
+        this.out = out;
+        this.level = level;
+        this.maxPending = threads * 2;
+        this.block = new byte[ blockSize ];
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool( threads, runnable -> {
+            Thread thread = new Thread( runnable, "gzip-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if( closed ) throw new IOException("Stream closed");
+        if( position == block.length ) submit();
+        block[position++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if( closed ) throw new IOException("Stream closed");
+        while( length > 0 ) {
+            if( position == block.length ) submit();
+            int count = Math.min( length, block.length - position );
+            System.arraycopy( bytes, offset, block, position, count );
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Writes the members that have finished compressing.  The block being filled isn't cut short, since that would
+     * only make the output bigger.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeFinished( Integer.MAX_VALUE );
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if( closed ) return;
+        closed = true;
+        try {
+            // an empty stream is still a gzip member so the file can be read back
+            if( position > 0 || !written ) submit();
+            writeFinished( 0 );
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+            endDeflaters();
+            out.close();
+        }
+    }
+
+    private void endDeflaters() {
+        synchronized( deflaters ) {
+            for( Deflater deflater : deflaters ) {
+                deflater.end();
+            }
+            deflaters.clear();
+            ended = true;
+        }
+        idle.clear();
+    }
+
+    private Deflater takeDeflater() {
+        Deflater deflater = idle.poll();
+        if( deflater != null ) return deflater;
+        deflater = new Deflater( level, true );
+        synchronized( deflaters ) {
+            if( ended ) {
+                deflater.end();
+                throw new IllegalStateException("Stream closed");
+            }
+            deflaters.add( deflater );
+        }
+        return deflater;
+    }
+
+    private void submit() throws IOException {
+        byte[] data = block;
+        int length = position;
+        pending.add( executor.submit( () -> compress( data, length ) ) );
+        written = true;
+        block = new byte[ data.length ];
+        position = 0;
+        writeFinished( maxPending - 1 );
+    }
+
+    /**
+     * Writes finished members in order, waiting on them until no more than limit are pending.
+     */
+    private void writeFinished(int limit) throws IOException {
+        try {
+            while( !pending.isEmpty() && (pending.peek().isDone() || pending.size() > limit) ) {
+                out.write( pending.poll().get() );
+            }
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch( ExecutionException ex ) {
+            throw new IOException("Could not compress block", ex.getCause());
+        }
+    }
+
+    private byte[] compress(byte[] data, int length) {
+        Deflater deflater = takeDeflater();
+        byte[] member = new byte[ length + (length >> 7) + 64 ];
+        System.arraycopy( HEADER, 0, member, 0, HEADER.length );
+        int size = HEADER.length;
+        try {
+            deflater.reset();
+            deflater.setInput( data, 0, length );
+            deflater.finish();
+            while( !deflater.finished() ) {
+                if( size == member.length - 8 ) member = Arrays.copyOf( member, member.length * 2 );
+                size += deflater.deflate( member, size, member.length - 8 - size );
+            }
+        } finally {
+            idle.offer( deflater );
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update( data, 0, length );
+        writeInt( member, size, (int)crc.getValue() );
+        writeInt( member, size + 4, length );
+        return size + 8 == member.length ? member : Arrays.copyOf( member, size + 8 );
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte)value;
+        bytes[offset + 1] = (byte)(value >> 8);
+        bytes[offset + 2] = (byte)(value >> 16);
+        bytes[offset + 3] = (byte)(value >> 24);
+    }
+}
@@ -3,6 +3,8 @@ package gratum.concurrency
 import gratum.etl.GratumFixture
 import gratum.etl.LoadStatistic
 import gratum.etl.Pipeline
+import gratum.source.CollectionSource
+import gratum.util.PipelineAbortException
 import org.junit.Before
 import org.junit.Test
 
@@ -68,4 +70,81 @@ class LocalConcurrentContextTest {
         }
     }
 
+    @Test
+    void testSmallQueuesAndBatches() {
+        // more rows than fit in the queues at once so the source has to wait on the workers
+        List<Integer> ids = Collections.synchronizedList( [] )
+        LoadStatistic stats = CollectionSource.from( (1..5000).collect { [id: it] } )
+                .apply( new LocalConcurrentContext( 3, 2 ).batchSize( 7 )
+                    .spread { pipeline ->
+                        pipeline.filter("Even") { row -> row.id % 2 == 0 }
+                    }
+                    .collect { pipeline ->
+                        pipeline.addStep("Collect") { row ->
+                            ids << (row.id as Integer)
+                            return row
+                        }
+                    }
+                    .connect() )
+                .go()
+
+        assert stats.loaded == 2500
+        assert stats.rejections == 2500
+        assert ids.sort() == (1..2500).collect { it * 2 }
+    }
+
+    @Test
+    void testPartitionBy() {
+        // each worker only sees some of the rows so without partitioning unique would let duplicates through
+        List<Map> unique = Collections.synchronizedList( [] )
+        Map<Object,Set<String>> workersByKey = [:].withDefault { new HashSet<String>() }
+        LoadStatistic stats = CollectionSource.from( (1..2000).collect { [id: it, key: it % 37] } )
+                .apply( new LocalConcurrentContext( 4, 10 ).batchSize( 5 ).partitionBy( "key" )
+                    .spread { pipeline ->
+                        pipeline.addStep("Track worker") { row ->
+                            synchronized( workersByKey ) {
+                                workersByKey[ row.key ] << Thread.currentThread().name
+                            }
+                            return row
+                        }
+                        .unique("key")
+                    }
+                    .collect { pipeline ->
+                        pipeline.addStep("Collect") { row ->
+                            unique << row
+                            return row
+                        }
+                    }
+                    .connect() )
+                .go()
+
+        assert workersByKey.values().every { it.size() == 1 }
+        assert unique*.key.sort() == (0..36).toList()
+        assert stats.loaded == 37
+    }
+
+    @Test(timeout = 30_000L)
+    void testPartitionedWorkerFailure() {
+        // the failed worker's queue fills up and nobody takes from it, so the source has to give up rather than wait
+        try {
+            CollectionSource.from( (1..2000).collect { [id: it, key: it % 37] } )
+                    .apply( new LocalConcurrentContext( 4, 2 ).batchSize( 5 ).partitionBy( "key" )
+                        .spread { pipeline ->
+                            pipeline.addStep("Fail on key 7") { row ->
+                                if( row.key == 7 ) throw new Error("Failed on ${row.id}")
+                                return row
+                            }
+                        }
+                        .collect { pipeline -> pipeline }
+                        .connect() )
+                    .go()
+            assert false : "The pipeline should have failed"
+        } catch( PipelineAbortException ex ) {
+            Throwable cause = ex
+            while( cause.cause ) cause = cause.cause
+            assert cause instanceof Error
+            assert cause.message == "Failed on 7"
+        }
+    }
+
 }
@@ -0,0 +1,196 @@
+package gratum.etl
+
+import gratum.source.CollectionSource
+import gratum.source.CsvSource
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static gratum.source.CsvSource.csv
+
+class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    File titanic = new File("src/test/resources/titanic.csv")
+
+    private List<Map<String,Object>> rows(int count) {
+        return (1..count).collect { int i -> [id: i, name: "Row ${i}".toString()] as Map<String,Object> }
+    }
+
+    private void crash(Closure pipeline) {
+        try {
+            pipeline.call()
+            assert false : "Pipeline should have crashed"
+        } catch( RuntimeException ex ) {
+            Throwable cause = ex
+            while( cause.cause && !cause.message.startsWith("Crashed at") ) cause = cause.cause
+            assert cause.message.startsWith("Crashed at")
+        }
+    }
+
+    private Pipeline crashAt(Pipeline pipeline, int row) {
+        return pipeline.addStep("crash") { Map r ->
+            if( r.PassengerId == row.toString() || r.id == row ) throw new Error("Crashed at ${row}")
+            return r
+        }
+    }
+
+    @Test
+    void testResumeCsvFromOffset() {
+        File expected = folder.newFile("expected.csv")
+        csv( titanic ).save( expected ).go()
+
+        File output = new File( folder.root, "output.csv" )
+        File checkpoint = new File( folder.root, "titanic.checkpoint" )
+        crash { crashAt( csv( titanic ).checkpoint( checkpoint, 50 ), 1072 ).save( output ).go() }
+        assert checkpoint.exists()
+        Checkpoint saved = new Checkpoint( checkpoint, 50 ).load()
+        assert saved.rows == 150
+        assert saved.source.row == 150
+        assert saved.source.offset > 0
+        assert saved.sinks.size() == 1
+
+        List<String> seen = []
+        CsvSource source = CsvSource.of( titanic )
+        source.into()
+            .checkpoint( checkpoint, 50 )
+            .addStep("seen") { Map row ->
+                seen << (String)row.PassengerId
+                return row
+            }
+            .save( output )
+            .go()
+
+        assert seen.size() == 418 - 150
+        assert seen.first() == "1042"
+        assert !checkpoint.exists()
+        assert output.text == expected.text
+    }
+
+    @Test
+    void testResumeBySkippingRows() {
+        File expected = folder.newFile("expected.jsonl")
+        CollectionSource.from( rows(100) ).jsonl( expected ).go()
+
+        File output = new File( folder.root, "output.jsonl" )
+        File checkpoint = new File( folder.root, "rows.checkpoint" )
+        crash { crashAt( CollectionSource.from( rows(100) ).checkpoint( checkpoint, 10 ), 47 ).jsonl( output ).go() }
+        assert new Checkpoint( checkpoint, 10 ).load().rows == 40
+
+        List<Integer> seen = []
+        CollectionSource.from( rows(100) )
+            .checkpoint( checkpoint, 10 )
+            .addStep("seen") { Map row ->
+                seen << (Integer)row.id
+                return row
+            }
+            .jsonl( output )
+            .go()
+
+        assert seen == (41..100).toList()
+        assert !checkpoint.exists()
+        assert output.text == expected.text
+    }
+
+    @Test
+    void testResumeJsonArray() {
+        File expected = folder.newFile("expected.json")
+        CollectionSource.from( rows(30) ).json( expected.absolutePath ).go()
+
+        File output = new File( folder.root, "output.json" )
+        File checkpoint = new File( folder.root, "array.checkpoint" )
+        crash { crashAt( CollectionSource.from( rows(30) ).checkpoint( checkpoint, 7 ), 20 ).json( output.absolutePath ).go() }
+        CollectionSource.from( rows(30) ).checkpoint( checkpoint, 7 ).json( output.absolutePath ).go()
+
+        assert output.text == expected.text
+    }
+
+    @Test
+    void testCompletedPipelineStartsOver() {
+        File output = new File( folder.root, "output.csv" )
+        File checkpoint = new File( folder.root, "done.checkpoint" )
+        LoadStatistic stats = csv( titanic ).checkpoint( checkpoint, 100 ).save( output ).go()
+        assert stats.loaded == 418
+        assert !checkpoint.exists()
+
+        stats = csv( titanic ).checkpoint( checkpoint, 100 ).save( output ).go()
+        assert stats.loaded == 418
+        assert output.readLines().size() == 419
+    }
+
+    @Test(expected = IllegalStateException)
+    void testBatchStepsCantBeCheckpointed() {
+        csv( titanic )
+            .checkpoint( new File( folder.root, "batch.checkpoint" ), 100 )
+            .addBatchStep("batch", 10) { List<Map<String,Object>> batch -> batch }
+            .go()
+    }
+
+    @Test(expected = IllegalStateException)
+    void testDownstreamBatchStepsCantBeCheckpointed() {
+        csv( titanic )
+            .checkpoint( new File( folder.root, "downstream.checkpoint" ), 100 )
+            .save( new File( folder.root, "downstream.csv" ) )
+            .addBatchStep("batch", 10) { List<Map<String,Object>> batch -> batch }
+            .go()
+    }
+
+    @Test(expected = IllegalStateException)
+    void testRejectionBatchStepsCantBeCheckpointed() {
+        csv( titanic )
+            .checkpoint( new File( folder.root, "rejections.checkpoint" ), 100 )
+            .onRejection { Pipeline rejections ->
+                rejections.addBatchStep("batch", 10) { List<Map<String,Object>> batch -> batch }
+            }
+            .go()
+    }
+
+    @Test
+    void testResumeThroughAggregateIsRefused() {
+        File output = new File( folder.root, "output.jsonl" )
+        File checkpoint = new File( folder.root, "aggregate.checkpoint" )
+        crash { crashAt( CollectionSource.from( rows(100) ).checkpoint( checkpoint, 10 ), 47 ).jsonl( output ).go() }
+        assert new Checkpoint( checkpoint, 10 ).load().rows == 40
+
+        List<Map<String,Object>> totals = []
+        try {
+            CollectionSource.from( rows(100) )
+                .checkpoint( checkpoint, 10 )
+                .aggregate( metrics: [rows: "count", total: "sum(id)"] )
+                .addStep("totals") { Map row ->
+                    totals << row
+                    return row
+                }
+                .go()
+            assert false : "Resuming through an aggregate should have failed"
+        } catch( IllegalStateException ex ) {
+            assert ex.message.contains("aggregate")
+        }
+        // the rows before the checkpoint weren't skipped into a short total, and the checkpoint is kept
+        assert totals.isEmpty()
+        assert checkpoint.exists()
+    }
+
+    @Test
+    void testRowHoldingStepsCantBeCheckpointed() {
+        List<Closure<Pipeline>> operators = [
+            { Pipeline p -> p.sort("id") },
+            { Pipeline p -> p.groupBy("name") },
+            { Pipeline p -> p.aggregate( metrics: [rows: "count"] ) },
+            { Pipeline p -> p.reduce("total", [total: 0] as Map<String,Object>) { Map t, Map row -> t } },
+            { Pipeline p -> p.flattenWindow("name") { List<Map<String,Object>> window -> window } },
+            { Pipeline p -> p.mergeJoin( CollectionSource.from( rows(5) ), "id" ) }
+        ]
+        operators.eachWithIndex { Closure<Pipeline> operator, int i ->
+            File checkpoint = new File( folder.root, "holding${i}.checkpoint" )
+            try {
+                operator.call( CollectionSource.from( rows(5) ).checkpoint( checkpoint, 2 ) ).go()
+                assert false : "Operator ${i} should have been refused"
+            } catch( IllegalStateException ex ) {
+                assert ex.message.contains("holds rows")
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package gratum.etl
+
+import org.junit.Test
+
+class CompositeKeyTest {
+
+    static CompositeKey key(Object... values) {
+        Map<String,Object> row = [:]
+        values.eachWithIndex { Object value, int i -> row["c${i}".toString()] = value }
+        return CompositeKey.of( row, row.keySet() as String[] )
+    }
+
+    static void assertSameKey(CompositeKey a, CompositeKey b) {
+        assert a == b
+        assert a.hashCode() == b.hashCode()
+    }
+
+    @Test
+    void testValuesContainingSeparatorsDontCollide() {
+        assert key("a:b", "c") != key("a", "b:c")
+        assert key("a", null) != key("a", "null")
+        assert key("a") != key("a", null)
+        assertSameKey( key("a:b", "c"), key("a:b", "c") )
+    }
+
+    @Test
+    void testNumbersCompareByValue() {
+        assertSameKey( key(1), key(1L) )
+        assertSameKey( key(1), key(new BigDecimal("1.00")) )
+        assertSameKey( key(1), key(1.0d) )
+        assertSameKey( key(new BigInteger("42")), key((short)42) )
+        assertSameKey( key(0.5d), key(new BigDecimal("0.50")) )
+        assertSameKey( key(-0.0d), key(0) )
+        assert key(Long.MAX_VALUE) != key((double)Long.MAX_VALUE)
+        assert key(0.1f) != key(0.1d)
+        assert !key(Double.NaN).equals(key(Double.NaN))
+    }
+
+    @Test
+    void testCanonicalIntegerStringsMatchNumbers() {
+        String name = "Bill"
+        assertSameKey( key("Hi ${name}"), key("Hi Bill") )
+        assertSameKey( key("1"), key(1) )
+        assertSameKey( key(1L, "x"), key("1", "x") )
+        assertSameKey( key("-42"), key(new BigDecimal("-42.00")) )
+        assertSameKey( key("0"), key(0.0d) )
+        assertSameKey( key("123456789012345678901234"), key(new BigInteger("123456789012345678901234")) )
+        assertSameKey( key("${1}"), key(1) )
+        assert key("01") != key(1)
+        assert key("+1") != key(1)
+        assert key("1.0") != key(1)
+        assert key("-0") != key(0)
+        assert key("") != key(0)
+        assert key("1") != key("01")
+        assert key("2").compareTo( key(10) ) < 0
+        assertSameKey( key(null, "x"), key(null, "x") )
+    }
+
+    @Test
+    void testKeysAreOrderedLikeSort() {
+        List<CompositeKey> keys = [key(2, "b"), key(null, "z"), key(1L, "c"), key(new BigDecimal("1.5"), "a"), key(1, "a")]
+        assert keys.sort( false ).collect { it.toString() } == ["[null, z]", "[1, a]", "[1, c]", "[1.5, a]", "[2, b]"]
+        assert key("a").compareTo( key("a", "b") ) < 0
+    }
+
+    @Test
+    void testMixedValuesHaveATotalOrder() {
+        List<Object> values = ["10", "2", 10, 2.5d, "abc", "042", null, new BigDecimal("3"), "-1", true, "2"]
+        List<Object> sorted = values.sort( false ) { a, b -> CompositeKey.compareValues( a, b ) }
+        assert sorted == [null, "-1", "2", "2", 2.5d, new BigDecimal("3"), "10", 10, "042", "abc", true]
+        for( Object a : values ) {
+            for( Object b : values ) {
+                assert Integer.signum( CompositeKey.compareValues( a, b ) ) == -Integer.signum( CompositeKey.compareValues( b, a ) )
+                assert (CompositeKey.compareValues( a, b ) == 0) == CompositeKey.valueEquals( a, b )
+                for( Object c : values ) {
+                    if( CompositeKey.compareValues( a, b ) <= 0 && CompositeKey.compareValues( b, c ) <= 0 ) {
+                        assert CompositeKey.compareValues( a, c ) <= 0
+                    }
+                }
+            }
+        }
+        assert key("abc").compareTo( key(10) ) > 0
+        assert key("10").compareTo( key("2") ) > 0
+    }
+}
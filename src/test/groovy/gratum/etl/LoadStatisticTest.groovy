@@ -76,4 +76,56 @@ class LoadStatisticTest {
 
         assert stat1.stepTimings.size() == 2
     }
+
+    @Test
+    public void testStepStatistics() {
+        LoadStatistic stat = CollectionSource.from((1..100).collect { [id: it] })
+                .sampleTimings(10)
+                .filter("Even") { Map row -> (row.id as int) % 2 == 0 }
+                .addStep("Slow") { Map row ->
+                    Thread.sleep(1)
+                    return row
+                }
+                .go()
+
+        StepStatistic even = stat.getStepStatistic("Even")
+        assert even.rowsIn == 100
+        assert even.rowsOut == 50
+        assert even.latency.count == 10
+
+        StepStatistic slow = stat.getStepStatistic("Slow")
+        assert slow.rowsIn == 50
+        assert slow.rowsOut == 50
+        assert slow.latency.count == 5
+        assert slow.latency.p50 >= 1_000_000
+        assert slow.latency.max >= slow.latency.p99
+        assert slow.duration >= 50
+        assert stat.avg("Slow") >= 1.0
+        assert stat.toString(true).contains("p99")
+    }
+
+    @Test
+    public void testMergeCombinesStepStatistics() {
+        LoadStatistic stat1 = new LoadStatistic()
+        LoadStatistic stat2 = new LoadStatistic()
+        StepStatistic step1 = new StepStatistic(name: "step", rowsIn: 10, rowsOut: 9)
+        StepStatistic step2 = new StepStatistic(name: "step", rowsIn: 5, rowsOut: 5)
+        (1..99).each { step1.latency.record(1_000) }
+        step2.latency.record(5_000_000)
+        stat1.addStepStatistic(step1)
+        stat2.addStepStatistic(step2)
+
+        stat1.merge(stat2)
+
+        StepStatistic merged = stat1.getStepStatistic("step")
+        assert merged.rowsIn == 15
+        assert merged.rowsOut == 14
+        assert merged.latency.count == 100
+        assert merged.latency.p50 <= 1_100
+        assert merged.latency.p99 <= 1_100
+        assert merged.latency.max == 5_000_000
+        assert merged.latency.percentile(100) == 5_000_000
+        // the sources aren't changed by merging
+        assert step1.latency.count == 99
+    }
 }
@@ -5,8 +5,11 @@ import gratum.sink.Sink
 import gratum.source.ClosureSource
 import gratum.source.CollectionSource
 import gratum.source.CsvSource
+import gratum.util.PipelineAbortException
 import org.junit.Test
 
+import java.util.concurrent.atomic.AtomicInteger
+
 import static junit.framework.TestCase.*
 import static gratum.source.CsvSource.*
 import static gratum.source.HttpSource.*
@@ -90,6 +93,24 @@ class PipelineTest {
         assert statistic.getRejections(RejectionCategory.IGNORE_ROW,"filter()") == 233
     }
 
+    @Test
+    void testParallelCsv() {
+        CsvSource source = CsvSource.of("src/test/resources/titanic.csv").parallel(4)
+        source.csvFile.chunkSize = 2048
+        int previous = 0
+        LoadStatistic statistic = source.into()
+            .addStep("Rows arrive in order") { Map row ->
+                assert (row.PassengerId as int) > previous
+                previous = row.PassengerId as int
+                return row
+            }
+            .filter([Sex: "female"])
+            .go()
+
+        assert statistic.loaded == 152
+        assert statistic.rejections == 266
+    }
+
     @Test
     void testFilterMapWithCollection() {
         GratumFixture.withResource("titanic.csv") { stream ->
@@ -247,7 +268,35 @@ class PipelineTest {
 
     @Test
     void testIntersect() {
+        List<Map> rows = []
+        LoadStatistic stats = from([
+                [first: "a:b", last: "c"],
+                [first: "a", last: "b:c"],
+                [first: "x", last: "y"]
+        ])
+        .intersect( from([[given: "a", family: "b:c"], [given: "x", family: "y"]]), [first: "given", last: "family"] )
+        .addStep("Collect") { row ->
+            rows << row
+            return row
+        }
+        .go()
+
+        assert stats.loaded == 3
+        assert rows.collect { it.included } == [false, true, true]
+    }
 
+    @Test
+    void testJoinStringKeysToNumbers() {
+        List<Map> rows = []
+        from([[id: "1", name: "Bob"], [id: "2", name: "Sue"], [id: "03", name: "Kim"]])
+            .join( from([[id: 1, dept: "Sales"], [id: 2L, dept: "IT"], [id: 3, dept: "Ops"]]), ['id'], true )
+            .addStep("Collect") { row ->
+                rows << row
+                return row
+            }
+            .go()
+
+        assert rows.collect { it.dept } == ["Sales", "IT", null]
     }
 
     @Test
@@ -519,6 +568,127 @@ class PipelineTest {
         assert stats.rejections == 0
     }
 
+    @Test
+    void testJoinSpillsToDisk() {
+        [false, true].each { boolean left ->
+            int rejections = 0
+            Set<String> joined = [] as Set
+            LoadStatistic stats = ClosureSource.of { pipeline ->
+                for( int i = 0; i < 3_000; i++ ) {
+                    pipeline.process([id: i, name: "Person ${i}".toString()])
+                }
+            }
+            .into()
+            .join( ClosureSource.of { pipeline ->
+                for( int i = 0; i < 5_000; i++ ) {
+                    pipeline.process([id: i % 2_500, hobby: "Hobby ${i}".toString()])
+                }
+            }.into(), ['id'], left ) {
+                memoryBudget = 32 * 1024
+                partitions = 4
+            }
+            .addStep("Assert joined") { Map row ->
+                assert row.name == "Person ${row.id}".toString()
+                if( (row.id as int) < 2_500 ) {
+                    assert joined.add( "${row.id}:${row.hobby}".toString() )
+                } else {
+                    assert row.containsKey("hobby") && row.hobby == null
+                }
+                return row
+            }
+            .onRejection { Pipeline pipeline ->
+                pipeline.addStep("Count rejections") { row ->
+                    rejections++
+                    return row
+                }
+                return
+            }
+            .go()
+
+            assert joined.size() == 5_000
+            assert stats.loaded == (left ? 5_500 : 5_000)
+            assert stats.rejections == (left ? 0 : 500)
+            assert rejections == (left ? 0 : 500)
+        }
+    }
+
+    @Test
+    void testMergeJoin() {
+        [false, true].each { boolean left ->
+            List<Map> rows = []
+            LoadStatistic stats = from(GratumFixture.people)
+                .sort("id")
+                .mergeJoin( from(GratumFixture.hobbies).sort("id"), ['id'], left )
+                .addStep("Collect") { Map row ->
+                    rows << row
+                    return row
+                }
+                .go()
+
+            List<Map> expected = []
+            from(GratumFixture.people).join( from(GratumFixture.hobbies), ['id'], left ).addStep("Collect") { Map row ->
+                expected << row
+                return row
+            }.go()
+
+            assert stats.loaded == (left ? 9 : 8)
+            assert stats.rejections == (left ? 0 : 1)
+            assert rows.toSet() == expected.toSet()
+            assert rows.collect { it.id } == rows.collect { it.id }.sort()
+        }
+    }
+
+    @Test
+    void testMergeJoinMixedKeys() {
+        List<Map> rows = []
+        LoadStatistic stats = from([[id: "10", name: "ten"], [id: "2", name: "two"], [id: "x", name: "ex"], [id: "1", name: "one"], [id: "042", name: "zero"]])
+                .sort("id")
+                .mergeJoin( from([[id: 10, n: 10], [id: "x", n: 0], [id: 2, n: 2], [id: 1.5d, n: 1]]).sort("id"), "id" )
+                .addStep("Collect") { Map row ->
+                    rows << row
+                    return row
+                }
+                .go()
+
+        assert rows.collect { [it.name, it.n] } == [["two", 2], ["ten", 10], ["ex", 0]]
+        assert stats.loaded == 3
+        assert stats.rejections == 2
+    }
+
+    @Test
+    void testMergeJoinManyToManyAndOutOfOrder() {
+        List<Map> rejections = []
+        List<Map> rows = []
+        LoadStatistic stats = from([
+                [id: 1, side: "L1"], [id: 2, side: "L2a"], [id: 2, side: "L2b"], [id: 1, side: "late"], [id: 4, side: "L4"]
+        ])
+        .mergeJoin( ClosureSource.of { pipeline ->
+            pipeline.process([id: 2, other: "R2a"])
+            pipeline.process([id: 2, other: "R2b"])
+            pipeline.process([id: 1, other: "late"])
+            pipeline.process([id: 4, other: "R4"])
+            // enough rows after the last match that the right side has to be stopped early
+            for( int i = 5; i < 10_000; i++ ) pipeline.process([id: i, other: "R${i}".toString()])
+        }.into(), "id" )
+        .addStep("Collect") { Map row ->
+            rows << row
+            return row
+        }
+        .onRejection { Pipeline pipeline ->
+            pipeline.addStep("Collect rejections") { row ->
+                rejections << row
+                return row
+            }
+            return
+        }
+        .go()
+
+        assert rows.collect { "${it.side}-${it.other}".toString() } == ["L2a-R2a", "L2a-R2b", "L2b-R2a", "L2b-R2b", "L4-R4"]
+        assert stats.loaded == 5
+        assert rejections.collect { it.side } == ["L1", "late"]
+        assert rejections.collect { it.rejectionCategory } == [RejectionCategory.IGNORE_ROW, RejectionCategory.REJECTION]
+    }
+
     @Test
     void testSort() {
         String lastHobby
@@ -598,6 +768,70 @@ class PipelineTest {
         assert afterWasCalled
     }
 
+    @Test
+    void testSortExternalCleansUp() {
+        Closure<Integer> sortDirs = { new File( System.getProperty("java.io.tmpdir") ).listFiles().count { File f -> f.name.startsWith("sorting_") } as int }
+        int before = sortDirs()
+        Pipeline pipeline = from( GratumFixture.hobbies ).sort("Sort Hobby") {
+            pageSize = 2
+            orderBy("hobby")
+        }
+        assert sortDirs() == before : "The sort shouldn't touch the disk until the pipeline runs"
+
+        File tmpDir = null
+        from( GratumFixture.hobbies ).sort("Sort Hobby") {
+            pageSize = 2
+            downstream = false
+            orderBy("hobby")
+            after { File sorted ->
+                tmpDir = sorted.parentFile
+                assert sorted.exists()
+            }
+        }.go()
+        assert tmpDir != null
+        assert !tmpDir.exists()
+
+        pipeline.go()
+        assert sortDirs() == before
+    }
+
+    @Test
+    void testSortExternalWithMemoryBudget() {
+        int upperBound = 5_000
+        List<String> hobbies = []
+        String lastHobby = ""
+        int lastOrder = -1
+        LoadStatistic stat = ClosureSource.of { pipeline ->
+            for( int i = 0; i < upperBound; i++ ) {
+                Map<String,Object> row = new LinkedHashMap<>( GratumFixture.hobbies[i % GratumFixture.hobbies.size()] )
+                row.order = i
+                pipeline.process( row )
+            }
+        }
+        .into()
+        .sort("Sort Hobby") {
+            memoryBudget = 64 * 1024
+            mergeFanIn = 4
+            orderBy("hobby")
+        }
+        .addStep("Assert sorted and stable") { Map row ->
+            String hobby = row.hobby
+            assert row.order instanceof Integer
+            int order = row.order as int
+            assert (lastHobby <=> hobby) <= 0
+            if( lastHobby == hobby ) assert lastOrder < order
+            lastHobby = hobby
+            lastOrder = order
+            hobbies << hobby
+            return row
+        }
+        .go()
+
+        assert stat.loaded == upperBound
+        assert hobbies.size() == upperBound
+        assert hobbies.toSet() == GratumFixture.hobbies.collect { it.hobby }.toSet()
+    }
+
     @Test
     void testUnique() {
         LoadStatistic stats = from(GratumFixture.hobbies).unique("id")
@@ -608,6 +842,395 @@ class PipelineTest {
         assert stats.getRejections(RejectionCategory.IGNORE_ROW) == 4
     }
 
+    @Test
+    void testUniqueByColumns() {
+        LoadStatistic stats = from([
+                [id: 1, hobby: "a:b", kind: "c"],
+                [id: 2, hobby: "a", kind: "b:c"],
+                [id: 3, hobby: "a", kind: "b:c"],
+                [id: 4, hobby: "a", kind: null],
+                [id: 5, hobby: "a", kind: null]
+        ])
+        .unique("hobby", "kind")
+        .go()
+
+        assert stats.loaded == 3
+        assert stats.getRejections(RejectionCategory.IGNORE_ROW) == 2
+    }
+
+    @Test
+    void testFusedStepsKeepStepStatistics() {
+        List<Map> rejections = []
+        Closure<LoadStatistic> run = { boolean fuse ->
+            from([
+                    [id: "1", name: "Bill", age: "30"],
+                    [id: "2", name: "Ted", age: "x"],
+                    [id: "3", name: "Rufus", age: "17"],
+                    [id: "4", name: "Missy", age: null]
+            ])
+            .fuseSteps( fuse )
+            .asInt("id")
+            .asInt("age")
+            .renameFields([name: "first"])
+            .defaultValues([age: 21])
+            .addStep("not fused") { row -> row }
+            .filter([first: ["Bill", "Rufus", "Missy"]])
+            .setField("checked", true)
+            .onRejection { Pipeline rej ->
+                rej.addStep("Save rejections") { row ->
+                    rejections << row
+                    return row
+                }
+                return
+            }
+            .go()
+        }
+
+        LoadStatistic fused = run( true )
+        List<Map> fusedRejections = new ArrayList<>( rejections )
+        rejections.clear()
+        LoadStatistic unfused = run( false )
+
+        assert fused.loaded == 3
+        assert fused.getRejections(RejectionCategory.INVALID_FORMAT, "asInt(age)") == 1
+        assert fusedRejections*.rejectionStep*.toString() == ["asInt(age)"]
+        assert rejections*.rejectionStep*.toString() == ["asInt(age)"]
+        assert fused.getStepStatistic("asInt(age)").rowsIn == 4
+        assert fused.getStepStatistic("asInt(age)").rowsOut == 3
+        assert fused.getStepStatistic("renameFields([name:first]").rowsIn == 3
+        assert fused.getStepStatistic("setField(checked)").latency.count == 3
+        assert fused.stepStatistics.keySet() == unfused.stepStatistics.keySet()
+        fused.stepStatistics.each { String name, StepStatistic step ->
+            assert step.rowsIn == unfused.getStepStatistic(name).rowsIn
+            assert step.rowsOut == unfused.getStepStatistic(name).rowsOut
+        }
+    }
+
+    @Test
+    void testFusedStepsHaltOnException() {
+        LoadStatistic stats = from([[id: "1"], [id: "2"]])
+                .setField("a", 1)
+                .addStep("boom", new RowFunction() {
+                    @Override
+                    Map<String,Object> apply(Map<String,Object> row) {
+                        if( row.id == "2" ) throw new IllegalStateException("boom")
+                        return row
+                    }
+                })
+                .setField("b", 2)
+                .go()
+
+        assert stats.loaded == 1
+        assert stats.getRejections(RejectionCategory.SCRIPT_ERROR, "boom") == 1
+        assert stats.getStepStatistic("setField(b)").rowsIn == 1
+    }
+
+    @Test
+    void testBatchStep() {
+        List<Integer> batches = []
+        List<Map> rejections = []
+        List<Object> after = []
+
+        LoadStatistic stats = from((1..7).collect { [id: it] })
+                .filter("Not 2") { row -> row.id != 2 }
+                .addBatchStep("lookup", 2) { List<Map<String,Object>> rows ->
+                    batches << rows.size()
+                    rows.each { row -> row.name = "name ${row.id}".toString() }
+                    return rows.collect { row -> row.id == 5 ? reject(row, "no five", RejectionCategory.REJECTION) : row }
+                }
+                .addStep("after") { row ->
+                    after << row.id
+                    return row
+                }
+                .onRejection { Pipeline rej ->
+                    rej.addStep("Save rejections") { row ->
+                        rejections << row
+                        return row
+                    }
+                    return
+                }
+                .go()
+
+        assert batches == [2, 2, 2]
+        assert after == [1, 3, 4, 6, 7]
+        assert stats.loaded == 5
+        assert stats.getRejections(RejectionCategory.REJECTION, "lookup") == 1
+        assert rejections*.id == [2, 5]
+        assert rejections*.rejectionStep*.toString() == ["Not 2", "lookup"]
+        assert stats.getStepStatistic("lookup").rowsIn == 6
+        assert stats.getStepStatistic("lookup").rowsOut == 5
+    }
+
+    @Test
+    void testBatchStepFlushesBeforeAfter() {
+        List<String> events = []
+
+        LoadStatistic stats = from((1..5).collect { [id: it] })
+                .batchSize(3)
+                .addBatchStep("first") { rows ->
+                    events << "first ${rows*.id}".toString()
+                    return rows + rows.collect { [id: it.id * 10] }
+                }
+                .addBatchStep("second", 4) { rows ->
+                    events << "second ${rows*.id}".toString()
+                    return rows
+                }
+                .after {
+                    events << "after"
+                    return
+                }
+                .go()
+
+        assert stats.loaded == 10
+        assert events == [
+                "first [1, 2, 3]",
+                "second [1, 2, 3, 10]",
+                "first [4, 5]",
+                "second [20, 30, 4, 5]",
+                "second [40, 50]",
+                "after"
+        ]
+    }
+
+    @Test
+    void testSourcesHandOverChunks() {
+        List<List<Integer>> chunks = []
+        List<Integer> ids = []
+        LoadStatistic stats = chunked( "collection", chunks )
+                .source( CollectionSource.of( (1..7).collect { [id: it] } ) )
+                .batchSize(3)
+                .addStep("collect") { row ->
+                    ids << (int)row.id
+                    return row
+                }
+                .go()
+
+        assert chunks == [[3, 1], [3, 4], [1, 7]]
+        assert ids == (1..7).toList()
+        assert stats.loaded == 7
+
+        File tmp = File.createTempFile("chunks", ".csv")
+        try {
+            tmp.text = "id\n" + (1..5).join("\n") + "\n"
+            chunks.clear()
+            stats = chunked( "csv", chunks )
+                    .source( new CsvSource( tmp ) )
+                    .batchSize(2)
+                    .go()
+
+            assert chunks == [[2, 1], [2, 3], [1, 5]]
+            assert stats.loaded == 5
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    void testCheckpointedSourcesHandOverRows() {
+        File checkpoint = File.createTempFile("chunks", ".checkpoint")
+        checkpoint.delete()
+        List<List<Integer>> chunks = []
+        LoadStatistic stats = chunked( "collection", chunks )
+                .source( CollectionSource.of( (1..7).collect { [id: it] } ) )
+                .batchSize(3)
+                .checkpoint( checkpoint, 2 )
+                .go()
+
+        assert chunks.isEmpty()
+        assert stats.loaded == 7
+        assert !checkpoint.exists()
+    }
+
+    /**
+     * @return a Pipeline that records the size and first line of every chunk handed to processBatch.
+     */
+    private static Pipeline chunked( String name, List<List<Integer>> chunks ) {
+        return new Pipeline( name ) {
+            @Override
+            void processBatch(Collection<? extends Map> rows, int firstLine) {
+                chunks << [rows.size(), firstLine]
+                super.processBatch( rows, firstLine )
+            }
+        }
+    }
+
+    @Test
+    void testBatchStepExceptionRejectsBatch() {
+        LoadStatistic stats = from((1..5).collect { [id: it] })
+                .addBatchStep("explode", 2) { rows ->
+                    if( rows*.id.contains(3) ) throw new IllegalStateException("boom")
+                    return rows
+                }
+                .go()
+
+        assert stats.loaded == 3
+        assert stats.getRejections(RejectionCategory.SCRIPT_ERROR, "explode") == 2
+    }
+
+    @Test
+    void testAggregate() {
+        List<Map> groups = []
+        LoadStatistic stats = from([
+                [customer: "Bill", amount: 10, price: 1.5d, at: 1],
+                [customer: "Ted", amount: 5, price: null, at: 2],
+                [customer: "Bill", amount: 20, price: 2.5d, at: 3],
+                [customer: "Bill", amount: null, price: 0.5d, at: 4],
+                [customer: "Rufus", amount: 7, price: 3.0d, at: 5]
+        ])
+        .aggregate( by: "customer", metrics: [rows: "count", amounts: "count(amount)", total: "sum(amount)",
+                                               spent: "sum(price)", average: "avg(amount)", lowest: "min(price)",
+                                               highest: "max(amount)", first: "first(at)", last: "last(at)"] )
+        .addStep("groups") { row ->
+            groups << row
+            return row
+        }
+        .go()
+
+        assert stats.loaded == 3
+        assert groups == [
+                [customer: "Bill", rows: 3L, amounts: 2L, total: 30L, spent: 4.5d, average: 15.0d, lowest: 0.5d, highest: 20, first: 1, last: 4],
+                [customer: "Ted", rows: 1L, amounts: 1L, total: 5L, spent: null, average: 5.0d, lowest: null, highest: 5, first: 2, last: 2],
+                [customer: "Rufus", rows: 1L, amounts: 1L, total: 7L, spent: 3.0d, average: 7.0d, lowest: 3.0d, highest: 7, first: 5, last: 5]
+        ]
+    }
+
+    @Test
+    void testAggregateSpillsGroups() {
+        List<Map<String,Object>> rows = (1..5000).collect { [key: it % 997, bucket: it % 3, amount: it, price: new BigDecimal("${it}.25")] as Map<String,Object> }
+        Map<String,Object> options = [by: ["key", "bucket"], metrics: [n: "count", total: "sum(amount)", cost: "sum(price)", low: "min(amount)", first: "first(amount)", last: "last(amount)"]]
+
+        List<Map> inMemory = []
+        from( rows ).aggregate( options ).addStep("collect") { row -> inMemory << row; row }.go()
+        List<Map> spilled = []
+        LoadStatistic stats = from( rows ).aggregate( options + [maxGroups: 100, partitions: 4] ).addStep("collect") { row -> spilled << row; row }.go()
+
+        assert stats.loaded == 2991
+        Closure byKey = { Map row -> [row.key, row.bucket] }
+        assert spilled.sort( false, byKey ) == inMemory.sort( false, byKey )
+        Map total = inMemory.find { it.key == 5 && it.bucket == 2 }
+        assert total.n == (1..5000).count { it % 997 == 5 && it % 3 == 2 }
+        assert total.cost instanceof BigDecimal
+    }
+
+    @Test
+    void testAggregateRejectsNonNumbers() {
+        LoadStatistic stats = from([[amount: "1"], [amount: 2]])
+                .aggregate( metrics: [total: "sum(amount)"] )
+                .go()
+
+        assert stats.loaded == 1
+        assert stats.getRejections(RejectionCategory.SCRIPT_ERROR) == 1
+    }
+
+    @Test
+    void testAggregateRejectedRowsLeaveNoTrace() {
+        List<Map> groups = []
+        LoadStatistic stats = from([[c: "a", amount: 1], [c: "a", amount: "abc"], [c: "b", amount: "xyz"], [c: "a", amount: 3, at: 1]])
+                .aggregate( by: "c", metrics: [orders: "count", total: "sum(amount)", average: "avg(amount)", latest: "max(at)"] )
+                .addStep("groups") { row ->
+                    groups << row
+                    return row
+                }
+                .go()
+
+        assert stats.getRejections(RejectionCategory.SCRIPT_ERROR) == 2
+        assert groups == [[c: "a", orders: 2L, total: 4L, average: 2.0d, latest: 1]]
+    }
+
+    @Test
+    void testAsyncStepKeepsOrder() {
+        List<Integer> after = []
+        List<String> threads = Collections.synchronizedList( [] )
+        AtomicInteger running = new AtomicInteger()
+        int most = 0
+
+        LoadStatistic stats = from((1..50).collect { [id: it] })
+                .addAsyncStep("slow", 4) { row ->
+                    int now = running.incrementAndGet()
+                    synchronized( threads ) { most = Math.max( most, now ) }
+                    threads << Thread.currentThread().name
+                    Thread.sleep( (51 - (row.id as int)) % 5 )
+                    running.decrementAndGet()
+                    return row.id == 7 ? reject( row, "no sevens", RejectionCategory.REJECTION ) : row
+                }
+                .addStep("after") { row ->
+                    after << (row.id as Integer)
+                    return row
+                }
+                .go()
+
+        assert after == (1..50).findAll { it != 7 }
+        assert stats.loaded == 49
+        assert stats.getRejections(RejectionCategory.REJECTION, "slow") == 1
+        assert most <= 4
+        assert !threads.contains( Thread.currentThread().name )
+    }
+
+    @Test
+    void testAsyncStepUnorderedFinishesBeforeAfter() {
+        List<Integer> after = []
+        boolean complete = false
+
+        LoadStatistic stats = from((1..20).collect { [id: it] })
+                .addAsyncStep("unordered", 8, false) { row ->
+                    if( row.id == 5 ) throw new IllegalStateException("boom")
+                    Thread.sleep( 10 )
+                    return row
+                }
+                .addStep("after") { row ->
+                    after << (row.id as Integer)
+                    return row
+                }
+                .after {
+                    complete = after.size() == 19
+                    return
+                }
+                .go()
+
+        assert complete
+        assert after.sort() == (1..20).findAll { it != 5 }
+        assert stats.loaded == 19
+        assert stats.getRejections(RejectionCategory.SCRIPT_ERROR, "unordered") == 1
+    }
+
+    @Test
+    void testAsyncStepFollowedByHalt() {
+        List<Integer> after = []
+
+        LoadStatistic stats = from((1..3).collect { [id: it] })
+                .addAsyncStep("slow", 4) { row ->
+                    Thread.sleep( 20 )
+                    return row
+                }
+                .limit(1)
+                .addStep("after") { row ->
+                    after << (row.id as Integer)
+                    return row
+                }
+                .go()
+
+        assert after == [1]
+        assert stats.loaded == 1
+    }
+
+    @Test
+    void testAsyncStepFollowedByError() {
+        try {
+            from((1..3).collect { [id: it] })
+                    .addAsyncStep("slow", 4) { row ->
+                        Thread.sleep( 20 )
+                        return row
+                    }
+                    .addStep("explode") { row ->
+                        throw new Error("exploded on ${row.id}")
+                    }
+                    .go()
+            assert false : "The error should have stopped the pipeline"
+        } catch( PipelineAbortException ex ) {
+            assert ex.cause.message == "exploded on 1"
+        }
+    }
+
     @Test
     void testRejections() {
         List<Map> rejections = []
@@ -768,6 +1391,33 @@ class PipelineTest {
 
     }
 
+    @Test
+    void testMergePage() {
+        File dir = File.createTempDir("pages_")
+        try {
+            CSVFile page1 = new CSVFile( new File( dir, "page_1.csv" ), "," )
+            page1.write( "id", "name" )
+            page1.write( 1, "a" )
+            page1.write( 4, "d" )
+            page1.write( 5, "e" )
+            page1.close()
+            CSVFile page2 = new CSVFile( new File( dir, "page_2.csv" ), "," )
+            page2.write( "id", "name" )
+            page2.write( 2, "b" )
+            page2.write( 3, "c" )
+            page2.write( 6, "f" )
+            page2.close()
+
+            Comparator<Map<String,Object>> byId = { Map a, Map b -> (a.id as int) <=> (b.id as int) } as Comparator
+            CSVFile merged = from([[id: 1]]).mergePage( new CSVFile( page1.file, "," ), new CSVFile( page2.file, "," ), byId )
+
+            assert merged.file.name == "page_1_2.csv"
+            assert merged.mapIterator().collect { it.name } == ["a", "b", "c", "d", "e", "f"]
+        } finally {
+            dir.deleteDir()
+        }
+    }
+
     @Test
     void testSort2() {
         Integer last = -1
@@ -0,0 +1,131 @@
+package gratum.etl
+
+import org.junit.Test
+
+import static gratum.source.CsvSource.csv
+
+class RowTest {
+
+    @Test
+    void testRowBehavesLikeAMap() {
+        RowSchema schema = RowSchema.of("name", "age", "gender")
+        Row row = new Row(schema, ["Bill", "53", "male"] as Object[])
+
+        assert row.size() == 3
+        assert row.name == "Bill"
+        assert row["age"] == "53"
+        assert row.containsKey("gender")
+        assert !row.containsKey("hobby")
+        assert row.hobby == null
+        assert row.keySet().toList() == ["name", "age", "gender"]
+        assert row.values().toList() == ["Bill", "53", "male"]
+        assert row == [name: "Bill", age: "53", gender: "male"]
+        assert [name: "Bill", age: "53", gender: "male"] == row
+        assert row.hashCode() == [name: "Bill", age: "53", gender: "male"].hashCode()
+    }
+
+    @Test
+    void testAddingAndRemovingColumnsSharesSchemas() {
+        RowSchema schema = RowSchema.of("name", "age")
+        Row row1 = new Row(schema, ["Bill", "53"] as Object[])
+        Row row2 = new Row(schema, ["Cheryl", "43"] as Object[])
+
+        row1.hobby = "Stamp Collecting"
+        row2.hobby = "Biking"
+
+        assert row1.keySet().toList() == ["name", "age", "hobby"]
+        assert row1.schema.is(row2.schema)
+        assert schema.size() == 2
+
+        assert row1.remove("age") == "53"
+        assert row2.remove("age") == "43"
+        assert row1.keySet().toList() == ["name", "hobby"]
+        assert row1.schema.is(row2.schema)
+        assert row1.hobby == "Stamp Collecting"
+        assert row2.name == "Cheryl"
+        assert row1.remove("age") == null
+    }
+
+    @Test
+    void testRenameAndClip() {
+        Row row = new Row(RowSchema.of("id", "name", "age", "gender"), [1, "Bill", "53", "male"] as Object[])
+
+        row["fullName"] = row.remove("name")
+        assert row.keySet().toList() == ["id", "age", "gender", "fullName"]
+
+        row.retainAll { key, value -> key in ["id", "fullName"] }
+        assert row == [id: 1, fullName: "Bill"]
+        assert row.keySet().toList() == ["id", "fullName"]
+    }
+
+    @Test
+    void testCloneIsIndependent() {
+        Row row = new Row(RowSchema.of("name", "age"), ["Bill", "53"] as Object[])
+        Row copy = row.clone()
+        copy.age = "54"
+        copy.hobby = "Biking"
+
+        assert row.age == "53"
+        assert !row.containsKey("hobby")
+        assert copy == [name: "Bill", age: "54", hobby: "Biking"]
+    }
+
+    @Test
+    void testEntrySetValueAndNullKeys() {
+        Row row = new Row(RowSchema.of("name", "age"), [" Bill ", " 53 "] as Object[])
+        row.each { String key, Object value -> row[key] = (value as String).trim() }
+        assert row == [name: "Bill", age: "53"]
+
+        row.entrySet().each { Map.Entry e -> e.value = e.value + "!" }
+        assert row == [name: "Bill!", age: "53!"]
+
+        row.put(null, "ragged")
+        assert row.containsKey(null)
+        assert row[null] == "ragged"
+        assert row.remove(null) == "ragged"
+    }
+
+    @Test
+    void testDuplicateColumnsCollapse() {
+        RowSchema schema = RowSchema.of("a", "b", "a")
+        assert schema.columns == ["a", "b"]
+        assert schema.indexesOf(["a", "b", "a"]) == [0, 1, 0] as int[]
+    }
+
+    @Test
+    void testTransitionCacheIsBounded() {
+        RowSchema schema = RowSchema.of("a")
+        assert schema.with("b").is(schema.with("b"))
+        for( int i = 0; i < RowSchema.MAX_CACHED_TRANSITIONS * 2; i++ ) {
+            assert schema.with("pivot${i}").columns == ["a", "pivot${i}"]
+        }
+        // past the cap the extensions are still correct, they're just not shared
+        String last = "pivot${RowSchema.MAX_CACHED_TRANSITIONS * 2}"
+        assert !schema.with(last).is(schema.with(last))
+        assert schema.with(last).columns == ["a", last]
+        assert schema.with("b").is(schema.with("b"))
+    }
+
+    @Test
+    void testCsvSourceEmitsRows() {
+        GratumFixture.withResource("titanic.csv") { stream ->
+            LoadStatistic stat = csv("titanic.csv", stream)
+                .addStep("Rows are array backed") { Map row ->
+                    assert row instanceof Row
+                    return row
+                }
+                .addField("survived") { Map row -> row.Survived == "1" }
+                .renameFields([Sex: "gender"])
+                .clip("PassengerId", "Name", "gender", "survived")
+                .filter([gender: "female"])
+                .addStep("Verify columns") { Map row ->
+                    assert row.keySet().toList() == ["PassengerId", "Name", "survived", "gender"]
+                    return row
+                }
+                .go()
+
+            assert stat.loaded == 152
+            assert stat.rejections == 266
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package gratum.metrics
+
+import gratum.concurrency.LocalConcurrentContext
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import gratum.etl.RejectionCategory
+import gratum.source.CollectionSource
+import org.junit.After
+import org.junit.Test
+
+import javax.management.MBeanServer
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+import java.util.function.Supplier
+
+class MetricsTest {
+
+    List<String> events = []
+    MetricsSnapshot reported
+
+    MetricsListener listener = new AbstractMetricsListener() {
+        @Override
+        void pipelineStarted(Pipeline pipeline) {
+            events << "started ${pipeline.name}".toString()
+        }
+
+        @Override
+        void pipelineFinished(Pipeline pipeline, LoadStatistic statistic) {
+            events << "finished ${pipeline.name} ${statistic.loaded}".toString()
+        }
+
+        @Override
+        void rowRejected(Pipeline pipeline, CharSequence step, RejectionCategory category) {
+            events << "rejected ${step} ${category}".toString()
+        }
+
+        @Override
+        void report(MetricsSnapshot snapshot) {
+            reported = snapshot
+        }
+    }
+
+    @After
+    void tearDown() {
+        Metrics.removeListener( listener )
+        Metrics.unregisterMBean()
+        Metrics.remove( "test." )
+        Metrics.reset()
+    }
+
+    Pipeline people() {
+        return CollectionSource.from([
+                [name: 'Bill', age: 30],
+                [name: 'Ted', age: 17],
+                [name: 'Rufus', age: 40]
+        ])
+    }
+
+    @Test
+    void testListenerIsCalled() {
+        Metrics.addListener( listener )
+
+        LoadStatistic stat = people()
+                .filter("Adults") { row -> row.age >= 18 }
+                .go()
+
+        assert stat.loaded == 2
+        assert events == [
+                "started Collection(3)",
+                "rejected Adults ${RejectionCategory.IGNORE_ROW}".toString(),
+                "finished Collection(3) 2"
+        ]
+    }
+
+    @Test
+    void testNothingIsTrackedWithoutWatchers() {
+        assert !Metrics.enabled
+        people().go()
+        assert Metrics.snapshot().steps.isEmpty()
+    }
+
+    @Test
+    void testSnapshotKeepsFinishedPipelines() {
+        Metrics.addListener( listener )
+
+        people().filter("Adults") { row -> row.age >= 18 }.go()
+        people().filter("Adults") { row -> row.age >= 18 }.go()
+
+        MetricsSnapshot snapshot = Metrics.snapshot()
+        assert snapshot.activePipelines.isEmpty()
+        MetricsSnapshot.StepMetrics adults = snapshot.steps["Collection(3)/Adults"]
+        assert adults.rowsIn == 6
+        assert adults.rowsOut == 4
+        assert adults.rejected == 2
+        assert snapshot.rejections[RejectionCategory.IGNORE_ROW] == 2
+        assert snapshot.rejected == 2
+
+        Metrics.report( snapshot )
+        assert reported.is( snapshot )
+    }
+
+    @Test
+    void testSnapshotSeesRunningPipelines() {
+        Metrics.addListener( listener )
+
+        MetricsSnapshot during = null
+        people()
+                .addStep("Look") { row ->
+                    if( row.name == 'Rufus' ) during = Metrics.snapshot()
+                    return row
+                }
+                .go()
+
+        assert during.activePipelines == ["Collection(3)"]
+        assert during.steps["Collection(3)/Look"].rowsIn == 3
+    }
+
+    @Test
+    void testGaugesAndCounterRates() {
+        Metrics.addListener( listener )
+        double total = 10
+        Metrics.gauge( "test.depth", { -> 5 } as Supplier<Number> )
+        Metrics.counter( "test.total", { -> total } as Supplier<Number> )
+
+        MetricsSnapshot first = Metrics.snapshot()
+        assert first.gauges["test.depth"] == 5.0d
+        assert first.counters["test.total"] == 10.0d
+        assert first.rates["test.total"] == 0.0d
+
+        total = 20
+        Thread.sleep( 20 )
+        MetricsSnapshot second = Metrics.snapshot( first )
+        assert second.rates["test.total"] > 0.0d
+
+        Metrics.remove( "test." )
+        assert !Metrics.snapshot().gauges.containsKey( "test.depth" )
+    }
+
+    @Test
+    void testConcurrentContextPublishesQueueMetrics() {
+        Metrics.addListener( listener )
+        LocalConcurrentContext context = new LocalConcurrentContext( 2, 10 )
+        MetricsSnapshot during = null
+
+        LoadStatistic stat = CollectionSource.from( (1..100).collect { [id: it] } )
+                .apply( context.spread { pipeline -> pipeline }
+                        .collect { pipeline ->
+                            pipeline.addStep("Look") { row ->
+                                if( row.id == 50 ) during = Metrics.snapshot()
+                                return row
+                            }
+                        }
+                        .connect() )
+                .go()
+
+        assert stat.loaded == 100
+        assert during.gauges.containsKey( "${context.metricsName}.eventQueue.depth".toString() )
+        assert during.gauges["${context.metricsName}.eventQueue.capacity".toString()] == 10.0d
+        assert during.counters.containsKey( "${context.metricsName}.Worker-1.busySeconds".toString() )
+        assert during.counters.containsKey( "${context.metricsName}.Results Processor.busySeconds".toString() )
+        assert !Metrics.snapshot().gauges.keySet().any { it.startsWith( context.metricsName + "." ) }
+    }
+
+    @Test
+    void testMBean() {
+        ObjectName name = Metrics.registerMBean()
+        assert Metrics.enabled
+
+        people().filter("Adults") { row -> row.age >= 18 }.go()
+
+        MBeanServer server = ManagementFactory.platformMBeanServer
+        assert server.isRegistered( name )
+        assert (server.getAttribute( name, "ActivePipelines" ) as List).isEmpty()
+        assert server.getAttribute( name, "Rejections" ) != null
+        assert server.getAttribute( name, "RowsIn" ) != null
+
+        Metrics.unregisterMBean()
+        assert !server.isRegistered( name )
+        assert !Metrics.enabled
+    }
+}
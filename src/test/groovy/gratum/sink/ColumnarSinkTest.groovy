@@ -0,0 +1,239 @@
+package gratum.sink
+
+import gratum.columnar.ColumnType
+import gratum.columnar.ColumnarReader
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import gratum.etl.RejectionCategory
+import gratum.source.CollectionSource
+import gratum.source.ColumnarSource
+import org.apache.arrow.memory.RootAllocator
+import org.apache.arrow.vector.VectorSchemaRoot
+import org.apache.arrow.vector.ipc.ArrowFileReader
+import org.apache.arrow.vector.types.pojo.ArrowType
+import org.apache.arrow.vector.types.pojo.Field
+import org.junit.Test
+
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+class ColumnarSinkTest {
+
+    private List<Map<String,Object>> createRows(int count) {
+        List<Map<String,Object>> rows = []
+        for( int i = 0; i < count; i++ ) {
+            rows << ([
+                id: i,
+                total: i * 1000000000L,
+                ratio: i / 4.0d,
+                amount: new BigDecimal("${i}.25"),
+                active: i % 2 == 0,
+                status: ["Active", "Inactive", "Pending"][i % 3],
+                name: "Person ${i}".toString(),
+                created: new Date(1600000000000L + i),
+                birthday: LocalDate.of(2000, 1, 1).plusDays(i),
+                updated: LocalDateTime.of(2020, 1, 1, 12, 0, 0, i),
+                note: i % 5 == 0 ? null : "note"
+            ] as Map<String,Object>)
+        }
+        return rows
+    }
+
+    private Map<String,Field> fields(File file) {
+        RootAllocator allocator = new RootAllocator()
+        ArrowFileReader reader = new ArrowFileReader( new FileInputStream( file ).channel, allocator )
+        try {
+            return reader.vectorSchemaRoot.schema.fields.collectEntries { Field f -> [f.name, f] }
+        } finally {
+            reader.close()
+            allocator.close()
+        }
+    }
+
+    private List<Map<String,Object>> readAll(File file, Collection<String> columns = null) {
+        List<Map<String,Object>> rows = []
+        ColumnarSource.columnar( file, columns ).addStep("collect") { Map<String,Object> row ->
+            rows << row
+            return row
+        }.go()
+        return rows
+    }
+
+    @Test
+    public void testRoundTripInfersSchema() {
+        File tmp = File.createTempFile("testRoundTripInfersSchema", ".arrow")
+        try {
+            List<Map<String,Object>> rows = createRows(250)
+            LoadStatistic stats = CollectionSource.from( rows )
+                .save( new ColumnarSink(tmp).batchSize(100) )
+                .go()
+            assert stats.loaded == 250
+
+            ColumnarReader reader = new ColumnarReader(tmp)
+            assert reader.schema == [id: ColumnType.INT, total: ColumnType.LONG, ratio: ColumnType.DOUBLE, amount: ColumnType.DECIMAL,
+                                     active: ColumnType.BOOLEAN, status: ColumnType.STRING, name: ColumnType.STRING, created: ColumnType.DATE,
+                                     birthday: ColumnType.LOCAL_DATE, updated: ColumnType.LOCAL_DATE_TIME, note: ColumnType.STRING]
+            reader.close()
+
+            assert readAll( tmp ) == rows
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testReadsOnlySelectedColumns() {
+        File tmp = File.createTempFile("testReadsOnlySelectedColumns", ".arrow")
+        try {
+            List<Map<String,Object>> rows = createRows(1000)
+            CollectionSource.from( rows ).columnar( tmp ).go()
+
+            List<Map<String,Object>> selected = readAll( tmp, ["status", "id"] )
+            assert selected.size() == rows.size()
+            assert selected[7].keySet().toList() == ["status", "id"]
+            assert selected.collect { it.status } == rows.collect { it.status }
+            assert selected.collect { it.id } == rows.collect { it.id }
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testWritesArrowIpcFile() {
+        File tmp = File.createTempFile("testWritesArrowIpcFile", ".arrow")
+        try {
+            CollectionSource.from( createRows(10) ).columnar( tmp ).go()
+
+            assert new String( tmp.bytes, 0, 6, "US-ASCII" ) == "ARROW1"
+            RootAllocator allocator = new RootAllocator()
+            ArrowFileReader reader = new ArrowFileReader( new FileInputStream( tmp ).channel, allocator )
+            try {
+                VectorSchemaRoot root = reader.vectorSchemaRoot
+                assert root.schema.fields*.name == ["id", "total", "ratio", "amount", "active", "status", "name", "created", "birthday", "updated", "note"]
+                assert root.schema.findField("amount").type == new ArrowType.Decimal( 38, 2, 128 )
+                assert reader.loadNextBatch()
+                assert root.rowCount == 10
+                assert root.getVector("name").getObject(4).toString() == "Person 4"
+            } finally {
+                reader.close()
+                allocator.close()
+            }
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testDecimalScaleIsFixedByFirstBatch() {
+        File tmp = File.createTempFile("testDecimalScaleIsFixedByFirstBatch", ".arrow")
+        try {
+            LoadStatistic stats = CollectionSource.from([
+                [amount: new BigDecimal("1.5")], [amount: new BigDecimal("2.25")], [amount: 3], [amount: new BigDecimal("4.125")]
+            ])
+            .save( new ColumnarSink(tmp).batchSize(2) )
+            .go()
+
+            assert stats.getRejections(RejectionCategory.SCRIPT_ERROR) == 1
+            assert readAll( tmp ).collect { it.amount } == [new BigDecimal("1.50"), new BigDecimal("2.25"), new BigDecimal("3.00")]
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testExplicitSchemaConvertsAndRejects() {
+        File tmp = File.createTempFile("testExplicitSchemaConvertsAndRejects", ".arrow")
+        try {
+            List<Map> rejections = []
+            CollectionSource.from([
+                [id: "1", amount: "10.50", flag: "true", extra: "dropped"],
+                [id: "two", amount: "1", flag: "false"],
+                [id: "3", amount: "", flag: null]
+            ])
+            .onRejection { Pipeline rej ->
+                rej.addStep("collect rejections") { Map<String,Object> row ->
+                    rejections << row
+                    return row
+                }
+            }
+            .save( new ColumnarSink(tmp, [id: ColumnType.LONG, amount: ColumnType.DECIMAL, flag: ColumnType.BOOLEAN]) )
+            .go()
+
+            assert rejections.size() == 1
+            assert rejections[0].rejectionCategory == RejectionCategory.SCRIPT_ERROR
+            assert rejections[0].id == "two"
+            assert readAll( tmp ) == [
+                [id: 1L, amount: new BigDecimal("10.50"), flag: true],
+                [id: 3L, amount: null, flag: null]
+            ]
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testRepeatedStringsAreDictionaryEncoded() {
+        File tmp = File.createTempFile("testRepeatedStringsAreDictionaryEncoded", ".arrow")
+        try {
+            List<Map<String,Object>> rows = createRows(10)
+            CollectionSource.from( rows ).columnar( tmp ).go()
+
+            Map<String,Field> fields = fields( tmp )
+            assert fields.status.dictionary != null
+            assert fields.note.dictionary != null
+            assert fields.name.dictionary == null
+
+            RootAllocator allocator = new RootAllocator()
+            ArrowFileReader reader = new ArrowFileReader( new FileInputStream( tmp ).channel, allocator )
+            try {
+                VectorSchemaRoot root = reader.vectorSchemaRoot
+                assert reader.loadNextBatch()
+                int index = root.getVector("status").getObject(4) as int
+                assert reader.lookup( fields.status.dictionary.id ).vector.getObject( index ).toString() == "Inactive"
+                assert reader.lookup( fields.status.dictionary.id ).vector.valueCount == 3
+            } finally {
+                reader.close()
+                allocator.close()
+            }
+
+            assert readAll( tmp ) == rows
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testDictionaryGrowsAfterFirstBatch() {
+        File tmp = File.createTempFile("testDictionaryGrowsAfterFirstBatch", ".arrow")
+        try {
+            List<Map<String,Object>> rows = (0..<35).collect { int i -> [id: i, code: i < 10 ? "first" : "code${i % 4}".toString()] as Map<String,Object> }
+            CollectionSource.from( rows ).save( new ColumnarSink(tmp).batchSize(10) ).go()
+
+            assert fields( tmp ).code.dictionary != null
+            assert readAll( tmp ) == rows
+            assert readAll( tmp, ["code"] ).collect { it.code } == rows.collect { it.code }
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    public void testDictionaryColumnsCanBeGiven() {
+        File named = File.createTempFile("testDictionaryColumnsCanBeGiven", ".arrow")
+        File none = File.createTempFile("testDictionaryColumnsCanBeGiven", ".arrow")
+        try {
+            List<Map<String,Object>> rows = createRows(20)
+            CollectionSource.from( rows ).save( new ColumnarSink(named).dictionary("name") ).go()
+            CollectionSource.from( rows ).save( new ColumnarSink(none).dictionary() ).go()
+
+            assert fields( named ).name.dictionary != null
+            assert fields( named ).status.dictionary == null
+            assert fields( none ).values().every { Field f -> f.dictionary == null }
+            assert readAll( named ) == rows
+            assert readAll( none ) == rows
+        } finally {
+            named.delete()
+            none.delete()
+        }
+    }
+}
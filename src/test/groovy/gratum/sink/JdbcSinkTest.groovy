@@ -0,0 +1,103 @@
+package gratum.sink
+
+import gratum.etl.LoadStatistic
+import gratum.etl.RejectionCategory
+import gratum.source.CollectionSource
+import groovy.sql.Sql
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class JdbcSinkTest {
+
+    Sql sql
+
+    @Before
+    void setUp() {
+        sql = Sql.newInstance("jdbc:h2:mem:jdbcSinkTest;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver")
+        sql.execute("CREATE TABLE people (id INT PRIMARY KEY, name VARCHAR(50) NOT NULL, age INT, joined TIMESTAMP)")
+    }
+
+    @After
+    void tearDown() {
+        sql.execute("DROP TABLE people")
+        sql.close()
+    }
+
+    @Test
+    void testInsertInBatches() {
+        Map<String,Object> result = null
+        LoadStatistic stats = CollectionSource.from( (1..2500).collect { [id: it, name: "person ${it}", age: it % 90, joined: new Date()] } )
+                .save( new JdbcSink( sql, "people" ).batchSize(1000).commitEvery(1000) )
+                .addStep("result") { row ->
+                    result = row
+                    return row
+                }
+                .go()
+
+        assert stats.rejections == 0
+        assert result.rows == 2500
+        assert result.batches == 3
+        assert sql.firstRow("SELECT COUNT(*) AS c FROM people").c == 2500
+        assert sql.firstRow("SELECT name FROM people WHERE id = 42").name == "person 42"
+        assert sql.connection.autoCommit
+    }
+
+    @Test
+    void testExplicitColumnsAndNulls() {
+        CollectionSource.from([
+                [id: 1, name: "Bill", age: null, ignored: "x"],
+                [id: 2, name: "Ted"]
+        ])
+        .save( new JdbcSink( sql, "people" ).columns("id", "name", "age") )
+        .go()
+
+        assert sql.rows("SELECT id, name, age FROM people ORDER BY id").collect { [it.id, it.name, it.age] } == [[1, "Bill", null], [2, "Ted", null]]
+    }
+
+    @Test
+    void testUpsert() {
+        sql.execute("INSERT INTO people (id, name, age) VALUES (1, 'Bill', 30), (2, 'Ted', 31)")
+
+        CollectionSource.from([
+                [id: 2, name: "Ted Logan", age: 32],
+                [id: 3, name: "Rufus", age: 50]
+        ])
+        .save( new JdbcSink( sql, "people" ).columns("id", "name", "age").upsert("id") )
+        .go()
+
+        assert sql.rows("SELECT id, name, age FROM people ORDER BY id").collect { [it.id, it.name, it.age] } == [
+                [1, "Bill", 30],
+                [2, "Ted Logan", 32],
+                [3, "Rufus", 50]
+        ]
+    }
+
+    @Test
+    void testFailedBatchIsRejected() {
+        List<Map> rejections = []
+        LoadStatistic stats = CollectionSource.from( (1..10).collect { [id: it, name: it == 5 ? null : "person ${it}"] } )
+                .save( new JdbcSink( sql, "people" ).batchSize(3).commitEvery(3) )
+                .onRejection { rej ->
+                    rej.addStep("Save rejections") { row ->
+                        rejections << row
+                        return row
+                    }
+                    return
+                }
+                .go()
+
+        assert stats.getRejections(RejectionCategory.REJECTION, "jdbcOut(people)") == 3
+        assert rejections*.id == [4, 5, 6]
+        assert sql.rows("SELECT id FROM people ORDER BY id")*.id == [1, 2, 3, 7, 8, 9, 10]
+    }
+
+    @Test
+    void testUpsertSql() {
+        JdbcSink sink = new JdbcSink( sql, "people" ).columns("id", "name").upsert("id")
+        assert sink.upsertSql("PostgreSQL") == "INSERT INTO people (id, name) VALUES (?, ?) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name"
+        assert sink.upsertSql("MySQL") == "INSERT INTO people (id, name) VALUES (?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name)"
+        assert sink.upsertSql("Microsoft SQL Server") == "MERGE INTO people t USING (VALUES (?, ?)) s (id, name) ON (t.id = s.id)" +
+                " WHEN MATCHED THEN UPDATE SET name = s.name WHEN NOT MATCHED THEN INSERT (id, name) VALUES (s.id, s.name)"
+    }
+}
@@ -2,6 +2,8 @@ package gratum.sink
 
 import gratum.etl.LoadStatistic
 import gratum.source.CollectionSource
+import gratum.source.JsonSource
+import groovy.json.JsonOutput
 import org.junit.Test
 
 
@@ -53,4 +55,44 @@ class JsonSinkTest {
             tmp.delete()
         }
     }
+
+    @Test
+    public void testEncodingMatchesJsonOutput() {
+        List<Map<String,Object>> rows = [
+            [name: "Tab\there \"quoted\" back\\slash \u0001 caf\u00e9", count: 42, big: Long.MIN_VALUE, ratio: 0.25d,
+             amount: new BigDecimal("12.50"), active: true, missing: null, when: new Date(0),
+             tags: ["a", 1, null], nested: [inner: [1L, 2L], "odd\"key": false], letters: (["x", "y"] as String[])],
+            [name: "Second", count: -7, ratio: 1.5f, nested: [:], tags: []]
+        ]
+
+        StringWriter all = new StringWriter()
+        StringWriter some = new StringWriter()
+        CollectionSource.from( rows ).save( new JsonSink("all", all).jsonObjectPerLine(true) ).go()
+        CollectionSource.from( rows ).save( new JsonSink("some", some, ["ratio", "name", "nothere", "missing"]).jsonObjectPerLine(true) ).go()
+
+        List<String> allLines = all.toString().readLines()
+        List<String> someLines = some.toString().readLines()
+        rows.eachWithIndex { Map<String,Object> row, int i ->
+            assert allLines[i] == JsonOutput.toJson( row )
+            assert someLines[i] == JsonOutput.toJson( row.subMap(["ratio", "name", "nothere", "missing"]) )
+        }
+    }
+
+    @Test
+    public void testGzipJsonlRoundTrip() {
+        File tmp = File.createTempFile("testGzipJsonlRoundTrip", ".jsonl.gz")
+        try {
+            LoadStatistic stats = CollectionSource.from( createBands() ).jsonl(tmp).go()
+            assert stats.loaded == 10
+
+            List<Map<String,Object>> rows = []
+            JsonSource.jsonl(tmp).into().addStep("collect") { Map<String,Object> row ->
+                rows << row
+                return row
+            }.go()
+            assert rows == createBands()
+        } finally {
+            tmp.delete()
+        }
+    }
 }
@@ -52,4 +52,33 @@ class FileSystemSourceTest {
 
         assert stats.loaded == 2
     }
+
+    @Test
+    void testFilesAreVisitedInNameOrder() {
+        List<File> expected = [csvFile1, textFile1].sort { it.name } + [csvFile2, textFile2].sort { it.name }
+        List<File> seen = []
+        FileSystemSource.files( dir ).into().addStep("Seen") { Map row ->
+            seen << (File)row.file
+            return row
+        }
+        .go()
+
+        assert seen == expected
+    }
+
+    @Test
+    void testResumeSkipsFilesAlreadyProcessed() {
+        List<File> expected = [csvFile1, textFile1].sort { it.name } + [csvFile2, textFile2].sort { it.name }
+        FileSystemSource source = FileSystemSource.files( dir )
+        source.resume( [files: 3] as Map<String,Object> )
+        List<File> seen = []
+        source.into().addStep("Seen") { Map row ->
+            seen << (File)row.file
+            return row
+        }
+        .go()
+
+        assert seen == expected.drop( 3 )
+        assert source.position.files == 4
+    }
 }
@@ -0,0 +1,179 @@
+package gratum.source
+
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import groovy.sql.Sql
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.sql.Timestamp
+
+import static gratum.source.JdbcSource.database
+
+class JdbcSourceTest {
+
+    static final String URL = "jdbc:h2:mem:jdbcSourceTest;DB_CLOSE_DELAY=-1"
+
+    Sql sql
+
+    @Before
+    void setUp() {
+        sql = Sql.newInstance(URL, "sa", "", "org.h2.Driver")
+        sql.execute("CREATE TABLE events (id INT, name VARCHAR(50), happened TIMESTAMP)")
+        long start = Timestamp.valueOf("2024-01-01 00:00:00").time
+        sql.withBatch(500, "INSERT INTO events (id, name, happened) VALUES (?, ?, ?)") { ps ->
+            (1..1000).each { int id ->
+                ps.addBatch( [ id % 100 == 0 ? null : id, "event ${id}".toString(), new Timestamp( start + id * 3_600_000L ) ] )
+            }
+        }
+    }
+
+    @After
+    void tearDown() {
+        sql.execute("DROP TABLE events")
+        sql.close()
+    }
+
+    @Test
+    void testQuery() {
+        int minimum = 990
+        List<Map> rows = []
+        LoadStatistic stats = database( sql )
+                .query("SELECT id, name FROM events WHERE id > ${minimum} ORDER BY id")
+                .into()
+                .addStep("collect") { row ->
+                    rows << row
+                    return row
+                }
+                .go()
+
+        assert stats.loaded == 9
+        assert rows*.ID == (991..999).toList()
+        assert rows[0].NAME == "event 991"
+    }
+
+    @Test
+    void testStream() {
+        LoadStatistic stats = database( sql )
+                .query("SELECT * FROM events")
+                .stream()
+                .fetchSize(100)
+                .into()
+                .go()
+
+        assert stats.loaded == 1000
+        assert sql.connection.autoCommit
+    }
+
+    @Test
+    void testPartitionByNumber() {
+        Set<String> names = new HashSet<>()
+        Set<String> threads = new HashSet<>()
+        LoadStatistic stats = database( URL, "sa", "" )
+                .query("SELECT * FROM events WHERE name <> ${'none'}")
+                .partitionBy("id", 4)
+                .into()
+                .addStep("collect") { row ->
+                    names << (String)row.NAME
+                    threads << Thread.currentThread().name
+                    return row
+                }
+                .go()
+
+        assert stats.loaded == 1000
+        assert names.size() == 1000
+        assert threads == [Thread.currentThread().name] as Set
+    }
+
+    @Test
+    void testPartitionByDateWithBounds() {
+        Set<String> names = new HashSet<>()
+        LoadStatistic stats = database( URL, "sa", "" )
+                .query("SELECT * FROM events")
+                .partitionBy("happened", 3, Timestamp.valueOf("2024-01-10 00:00:00"), Timestamp.valueOf("2024-01-20 00:00:00"))
+                .into()
+                .addStep("collect") { row ->
+                    names << (String)row.NAME
+                    return row
+                }
+                .go()
+
+        assert stats.loaded == 1000
+        assert names.size() == 1000
+    }
+
+    @Test
+    void testPartitionStopsWhenPipelineHalts() {
+        LoadStatistic stats = database( URL, "sa", "" )
+                .query("SELECT * FROM events")
+                .partitionBy("id", 4)
+                .into()
+                .limit(10)
+                .go()
+
+        assert stats.loaded == 10
+    }
+
+    @Test
+    void testRowsAreHandedOverInChunks() {
+        List<Integer> chunks = []
+        Pipeline pipeline = new Pipeline("events") {
+            @Override
+            void processBatch(Collection<? extends Map> rows, int firstLine) {
+                chunks << rows.size()
+                super.processBatch( rows, firstLine )
+            }
+        }
+        LoadStatistic stats = pipeline
+                .source( database( sql ).query("SELECT id FROM events WHERE id <= 250 ORDER BY id") )
+                .batchSize(100)
+                .go()
+
+        assert chunks == [100, 100, 48]
+        assert stats.loaded == 248
+    }
+
+    @Test
+    void testResumeByKey() {
+        File checkpoint = File.createTempFile("events", ".checkpoint")
+        checkpoint.delete()
+        try {
+            database( sql ).query("SELECT id, name FROM events WHERE id IS NOT NULL")
+                    .resumeBy("id")
+                    .into()
+                    .checkpoint( checkpoint, 100 )
+                    .addStep("crash") { row ->
+                        if( row.ID == 450 ) throw new Error("Crashed at 450")
+                        return row
+                    }
+                    .go()
+            assert false : "Pipeline should have crashed"
+        } catch( RuntimeException ex ) {
+            assert checkpoint.exists()
+        }
+
+        List<Integer> ids = []
+        database( sql ).query("SELECT id, name FROM events WHERE id IS NOT NULL")
+                .resumeBy("id")
+                .into()
+                .checkpoint( checkpoint, 100 )
+                .addStep("collect") { row ->
+                    ids << (Integer)row.ID
+                    return row
+                }
+                .go()
+
+        // the checkpoint after 400 rows was at id 404 since every 100th id is null
+        assert ids.first() == 405
+        assert ids.size() == 990 - 400
+        assert !checkpoint.exists()
+    }
+
+    @Test
+    void testSplit() {
+        assert JdbcSource.split( 0, 100, 4 ) == [25L, 50L, 75L]
+        assert JdbcSource.split( 1.0d, 2.0d, 2 ) == [1.5G]
+        assert JdbcSource.split( new Timestamp(0), new Timestamp(1000), 2 ) == [new Timestamp(500)]
+    }
+}
@@ -1,8 +1,12 @@
 package gratum.source
 
 import gratum.etl.LoadStatistic
+import gratum.json.JsonStreamParser
+import groovy.json.JsonSlurper
 import org.junit.Test
 
+import java.util.function.Consumer
+
 class JsonSourceTest {
 
     @Test
@@ -81,4 +85,81 @@ class JsonSourceTest {
         assert stat.loaded == 4
         assert stat.rejections == 0
     }
+
+    @Test
+    void testStreamWithPath() {
+        String json = """{
+            "status": 200,
+            "meta": { "items": "not these", "nested": [1, 2, {"a": [true, false, null]}] },
+            "items": [
+                { "name": "Lamp", "price": 30.00, "count": 3, "color": ["white", "black"], "note": "say \\"hi\\"\\n\\u00e9" },
+                { "name": "Desk", "price": 90.5, "count": 12345678901, "color": [], "size": {"w": 1, "h": -2e3} },
+                { "name": "Chair", "price": 125, "count": -1, "color": ["gray"], "extra": null }
+            ],
+            "trailer": "done"
+        }"""
+        List<Map> rows = []
+        LoadStatistic stat = JsonSource.json( json ).path(["items"]).stream().into()
+                .addStep("collect") { Map row ->
+                    rows << row
+                    return row
+                }
+                .go()
+
+        assert stat.loaded == 3
+        assert rows == new JsonSlurper().parseText( json ).items
+        assert rows[0].note == 'say "hi"\n\u00e9'
+        assert rows[1].count instanceof Long
+        assert rows[0].price instanceof BigDecimal
+    }
+
+    @Test
+    void testStreamArrayAlongPath() {
+        // small buffers so values span reads
+        List<Map> rows = []
+        StringBuilder json = new StringBuilder("""{"pages": [""")
+        (1..50).each { page ->
+            if( page > 1 ) json << ","
+            json << """{"page": ${page}, "people": [{"name": "person ${page}-1"}, {"name": "person ${page}-2"}]}"""
+        }
+        json << "]}"
+        new JsonStreamParser( new StringReader( json.toString() ), 16 ).each( ["pages", "*", "people"], { Map row -> rows << row } as Consumer )
+
+        assert rows.size() == 100
+        assert rows[99].name == "person 50-2"
+    }
+
+    @Test(expected = IllegalStateException)
+    void testStreamCantIncludeRoot() {
+        JsonSource.json("[]").stream().includeRoot(true).into().go()
+    }
+
+    @Test
+    void testStreamFollowsPathsLikeSlurping() {
+        String json = """{
+            "pages": [
+                {"page": 1, "people": [{"name": "a"}, {"name": "b"}]},
+                {"page": 2, "people": [{"name": "c"}]}
+            ],
+            "grid": [[{"cell": 1}, {"cell": 2}], [{"cell": 3}]]
+        }"""
+        // an array takes the place of one element of the path, so ["pages", "people"] stops at the pages
+        Map<List<String>,Integer> expected = [(["pages"]): 2, (["pages", "people"]): 2, (["pages", "*", "people"]): 3, (["grid"]): 3]
+        expected.each { List<String> path, Integer count ->
+            List<Map> slurped = []
+            JsonSource.json( json ).path( path ).into().addStep("collect") { Map row ->
+                slurped << row
+                return row
+            }.go()
+
+            List<Map> streamed = []
+            JsonSource.json( json ).path( path ).stream().into().addStep("collect") { Map row ->
+                streamed << row
+                return row
+            }.go()
+
+            assert slurped.size() == count : "${path}"
+            assert streamed == slurped : "${path}"
+        }
+    }
 }
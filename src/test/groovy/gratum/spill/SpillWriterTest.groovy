@@ -0,0 +1,118 @@
+package gratum.spill
+
+import gratum.etl.Row
+import gratum.etl.RowSchema
+import org.junit.Test
+
+import java.sql.Timestamp
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+class SpillWriterTest {
+
+    @Test
+    void testValuesKeepTheirTypes() {
+        Timestamp timestamp = new Timestamp(1_600_000_000_123L)
+        timestamp.nanos = 123_456_789
+        Map<String,Object> row = [
+                string: "Renée 😀",
+                empty: "",
+                nothing: null,
+                integer: -42,
+                lng: Long.MAX_VALUE,
+                dbl: 3.14159d,
+                flt: 2.5f,
+                yes: true,
+                no: false,
+                decimal: new BigDecimal("-12345.6789"),
+                bigInteger: new BigInteger("123456789012345678901234567890"),
+                date: new Date(1_600_000_000_000L),
+                timestamp: timestamp,
+                sqlDate: new java.sql.Date(1_600_000_000_000L),
+                localDate: LocalDate.of(1912, 4, 15),
+                localDateTime: LocalDateTime.of(2024, 2, 29, 13, 45, 1, 999),
+                shrt: (short)-7,
+                byt: (byte)9,
+                character: 'x' as char,
+                bytes: [1, 2, 3] as byte[],
+                list: ["a", 1]
+        ]
+
+        SpillCompression.values().each { SpillCompression compression ->
+            File file = File.createTempFile("spill", ".spill")
+            try {
+                new SpillWriter(file, compression).withCloseable { SpillWriter out ->
+                    out.write(row)
+                }
+                SpillReader reader = new SpillReader(file)
+                Map<String,Object> actual = reader.next()
+                assert !reader.hasNext()
+
+                assert actual.keySet().toList() == row.keySet().toList()
+                row.each { String key, Object value ->
+                    if( value instanceof byte[] ) {
+                        assert Arrays.equals((byte[])actual[key], (byte[])value)
+                    } else {
+                        assert actual[key] == value
+                        assert actual[key]?.getClass() == value?.getClass()
+                    }
+                }
+                assert ((Timestamp)actual.timestamp).nanos == 123_456_789
+            } finally {
+                file.delete()
+            }
+        }
+    }
+
+    @Test
+    void testManyRowsAcrossBlocks() {
+        RowSchema schema = RowSchema.of("id", "name", "comment")
+        SpillCompression.values().each { SpillCompression compression ->
+            File file = File.createTempFile("spill", ".spill")
+            try {
+                SpillWriter out = new SpillWriter(file, compression, 1024)
+                out.withCloseable {
+                    for( int i = 0; i < 10_000; i++ ) {
+                        if( i % 100 == 0 ) {
+                            out.write([id: i, hobby: "Hobby ${i}", (null): "ragged"])
+                        } else {
+                            out.write(new Row(schema, [i, "Person ${i}", "Comment ${i % 7}"] as Object[]))
+                        }
+                    }
+                }
+                assert out.rows == 10_000
+                if( compression != SpillCompression.NONE ) assert out.bytesWritten < 200_000
+
+                int count = 0
+                RowSchema previous = null
+                for( Map<String,Object> row : new SpillReader(file) ) {
+                    assert row.id == count
+                    if( count % 100 == 0 ) {
+                        assert row == [id: count, hobby: "Hobby ${count}".toString(), (null): "ragged"]
+                    } else {
+                        assert row.name == "Person ${count}".toString()
+                        assert row.comment == "Comment ${count % 7}".toString()
+                        // rows with the same columns share a schema
+                        if( previous && (count - 1) % 100 != 0 ) assert previous.is(((Row)row).schema)
+                        previous = ((Row)row).schema
+                    }
+                    count++
+                }
+                assert count == 10_000
+            } finally {
+                file.delete()
+            }
+        }
+    }
+
+    @Test(expected = IOException)
+    void testNotASpillFile() {
+        File file = File.createTempFile("spill", ".csv")
+        try {
+            file.text = "id,name\n1,Bill\n"
+            new SpillReader(file)
+        } finally {
+            file.delete()
+        }
+    }
+}
@@ -115,6 +115,60 @@ public class CSVFileTest extends TestCase {
         } );
     }
 
+    public void testQuotesWithinUnquotedFields() throws IOException {
+        // a quote inside an unquoted field protects separators until the next lone quote, and doubled quotes
+        // don't change where the line splits
+        String src = "a,b,c\n"
+                + "a\"\"b,c,d\n"
+                + "a\"\",c,d\n"
+                + "a\"b,c\"d,e,f\n"
+                + "a\"x\"\"y,z\"b,c,d\n";
+        List<List<String>> expected = Arrays.asList(
+                Arrays.asList("a\"b", "c", "d"),
+                Arrays.asList("a\"", "c", "d"),
+                Arrays.asList("a\"b,c\"d", "e", "f"),
+                Arrays.asList("a\"x\"y,z\"b", "c", "d") );
+
+        List<List<String>> rows = new ArrayList<>();
+        new CSVFile((File)null, ",").parse( new StringReader(src), new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) {
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) {
+                rows.add( new ArrayList<>( row ) );
+                return false;
+            }
+        });
+        assertEquals( expected, rows );
+
+        File tmp = File.createTempFile("testQuotesWithinUnquotedFields", ".csv");
+        try {
+            try( Writer out = new OutputStreamWriter( new FileOutputStream(tmp), StandardCharsets.UTF_8 ) ) {
+                out.write( src );
+            }
+            CSVFile csv = new CSVFile( tmp, "," );
+            csv.setParallelism( 2, true );
+            csv.setChunkSize( 8 );
+            List<List<String>> parallel = new ArrayList<>();
+            csv.parse( new CSVReader() {
+                @Override
+                public void processHeaders(List<String> header) {
+                }
+
+                @Override
+                public boolean processRow(List<String> header, List<String> row) {
+                    parallel.add( new ArrayList<>( row ) );
+                    return false;
+                }
+            });
+            assertEquals( expected, parallel );
+        } finally {
+            tmp.delete();
+        }
+    }
+
     public void testReluctantPhrase() throws IOException {
         String src = "\"01-APR-2014\"|\"INV SVC -G\"|\"SD\"|\"CORE SVCS\"|\"\"\"\"|\"\"|\"Investor Services Complex\"|\"Service Delivery\"|\"Core Services\"";
         CSVFile f = new CSVFile((File)null,"|");
@@ -192,6 +246,174 @@ public class CSVFileTest extends TestCase {
         assertTrue( output.contains("\\n") );
     }
 
+    public void testWriteMinimalQuoting() throws IOException {
+        StringWriter writer = new StringWriter();
+        CSVFile csv = new CSVFile( writer, "," );
+        csv.setMinimalQuoting( true );
+        csv.write( "plain", 42, -7L, null, "", "has, comma", "say \"hi\"", "two\nlines" );
+        csv.close();
+
+        assertEquals( "plain,42,-7,,,\"has, comma\",\"say \"\"hi\"\"\",two\\nlines" + System.lineSeparator(), writer.toString() );
+    }
+
+    public void testFlushFailureIsUnchecked() throws IOException {
+        Writer broken = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                throw new IOException( "Disk full" );
+            }
+
+            @Override
+            public void flush() throws IOException {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CSVFile csv = new CSVFile( broken, "," );
+        csv.write( "a", "b" );
+        try {
+            csv.flush();
+            fail( "flush should have failed" );
+        } catch( UncheckedIOException ex ) {
+            assertEquals( "Disk full", ex.getCause().getMessage() );
+        }
+    }
+
+    public void testWriteAndReadBack() throws IOException {
+        File tmp = File.createTempFile("testWriteAndReadBack", ".csv");
+        try {
+            List<Map<String,Object>> expected = new ArrayList<>();
+            StringBuilder longValue = new StringBuilder();
+            for( int i = 0; i < 40000; i++ ) longValue.append( i % 10 == 0 ? "\ud83d\ude00" : "\u00e9" );
+            for( boolean minimal : new boolean[] { false, true } ) {
+                expected.clear();
+                CSVFile out = new CSVFile( tmp, "," );
+                out.setMinimalQuoting( minimal );
+                out.setWriteBom( true );
+                for( int i = 0; i < 500; i++ ) {
+                    Map<String,Object> row = new LinkedHashMap<>();
+                    row.put( "id", String.valueOf(i) );
+                    row.put( "name", i % 3 == 0 ? "Ren\u00e9e, \"" + i + "\"" : "plain " + i );
+                    row.put( "comment", i % 100 == 0 ? longValue.toString() : "line one\nline two" );
+                    out.write( row );
+                    expected.add( row );
+                }
+                out.close();
+
+                List<Map<String,Object>> actual = new ArrayList<>();
+                new CSVFile( tmp, "," ).mapIterator().forEachRemaining( actual::add );
+                assertEquals( expected, actual );
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    public void testGzipRoundTrip() throws IOException {
+        File tmp = File.createTempFile("testGzipRoundTrip", ".csv.gz");
+        try {
+            CSVFile out = new CSVFile( tmp, "," );
+            out.setGzip( 4 );
+            List<Map<String,Object>> expected = new ArrayList<>();
+            for( int i = 0; i < 60000; i++ ) {
+                Map<String,Object> row = new LinkedHashMap<>();
+                row.put( "id", String.valueOf(i) );
+                row.put( "name", "Ren\u00e9e number " + i );
+                out.write( row );
+                expected.add( row );
+            }
+            out.close();
+
+            // more than one block so the file is several gzip members, which plain GZIPInputStream reads as one
+            int lines = 0;
+            try( BufferedReader reader = new BufferedReader( new InputStreamReader( new java.util.zip.GZIPInputStream( new FileInputStream(tmp) ), StandardCharsets.UTF_8 ) ) ) {
+                while( reader.readLine() != null ) lines++;
+            }
+            assertEquals( expected.size() + 1, lines );
+
+            CSVFile in = new CSVFile( tmp, "," );
+            in.setParallelism( 4, true );
+            List<Map<String,Object>> actual = new ArrayList<>();
+            in.mapIterator().forEachRemaining( actual::add );
+            assertEquals( expected, actual );
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    public void testParseFromOffset() throws Exception {
+        File tmp = File.createTempFile("testParseFromOffset", ".csv");
+        try {
+            try( Writer out = new OutputStreamWriter( new FileOutputStream(tmp), StandardCharsets.UTF_8 ) ) {
+                out.write( "\uFEFFid,name\n" );
+                for( int i = 1; i <= 20000; i++ ) {
+                    // 2, 3 and 4 byte characters so the offset can't be counted in chars
+                    out.write( i + ",\"Ren\u00e9e \u4e2d \uD83D\uDE00 " + i + "\"\r\n" );
+                }
+            }
+
+            long[] offset = new long[1];
+            CSVFile first = new CSVFile( tmp, "," );
+            first.setTrackOffset( true );
+            first.parse( new CSVReader() {
+                public void processHeaders(List<String> header) {
+                }
+
+                public boolean processRow(List<String> header, List<String> row, int line) {
+                    offset[0] = first.getOffset();
+                    return line == 15000;
+                }
+
+                public boolean processRow(List<String> header, List<String> row) {
+                    return false;
+                }
+            });
+            assertEquals( -1, first.getOffset() );
+
+            List<List<String>> rows = new ArrayList<>();
+            List<Integer> lines = new ArrayList<>();
+            CSVFile second = new CSVFile( tmp, "," );
+            second.setColumnHeaders( Arrays.asList( "id", "name" ) );
+            second.parse( new CSVReader() {
+                public void processHeaders(List<String> header) {
+                }
+
+                public boolean processRow(List<String> header, List<String> row, int line) {
+                    rows.add( new ArrayList<>( row ) );
+                    lines.add( line );
+                    return false;
+                }
+
+                public boolean processRow(List<String> header, List<String> row) {
+                    return false;
+                }
+            }, offset[0], 15001 );
+
+            assertEquals( 5000, rows.size() );
+            assertEquals( Arrays.asList( "15001", "Ren\u00e9e \u4e2d \uD83D\uDE00 15001" ), rows.get(0) );
+            assertEquals( Integer.valueOf( 15001 ), lines.get(0) );
+            assertEquals( "20000", rows.get( rows.size() - 1 ).get(0) );
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    public void testReadBzip2() throws IOException {
+        File tmp = File.createTempFile("testReadBzip2", ".csv.bz2");
+        try {
+            try( Writer out = new OutputStreamWriter( new org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream( new FileOutputStream(tmp) ), StandardCharsets.UTF_8 ) ) {
+                out.write("name,age\nTom Hanks,59\nMeg Ryan,54\n");
+            }
+            List<List<String>> rows = new ArrayList<>();
+            new CSVFile( tmp, "," ).iterator().forEachRemaining( rows::add );
+            assertEquals( Arrays.asList( Arrays.asList("name", "age"), Arrays.asList("Tom Hanks", "59"), Arrays.asList("Meg Ryan", "54") ), rows );
+        } finally {
+            tmp.delete();
+        }
+    }
+
     public void testWithoutEscaping() throws IOException {
         Reader reader = new InputStreamReader( CSVFileTest.class.getResourceAsStream("/unescaped.csv") );
         CSVFile csv = new CSVFile(reader, "|");
@@ -323,6 +545,190 @@ public class CSVFileTest extends TestCase {
         });
     }
 
+    public void testQuotedMultilineRecords() throws IOException {
+        String src = "name,comment,rating\r\n"
+                + "\"Tom Hanks\",\"Great in Big.\r\nAlso \"\"Cast Away\"\", obviously\",5\r\n"
+                + "\r\n"
+                + "Meg Ryan,\"Line one\nLine two\",4\r\n"
+                + "Tom Cruise,\"Escaped\\nnewline\",3";
+        CsvParser parser = new CsvParser( new StringReader(src), ",", true );
+        assertEquals( Arrays.asList("name", "comment", "rating"), parser.next() );
+
+        CsvRecord record = parser.next();
+        assertEquals( 3, record.size() );
+        assertEquals( "Tom Hanks", record.get(0) );
+        assertEquals( "Great in Big.\r\nAlso \"Cast Away\", obviously", record.get(1) );
+        assertEquals( "5", record.get(2) );
+        assertEquals( 2, record.getLine() );
+
+        record = parser.next();
+        assertEquals( "Line one\nLine two", record.get(1) );
+        assertEquals( 5, record.getLine() );
+
+        record = parser.next();
+        assertEquals( "Escaped\nnewline", record.get(1) );
+        assertEquals( "3", record.get(2) );
+        assertNull( parser.next() );
+        assertEquals( 7, parser.getLine() );
+    }
+
+    public void testRecordsLargerThanTheBuffer() throws IOException {
+        StringBuilder src = new StringBuilder();
+        for( int i = 0; i < 200; i++ ) {
+            src.append(i).append(",\"value ").append(i).append(",\nwith a line break\",").append( i % 3 == 0 ? "" : "x" ).append("\n");
+        }
+        CsvParser parser = new CsvParser( new StringReader(src.toString()), ",", true, 16 );
+        List<CsvRecord> records = new ArrayList<>();
+        CsvRecord record;
+        while( (record = parser.next()) != null ) {
+            records.add( record );
+        }
+        assertEquals( 200, records.size() );
+        // records are read long after the buffer they were parsed from has been reused
+        for( int i = 0; i < records.size(); i++ ) {
+            record = records.get(i);
+            assertEquals( 3, record.size() );
+            assertEquals( String.valueOf(i), record.get(0) );
+            assertEquals( "value " + i + ",\nwith a line break", record.get(1) );
+            assertEquals( i % 3 == 0 ? "" : "x", record.get(2) );
+        }
+    }
+
+    public void testRecordTextSurvivesBufferReuse() throws IOException {
+        StringBuilder src = new StringBuilder();
+        for( int i = 0; i < 20; i++ ) {
+            src.append( i ).append( ",name " ).append( i ).append( '\n' );
+        }
+        CsvParser parser = new CsvParser( new StringReader( src.toString() ), ",", true, 16 );
+        List<CsvRecord> records = new ArrayList<>();
+        CsvRecord record;
+        while( (record = parser.next()) != null ) {
+            // materializing every field used to stop the record copying its text before the buffer was reused
+            assertEquals( String.valueOf( records.size() ), record.get(0) );
+            record.get(1);
+            records.add( record );
+        }
+        assertEquals( 20, records.size() );
+        for( int i = 0; i < records.size(); i++ ) {
+            assertEquals( i + ",name " + i, records.get(i).getText() );
+        }
+    }
+
+    public void testUnescapedMultiCharacterSeparator() throws IOException {
+        CsvParser parser = new CsvParser( new StringReader("a||b|c||\n\n\"d\"||||e"), "||", false, 16 );
+        assertEquals( Arrays.asList("a", "b|c", ""), parser.next() );
+        assertEquals( Arrays.asList("\"d\"", "", "e"), parser.next() );
+        assertNull( parser.next() );
+    }
+
+    public void testPullIterator() {
+        CSVFile csv = new CSVFile( new StringReader("name,age\nBill,53\n\"Cheryl\",43\n"), "," );
+        Iterator<List<String>> iterator = csv.iterator();
+        assertTrue( iterator.hasNext() );
+        assertTrue( iterator.hasNext() );
+        assertEquals( Arrays.asList("name", "age"), iterator.next() );
+        assertEquals( Arrays.asList("Bill", "53"), iterator.next() );
+        assertEquals( Arrays.asList("Cheryl", "43"), iterator.next() );
+        assertFalse( iterator.hasNext() );
+    }
+
+    public void testParallelParseMatchesSequential() throws IOException {
+        File tmp = File.createTempFile("testParallelParse", ".csv");
+        try {
+            try( Writer out = new OutputStreamWriter( new FileOutputStream(tmp), StandardCharsets.UTF_8 ) ) {
+                out.write('\ufeff');
+                out.write("id,name,comment\r\n");
+                for( int i = 0; i < 5000; i++ ) {
+                    if( i % 7 == 0 ) out.write("\r\n");
+                    out.write( i + ",Ren\u00e9e " + i + "," );
+                    out.write( i % 3 == 0 ? "\"multiple\nlines, with \"\"quotes\"\"\"" : "plain" );
+                    out.write( i % 2 == 0 ? "\r\n" : "\n" );
+                }
+            }
+
+            Map<Integer,List<String>> expected = collect( new CSVFile( tmp, "," ) );
+            assertEquals( 5000, expected.size() );
+            assertEquals( Arrays.asList("0", "Ren\u00e9e 0", "multiple\nlines, with \"quotes\""), expected.get(1) );
+
+            for( boolean ordered : new boolean[] { true, false } ) {
+                CSVFile csv = new CSVFile( tmp, "," );
+                csv.setParallelism( 4, ordered );
+                csv.setChunkSize( 1024 );
+                Map<Integer,List<String>> actual = collect( csv );
+                assertEquals( Arrays.asList("id", "name", "comment"), csv.getColumnHeaders() );
+                assertEquals( expected, actual );
+                if( ordered ) {
+                    assertEquals( new ArrayList<>( expected.keySet() ), new ArrayList<>( actual.keySet() ) );
+                }
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    public void testParallelParseAcrossSplitterBlocks() throws Exception {
+        File tmp = File.createTempFile("testParallelParseBlocks", ".csv");
+        try {
+            try( Writer out = new OutputStreamWriter( new FileOutputStream(tmp), StandardCharsets.UTF_8 ) ) {
+                out.write("id,name,comment\r\n");
+                for( int i = 0; i < 40000; i++ ) {
+                    out.write( i + ",Ren\u00e9e " + i + "," );
+                    out.write( i % 5 == 0 ? "\"spans\r\nlines, \"\"quoted\"\"\"" : "plain" );
+                    out.write( "\r\n" );
+                }
+            }
+            assertTrue( tmp.length() > 4 * CsvSplitter.BLOCK_SIZE );
+
+            Map<Integer,List<String>> expected = collect( new CSVFile( tmp, "," ) );
+            for( boolean ordered : new boolean[] { true, false } ) {
+                CSVFile csv = new CSVFile( tmp, "," );
+                csv.setParallelism( 4, ordered );
+                csv.setChunkSize( 100 * 1024 );
+                assertEquals( expected, collect( csv ) );
+            }
+
+            // stopping part way through shuts the splitter down rather than leaving it waiting for a permit
+            CSVFile csv = new CSVFile( tmp, "," );
+            csv.setParallelism( 2, true );
+            csv.setChunkSize( 1024 );
+            int[] rows = new int[1];
+            csv.parse( new CSVReader() {
+                public void processHeaders(List<String> header) {
+                }
+
+                public boolean processRow(List<String> header, List<String> row) {
+                    return ++rows[0] == 100;
+                }
+            });
+            assertEquals( 100, rows[0] );
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private Map<Integer,List<String>> collect(CSVFile csv) throws IOException {
+        Map<Integer,List<String>> rows = new LinkedHashMap<>();
+        csv.parse(new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) throws Exception {
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) throws Exception {
+                fail("Rows should be passed with their line.");
+                return true;
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row, int line) throws Exception {
+                assertNull( rows.put( line, new ArrayList<>( row ) ) );
+                assertEquals( String.valueOf( line - 1 ), row.get(0) );
+                return false;
+            }
+        });
+        return rows;
+    }
+
     private File writeTestUnicodeFile() throws IOException {
         Map<String,Object> person1 =new HashMap<>();
         person1.put("Name", "Andri\u00e9");